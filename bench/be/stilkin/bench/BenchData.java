@@ -0,0 +1,50 @@
+package be.stilkin.bench;
+
+import java.util.Random;
+
+import be.stilkin.CardMasks;
+import poker.Card;
+
+/**
+ * Fixed sets of random deals for the benchmarks, so every run measures the same hands. Sizes are powers of two, index with (i & (SIZE - 1)).
+ * 
+ * @author stilkin
+ */
+public final class BenchData {
+    public static final int SIZE = 4096;
+    private static final long SEED = 42;
+
+    private BenchData() {}
+
+    /**
+     * @return SIZE random hands of n distinct cards, as HandEval masks
+     */
+    public static long[] masks(final int n) {
+	final Random random = new Random(SEED + n);
+	final long[] masks = new long[SIZE];
+	for (int i = 0; i < SIZE; i++) {
+	    long mask = 0;
+	    while (Long.bitCount(mask) < n) {
+		mask |= CardMasks.bit(random.nextInt(CardMasks.DECK_SIZE));
+	    }
+	    masks[i] = mask;
+	}
+	return masks;
+    }
+
+    /**
+     * @return SIZE random hands of n distinct cards, as Card objects
+     */
+    public static Card[][] cards(final int n) {
+	final long[] masks = masks(n);
+	final Card[][] cards = new Card[SIZE][n];
+	for (int i = 0; i < SIZE; i++) {
+	    long mask = masks[i];
+	    for (int c = 0; c < n; c++) {
+		cards[i][c] = new Card(CardMasks.index(mask));
+		mask &= mask - 1;
+	    }
+	}
+	return cards;
+    }
+}
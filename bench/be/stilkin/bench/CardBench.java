@@ -0,0 +1,59 @@
+package be.stilkin.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.stilkin.StartingHands;
+import poker.Card;
+
+/**
+ * Card lookups and the pre-flop odds table.
+ * 
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardBench {
+    private String[] names;
+    private Card[][] hands;
+    private int i;
+
+    @Setup
+    public void setup() {
+	hands = BenchData.cards(2);
+	names = new String[BenchData.SIZE];
+	for (int n = 0; n < names.length; n++) {
+	    names[n] = hands[n][0].toString();
+	}
+    }
+
+    @Benchmark
+    public Card getCard() {
+	return Card.getCard(names[i++ & (BenchData.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public long getNumber() {
+	return hands[i++ & (BenchData.SIZE - 1)][0].getNumber();
+    }
+
+    @Benchmark
+    public float startingHandOdds() {
+	final Card[] hand = hands[i++ & (BenchData.SIZE - 1)];
+	return StartingHands.getOdds(hand[0], hand[1]);
+    }
+}
@@ -0,0 +1,82 @@
+package be.stilkin.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.stilkin.log.Log;
+import bot.BotParser;
+import bot.BotStarter;
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * A full BotStarter.getMove on every street. One bot per trial, so neither the score nor the gc profiler's bytes/op include building it; the bot keeps per-round
+ * bookkeeping, which is reset before every invocation (outside the measurement), so every call is the same first decision of the round. Logging is off while measuring, the bot
+ * logs every decision.
+ * 
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionBench {
+    static final String[] SETTINGS = { "Settings your_bot player1", "Settings timebank 10000", "Settings time_per_move 500", "Settings hands_per_level 10",
+	    "Settings starting_stack 2000" };
+    static final String[] HAND = { "Match round 3", "Match small_blind 15", "Match big_blind 30", "Match on_button player1", "player1 stack 1970", "player2 stack 2030",
+	    "player1 post 15", "player2 post 30", "player1 hand [Ah,Kd]", "Match max_win_pot 45", "Match amount_to_call 15", "player1 call 15", "player2 check 0",
+	    "Match table [2c,7h,Kc]", "Match max_win_pot 60", "Match amount_to_call 0", "player2 raise 60", "Match amount_to_call 60", "player1 call 60",
+	    "Match table [2c,7h,Kc,Qs]", "Match max_win_pot 180", "player2 check 0", "Match amount_to_call 0", "player1 check 0", "Match table [2c,7h,Kc,Qs,Kh]",
+	    "Match max_win_pot 180", "player2 raise 90", "Match amount_to_call 90" };
+    private static final Long TIME_OUT = Long.valueOf(10000); // outside the cache of Long.valueOf, boxing it per call would be our garbage in bytes/op
+    private static final int[] STREET_END = { 11, 18, 24, HAND.length }; // lines to feed before our decision on each street
+
+    @Param({ "0", "1", "2", "3" })
+    public int street;
+
+    private BotState state;
+    private BotStarter bot;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	Log.setLevel(Log.OFF);
+	state = new BotState();
+	for (String line : SETTINGS) {
+	    BotParser.updateState(state, line.split("\\s+"));
+	}
+	for (int l = 0; l < STREET_END[street]; l++) {
+	    BotParser.updateState(state, HAND[l].split("\\s+"));
+	}
+	bot = new BotStarter();
+    }
+
+    @Setup(Level.Invocation)
+    public void newRound() {
+	bot.resetRound();
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+	Log.setLevel(Log.DEBUG);
+    }
+
+    @Benchmark
+    public PokerMove getMove() {
+	return bot.getMove(state, TIME_OUT);
+    }
+}
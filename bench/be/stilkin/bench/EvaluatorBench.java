@@ -0,0 +1,69 @@
+package be.stilkin.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.HandParser;
+import poker.Card;
+
+/**
+ * The hand evaluators on random 5, 6 and 7 card hands, and our own HandParser on 7 cards.
+ * 
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBench {
+    private long[] hands5;
+    private long[] hands6;
+    private long[] hands7;
+    private Card[][] cards7;
+    private final HandParser parser = new HandParser();
+    private int i;
+
+    @Setup
+    public void setup() {
+	hands5 = BenchData.masks(5);
+	hands6 = BenchData.masks(6);
+	hands7 = BenchData.masks(7);
+	cards7 = BenchData.cards(7);
+    }
+
+    @Benchmark
+    public int hand5Eval() {
+	return HandEval.hand5Eval(hands5[i++ & (BenchData.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public int hand6Eval() {
+	return HandEval.hand6Eval(hands6[i++ & (BenchData.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public int hand7Eval() {
+	return HandEval.hand7Eval(hands7[i++ & (BenchData.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public HandEval.HandCategory handParserCategory() {
+	parser.clear();
+	parser.addCards(cards7[i++ & (BenchData.SIZE - 1)]);
+	return parser.getHandCategory();
+    }
+}
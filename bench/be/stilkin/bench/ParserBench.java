@@ -0,0 +1,48 @@
+package be.stilkin.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bot.BotParser;
+import bot.BotState;
+
+/**
+ * Engine line handling as BotParser does it: split the line and update the state. One operation is one full hand of engine lines.
+ * 
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBench {
+    private BotState state;
+
+    @Setup
+    public void setup() {
+	state = new BotState();
+	for (String line : DecisionBench.SETTINGS) {
+	    BotParser.updateState(state, line.split("\\s+"));
+	}
+    }
+
+    @Benchmark
+    public BotState handLines() {
+	for (String line : DecisionBench.HAND) {
+	    BotParser.updateState(state, line.trim().split("\\s+"));
+	}
+	return state;
+    }
+}
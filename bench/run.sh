@@ -0,0 +1,10 @@
+#!/bin/sh
+# Builds and runs the JMH suite with the allocation profiler, and keeps the JSON results per commit so we can follow them over time.
+# Extra arguments go to JMH, e.g. ./bench/run.sh EvaluatorBench
+set -e
+cd "$(dirname "$0")/.."
+mvn -B -q -Pbench package -DskipTests
+mkdir -p bench/results
+out="bench/results/$(date +%Y%m%d-%H%M%S)-$(git rev-parse --short HEAD).json"
+java -jar target/benchmarks.jar -prof gc -rf json -rff "$out" "$@"
+echo "Results in $out"
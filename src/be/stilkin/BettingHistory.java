@@ -0,0 +1,205 @@
+package be.stilkin;
+
+import poker.ActionType;
+
+/**
+ * Every action of the current hand, packed 4 bits per action in two longs. An entry holds who acted, the action and, for a raise, the raise size in pot-relative buckets; a
+ * separate code marks the end of a street. Appending is a shift and an or, and the first 16 entries are a unique key on their own, so the history can index strategy tables and
+ * caches directly.
+ *
+ * Entry codes: 0 is empty, 1 - 7 are our actions (fold, check, call, raise in bucket 0 - 3), 8 - 14 the same for the opponent, 15 is a new street. Blinds are not recorded.
+ *
+ * Only the first CAPACITY entries are stored. The questions about the current street (getLastAction, getStreetRaises) are kept up to date on their own, so they stay right in a
+ * raise war that runs past the capacity.
+ *
+ * @author stilkin
+ */
+public class BettingHistory {
+    public static final int ME = 0;
+    public static final int OPPONENT = 1;
+    public static final int SIZE_BUCKETS = 4;
+    public static final int CAPACITY = 32;
+    private static final int BITS = 4;
+    private static final int PER_WORD = Long.SIZE / BITS;
+    private static final int CODES_PER_ACTOR = ActionType.RAISE.ordinal() + SIZE_BUCKETS;
+    private static final int STREET_END = 15;
+    private long low; // entries 0 - 15, the first one in the lowest bits
+    private long high; // entries 16 - 31
+    private int length;
+    private int street;
+    private final ActionType[] lastActions = new ActionType[2]; // on the current street
+    private int streetRaises;
+
+    /**
+     * Forget everything, call when a new hand starts
+     */
+    public void clear() {
+	low = 0;
+	high = 0;
+	length = 0;
+	street = 0;
+	newStreet();
+    }
+
+    /**
+     * Records an action
+     *
+     * @param actor
+     *            ME or OPPONENT
+     * @param amount
+     *            for a raise the amount on top of the call, ignored otherwise
+     * @param pot
+     *            the pot before the action
+     */
+    public void append(final int actor, final ActionType action, final int amount, final int pot) {
+	final int type = action == ActionType.RAISE ? action.ordinal() + sizeBucket(amount, pot) : action.ordinal();
+	add(1 + actor * CODES_PER_ACTOR + type);
+	lastActions[actor] = action;
+	if (action == ActionType.RAISE) {
+	    streetRaises++;
+	}
+    }
+
+    /**
+     * Marks the end of the streets before this one, does nothing if the street was already marked
+     *
+     * @param newStreet
+     *            0 pre-flop, 1 flop, 2 turn, 3 river
+     */
+    public void setStreet(final int newStreet) {
+	while (street < newStreet) {
+	    add(STREET_END);
+	    street++;
+	    newStreet();
+	}
+    }
+
+    private void newStreet() {
+	lastActions[ME] = null;
+	lastActions[OPPONENT] = null;
+	streetRaises = 0;
+    }
+
+    private void add(final long code) {
+	if (length < PER_WORD) {
+	    low |= code << (length * BITS);
+	} else if (length < CAPACITY) {
+	    high |= code << ((length - PER_WORD) * BITS);
+	} // else too long to record, there are no tables for hands like that
+	length++;
+    }
+
+    /**
+     * @return the raise size bucket: below half the pot, below the pot, below twice the pot, or more
+     */
+    public static int sizeBucket(final int amount, final int pot) {
+	if (pot <= 0) {
+	    return SIZE_BUCKETS - 1;
+	}
+	if (2 * amount < pot) {
+	    return 0;
+	} else if (amount < pot) {
+	    return 1;
+	} else if (amount < 2 * pot) {
+	    return 2;
+	}
+	return 3;
+    }
+
+    /**
+     * @return the history as a single long. Exact (no two histories share it) up to 16 entries, a hash of both words after that.
+     */
+    public long getKey() {
+	if (high == 0) {
+	    return low;
+	}
+	long h = low * 0x9E3779B97F4A7C15L + high;
+	return h ^ (h >>> 29);
+    }
+
+    /**
+     * @return the amount of entries, street ends included (can be more than CAPACITY, the extra entries are not stored)
+     */
+    public int length() {
+	return length;
+    }
+
+    /**
+     * @return the street of the last entry
+     */
+    public int getStreet() {
+	return street;
+    }
+
+    private int code(final int entry) {
+	if (entry < PER_WORD) {
+	    return (int) (low >>> (entry * BITS)) & 0xF;
+	}
+	return (int) (high >>> ((entry - PER_WORD) * BITS)) & 0xF;
+    }
+
+    /**
+     * @return true if the entry marks a new street
+     */
+    public boolean isStreetEnd(final int entry) {
+	return code(entry) == STREET_END;
+    }
+
+    /**
+     * @return ME or OPPONENT, for an entry that is not a street end
+     */
+    public int getActor(final int entry) {
+	return (code(entry) - 1) / CODES_PER_ACTOR;
+    }
+
+    /**
+     * @return the action of an entry that is not a street end
+     */
+    public ActionType getAction(final int entry) {
+	final int type = (code(entry) - 1) % CODES_PER_ACTOR;
+	return ActionType.fromOrdinal(Math.min(type, ActionType.RAISE.ordinal()));
+    }
+
+    /**
+     * @return the raise size bucket of an entry, 0 if it is not a raise
+     */
+    public int getSizeBucket(final int entry) {
+	final int type = (code(entry) - 1) % CODES_PER_ACTOR;
+	return Math.max(0, type - ActionType.RAISE.ordinal());
+    }
+
+    /**
+     * @return the last action of an actor on the current street, or null if he did not act yet
+     */
+    public ActionType getLastAction(final int actor) {
+	return lastActions[actor];
+    }
+
+    /**
+     * @return the raises made on the current street, by both players
+     */
+    public int getStreetRaises() {
+	return streetRaises;
+    }
+
+    /**
+     * Readable form for debugging: one letter per action (lower case for us, upper case for the opponent), the raise bucket after an r, and / between streets. E.g. "cR2c/kR0".
+     */
+    @Override
+    public String toString() {
+	final StringBuilder sb = new StringBuilder();
+	for (int e = 0; e < Math.min(length, CAPACITY); e++) {
+	    if (isStreetEnd(e)) {
+		sb.append('/');
+		continue;
+	    }
+	    final ActionType action = getAction(e);
+	    final char letter = "fkcr".charAt(action.ordinal());
+	    sb.append(getActor(e) == ME ? letter : Character.toUpperCase(letter));
+	    if (action == ActionType.RAISE) {
+		sb.append(getSizeBucket(e));
+	    }
+	}
+	return sb.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package be.stilkin;
+
+import java.util.Arrays;
+
+import poker.ActionType;
+
+/**
+ * What we put in the pot this hand, per street and per action, in a flat int array. Replaces a HashMap of boxed Integers, so keeping the books costs nothing on the decision path.
+ * 
+ * @author stilkin
+ */
+public class BettingLedger {
+    public static final int STREETS = 4;
+    private static final int ACTIONS = ActionType.values().length;
+    private final int[] amounts = new int[STREETS * ACTIONS];
+
+    /**
+     * Forget everything, call when a new hand starts
+     */
+    public void clear() {
+	Arrays.fill(amounts, 0);
+    }
+
+    /**
+     * @param street
+     *            0 pre-flop, 1 flop, 2 turn, 3 river
+     */
+    public void add(final int street, final ActionType action, final int amount) {
+	amounts[street * ACTIONS + action.ordinal()] += amount;
+    }
+
+    /**
+     * @return the total amount of an action on one street
+     */
+    public int get(final int street, final ActionType action) {
+	return amounts[street * ACTIONS + action.ordinal()];
+    }
+
+    /**
+     * @return the total amount of an action over all streets of this hand
+     */
+    public int getHandTotal(final ActionType action) {
+	int sum = 0;
+	for (int street = 0; street < STREETS; street++) {
+	    sum += amounts[street * ACTIONS + action.ordinal()];
+	}
+	return sum;
+    }
+}
@@ -0,0 +1,90 @@
+package be.stilkin;
+
+import poker.Card;
+
+/**
+ * Helpers to work with cards as bits in a long, using the same layout as com.stevebrecher.HandEval (and Card.getNumber()): four 16-bit suit fields, with the lowest 13 bits
+ * of every field flagging DEUCE ... ACE. Cards are indexed 0 - 51 the same way as the Card constructor (suit * 13 + height).
+ *
+ * @author stilkin
+ */
+public final class CardMasks {
+    public static final int DECK_SIZE = 52;
+    public static final long FULL_DECK;
+    private static final long[] CARD_BITS = new long[DECK_SIZE];
+
+    static {
+	long deck = 0;
+	for (int i = 0; i < DECK_SIZE; i++) {
+	    CARD_BITS[i] = 1L << (16 * (i / HandParser.MAX_VALUE) + (i % HandParser.MAX_VALUE));
+	    deck |= CARD_BITS[i];
+	}
+	FULL_DECK = deck;
+    }
+
+    private CardMasks() {}
+
+    /**
+     * @return the bit for the card with this index (0 - 51)
+     */
+    public static long bit(final int index) {
+	return CARD_BITS[index];
+    }
+
+    /**
+     * @return the index (0 - 51) of the lowest card set in the mask
+     */
+    public static int index(final long mask) {
+	final int tz = Long.numberOfTrailingZeros(mask);
+	return (tz >>> 4) * HandParser.MAX_VALUE + (tz & 15);
+    }
+
+    /**
+     * @return the suit (0 - 3) of the card with this index
+     */
+    public static int suit(final int index) {
+	return index / HandParser.MAX_VALUE;
+    }
+
+    /**
+     * @return the height (0 - 12) of the card with this index
+     */
+    public static int height(final int index) {
+	return index % HandParser.MAX_VALUE;
+    }
+
+    /**
+     * @return the mask of a set of cards, 0 for null
+     */
+    public static long mask(final Card[] cards) {
+	long mask = 0;
+	if (cards != null) {
+	    for (Card card : cards) {
+		mask |= card.getNumber();
+	    }
+	}
+	return mask;
+    }
+
+    /**
+     * @return the amount of cards in the mask
+     */
+    public static int count(final long mask) {
+	return Long.bitCount(mask);
+    }
+
+    /**
+     * Fills the array with the indexes of all cards that are not in the dead mask.
+     *
+     * @return the amount of cards written
+     */
+    public static int liveCards(final long dead, final int[] out) {
+	int n = 0;
+	for (int i = 0; i < DECK_SIZE; i++) {
+	    if ((CARD_BITS[i] & dead) == 0) {
+		out[n++] = i;
+	    }
+	}
+	return n;
+    }
+}
@@ -0,0 +1,240 @@
+package be.stilkin;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.jfr.EquityEvent;
+import be.stilkin.range.Combos;
+
+/**
+ * Calculates the winning chance of a hole card pair (ties count as half a win). Cards are passed as masks (see CardMasks). With three or more cards on the table against a
+ * known hand all remaining boards are enumerated, otherwise we sample.
+ *
+ * Not thread-safe: it keeps its own random generator and scratch space, so use one instance per thread.
+ *
+ * @author stilkin
+ */
+public class EquityCalculator {
+    private static final int BOARD_SIZE = 5;
+    private final int[] live = new int[CardMasks.DECK_SIZE];
+    private final float[] cumulative = new float[Combos.COMBO_COUNT];
+    private final short[] cumulativeCombos = new short[Combos.COMBO_COUNT];
+    private long seed;
+
+    public EquityCalculator() {
+	this(System.nanoTime());
+    }
+
+    public EquityCalculator(final long seed) {
+	setSeed(seed);
+    }
+
+    /**
+     * Restart the random sequence, so runs can be reproduced
+     */
+    public void setSeed(final long seed) {
+	this.seed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    /**
+     * Equity against a random opponent hand, by sampling opponent cards and the rest of the board
+     *
+     * @param hole
+     *            our two cards
+     * @param board
+     *            0, 3, 4 or 5 table cards
+     * @param samples
+     *            amount of deals to evaluate
+     */
+    public float vsRandom(final long hole, final long board, final int samples) {
+	final EquityEvent event = new EquityEvent();
+	event.begin();
+	final float equity = sampleVsRandom(hole, board, samples);
+	commit(event, EquityEvent.RANDOM, samples, board, equity);
+	return equity;
+    }
+
+    private float sampleVsRandom(final long hole, final long board, final int samples) {
+	final int liveCount = CardMasks.liveCards(hole | board, live);
+	final int missing = BOARD_SIZE - CardMasks.count(board);
+	final int draw = missing + 2;
+	float wins = 0;
+	for (int s = 0; s < samples; s++) {
+	    long extra = 0;
+	    for (int d = 0; d < missing; d++) {
+		extra |= CardMasks.bit(pick(liveCount, d));
+	    }
+	    long opp = 0;
+	    for (int d = missing; d < draw; d++) {
+		opp |= CardMasks.bit(pick(liveCount, d));
+	    }
+	    wins += score(hole | board | extra, opp | board | extra);
+	}
+	return samples == 0 ? 0f : wins / samples;
+    }
+
+    /**
+     * Equity against a known opponent hand (e.g. shown at showdown). Exact with three or more table cards, sampled pre-flop.
+     *
+     * @param samples
+     *            only used pre-flop
+     */
+    public float vsHand(final long hole, final long oppHole, final long board, final int samples) {
+	final EquityEvent event = new EquityEvent();
+	event.begin();
+	final int liveCount = CardMasks.liveCards(hole | oppHole | board, live);
+	final int missing = BOARD_SIZE - CardMasks.count(board);
+	float wins = 0;
+	int deals = 0;
+	if (missing == 0) {
+	    wins = score(hole | board, oppHole | board);
+	    deals = 1;
+	} else if (missing == 1) {
+	    for (int a = 0; a < liveCount; a++) {
+		final long b = board | CardMasks.bit(live[a]);
+		wins += score(hole | b, oppHole | b);
+		deals++;
+	    }
+	} else if (missing == 2) {
+	    for (int a = 0; a < liveCount; a++) {
+		for (int c = a + 1; c < liveCount; c++) {
+		    final long b = board | CardMasks.bit(live[a]) | CardMasks.bit(live[c]);
+		    wins += score(hole | b, oppHole | b);
+		    deals++;
+		}
+	    }
+	} else { // pre-flop, too many boards to enumerate
+	    for (int s = 0; s < samples; s++) {
+		long b = board;
+		for (int d = 0; d < missing; d++) {
+		    b |= CardMasks.bit(pick(liveCount, d));
+		}
+		wins += score(hole | b, oppHole | b);
+		deals++;
+	    }
+	}
+	final float equity = deals == 0 ? 0f : wins / deals;
+	commit(event, EquityEvent.HAND, deals, board, equity);
+	return equity;
+    }
+
+    /**
+     * Equity against a weighted range of opponent hands (see OpponentRange). Exact on the river, otherwise we sample a combo by weight and the rest of the board.
+     *
+     * @param weights
+     *            a weight for each of the 1326 combos, combos that collide with our cards or the table are skipped
+     */
+    public float vsRange(final long hole, final long board, final float[] weights, final int samples) {
+	final EquityEvent event = new EquityEvent();
+	event.begin();
+	final float equity = rangeEquity(hole, board, weights, samples);
+	commit(event, EquityEvent.RANGE, samples, board, equity);
+	return equity;
+    }
+
+    private float rangeEquity(final long hole, final long board, final float[] weights, final int samples) {
+	final long dead = hole | board;
+	int n = 0;
+	float total = 0;
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    if (weights[c] > 0 && (Combos.mask(c) & dead) == 0) {
+		total += weights[c];
+		cumulative[n] = total;
+		cumulativeCombos[n++] = (short) c;
+	    }
+	}
+	if (n == 0) {
+	    return sampleVsRandom(hole, board, samples);
+	}
+
+	final int missing = BOARD_SIZE - CardMasks.count(board);
+	if (missing == 0) {
+	    final int myRank = HandEval.hand7Eval(hole | board);
+	    float wins = 0;
+	    for (int i = 0; i < n; i++) {
+		final int c = cumulativeCombos[i];
+		final int oppRank = HandEval.hand7Eval(Combos.mask(c) | board);
+		final float w = weights[c];
+		wins += myRank > oppRank ? w : (myRank == oppRank ? 0.5f * w : 0f);
+	    }
+	    return wins / total;
+	}
+
+	final int liveCount = CardMasks.liveCards(dead, live);
+	float wins = 0;
+	for (int s = 0; s < samples; s++) {
+	    final long opp = Combos.mask(cumulativeCombos[search(n, total * nextInt(1 << 24) / (1 << 24))]);
+	    long extra = 0;
+	    int drawn = 0;
+	    for (int pos = 0; drawn < missing; pos++) {
+		final long card = CardMasks.bit(pick(liveCount, pos));
+		if ((card & opp) == 0) {
+		    extra |= card;
+		    drawn++;
+		}
+	    }
+	    wins += score(hole | board | extra, opp | board | extra);
+	}
+	return samples == 0 ? 0f : wins / samples;
+    }
+
+    private static void commit(final EquityEvent event, final String method, final int samples, final long board, final float equity) {
+	if (event.shouldCommit()) {
+	    event.method = method;
+	    event.samples = samples;
+	    event.tableCards = CardMasks.count(board);
+	    event.equity = equity;
+	    event.commit();
+	}
+    }
+
+    /**
+     * @return the first position in the cumulative weights that is larger than the value
+     */
+    private int search(final int n, final float value) {
+	int lo = 0;
+	int hi = n - 1;
+	while (lo < hi) {
+	    final int mid = (lo + hi) >>> 1;
+	    if (cumulative[mid] > value) {
+		hi = mid;
+	    } else {
+		lo = mid + 1;
+	    }
+	}
+	return lo;
+    }
+
+    /**
+     * @return 1 if the first seven card hand wins, 0.5 on a tie, 0 otherwise
+     */
+    private static float score(final long mine, final long theirs) {
+	final int myRank = HandEval.hand7Eval(mine);
+	final int oppRank = HandEval.hand7Eval(theirs);
+	if (myRank > oppRank) {
+	    return 1f;
+	}
+	return myRank == oppRank ? 0.5f : 0f;
+    }
+
+    /**
+     * Partial Fisher-Yates: swaps a random live card into position d and returns it
+     */
+    private int pick(final int liveCount, final int d) {
+	final int r = d + nextInt(liveCount - d);
+	final int card = live[r];
+	live[r] = live[d];
+	live[d] = card;
+	return card;
+    }
+
+    /**
+     * xorshift64*, cheaper than java.util.Random and good enough for dealing cards
+     */
+    public int nextInt(final int bound) {
+	seed ^= seed >>> 12;
+	seed ^= seed << 25;
+	seed ^= seed >>> 27;
+	final long r = (seed * 0x2545F4914F6CDD1DL) >>> 33;
+	return (int) ((r * bound) >>> 31);
+    }
+}
@@ -0,0 +1,160 @@
+package be.stilkin;
+
+/**
+ * An immutable copy of the game state: a few ints and the cards as masks. BotState publishes a new one after every engine line, through a volatile field, so other threads
+ * (pondering, parallel equity, logging, hand history) read a consistent view without locks while the parser moves on.
+ *
+ * Two snapshots of the same situation are equal, so a snapshot can key a cache directly; the version (the engine line it was taken after) is not part of that.
+ *
+ * @author stilkin
+ */
+public final class GameSnapshot {
+    public static final GameSnapshot EMPTY = new GameSnapshot(0, 0, 0, 0, false, 0, 0, 0, 0, 0, 0, -1, 0, 0);
+    private final long version;
+    private final int round;
+    private final int smallBlind;
+    private final int bigBlind;
+    private final boolean onButton;
+    private final int myStack;
+    private final int opponentStack;
+    private final int pot;
+    private final int amountToCall;
+    private final long hole;
+    private final long board;
+    private final int opponentAction;
+    private final int opponentAmount;
+    private final long history;
+
+    public GameSnapshot(final long version, final int round, final int smallBlind, final int bigBlind, final boolean onButton, final int myStack, final int opponentStack,
+	    final int pot, final int amountToCall, final long hole, final long board, final int opponentAction, final int opponentAmount, final long history) {
+	this.version = version;
+	this.round = round;
+	this.smallBlind = smallBlind;
+	this.bigBlind = bigBlind;
+	this.onButton = onButton;
+	this.myStack = myStack;
+	this.opponentStack = opponentStack;
+	this.pot = pot;
+	this.amountToCall = amountToCall;
+	this.hole = hole;
+	this.board = board;
+	this.opponentAction = opponentAction;
+	this.opponentAmount = opponentAmount;
+	this.history = history;
+    }
+
+    /**
+     * @return the number of engine lines the state had seen when this was taken
+     */
+    public long getVersion() {
+	return version;
+    }
+
+    public int getRound() {
+	return round;
+    }
+
+    public int getSmallBlind() {
+	return smallBlind;
+    }
+
+    public int getBigBlind() {
+	return bigBlind;
+    }
+
+    public boolean onButton() {
+	return onButton;
+    }
+
+    public int getMyStack() {
+	return myStack;
+    }
+
+    public int getOpponentStack() {
+	return opponentStack;
+    }
+
+    public int getPot() {
+	return pot;
+    }
+
+    public int getAmountToCall() {
+	return amountToCall;
+    }
+
+    /**
+     * @return our two cards as a mask (see CardMasks), 0 before they are dealt
+     */
+    public long getHole() {
+	return hole;
+    }
+
+    /**
+     * @return the table cards as a mask
+     */
+    public long getBoard() {
+	return board;
+    }
+
+    /**
+     * @return 0 pre-flop, 1 flop, 2 turn, 3 river
+     */
+    public int getStreet() {
+	final int cards = CardMasks.count(board);
+	return cards < 3 ? 0 : cards - 2;
+    }
+
+    /**
+     * @return the last move of the opponent as OpponentModel action code, -1 if he did not move this hand
+     */
+    public int getOpponentAction() {
+	return opponentAction;
+    }
+
+    public int getOpponentAmount() {
+	return opponentAmount;
+    }
+
+    /**
+     * @return the BettingHistory key of the hand so far
+     */
+    public long getHistory() {
+	return history;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+	if (this == other) {
+	    return true;
+	}
+	if (!(other instanceof GameSnapshot)) {
+	    return false;
+	}
+	final GameSnapshot s = (GameSnapshot) other;
+	return round == s.round && smallBlind == s.smallBlind && bigBlind == s.bigBlind && onButton == s.onButton && myStack == s.myStack && opponentStack == s.opponentStack
+		&& pot == s.pot && amountToCall == s.amountToCall && hole == s.hole && board == s.board && opponentAction == s.opponentAction
+		&& opponentAmount == s.opponentAmount && history == s.history;
+    }
+
+    @Override
+    public int hashCode() {
+	long h = hole * 0x9E3779B97F4A7C15L + board;
+	h = h * 31 + history;
+	h = h * 31 + round;
+	h = h * 31 + (((long) myStack << 32) | (opponentStack & 0xFFFFFFFFL));
+	h = h * 31 + (((long) pot << 32) | (amountToCall & 0xFFFFFFFFL));
+	h = h * 31 + (((long) smallBlind << 32) | (bigBlind & 0xFFFFFFFFL));
+	h = h * 31 + (((long) opponentAction << 32) | (opponentAmount & 0xFFFFFFFFL));
+	h = h * 31 + (onButton ? 1 : 0);
+	return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * One line for hand histories, e.g. "round 3 pot 60 call 0 stacks 1940/2000 button hole 0x... board 0x..."
+     */
+    @Override
+    public String toString() {
+	return "round " + round + " pot " + pot + " call " + amountToCall + " stacks " + myStack + "/" + opponentStack + (onButton ? " button" : "") + " hole 0x"
+		+ Long.toHexString(hole) + " board 0x" + Long.toHexString(board) + " history 0x" + Long.toHexString(history);
+    }
+}
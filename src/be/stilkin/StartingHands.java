@@ -3,6 +3,8 @@ package be.stilkin;
 import java.util.Arrays;
 import java.util.HashMap;
 
+import be.stilkin.log.Log;
+import be.stilkin.range.HandClasses;
 import poker.Card;
 
 /**
@@ -12,10 +14,12 @@ import poker.Card;
  */
 public class StartingHands {
     public static final HashMap<String, Float> handMap = new HashMap<String, Float>();
+    private static final String HEIGHTS = "23456789TJQKA";
+    private static final float[] classOdds = new float[HandClasses.CLASS_COUNT]; // the same odds per HandClasses class, for lookups without strings
     static { 
 	// put this in the static initializer
 	StartingHands.addStartingHands();
-	System.err.println("Loaded starting hand odds.");
+	Log.info("Loaded starting hand odds.");
     }
 
     /**
@@ -28,11 +32,7 @@ public class StartingHands {
      * @return
      */
     public static float getOdds(final Card cardA, final Card cardB) {
-	String letters = "" + cardA.toString().charAt(0) + cardB.toString().charAt(0);
-	if (cardA.getSuit().ordinal() == cardB.getSuit().ordinal()) {
-	    letters += "=";
-	}
-	return getOdds(letters);
+	return classOdds[HandClasses.classOf(CardMasks.index(cardA.getNumber()), CardMasks.index(cardB.getNumber()))];
     }
 
     /**
@@ -64,6 +64,11 @@ public class StartingHands {
 	char[] chars = handStr.toCharArray();
 	Arrays.sort(chars);
 	handMap.put(new String(chars), odds);
+	// the two cards as card indexes, spades and hearts for an unsuited hand
+	final int heightA = HEIGHTS.indexOf(handStr.charAt(0));
+	final int heightB = HEIGHTS.indexOf(handStr.charAt(1));
+	final boolean suited = handStr.indexOf('=') >= 0;
+	classOdds[HandClasses.classOf(heightA, suited ? heightB : HEIGHTS.length() + heightB)] = odds;
     }
 
     /**
@@ -0,0 +1,113 @@
+package be.stilkin;
+
+import java.util.Arrays;
+
+/**
+ * The tunable constants of BotStarter as one vector, so a tuner can search over them and a tuned set can be passed to the bot (-Daipoker.params="curiosity=0.06 ..."). Every
+ * parameter has a default (the hand-tuned value) and a range the tuner stays in. Immutable.
+ *
+ * @author stilkin
+ */
+public final class StrategyParams {
+    /** Calls are fine as long as they cost less than this part of our stack */
+    public static final int CURIOSITY = 0;
+    /** Pre-flop win odds above which we play a hand strongly */
+    public static final int ODD_LOWER_BOUND = 1;
+    /** Part of our chip lead added to a post-flop raise */
+    public static final int STACK_DIFF_FACTOR = 2;
+    /** Sum of our card heights (0 - 24) above which we call a re-raise with a strong hand, trips or two pair */
+    public static final int STRONG_SUM = 3;
+    /** Sum of our card heights above which we call with a pair */
+    public static final int PAIR_SUM = 4;
+    /** Sum of our card heights above which we raise two pair */
+    public static final int TWO_PAIR_SUM = 5;
+    /** Post-flop raises per call above which an opponent's raise means nothing */
+    public static final int MANIAC_AGGRESSION = 6;
+    public static final int COUNT = 7;
+
+    private static final String[] NAMES = { "curiosity", "odd_lower_bound", "stack_diff_factor", "strong_sum", "pair_sum", "two_pair_sum", "maniac_aggression" };
+    private static final float[] DEFAULTS = { 0.05f, 0.56f, 0.15f, 15f, 20f, 10f, 3f };
+    private static final float[] MIN = { 0f, 0.45f, 0f, 0f, 0f, 0f, 1f };
+    private static final float[] MAX = { 0.3f, 0.8f, 0.5f, 24f, 24f, 24f, 10f };
+    public static final StrategyParams DEFAULT = new StrategyParams(DEFAULTS);
+
+    private final float[] values;
+
+    /**
+     * @param values
+     *            COUNT values, clamped to their range
+     */
+    public StrategyParams(final float[] values) {
+	if (values.length != COUNT) {
+	    throw new IllegalArgumentException("Expected " + COUNT + " parameters, got " + values.length);
+	}
+	this.values = new float[COUNT];
+	for (int p = 0; p < COUNT; p++) {
+	    this.values[p] = Math.max(MIN[p], Math.min(MAX[p], values[p]));
+	}
+    }
+
+    public float get(final int param) {
+	return values[param];
+    }
+
+    /**
+     * @return a copy of the vector
+     */
+    public float[] toArray() {
+	return values.clone();
+    }
+
+    public static String getName(final int param) {
+	return NAMES[param];
+    }
+
+    public static float getMin(final int param) {
+	return MIN[param];
+    }
+
+    public static float getMax(final int param) {
+	return MAX[param];
+    }
+
+    /**
+     * Reads "name=value" pairs separated by spaces or commas; parameters that are not mentioned keep their default
+     */
+    public static StrategyParams parse(final String text) {
+	final float[] parsed = DEFAULTS.clone();
+	for (String pair : text.trim().split("[\\s,]+")) {
+	    if (pair.isEmpty()) {
+		continue;
+	    }
+	    final int is = pair.indexOf('=');
+	    final int param = is < 0 ? -1 : Arrays.asList(NAMES).indexOf(pair.substring(0, is));
+	    if (param < 0) {
+		throw new IllegalArgumentException("Unknown strategy parameter: " + pair);
+	    }
+	    parsed[param] = Float.parseFloat(pair.substring(is + 1));
+	}
+	return new StrategyParams(parsed);
+    }
+
+    /**
+     * The parameters in the form parse reads, every value in full so it parses back to the same float (workers of a distributed tuning play exactly these)
+     */
+    @Override
+    public String toString() {
+	final StringBuilder sb = new StringBuilder();
+	for (int p = 0; p < COUNT; p++) {
+	    sb.append(p == 0 ? "" : " ").append(NAMES[p]).append('=').append(Float.toString(values[p]));
+	}
+	return sb.toString();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+	return other instanceof StrategyParams && Arrays.equals(values, ((StrategyParams) other).values);
+    }
+
+    @Override
+    public int hashCode() {
+	return Arrays.hashCode(values);
+    }
+}
@@ -0,0 +1,192 @@
+package be.stilkin;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import be.stilkin.log.Log;
+import bot.Bot;
+import bot.BotParser;
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * Plays synthetic hands against ourselves before the first real one, so the static tables are built and the parser, the decision code on every street, the evaluators and the
+ * equity code are compiled by C2 before a move counts. Every hand gets a fresh bot and BotState, nothing is shared with the real match. The bots should be configured like
+ * the live one, so the subgame solver, the expectimax search and the bet sizer are warmed when the match uses them.
+ *
+ * The first synthetic decision runs cold and the first decision of the last synthetic hand runs warm; both are kept, so we can see what the warm-up bought.
+ *
+ * @author stilkin
+ */
+public class WarmUp {
+    private static final String HEIGHTS = "23456789TJQKA";
+    private static final String SUITS = "shcd";
+    private static final String ME = "player1";
+    private static final String OPPONENT = "player2";
+    private static final int MAX_HANDS = 100000;
+    private static final int EQUITY_SAMPLES = 100;
+    private static final int STACK = 2000;
+    private static final int TIME_PER_MOVE = 10; // the subgame solver's budget, so a big pot does not take the warm-up's time
+    private final Supplier<Bot> botFactory;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final EquityCalculator equity = new EquityCalculator(42);
+    private final int[] deck = new int[CardMasks.DECK_SIZE];
+    private final Long timeOut = Long.valueOf(10000);
+    private int hands;
+    private long elapsedNanos;
+    private long coldNanos = -1;
+    private long warmNanos = -1;
+
+    /**
+     * @param botFactory
+     *            creates a new bot for every synthetic hand
+     */
+    public WarmUp(final Supplier<Bot> botFactory) {
+	this.botFactory = botFactory;
+	for (int c = 0; c < deck.length; c++) {
+	    deck[c] = c;
+	}
+    }
+
+    /**
+     * Plays hands until the budget is spent, with logging muted on this thread
+     *
+     * @param budgetMillis
+     *            how long we may take
+     */
+    public void run(final long budgetMillis) {
+	final int level = Log.getThreadLevel();
+	Log.setThreadLevel(Log.WARN);
+	final long start = System.nanoTime();
+	final long deadline = start + budgetMillis * 1000000;
+	try {
+	    while (hands < MAX_HANDS && System.nanoTime() < deadline) {
+		final long first = playHand(hands + 1);
+		if (hands == 0) {
+		    coldNanos = first;
+		}
+		warmNanos = first;
+		hands++;
+	    }
+	} finally {
+	    elapsedNanos = System.nanoTime() - start;
+	    Log.setThreadLevel(level);
+	}
+	Log.log(Log.INFO, "Warm-up: {} hands in {} ms", hands, elapsedNanos / 1000000);
+	Log.log(Log.INFO, "Warm-up: first decision {} ns cold, {} ns warm", coldNanos, warmNanos);
+    }
+
+    /**
+     * One hand with a decision on every street
+     *
+     * @return the time the first decision took
+     */
+    private long playHand(final int round) {
+	shuffle();
+	final Bot bot = botFactory.get();
+	final BotState state = new BotState();
+	feed(state, "Settings your_bot " + ME);
+	feed(state, "Settings timebank 10000");
+	feed(state, "Settings time_per_move " + TIME_PER_MOVE);
+	feed(state, "Settings starting_stack " + STACK);
+	feed(state, "Match round " + round);
+	feed(state, "Match small_blind 15");
+	feed(state, "Match big_blind 30");
+	feed(state, "Match on_button " + (round % 2 == 0 ? ME : OPPONENT));
+	feed(state, ME + " stack " + STACK);
+	feed(state, OPPONENT + " stack " + STACK);
+	feed(state, ME + " post 15");
+	feed(state, OPPONENT + " post 30");
+	feed(state, ME + " hand " + cards(0, 2));
+	feed(state, "Match max_win_pot 45");
+	feed(state, "Match amount_to_call 15");
+	final long hole = CardMasks.bit(deck[0]) | CardMasks.bit(deck[1]);
+
+	long first = 0;
+	int pot = 45;
+	for (int street = 0; street < 4; street++) {
+	    if (street > 0) {
+		feed(state, "Match table " + cards(2, 4 + street));
+		feed(state, "Match max_win_pot " + pot);
+		final int bet = random.nextInt(3) == 0 ? 0 : 10 * (1 + random.nextInt(pot / 10 + 1));
+		feed(state, OPPONENT + (bet == 0 ? " check 0" : " raise " + bet));
+		feed(state, "Match amount_to_call " + bet);
+		pot += bet;
+	    }
+	    final long start = System.nanoTime();
+	    final PokerMove move = bot.getMove(state, timeOut);
+	    if (street == 0) {
+		first = System.nanoTime() - start;
+	    }
+	    feed(state, ME + " " + move.getAction() + " " + move.getAmount());
+	    pot += move.getAmount();
+
+	    long board = 0;
+	    for (int c = 2; c < 2 + (street == 0 ? 0 : 2 + street); c++) {
+		board |= CardMasks.bit(deck[c]);
+	    }
+	    equity.vsRandom(hole, board, EQUITY_SAMPLES);
+	    if (street > 0) {
+		equity.vsRange(hole, board, state.getOpponentRange().getWeights(), EQUITY_SAMPLES);
+	    }
+	}
+	feed(state, OPPONENT + " hand " + cards(7, 9));
+	feed(state, (random.nextBoolean() ? ME : OPPONENT) + " wins " + pot);
+	return first;
+    }
+
+    private static void feed(final BotState state, final String line) {
+	BotParser.updateState(state, line.split("\\s+"));
+    }
+
+    /**
+     * Partial shuffle, we need 9 cards: 2 for us, 5 on the table and 2 for the opponent
+     */
+    private void shuffle() {
+	for (int i = 0; i < 9; i++) {
+	    final int j = i + random.nextInt(deck.length - i);
+	    final int swap = deck[i];
+	    deck[i] = deck[j];
+	    deck[j] = swap;
+	}
+    }
+
+    /**
+     * @return the cards deck[from] up to deck[to - 1] in engine notation, e.g. [Ah,Kd]
+     */
+    private String cards(final int from, final int to) {
+	final StringBuilder sb = new StringBuilder("[");
+	for (int c = from; c < to; c++) {
+	    if (c > from) {
+		sb.append(',');
+	    }
+	    sb.append(HEIGHTS.charAt(CardMasks.height(deck[c]))).append(SUITS.charAt(CardMasks.suit(deck[c])));
+	}
+	return sb.append(']').toString();
+    }
+
+    public int getHands() {
+	return hands;
+    }
+
+    /**
+     * @return the first decision of the first hand, or -1 if no hand was played
+     */
+    public long getColdNanos() {
+	return coldNanos;
+    }
+
+    /**
+     * @return the first decision of the last hand, or -1 if no hand was played
+     */
+    public long getWarmNanos() {
+	return warmNanos;
+    }
+
+    /**
+     * @return the time the warm-up took
+     */
+    public long getElapsedNanos() {
+	return elapsedNanos;
+    }
+}
@@ -0,0 +1,292 @@
+package be.stilkin.bucket;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.CardMasks;
+import be.stilkin.range.Combos;
+import be.stilkin.range.HandIndexer;
+
+/**
+ * Builds the card abstraction offline: a bucket for every hand (HandIndexer index) on the flop, turn and river, written as HandBuckets files.
+ *
+ * <ol>
+ * <li>River: the equity of every hand against a uniform random hand, exact (one evaluation per opponent combo), kept as a 16 bit fraction. The buckets are a one-dimensional
+ * k-means over those equities (where the earth mover's distance is the difference).</li>
+ * <li>Turn: per hand the histogram of its river equity over the river cards, clustered by KMeans under the earth mover's distance.</li>
+ * <li>Flop: the same over all turn and river cards.</li>
+ * </ol>
+ * Buckets are numbered by their mean equity, so a higher bucket is a stronger hand. Every step runs on all threads, each with its own indexer; the river equities (246 MB) and the
+ * turn histograms (32 bytes per hand by default) are the memory that counts, so give it -Xmx2g. On one core the river takes an hour or two, the rest less.
+ *
+ * Usage: java be.stilkin.bucket.BucketBuilder [-buckets n] [-bins n] [-iterations n] [-threads n] [-seed n] [-out dir]
+ *
+ * @author stilkin
+ */
+public class BucketBuilder {
+    private static final int CHUNK = 4096; // hands per unit of work
+    private static final int LEVELS = 1 << 16; // river equity resolution
+    private static final String[] NAMES = { "preflop", "flop", "turn", "river" };
+    private final ExecutorService pool;
+    private final int threads;
+    private final int bins;
+    private char[] riverEquity;
+
+    public BucketBuilder(final ExecutorService pool, final int threads, final int bins) {
+	this.pool = pool;
+	this.threads = threads;
+	this.bins = bins;
+    }
+
+    /**
+     * Work on a range of hand indices with the thread's own indexer
+     */
+    private interface Work {
+	void run(long from, long to, HandIndexer indexer, long[] hand);
+    }
+
+    /**
+     * Runs the work over all hands of a street, in chunks that the threads take in turn
+     */
+    private void forAll(final int street, final Work work) throws InterruptedException {
+	final long size = HandIndexer.size(street);
+	final AtomicLong next = new AtomicLong();
+	final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	for (int t = 0; t < threads; t++) {
+	    tasks.add(() -> {
+		final HandIndexer indexer = new HandIndexer();
+		final long[] hand = new long[2];
+		for (long from = next.getAndAdd(CHUNK); from < size; from = next.getAndAdd(CHUNK)) {
+		    work.run(from, Math.min(size, from + CHUNK), indexer, hand);
+		}
+		return null;
+	    });
+	}
+	for (Future<Void> task : pool.invokeAll(tasks)) {
+	    try {
+		task.get();
+	    } catch (ExecutionException e) {
+		throw new IllegalStateException(e.getCause());
+	    }
+	}
+    }
+
+    /**
+     * @return the equity of our hand against a uniform random hand on a full board, ties count half
+     */
+    public static float riverEquity(final long hole, final long board) {
+	final int mine = HandEval.hand7Eval(hole | board);
+	final long dead = hole | board;
+	int won = 0;
+	int hands = 0;
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    final long mask = Combos.mask(c);
+	    if ((mask & dead) != 0) {
+		continue;
+	    }
+	    final int theirs = HandEval.hand7Eval(mask | board);
+	    won += mine > theirs ? 2 : mine == theirs ? 1 : 0;
+	    hands++;
+	}
+	return won / (2f * hands);
+    }
+
+    public void computeRiverEquity() throws InterruptedException {
+	riverEquity = new char[(int) HandIndexer.size(HandIndexer.RIVER)];
+	forAll(HandIndexer.RIVER, (from, to, indexer, hand) -> {
+	    for (long i = from; i < to; i++) {
+		indexer.unrank(HandIndexer.RIVER, i, hand);
+		riverEquity[(int) i] = (char) Math.round(riverEquity(hand[0], hand[1]) * (LEVELS - 1));
+	    }
+	});
+    }
+
+    /**
+     * One-dimensional k-means over the river equities, on the counts per equity level
+     */
+    public byte[] riverBuckets(final int k) {
+	final long[] counts = new long[LEVELS];
+	for (char level : riverEquity) {
+	    counts[level]++;
+	}
+	final double[] centers = new double[k];
+	long total = 0;
+	for (long count : counts) {
+	    total += count;
+	}
+	long seen = 0;
+	int c = 0;
+	for (int level = 0; level < LEVELS && c < k; level++) { // start at the quantiles
+	    seen += counts[level];
+	    while (c < k && seen >= (c + 0.5) * total / k) {
+		centers[c++] = level;
+	    }
+	}
+	final int[] levelBucket = new int[LEVELS];
+	for (int iteration = 0; iteration < 100; iteration++) {
+	    final double[] sums = new double[k];
+	    final long[] sizes = new long[k];
+	    int bucket = 0;
+	    for (int level = 0; level < LEVELS; level++) { // the centers stay sorted, so the nearest one only moves up
+		while (bucket + 1 < k && Math.abs(centers[bucket + 1] - level) <= Math.abs(centers[bucket] - level)) {
+		    bucket++;
+		}
+		levelBucket[level] = bucket;
+		sums[bucket] += (double) level * counts[level];
+		sizes[bucket] += counts[level];
+	    }
+	    boolean moved = false;
+	    for (int b = 0; b < k; b++) {
+		final double center = sizes[b] > 0 ? sums[b] / sizes[b] : centers[b];
+		moved |= center != centers[b];
+		centers[b] = center;
+	    }
+	    if (!moved) {
+		break;
+	    }
+	}
+	final byte[] ids = new byte[riverEquity.length];
+	for (int i = 0; i < ids.length; i++) {
+	    ids[i] = (byte) levelBucket[riverEquity[i]];
+	}
+	return ids;
+    }
+
+    /**
+     * The cumulative distribution of the river equity over the cards still to come, for every hand of the flop or turn
+     *
+     * @return bins bytes per hand
+     */
+    public byte[] histograms(final int street) throws InterruptedException {
+	final byte[] points = new byte[(int) HandIndexer.size(street) * bins];
+	forAll(street, (from, to, indexer, hand) -> {
+	    final int[] histogram = new int[bins];
+	    for (long i = from; i < to; i++) {
+		indexer.unrank(street, i, hand);
+		final long hole = hand[0];
+		final long board = hand[1];
+		final long dead = hole | board;
+		Arrays.fill(histogram, 0);
+		int runouts = 0;
+		for (int turn = 0; turn < CardMasks.DECK_SIZE; turn++) {
+		    final long turnBit = CardMasks.bit(turn);
+		    if ((dead & turnBit) != 0) {
+			continue;
+		    }
+		    if (street == HandIndexer.TURN) {
+			histogram[bin(indexer.index(hole, board | turnBit))]++;
+			runouts++;
+			continue;
+		    }
+		    for (int river = turn + 1; river < CardMasks.DECK_SIZE; river++) {
+			final long riverBit = CardMasks.bit(river);
+			if ((dead & riverBit) == 0) {
+			    histogram[bin(indexer.index(hole, board | turnBit | riverBit))]++;
+			    runouts++;
+			}
+		    }
+		}
+		int cumulative = 0;
+		for (int b = 0; b < bins; b++) {
+		    cumulative += histogram[b];
+		    points[(int) i * bins + b] = (byte) Math.round(255f * cumulative / runouts);
+		}
+	    }
+	});
+	return points;
+    }
+
+    private int bin(final long riverIndex) {
+	return Math.min(bins - 1, riverEquity[(int) riverIndex] * bins / LEVELS);
+    }
+
+    /**
+     * Clusters the histograms and numbers the clusters by their mean equity
+     */
+    public byte[] clusterBuckets(final byte[] points, final int k, final int iterations, final long seed) throws InterruptedException {
+	final KMeans kMeans = new KMeans(points, bins, k, seed);
+	final int done = kMeans.run(pool, threads, iterations, 0.001);
+	System.err.printf(Locale.ROOT, "k-means: %d iterations\n", done);
+	final float[] centroids = kMeans.getCentroids();
+	final long[] keys = new long[k];
+	for (int c = 0; c < k; c++) {
+	    float below = 0; // the area under the cumulative distribution, less for more equity
+	    for (int b = 0; b < bins; b++) {
+		below += centroids[c * bins + b];
+	    }
+	    keys[c] = ((long) Float.floatToIntBits(bins * 255f - below) << 8) | c;
+	}
+	Arrays.sort(keys);
+	final int[] relabel = new int[k];
+	for (int rank = 0; rank < k; rank++) {
+	    relabel[(int) (keys[rank] & 0xFF)] = rank;
+	}
+	final byte[] ids = kMeans.getAssignments();
+	for (int i = 0; i < ids.length; i++) {
+	    ids[i] = (byte) relabel[ids[i] & 0xFF];
+	}
+	return ids;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	int buckets = 200;
+	int bins = 32;
+	int iterations = 30;
+	int threads = Runtime.getRuntime().availableProcessors();
+	long seed = 1;
+	String out = ".";
+	for (int a = 0; a + 1 < args.length; a += 2) {
+	    if (args[a].equals("-buckets")) {
+		buckets = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-bins")) {
+		bins = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-iterations")) {
+		iterations = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-threads")) {
+		threads = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-seed")) {
+		seed = Long.parseLong(args[a + 1]);
+	    } else if (args[a].equals("-out")) {
+		out = args[a + 1];
+	    } else {
+		System.err.println("Usage: BucketBuilder [-buckets n] [-bins n] [-iterations n] [-threads n] [-seed n] [-out dir]");
+		return;
+	    }
+	}
+
+	final ExecutorService pool = Executors.newFixedThreadPool(threads);
+	try {
+	    final BucketBuilder builder = new BucketBuilder(pool, threads, bins);
+	    final long start = System.nanoTime();
+	    builder.computeRiverEquity();
+	    System.err.printf(Locale.ROOT, "River equities: %.0f s\n", (System.nanoTime() - start) / 1e9);
+	    write(out, HandIndexer.RIVER, buckets, builder.riverBuckets(buckets));
+	    for (int street = HandIndexer.TURN; street >= HandIndexer.FLOP; street--) {
+		final byte[] points = builder.histograms(street);
+		System.err.printf(Locale.ROOT, "%s histograms: %.0f s\n", NAMES[street], (System.nanoTime() - start) / 1e9);
+		write(out, street, buckets, builder.clusterBuckets(points, buckets, iterations, seed));
+	    }
+	    System.err.printf(Locale.ROOT, "Done: %.0f s\n", (System.nanoTime() - start) / 1e9);
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    private static void write(final String dir, final int street, final int buckets, final byte[] ids) throws IOException {
+	final File file = new File(dir, "buckets-" + NAMES[street] + ".bin");
+	HandBuckets.write(file, street, buckets, ids);
+	System.err.println("Written " + file);
+    }
+}
@@ -0,0 +1,96 @@
+package be.stilkin.bucket;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import be.stilkin.range.HandIndexer;
+
+/**
+ * The bucket of every hand on one street, as written by BucketBuilder: one byte per HandIndexer index, in a memory-mapped file, so a lookup is an index computation and a byte
+ * read, and the river's 123 million hands are not loaded on the heap.
+ *
+ * File layout: a 16 byte header (magic, street, buckets, hands), then one unsigned byte per hand index.
+ *
+ * Not thread-safe (the indexer has scratch arrays), open one per thread.
+ *
+ * @author stilkin
+ */
+public class HandBuckets implements Closeable {
+    private static final int MAGIC = 0x484B4231;
+    private static final int HEADER_SIZE = 16;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final HandIndexer indexer = new HandIndexer();
+    private final int street;
+    private final int buckets;
+
+    private HandBuckets(final RandomAccessFile file, final MappedByteBuffer buffer) {
+	this.file = file;
+	this.buffer = buffer;
+	this.street = buffer.getInt(4);
+	this.buckets = buffer.getInt(8);
+    }
+
+    public static HandBuckets open(final File path) throws IOException {
+	final RandomAccessFile file = new RandomAccessFile(path, "r");
+	try {
+	    final MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+	    if (file.length() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+		throw new IOException("Not a bucket file: " + path);
+	    }
+	    final int street = buffer.getInt(4);
+	    if (street < 0 || street >= HandIndexer.STREETS || buffer.getInt(12) != HandIndexer.size(street) || file.length() != HEADER_SIZE + HandIndexer.size(street)) {
+		throw new IOException("Bucket file does not match the hand indexer: " + path);
+	    }
+	    return new HandBuckets(file, buffer);
+	} catch (IOException e) {
+	    file.close();
+	    throw e;
+	}
+    }
+
+    /**
+     * Writes the buckets of a street, indexed like HandIndexer
+     */
+    public static void write(final File path, final int street, final int buckets, final byte[] ids) throws IOException {
+	if (ids.length != HandIndexer.size(street)) {
+	    throw new IllegalArgumentException("Expected " + HandIndexer.size(street) + " buckets, got " + ids.length);
+	}
+	try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+	    file.setLength(0);
+	    file.writeInt(MAGIC);
+	    file.writeInt(street);
+	    file.writeInt(buckets);
+	    file.writeInt(ids.length);
+	    file.write(ids);
+	}
+    }
+
+    /**
+     * @param hole
+     *            our cards as a mask
+     * @param board
+     *            the table as a mask, with the cards of this file's street
+     * @return the bucket, 0 to getBucketCount() - 1
+     */
+    public int bucket(final long hole, final long board) {
+	return buffer.get(HEADER_SIZE + (int) indexer.index(hole, board)) & 0xFF;
+    }
+
+    public int getStreet() {
+	return street;
+    }
+
+    public int getBucketCount() {
+	return buckets;
+    }
+
+    @Override
+    public void close() throws IOException {
+	file.close();
+    }
+}
@@ -0,0 +1,213 @@
+package be.stilkin.bucket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Clusters equity histograms with k-means under the earth mover's distance. Every point is the cumulative distribution of a histogram with its bins quantized to a byte (0 -
+ * 255 for 0 - 1), and between two one-dimensional distributions the earth mover's distance is the L1 distance of their cumulative distributions, so a distance is one pass over
+ * the bins. Centroids are the mean of their points' cumulative distributions, which is the least squares centre rather than the L1 one: the approximation that keeps an
+ * iteration a single pass.
+ *
+ * The points of an iteration are split in slices, every slice assigns its points and sums them per cluster on its own, and the sums are added up after. Seeding is k-means++ on
+ * a random sample.
+ *
+ * @author stilkin
+ */
+public class KMeans {
+    private static final int SAMPLE = 20000;
+    private final byte[] points;
+    private final int dims;
+    private final int count;
+    private final int k;
+    private final float[] centroids;
+    private final byte[] assignments;
+    private final SplittableRandom random;
+
+    /**
+     * @param points
+     *            the cumulative distributions, dims bytes per point
+     * @param k
+     *            clusters, at most 256
+     */
+    public KMeans(final byte[] points, final int dims, final int k, final long seed) {
+	if (k < 1 || k > 256) {
+	    throw new IllegalArgumentException("Between 1 and 256 clusters: " + k);
+	}
+	this.points = points;
+	this.dims = dims;
+	this.count = points.length / dims;
+	this.k = k;
+	this.centroids = new float[k * dims];
+	this.assignments = new byte[count];
+	this.random = new SplittableRandom(seed);
+	seed();
+    }
+
+    /**
+     * k-means++: every next centroid is a sampled point, drawn with a chance proportional to its distance to the nearest centroid so far
+     */
+    private void seed() {
+	final int samples = Math.min(SAMPLE, count);
+	final int[] sample = new int[samples];
+	for (int s = 0; s < samples; s++) {
+	    sample[s] = samples == count ? s : random.nextInt(count);
+	}
+	final double[] nearest = new double[samples];
+	copyPoint(sample[random.nextInt(samples)], 0);
+	for (int c = 1; c < k; c++) {
+	    double total = 0;
+	    for (int s = 0; s < samples; s++) {
+		final double d = distance(sample[s], c - 1);
+		nearest[s] = c == 1 ? d : Math.min(nearest[s], d);
+		total += nearest[s];
+	    }
+	    double left = random.nextDouble() * total;
+	    int chosen = 0;
+	    while (chosen < samples - 1 && (left -= nearest[chosen]) > 0) {
+		chosen++;
+	    }
+	    copyPoint(sample[chosen], c);
+	}
+    }
+
+    private void copyPoint(final int point, final int cluster) {
+	for (int d = 0; d < dims; d++) {
+	    centroids[cluster * dims + d] = points[point * dims + d] & 0xFF;
+	}
+    }
+
+    /**
+     * @return the earth mover's distance (in quantized units) between a point and a centroid
+     */
+    private double distance(final int point, final int cluster) {
+	final int p = point * dims;
+	final int c = cluster * dims;
+	float sum = 0;
+	for (int d = 0; d < dims; d++) {
+	    sum += Math.abs((points[p + d] & 0xFF) - centroids[c + d]);
+	}
+	return sum;
+    }
+
+    /**
+     * Runs Lloyd iterations until fewer than minChanged points change cluster, or the maximum
+     *
+     * @param pool
+     *            the threads to assign on, or null for the calling thread
+     * @return the iterations done
+     */
+    public int run(final ExecutorService pool, final int threads, final int maxIterations, final double minChanged) throws InterruptedException {
+	final int slices = pool == null ? 1 : threads;
+	final Slice[] parts = new Slice[slices];
+	final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	for (int t = 0; t < slices; t++) {
+	    final Slice slice = new Slice((int) ((long) t * count / slices), (int) ((long) (t + 1) * count / slices));
+	    parts[t] = slice;
+	    tasks.add(() -> {
+		slice.assign();
+		return null;
+	    });
+	}
+
+	for (int iteration = 1; iteration <= maxIterations; iteration++) {
+	    if (pool == null) {
+		parts[0].assign();
+	    } else {
+		for (Future<Void> task : pool.invokeAll(tasks)) {
+		    try {
+			task.get();
+		    } catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		    }
+		}
+	    }
+	    long changed = 0;
+	    final double[] sums = new double[k * dims];
+	    final long[] sizes = new long[k];
+	    for (Slice slice : parts) {
+		changed += slice.changed;
+		for (int i = 0; i < sums.length; i++) {
+		    sums[i] += slice.sums[i];
+		}
+		for (int c = 0; c < k; c++) {
+		    sizes[c] += slice.sizes[c];
+		}
+	    }
+	    for (int c = 0; c < k; c++) {
+		if (sizes[c] == 0) { // an empty cluster takes a random point
+		    copyPoint(random.nextInt(count), c);
+		    continue;
+		}
+		for (int d = 0; d < dims; d++) {
+		    centroids[c * dims + d] = (float) (sums[c * dims + d] / sizes[c]);
+		}
+	    }
+	    if (iteration > 1 && changed < minChanged * count) {
+		return iteration;
+	    }
+	}
+	return maxIterations;
+    }
+
+    /**
+     * A range of points with its own cluster sums
+     */
+    private final class Slice {
+	private final int from;
+	private final int to;
+	private final double[] sums = new double[k * dims];
+	private final long[] sizes = new long[k];
+	private long changed;
+
+	private Slice(final int from, final int to) {
+	    this.from = from;
+	    this.to = to;
+	}
+
+	private void assign() {
+	    Arrays.fill(sums, 0);
+	    Arrays.fill(sizes, 0);
+	    changed = 0;
+	    for (int p = from; p < to; p++) {
+		int best = 0;
+		double bestDistance = Double.MAX_VALUE;
+		for (int c = 0; c < k; c++) {
+		    final double d = distance(p, c);
+		    if (d < bestDistance) {
+			bestDistance = d;
+			best = c;
+		    }
+		}
+		if ((assignments[p] & 0xFF) != best) {
+		    assignments[p] = (byte) best;
+		    changed++;
+		}
+		sizes[best]++;
+		for (int d = 0; d < dims; d++) {
+		    sums[best * dims + d] += points[p * dims + d] & 0xFF;
+		}
+	    }
+	}
+    }
+
+    /**
+     * @return the cluster of every point, as an unsigned byte
+     */
+    public byte[] getAssignments() {
+	return assignments;
+    }
+
+    /**
+     * @return the centroids, dims values per cluster
+     */
+    public float[] getCentroids() {
+	return centroids;
+    }
+}
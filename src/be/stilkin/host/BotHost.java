@@ -0,0 +1,206 @@
+package be.stilkin.host;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import be.stilkin.WarmUp;
+import be.stilkin.log.Log;
+import be.stilkin.opponent.ProfileStore;
+import bot.Bot;
+import bot.BotParser;
+import bot.BotStarter;
+
+/**
+ * Runs many bot sessions in one JVM, each a BotParser with its own BotState and bot on its own input and output stream, on its own (virtual, when the JVM has them) thread. The
+ * evaluator tables, starting hand odds and hand classes are static, so they are built once for all sessions, and so is the JIT warm-up: the host warms up before the first
+ * session starts and the sessions skip it.
+ *
+ * Usage: java be.stilkin.host.BotHost [-profiles file] [-warmup ms] input output [input output ...], with a pair of files or named pipes per session
+ *
+ * @author stilkin
+ */
+public class BotHost implements Closeable {
+    private final Supplier<Bot> botFactory;
+    private final ProfileStore profileStore;
+    private final ExecutorService sessions;
+    private final boolean virtual;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final LongAdder decisions = new LongAdder();
+
+    /**
+     * @param botFactory
+     *            creates the bot of every session
+     * @param profileStore
+     *            shared by all sessions, can be null
+     */
+    public BotHost(final Supplier<Bot> botFactory, final ProfileStore profileStore) {
+	this.botFactory = botFactory;
+	this.profileStore = profileStore;
+	this.sessions = sessionThreads("bot-session");
+	this.virtual = !(sessions instanceof ThreadPoolExecutor);
+    }
+
+    /**
+     * @return an executor that runs every task on a new virtual thread, or on older JVMs a cached pool of daemon threads with this name
+     */
+    static ExecutorService sessionThreads(final String name) {
+	try { // Java 21 and later, looked up so the host still runs on older JVMs
+	    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (ReflectiveOperationException e) {
+	    return Executors.newCachedThreadPool(task -> {
+		final Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		return thread;
+	    });
+	}
+    }
+
+    /**
+     * Builds the shared tables and compiles the hot code once, before the sessions start
+     */
+    public void warmUp(final long budgetMillis) {
+	new WarmUp(botFactory).run(budgetMillis);
+    }
+
+    /**
+     * Starts a session on a pair of streams; both are closed when the input ends
+     */
+    public Future<?> start(final InputStream in, final OutputStream out) {
+	return sessions.submit(() -> runSession(in, out));
+    }
+
+    /**
+     * Starts a session on a pair of files or named pipes. They are opened on the session thread, a pipe without a writer only blocks its own session.
+     */
+    public Future<?> start(final File input, final File output) {
+	return sessions.submit(() -> {
+	    try {
+		runSession(new FileInputStream(input), new BufferedOutputStream(new FileOutputStream(output)));
+	    } catch (IOException e) {
+		Log.warn("Cannot open session {}: {}", input, e.getMessage());
+	    }
+	});
+    }
+
+    /**
+     * Plays one match on the calling thread, until the input ends
+     */
+    public void runSession(final InputStream in, final OutputStream out) {
+	active.incrementAndGet();
+	final BotParser parser = new BotParser(botFactory.get(), profileStore, in, out);
+	try {
+	    parser.run();
+	} finally {
+	    active.decrementAndGet();
+	    finished.incrementAndGet();
+	    decisions.add(parser.getMetrics().getDecisions());
+	    closeQuietly(in);
+	    closeQuietly(out);
+	}
+    }
+
+    private static void closeQuietly(final Closeable stream) {
+	try {
+	    stream.close();
+	} catch (IOException e) {
+	    // nothing left to lose
+	}
+    }
+
+    /**
+     * @return true if sessions run on virtual threads
+     */
+    public boolean isVirtual() {
+	return virtual;
+    }
+
+    public int getActiveSessions() {
+	return active.get();
+    }
+
+    public int getFinishedSessions() {
+	return finished.get();
+    }
+
+    /**
+     * @return the decisions made in all finished sessions
+     */
+    public long getDecisions() {
+	return decisions.sum();
+    }
+
+    /**
+     * Waits for the running sessions and stops the threads
+     */
+    @Override
+    public void close() {
+	sessions.shutdown();
+	try {
+	    sessions.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	String profiles = null;
+	long warmUp = 1000;
+	final List<File> files = new ArrayList<File>();
+	for (int a = 0; a < args.length; a++) {
+	    if (args[a].equals("-profiles") && a + 1 < args.length) {
+		profiles = args[++a];
+	    } else if (args[a].equals("-warmup") && a + 1 < args.length) {
+		warmUp = Long.parseLong(args[++a]);
+	    } else {
+		files.add(new File(args[a]));
+	    }
+	}
+	if (files.isEmpty() || files.size() % 2 != 0) {
+	    System.err.println("Usage: BotHost [-profiles file] [-warmup ms] input output [input output ...]");
+	    return;
+	}
+
+	final ProfileStore store = profiles == null ? null : ProfileStore.open(new File(profiles), ProfileStore.DEFAULT_CAPACITY);
+	final long start = System.nanoTime();
+	final BotHost host = new BotHost(BotStarter::new, store);
+	if (warmUp > 0) {
+	    host.warmUp(warmUp);
+	}
+	final List<Future<?>> running = new ArrayList<Future<?>>();
+	for (int f = 0; f < files.size(); f += 2) {
+	    running.add(host.start(files.get(f), files.get(f + 1)));
+	}
+	for (Future<?> session : running) {
+	    try {
+		session.get();
+	    } catch (ExecutionException e) {
+		Log.error("Session failed: {}", e.getCause());
+	    }
+	}
+	host.close();
+	if (store != null) {
+	    store.close();
+	}
+	Log.flush();
+	System.err.printf("%d sessions on %s threads, %d decisions in %.1f s\n", host.getFinishedSessions(), host.isVirtual() ? "virtual" : "platform", host.getDecisions(),
+		(System.nanoTime() - start) / 1e9);
+    }
+}
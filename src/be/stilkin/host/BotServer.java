@@ -0,0 +1,380 @@
+package be.stilkin.host;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import be.stilkin.WarmUp;
+import be.stilkin.log.Log;
+import be.stilkin.opponent.ProfileStore;
+import bot.Bot;
+import bot.BotParser;
+import bot.BotStarter;
+
+/**
+ * Speaks the engine protocol over local socket connections, one match per connection, so a simulator or a local engine stand-in can play many matches against one warm bot
+ * process. One thread runs a non-blocking selector loop that reads the lines of every connection as they arrive. It hands them to a worker (virtual, when the JVM has them)
+ * thread, which feeds them in order to that connection's own BotParser and BotState. A decision can take milliseconds (bet sizing) up to time_per_move (the subgame solver), so
+ * it must not hold up the other connections. The worker queues the move, and the loop writes it out when the socket takes it. A connection that fails, on a malformed line or an
+ * exception in its bot, ends on its own and the others keep playing.
+ *
+ * The engine itself talks to stdin and stdout; StdioAdapter connects those to this server.
+ *
+ * Usage: java be.stilkin.host.BotServer [-port n | -unix path] [-profiles file] [-warmup ms]
+ *
+ * @author stilkin
+ */
+public class BotServer implements Closeable {
+    public static final int DEFAULT_PORT = 7461;
+    private static final int READ_BUFFER = 1 << 14;
+    private static final int MAX_LINE = 1 << 12;
+    private static final int BACKLOG = 1024; // a simulator may open hundreds of matches at once
+    private final Supplier<Bot> botFactory;
+    private final ProfileStore profileStore;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER);
+    private final ExecutorService workers = BotHost.sessionThreads("bot-server");
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>(); // moves to write or matches to close, from the workers
+    private volatile boolean running = true;
+    private int sessions;
+
+    /**
+     * Binds the server socket; call run to serve
+     *
+     * @param address
+     *            an InetSocketAddress for TCP or a UnixDomainSocketAddress
+     * @param profileStore
+     *            shared by all connections, can be null
+     */
+    public BotServer(final SocketAddress address, final Supplier<Bot> botFactory, final ProfileStore profileStore) throws IOException {
+	this.botFactory = botFactory;
+	this.profileStore = profileStore;
+	this.selector = Selector.open();
+	this.server = address instanceof UnixDomainSocketAddress ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+	server.bind(address, BACKLOG);
+	server.configureBlocking(false);
+	server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Serves connections until close is called
+     */
+    public void run() throws IOException {
+	while (running) {
+	    selector.select();
+	    Connection connection;
+	    while ((connection = ready.poll()) != null) {
+		try {
+		    connection.serve();
+		} catch (IOException e) {
+		    connection.abort();
+		    Log.warn("Connection closed: {}", e.getMessage());
+		}
+	    }
+	    final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+	    while (keys.hasNext()) {
+		final SelectionKey key = keys.next();
+		keys.remove();
+		try {
+		    if (!key.isValid()) {
+			continue;
+		    }
+		    if (key.isAcceptable()) {
+			accept();
+		    } else {
+			connection = (Connection) key.attachment();
+			if (key.isWritable()) {
+			    connection.serve();
+			}
+			if (key.isValid() && key.isReadable()) {
+			    connection.read();
+			}
+		    }
+		} catch (IOException e) { // the other side went away, the match is over for this one
+		    if (key.attachment() != null) {
+			((Connection) key.attachment()).abort();
+		    }
+		    Log.warn("Connection closed: {}", e.getMessage());
+		} catch (RuntimeException e) { // a bug for this connection only, keep serving the others
+		    if (key.attachment() != null) {
+			((Connection) key.attachment()).abort();
+		    }
+		    Log.warn("Connection failed: {}", e);
+		}
+	    }
+	}
+    }
+
+    private void accept() throws IOException {
+	final SocketChannel channel = server.accept();
+	if (channel == null) {
+	    return;
+	}
+	channel.configureBlocking(false);
+	final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+	key.attach(new Connection(channel, key));
+	sessions++;
+    }
+
+    /**
+     * @return the address the server listens on, with the port it got when bound to port 0
+     */
+    public SocketAddress getAddress() throws IOException {
+	return server.getLocalAddress();
+    }
+
+    /**
+     * @return the amount of connections accepted so far
+     */
+    public int getSessions() {
+	return sessions;
+    }
+
+    /**
+     * Stops the loop and closes the server socket; connections that are still open are dropped
+     */
+    @Override
+    public void close() throws IOException {
+	running = false;
+	selector.wakeup();
+	server.close();
+	workers.shutdownNow();
+    }
+
+    /**
+     * One match: the channel, its own parser and state, the lines its worker still has to handle and the bytes that still have to go out. The loop thread reads, writes and
+     * closes the channel; the worker runs the parser, one task at a time per connection so the lines keep their order.
+     */
+    private class Connection extends OutputStream {
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final BotParser parser;
+	private final byte[] line = new byte[MAX_LINE];
+	private final Queue<String> lines = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private int lineLength;
+	private volatile boolean inputEnded; // no more lines will come
+	private volatile boolean finished; // the parser finished the match, close once the moves are out
+	private boolean closed;
+	private ByteBuffer pending = ByteBuffer.allocate(256);
+
+	Connection(final SocketChannel channel, final SelectionKey key) {
+	    this.channel = channel;
+	    this.key = key;
+	    this.parser = new BotParser(botFactory.get(), profileStore, null, this);
+	}
+
+	/**
+	 * Reads what is available and queues every complete line for the worker
+	 */
+	void read() throws IOException {
+	    readBuffer.clear();
+	    final int read = channel.read(readBuffer);
+	    if (read < 0) {
+		if (lineLength > 0) { // last line without newline
+		    queueLine();
+		}
+		key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+		inputEnded = true;
+		schedule();
+		return;
+	    }
+	    readBuffer.flip();
+	    while (readBuffer.hasRemaining()) {
+		final byte b = readBuffer.get();
+		if (b == '\n') {
+		    queueLine();
+		} else if (lineLength < MAX_LINE) {
+		    line[lineLength++] = b;
+		}
+	    }
+	    schedule();
+	}
+
+	private void queueLine() {
+	    lines.add(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+	    lineLength = 0;
+	}
+
+	private void schedule() {
+	    if ((!lines.isEmpty() || inputEnded) && !finished && scheduled.compareAndSet(false, true)) {
+		workers.execute(this::work);
+	    }
+	}
+
+	/**
+	 * On the worker: handles the queued lines, and finishes the match when the input ended or a line failed
+	 */
+	private void work() {
+	    try {
+		String text;
+		while (!finished && (text = lines.poll()) != null) {
+		    parser.handleLine(text);
+		}
+		if (inputEnded && lines.isEmpty()) {
+		    finish();
+		}
+	    } catch (IOException | RuntimeException e) {
+		Log.warn("Session failed: {}", e);
+		finish();
+	    } finally {
+		scheduled.set(false);
+	    }
+	    schedule(); // lines that came in after the last poll
+	}
+
+	private void finish() {
+	    if (finished) {
+		return;
+	    }
+	    lines.clear();
+	    try {
+		parser.finish();
+	    } finally {
+		finished = true;
+		ready.add(this);
+		selector.wakeup();
+	    }
+	}
+
+	/**
+	 * On the loop: the channel failed, close it and let the worker finish the match
+	 */
+	void abort() {
+	    closeChannel();
+	    inputEnded = true;
+	    schedule();
+	}
+
+	/**
+	 * On the loop: writes what the worker queued, and closes the channel once the match is finished and everything went out
+	 */
+	void serve() throws IOException {
+	    if (closed) {
+		return;
+	    }
+	    final boolean done;
+	    synchronized (this) {
+		pending.flip();
+		channel.write(pending);
+		pending.compact();
+		done = pending.position() == 0;
+	    }
+	    if (finished && done) {
+		closeChannel();
+	    } else if (key.isValid()) {
+		key.interestOps((inputEnded ? 0 : SelectionKey.OP_READ) | (done ? 0 : SelectionKey.OP_WRITE));
+	    }
+	}
+
+	/**
+	 * On the loop: cancels the key and closes the channel
+	 */
+	private void closeChannel() {
+	    if (closed) {
+		return;
+	    }
+	    closed = true;
+	    key.cancel();
+	    try {
+		channel.close();
+	    } catch (IOException e) {
+		// closed anyway
+	    }
+	}
+
+	// the parser writes its moves here, on the worker
+
+	@Override
+	public synchronized void write(final int b) {
+	    ensureRoom(1);
+	    pending.put((byte) b);
+	}
+
+	@Override
+	public synchronized void write(final byte[] bytes, final int offset, final int length) {
+	    ensureRoom(length);
+	    pending.put(bytes, offset, length);
+	}
+
+	private void ensureRoom(final int length) {
+	    if (pending.remaining() < length) {
+		final ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length));
+		pending.flip();
+		pending = bigger.put(pending);
+	    }
+	}
+
+	/**
+	 * Hands the move to the loop, which sends it
+	 */
+	@Override
+	public void flush() {
+	    ready.add(this);
+	    selector.wakeup();
+	}
+    }
+
+    public static void main(String[] args) throws IOException {
+	int port = DEFAULT_PORT;
+	String unix = null;
+	String profiles = null;
+	long warmUp = 1000;
+	for (int a = 0; a + 1 < args.length; a += 2) {
+	    if (args[a].equals("-port")) {
+		port = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-unix")) {
+		unix = args[a + 1];
+	    } else if (args[a].equals("-profiles")) {
+		profiles = args[a + 1];
+	    } else if (args[a].equals("-warmup")) {
+		warmUp = Long.parseLong(args[a + 1]);
+	    } else {
+		System.err.println("Usage: BotServer [-port n | -unix path] [-profiles file] [-warmup ms]");
+		return;
+	    }
+	}
+
+	final ProfileStore store = profiles == null ? null : ProfileStore.open(new File(profiles), ProfileStore.DEFAULT_CAPACITY);
+	if (warmUp > 0) {
+	    new WarmUp(BotStarter::new).run(warmUp);
+	}
+	final SocketAddress address;
+	if (unix != null) {
+	    final Path path = Path.of(unix);
+	    Files.deleteIfExists(path); // left over from an earlier run
+	    address = UnixDomainSocketAddress.of(path);
+	} else {
+	    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+	try (BotServer server = new BotServer(address, BotStarter::new, store)) {
+	    Log.info("Serving on {}", address);
+	    server.run();
+	} finally {
+	    if (store != null) {
+		store.close();
+	    }
+	}
+    }
+}
@@ -0,0 +1,74 @@
+package be.stilkin.host;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * What the engine starts instead of the bot when a BotServer is running: copies stdin to a server connection and the moves back to stdout, so the engine does not know the
+ * difference. The adapter is a tiny JVM without tables or warm-up; the decisions are made in the warm server.
+ *
+ * Reading and writing go straight to the channel (Channels.newInputStream and newOutputStream would share one lock and block each other).
+ *
+ * Usage: java be.stilkin.host.StdioAdapter [-port n | -unix path]
+ *
+ * @author stilkin
+ */
+public class StdioAdapter {
+
+    public static void main(String[] args) throws IOException {
+	SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), BotServer.DEFAULT_PORT);
+	if (args.length == 2 && args[0].equals("-port")) {
+	    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]));
+	} else if (args.length == 2 && args[0].equals("-unix")) {
+	    address = UnixDomainSocketAddress.of(Path.of(args[1]));
+	} else if (args.length != 0) {
+	    System.err.println("Usage: StdioAdapter [-port n | -unix path]");
+	    return;
+	}
+
+	try (SocketChannel channel = SocketChannel.open(address)) {
+	    final Thread upstream = new Thread(() -> {
+		try {
+		    toChannel(System.in, channel);
+		    channel.shutdownOutput(); // the match is over, the server finishes it and closes
+		} catch (IOException e) {
+		    System.err.println("Lost the bot server: " + e.getMessage());
+		}
+	    }, "stdin-to-server");
+	    upstream.setDaemon(true);
+	    upstream.start();
+	    fromChannel(channel, System.out);
+	}
+    }
+
+    private static void toChannel(final InputStream in, final SocketChannel channel) throws IOException {
+	final byte[] buffer = new byte[8192];
+	int read;
+	while ((read = in.read(buffer)) >= 0) {
+	    final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+	    while (bytes.hasRemaining()) {
+		channel.write(bytes);
+	    }
+	}
+    }
+
+    /**
+     * Copies until the server closes, flushing after every read so a move never waits in a buffer
+     */
+    private static void fromChannel(final SocketChannel channel, final OutputStream out) throws IOException {
+	final ByteBuffer bytes = ByteBuffer.allocate(8192);
+	while (channel.read(bytes) >= 0) {
+	    out.write(bytes.array(), 0, bytes.position());
+	    out.flush();
+	    bytes.clear();
+	}
+    }
+}
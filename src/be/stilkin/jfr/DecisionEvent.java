@@ -0,0 +1,42 @@
+package be.stilkin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One BotStarter.getMove call. The event duration is the time spent deciding.
+ *
+ * @author stilkin
+ */
+@Name("be.stilkin.Decision")
+@Label("Decision")
+@Category({ "AI Poker" })
+@Description("One getMove call of the bot")
+@StackTrace(false)
+public class DecisionEvent extends jdk.jfr.Event {
+    @Label("Round")
+    public int round;
+
+    @Label("Street")
+    @Description("0 pre-flop, 1 flop, 2 turn, 3 river")
+    public int street;
+
+    @Label("Pot")
+    public int pot;
+
+    @Label("Amount To Call")
+    public int amountToCall;
+
+    @Label("Action")
+    public String action;
+
+    @Label("Amount")
+    public int amount;
+
+    @Label("History")
+    @Description("BettingHistory key of the hand so far")
+    public long history;
+}
@@ -0,0 +1,37 @@
+package be.stilkin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One equity computation of the EquityCalculator.
+ *
+ * @author stilkin
+ */
+@Name("be.stilkin.Equity")
+@Label("Equity")
+@Category({ "AI Poker" })
+@Description("One equity computation")
+@StackTrace(false)
+public class EquityEvent extends jdk.jfr.Event {
+    public static final String RANDOM = "random";
+    public static final String HAND = "hand";
+    public static final String RANGE = "range";
+
+    @Label("Method")
+    @Description("random, hand or range: what we computed the equity against")
+    public String method;
+
+    @Label("Samples")
+    @Description("Deals evaluated, sampled or enumerated")
+    public int samples;
+
+    @Label("Table Cards")
+    public int tableCards;
+
+    @Label("Equity")
+    public float equity;
+}
@@ -0,0 +1,29 @@
+package be.stilkin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Handling of one engine line by the BotParser, including the move for Action lines.
+ *
+ * @author stilkin
+ */
+@Name("be.stilkin.ProtocolLine")
+@Label("Protocol Line")
+@Category({ "AI Poker" })
+@Description("One line read from the engine")
+@StackTrace(false)
+public class ProtocolLineEvent extends jdk.jfr.Event {
+    @Label("Type")
+    @Description("Settings, Match, Action or the player name")
+    public String type;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Line")
+    public String line;
+}
@@ -0,0 +1,319 @@
+package be.stilkin.log;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logging for the decision path. Callers only copy the format string and a few primitive or object arguments into a preallocated ring buffer; a daemon thread
+ * formats the messages and writes them to stderr in batches. So a slow stderr pipe never holds up a move, and a disabled level costs one comparison and no allocation.
+ *
+ * Formats use {} as placeholder for the arguments, e.g. Log.debug("Callamount: {} sum: {}", callAmount, sum). Pass primitives as they are (they go to the long or double
+ * overloads), never box them. When the buffer is full, messages are dropped and counted instead of blocking the caller.
+ *
+ * The level comes from -Daipoker.log.level (off, error, warn, info or debug, default debug). A thread can lower it for its own messages only (setThreadLevel), e.g. a warm-up
+ * while other sessions in the JVM keep logging.
+ *
+ * @author stilkin
+ */
+public final class Log {
+    public static final int OFF = -1;
+    public static final int ERROR = 0;
+    public static final int WARN = 1;
+    public static final int INFO = 2;
+    public static final int DEBUG = 3;
+    private static final String[] LEVEL_NAMES = { "ERROR", "WARN", "INFO", "DEBUG" };
+
+    private static final int SIZE = 4096; // power of two
+    private static final int MASK = SIZE - 1;
+    private static final int MAX_ARGS = 2;
+    private static final byte NONE = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte OBJECT = 3;
+    private static final long IDLE_NANOS = 1000000;
+
+    private static volatile int level = parseLevel(System.getProperty("aipoker.log.level", "debug"));
+    private static final ThreadLocal<int[]> threadLevel = ThreadLocal.withInitial(() -> new int[] { DEBUG });
+    private static final AtomicInteger cappedThreads = new AtomicInteger(); // threads with a level under DEBUG, while 0 nobody looks at the thread levels
+
+    // the ring buffer, one slot per message
+    private static final String[] formats = new String[SIZE];
+    private static final byte[] levels = new byte[SIZE];
+    private static final byte[] kinds = new byte[SIZE * MAX_ARGS];
+    private static final long[] numbers = new long[SIZE * MAX_ARGS];
+    private static final Object[] objects = new Object[SIZE * MAX_ARGS];
+    private static final AtomicLongArray published = new AtomicLongArray(SIZE);
+    private static final AtomicLong head = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile long tail;
+
+    static {
+	final Thread writer = new Thread(Log::drainForever, "log-writer");
+	writer.setDaemon(true);
+	writer.start();
+	Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {}
+
+    public static void setLevel(final int newLevel) {
+	level = newLevel;
+    }
+
+    public static int getLevel() {
+	return level;
+    }
+
+    /**
+     * Caps the level of the messages of the calling thread, on top of the global level; DEBUG lifts the cap
+     */
+    public static void setThreadLevel(final int newLevel) {
+	final int[] current = threadLevel.get();
+	if ((current[0] < DEBUG) != (newLevel < DEBUG)) {
+	    cappedThreads.addAndGet(newLevel < DEBUG ? 1 : -1);
+	}
+	current[0] = newLevel;
+    }
+
+    public static int getThreadLevel() {
+	return threadLevel.get()[0];
+    }
+
+    public static boolean isEnabled(final int messageLevel) {
+	return messageLevel <= level && (cappedThreads.get() == 0 || messageLevel <= threadLevel.get()[0]);
+    }
+
+    /**
+     * @return the amount of messages dropped because the writer could not keep up
+     */
+    public static long getDropped() {
+	return dropped.get();
+    }
+
+    // ***************
+    // *** LOGGING ***
+    // ***************
+
+    public static void log(final int messageLevel, final String format) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, NONE, 0, null, NONE, 0, null);
+	}
+    }
+
+    public static void log(final int messageLevel, final String format, final long a) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, LONG, a, null, NONE, 0, null);
+	}
+    }
+
+    public static void log(final int messageLevel, final String format, final double a) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, DOUBLE, Double.doubleToRawLongBits(a), null, NONE, 0, null);
+	}
+    }
+
+    public static void log(final int messageLevel, final String format, final Object a) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, OBJECT, 0, a, NONE, 0, null);
+	}
+    }
+
+    public static void log(final int messageLevel, final String format, final long a, final long b) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, LONG, a, null, LONG, b, null);
+	}
+    }
+
+    public static void log(final int messageLevel, final String format, final Object a, final long b) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, OBJECT, 0, a, LONG, b, null);
+	}
+    }
+
+    public static void log(final int messageLevel, final String format, final Object a, final Object b) {
+	if (isEnabled(messageLevel)) {
+	    append(messageLevel, format, OBJECT, 0, a, OBJECT, 0, b);
+	}
+    }
+
+    public static void debug(final String format) {
+	log(DEBUG, format);
+    }
+
+    public static void debug(final String format, final long a) {
+	log(DEBUG, format, a);
+    }
+
+    public static void debug(final String format, final double a) {
+	log(DEBUG, format, a);
+    }
+
+    public static void debug(final String format, final Object a) {
+	log(DEBUG, format, a);
+    }
+
+    public static void debug(final String format, final long a, final long b) {
+	log(DEBUG, format, a, b);
+    }
+
+    public static void debug(final String format, final Object a, final long b) {
+	log(DEBUG, format, a, b);
+    }
+
+    public static void debug(final String format, final Object a, final Object b) {
+	log(DEBUG, format, a, b);
+    }
+
+    public static void info(final String format) {
+	log(INFO, format);
+    }
+
+    public static void info(final String format, final long a) {
+	log(INFO, format, a);
+    }
+
+    public static void info(final String format, final Object a) {
+	log(INFO, format, a);
+    }
+
+    public static void info(final String format, final Object a, final long b) {
+	log(INFO, format, a, b);
+    }
+
+    public static void warn(final String format, final Object a) {
+	log(WARN, format, a);
+    }
+
+    public static void warn(final String format, final Object a, final Object b) {
+	log(WARN, format, a, b);
+    }
+
+    public static void error(final String format, final Object a) {
+	log(ERROR, format, a);
+    }
+
+    /**
+     * Claims a slot without locking, fills it and publishes it. Drops the message when the writer is a full buffer behind.
+     */
+    private static void append(final int messageLevel, final String format, final byte kindA, final long numberA, final Object objectA, final byte kindB,
+	    final long numberB, final Object objectB) {
+	long seq;
+	do {
+	    seq = head.get();
+	    if (seq - tail >= SIZE) {
+		dropped.incrementAndGet();
+		return;
+	    }
+	} while (!head.compareAndSet(seq, seq + 1));
+
+	final int slot = (int) (seq & MASK);
+	final int arg = slot * MAX_ARGS;
+	formats[slot] = format;
+	levels[slot] = (byte) messageLevel;
+	kinds[arg] = kindA;
+	numbers[arg] = numberA;
+	objects[arg] = objectA;
+	kinds[arg + 1] = kindB;
+	numbers[arg + 1] = numberB;
+	objects[arg + 1] = objectB;
+	published.lazySet(slot, seq + 1);
+    }
+
+    // **************
+    // *** WRITER ***
+    // **************
+
+    private static void drainForever() {
+	final StringBuilder sb = new StringBuilder(1 << 14);
+	while (true) {
+	    if (drain(sb) == 0) {
+		LockSupport.parkNanos(IDLE_NANOS);
+	    }
+	}
+    }
+
+    /**
+     * Writes everything that is in the buffer now. Safe to call from any thread.
+     */
+    public static void flush() {
+	drain(new StringBuilder(1 << 12));
+    }
+
+    /**
+     * Formats all published messages into one batch and writes it
+     *
+     * @return the amount of messages written
+     */
+    private static synchronized int drain(final StringBuilder sb) {
+	sb.setLength(0);
+	int count = 0;
+	long seq = tail;
+	while (true) {
+	    final int slot = (int) (seq & MASK);
+	    if (published.get(slot) != seq + 1) {
+		break;
+	    }
+	    format(sb, slot);
+	    formats[slot] = null; // let go of the arguments
+	    objects[slot * MAX_ARGS] = null;
+	    objects[slot * MAX_ARGS + 1] = null;
+	    seq++;
+	    tail = seq;
+	    count++;
+	}
+	if (count > 0) {
+	    final PrintStream err = System.err;
+	    final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+	    err.write(bytes, 0, bytes.length);
+	    err.flush();
+	}
+	return count;
+    }
+
+    private static void format(final StringBuilder sb, final int slot) {
+	final String format = formats[slot];
+	if (levels[slot] < INFO) {
+	    sb.append(LEVEL_NAMES[levels[slot]]).append(": ");
+	}
+	int arg = 0;
+	int from = 0;
+	int at;
+	while ((at = format.indexOf("{}", from)) >= 0) {
+	    sb.append(format, from, at);
+	    if (arg < MAX_ARGS) {
+		appendArg(sb, slot * MAX_ARGS + arg++);
+	    }
+	    from = at + 2;
+	}
+	sb.append(format, from, format.length()).append('\n');
+    }
+
+    private static void appendArg(final StringBuilder sb, final int arg) {
+	switch (kinds[arg]) {
+	    case LONG:
+		sb.append(numbers[arg]);
+		break;
+	    case DOUBLE:
+		sb.append(Double.longBitsToDouble(numbers[arg]));
+		break;
+	    case OBJECT:
+		sb.append(objects[arg]);
+		break;
+	    default:
+		sb.append("{}");
+	}
+    }
+
+    private static int parseLevel(final String name) {
+	for (int l = 0; l < LEVEL_NAMES.length; l++) {
+	    if (LEVEL_NAMES[l].equalsIgnoreCase(name)) {
+		return l;
+	    }
+	}
+	return "off".equalsIgnoreCase(name) ? OFF : DEBUG;
+    }
+}
@@ -0,0 +1,234 @@
+package be.stilkin.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of every decision, per street and per chosen action, plus how close we get to the engine's time limit and how much evaluation work a decision takes. Recording is
+ * lock-free and allocation-free; a daemon thread dumps a summary to stderr and, if configured, as one JSON line per dump to a file.
+ *
+ * The engine tells us our remaining timebank with every Action line. Every move adds time_per_move to it (up to the timebank setting), so a decision that takes longer than
+ * time_per_move eats into the bank, and one that takes longer than the bank forfeits.
+ *
+ * @author stilkin
+ */
+public class DecisionMetrics {
+    public static final String[] STREETS = { "preflop", "flop", "turn", "river" };
+    public static final String[] ACTIONS = { "fold", "check", "call", "raise" };
+    private final LatencyHistogram[][] histograms = new LatencyHistogram[STREETS.length][ACTIONS.length];
+    private final AtomicLong decisions = new AtomicLong();
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicLong maxEvaluations = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong overTimePerMove = new AtomicLong();
+    private final AtomicLong minTimebank = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong minHeadroom = new AtomicLong(Long.MAX_VALUE);
+    private volatile long lastTimebank = -1;
+    private volatile long firstNanos = -1;
+
+    public DecisionMetrics() {
+	for (int s = 0; s < STREETS.length; s++) {
+	    for (int a = 0; a < ACTIONS.length; a++) {
+		histograms[s][a] = new LatencyHistogram();
+	    }
+	}
+    }
+
+    /**
+     * Records one decision
+     *
+     * @param street
+     *            0 - 3
+     * @param action
+     *            index in ACTIONS, -1 if unknown
+     * @param nanos
+     *            time spent deciding
+     * @param timebank
+     *            the time (ms) the engine gave us for this move
+     * @param timePerMove
+     *            the time (ms) every move adds to the bank
+     * @param evals
+     *            evaluator calls since the previous decision, the range bucketing of new table cards included
+     * @param hits
+     *            cache hits since the previous decision
+     */
+    public void record(final int street, final int action, final long nanos, final long timebank, final int timePerMove, final long evals, final long hits) {
+	histograms[street][Math.max(action, 0)].record(nanos);
+	if (decisions.incrementAndGet() == 1) {
+	    firstNanos = nanos; // the one that runs coldest
+	}
+	evaluations.addAndGet(evals);
+	cacheHits.addAndGet(hits);
+	updateMax(maxEvaluations, evals);
+
+	final long millis = nanos / 1000000;
+	if (timePerMove > 0 && millis > timePerMove) {
+	    overTimePerMove.incrementAndGet();
+	}
+	lastTimebank = timebank;
+	updateMin(minTimebank, timebank);
+	updateMin(minHeadroom, timebank - millis);
+    }
+
+    private static void updateMin(final AtomicLong min, final long value) {
+	long current;
+	while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+	    // retry
+	}
+    }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+	long current;
+	while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+	    // retry
+	}
+    }
+
+    public long getDecisions() {
+	return decisions.get();
+    }
+
+    /**
+     * @return the latency of the first decision of the match, -1 before it
+     */
+    public long getFirstNanos() {
+	return firstNanos;
+    }
+
+    /**
+     * @return the histogram of one street and action
+     */
+    public LatencyHistogram getHistogram(final int street, final int action) {
+	return histograms[street][action];
+    }
+
+    /**
+     * @return all decisions on a street, as a new histogram
+     */
+    public LatencyHistogram streetHistogram(final int street) {
+	final LatencyHistogram sum = new LatencyHistogram();
+	for (int a = 0; a < ACTIONS.length; a++) {
+	    sum.add(histograms[street][a]);
+	}
+	return sum;
+    }
+
+    /**
+     * @return all decisions ending in an action, as a new histogram
+     */
+    public LatencyHistogram actionHistogram(final int action) {
+	final LatencyHistogram sum = new LatencyHistogram();
+	for (int s = 0; s < STREETS.length; s++) {
+	    sum.add(histograms[s][action]);
+	}
+	return sum;
+    }
+
+    /**
+     * Human readable summary, one line per street and per action
+     */
+    public void print(final PrintStream out) {
+	final long n = decisions.get();
+	if (n == 0) {
+	    return;
+	}
+	final StringBuilder sb = new StringBuilder();
+	sb.append(String.format(Locale.ROOT, "Decisions: %d, evaluations %.1f/decision (max %d), cache hits %.1f/decision%n", n, (double) evaluations.get() / n,
+		maxEvaluations.get(), (double) cacheHits.get() / n));
+	sb.append(String.format(Locale.ROOT, "First decision: %.1f us%n", firstNanos / 1e3));
+	sb.append(String.format(Locale.ROOT, "Timebank: last %d ms, lowest %d ms, lowest headroom %d ms, %d decisions over time_per_move%n", lastTimebank, minTimebank.get(),
+		minHeadroom.get(), overTimePerMove.get()));
+	for (int s = 0; s < STREETS.length; s++) {
+	    appendLine(sb, STREETS[s], streetHistogram(s));
+	}
+	for (int a = 0; a < ACTIONS.length; a++) {
+	    appendLine(sb, ACTIONS[a], actionHistogram(a));
+	}
+	out.print(sb);
+    }
+
+    private static void appendLine(final StringBuilder sb, final String name, final LatencyHistogram h) {
+	if (h.getCount() == 0) {
+	    return;
+	}
+	sb.append(String.format(Locale.ROOT, "  %-8s n=%-7d mean %8.1f us  p50 %8.1f us  p99 %8.1f us  p99.9 %8.1f us  max %8.1f us%n", name, h.getCount(), h.getMean() / 1e3,
+		h.getQuantile(0.5) / 1e3, h.getQuantile(0.99) / 1e3, h.getQuantile(0.999) / 1e3, h.getMax() / 1e3));
+    }
+
+    /**
+     * Machine readable summary: one JSON object (single line), latencies in microseconds
+     */
+    public String toJson() {
+	final StringBuilder sb = new StringBuilder(1024);
+	sb.append("{\"time\":").append(System.currentTimeMillis());
+	sb.append(",\"decisions\":").append(decisions.get());
+	sb.append(",\"evaluations\":").append(evaluations.get());
+	sb.append(",\"max_evaluations\":").append(maxEvaluations.get());
+	sb.append(",\"cache_hits\":").append(cacheHits.get());
+	sb.append(String.format(Locale.ROOT, ",\"first_decision\":%.1f", firstNanos / 1e3));
+	sb.append(",\"timebank\":{\"last_ms\":").append(lastTimebank);
+	sb.append(",\"min_ms\":").append(minTimebank.get() == Long.MAX_VALUE ? -1 : minTimebank.get());
+	sb.append(",\"min_headroom_ms\":").append(minHeadroom.get() == Long.MAX_VALUE ? -1 : minHeadroom.get());
+	sb.append(",\"over_time_per_move\":").append(overTimePerMove.get()).append('}');
+	sb.append(",\"streets\":{");
+	for (int s = 0; s < STREETS.length; s++) {
+	    appendJson(sb.append(s == 0 ? "" : ","), STREETS[s], streetHistogram(s));
+	}
+	sb.append("},\"actions\":{");
+	for (int a = 0; a < ACTIONS.length; a++) {
+	    appendJson(sb.append(a == 0 ? "" : ","), ACTIONS[a], actionHistogram(a));
+	}
+	return sb.append("}}").toString();
+    }
+
+    private static void appendJson(final StringBuilder sb, final String name, final LatencyHistogram h) {
+	sb.append('"').append(name).append("\":{\"count\":").append(h.getCount());
+	sb.append(String.format(Locale.ROOT, ",\"mean\":%.1f,\"p50\":%.1f,\"p99\":%.1f,\"p999\":%.1f,\"max\":%.1f}", h.getMean() / 1e3, h.getQuantile(0.5) / 1e3,
+		h.getQuantile(0.99) / 1e3, h.getQuantile(0.999) / 1e3, h.getMax() / 1e3));
+    }
+
+    /**
+     * Dumps a summary every interval on a daemon thread, so slow stderr or disk writes never hold up a move
+     *
+     * @param file
+     *            gets one JSON line per dump, can be null
+     */
+    public void startReporting(final long intervalMillis, final File file) {
+	final Thread reporter = new Thread(() -> {
+	    long reported = 0;
+	    while (true) {
+		try {
+		    Thread.sleep(intervalMillis);
+		} catch (InterruptedException e) {
+		    return;
+		}
+		if (decisions.get() != reported) { // nothing new, nothing to say
+		    reported = decisions.get();
+		    dump(file);
+		}
+	    }
+	}, "decision-metrics");
+	reporter.setDaemon(true);
+	reporter.start();
+    }
+
+    /**
+     * Writes the summary to stderr and the file (if not null)
+     */
+    public void dump(final File file) {
+	print(System.err);
+	if (file != null) {
+	    try (Writer writer = new FileWriter(file, true)) {
+		writer.write(toJson());
+		writer.write('\n');
+	    } catch (IOException e) {
+		System.err.println("Cannot write metrics: " + e.getMessage());
+	    }
+	}
+    }
+}
@@ -0,0 +1,33 @@
+package be.stilkin.metrics;
+
+/**
+ * Counts hand evaluations and cache hits of one bot, so the decision metrics can report them per decision. The hand category of the bot counts one evaluation at a time; the
+ * BetSizer, ExpectimaxSearch, SubgameSolver and the bucketing of the OpponentRange add up what they evaluated per call. Plain fields: a bot decides on one thread at a time, and
+ * the components that rank on a pool add their total on the calling thread.
+ *
+ * @author stilkin
+ */
+public class EvalCounter {
+    private long evaluations;
+    private long cacheHits;
+
+    public void evaluation() {
+	evaluations++;
+    }
+
+    public void evaluations(final long n) {
+	evaluations += n;
+    }
+
+    public void cacheHit() {
+	cacheHits++;
+    }
+
+    public long getEvaluations() {
+	return evaluations;
+    }
+
+    public long getCacheHits() {
+	return cacheHits;
+    }
+}
@@ -0,0 +1,12 @@
+package be.stilkin.metrics;
+
+/**
+ * A bot that counts its evaluator calls and cache hits.
+ *
+ * @author stilkin
+ */
+public interface Instrumented {
+
+    public EvalCounter getEvalCounter();
+
+}
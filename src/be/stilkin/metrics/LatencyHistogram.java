@@ -0,0 +1,107 @@
+package be.stilkin.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: exact below 32 ns, then 16 buckets per power of two (about 6% resolution) up to 2^40 ns. Recording is one
+ * atomic increment plus a max update, no allocation.
+ *
+ * @author stilkin
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF = SUB_COUNT / 2;
+    private static final int MAX_SHIFT = 40 - SUB_BITS + 1;
+    private static final int BUCKETS = HALF * MAX_SHIFT + SUB_COUNT;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(final long nanos) {
+	final long value = Math.max(0, nanos);
+	counts.incrementAndGet(index(value));
+	total.incrementAndGet();
+	sum.addAndGet(value);
+	long current;
+	while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+	    // retry
+	}
+    }
+
+    static int index(final long value) {
+	if (value < SUB_COUNT) {
+	    return (int) value;
+	}
+	final int shift = Math.min(63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1, MAX_SHIFT - 1);
+	final int sub = (int) Math.min(value >>> shift, SUB_COUNT - 1);
+	return shift * HALF + sub;
+    }
+
+    /**
+     * @return the highest value that falls in the bucket
+     */
+    static long upperBound(final int index) {
+	if (index < SUB_COUNT) {
+	    return index;
+	}
+	final int shift = index / HALF - 1;
+	final long sub = index % HALF + HALF;
+	return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param quantile
+     *            e.g. 0.99
+     * @return the latency (ns) that this fraction of the recorded values stays under, 0 if empty
+     */
+    public long getQuantile(final double quantile) {
+	final long count = total.get();
+	if (count == 0) {
+	    return 0;
+	}
+	final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+	long seen = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    seen += counts.get(i);
+	    if (seen >= rank) {
+		return Math.min(upperBound(i), max.get());
+	    }
+	}
+	return max.get();
+    }
+
+    public long getCount() {
+	return total.get();
+    }
+
+    public long getMax() {
+	return max.get();
+    }
+
+    public double getMean() {
+	final long count = total.get();
+	return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * Adds all values of another histogram to this one, e.g. to sum streets
+     */
+    public void add(final LatencyHistogram other) {
+	for (int i = 0; i < BUCKETS; i++) {
+	    final long c = other.counts.get(i);
+	    if (c != 0) {
+		counts.addAndGet(i, c);
+	    }
+	}
+	total.addAndGet(other.total.get());
+	sum.addAndGet(other.sum.get());
+	long current;
+	final long otherMax = other.max.get();
+	while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) {
+	    // retry
+	}
+    }
+}
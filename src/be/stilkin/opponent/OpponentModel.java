@@ -0,0 +1,309 @@
+package be.stilkin.opponent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming statistics about the opponent, updated with every move the engine reports. Every statistic is a ratio of two exponentially decayed counters (hits and chances),
+ * so old hands slowly lose weight and the memory use never grows. Everything lives in primitive arrays and fields: no allocation per event, and every query is O(1).
+ *
+ * Not thread-safe, every BotState keeps its own model.
+ *
+ * @author stilkin
+ */
+public class OpponentModel {
+    // actions, as reported by the engine
+    public static final int FOLD = 0;
+    public static final int CHECK = 1;
+    public static final int CALL = 2;
+    public static final int RAISE = 3;
+
+    // streets
+    public static final int PREFLOP = 0;
+    public static final int FLOP = 1;
+    public static final int TURN = 2;
+    public static final int RIVER = 3;
+    public static final int STREETS = 4;
+
+    // statistics
+    public static final int VPIP = 0; // voluntarily put money in the pot pre-flop
+    public static final int PFR = 1; // raised pre-flop
+    public static final int THREE_BET = 2; // re-raised our first pre-flop raise
+    public static final int CBET = 3; // bet the flop after raising last pre-flop
+    public static final int FOLD_TO_BET = 4; // + street: folded when facing our bet or raise
+    public static final int WTSD = FOLD_TO_BET + STREETS; // went to showdown after seeing the flop
+    public static final int WSD = WTSD + 1; // won at showdown
+    public static final int STAT_COUNT = WSD + 1;
+
+    /** used as long as we have seen few chances, e.g. at the start of a match */
+    private static final float[] PRIORS = { 0.5f, 0.25f, 0.1f, 0.6f, 0.3f, 0.35f, 0.35f, 0.35f, 0.4f, 0.5f };
+    private static final float PRIOR_WEIGHT = 2f;
+    public static final float DEFAULT_DECAY = 0.99f;
+
+    private final float decay;
+    private final float[] hits = new float[STAT_COUNT];
+    private final float[] chances = new float[STAT_COUNT];
+    private final float[] aggressive = new float[STREETS]; // raises per street
+    private final float[] passive = new float[STREETS]; // calls per street
+
+    // the running hand
+    private int street;
+    private int preflopRaises;
+    private boolean oppActedPreflop;
+    private boolean oppVoluntary;
+    private boolean oppRaisedPreflop;
+    private boolean oppLastAggressor;
+    private boolean flopBet;
+    private boolean oppFacingBet;
+    private boolean sawFlop;
+    private boolean showdown;
+    private boolean handOpen;
+
+    public OpponentModel() {
+	this(DEFAULT_DECAY);
+    }
+
+    /**
+     * @param decay
+     *            weight of the past at every new chance, e.g. 0.99 forgets with a half-life of about 70 chances
+     */
+    public OpponentModel(final float decay) {
+	this.decay = decay;
+    }
+
+    /**
+     * A new hand starts, commit the per-hand statistics of the last one
+     */
+    public void newHand() {
+	finishHand();
+	handOpen = true;
+	street = PREFLOP;
+	preflopRaises = 0;
+	oppActedPreflop = false;
+	oppVoluntary = false;
+	oppRaisedPreflop = false;
+	oppLastAggressor = false;
+	flopBet = false;
+	oppFacingBet = false;
+	sawFlop = false;
+	showdown = false;
+    }
+
+    /**
+     * The table cards changed
+     *
+     * @param tableCards
+     *            0, 3, 4 or 5
+     */
+    public void setTableCards(final int tableCards) {
+	final int newStreet = tableCards < 3 ? PREFLOP : tableCards - 2;
+	if (newStreet != street) {
+	    street = newStreet;
+	    oppFacingBet = false;
+	    if (street == FLOP) {
+		sawFlop = true;
+	    }
+	}
+    }
+
+    /**
+     * We made a move
+     */
+    public void onMyAction(final int action) {
+	if (action == RAISE) {
+	    if (street == PREFLOP) {
+		preflopRaises++;
+		oppLastAggressor = false;
+	    } else if (street == FLOP) {
+		flopBet = true;
+	    }
+	    oppFacingBet = true;
+	} else if (action == CALL) {
+	    oppFacingBet = false;
+	}
+    }
+
+    /**
+     * The opponent made a move
+     */
+    public void onOpponentAction(final int action) {
+	if (oppFacingBet) {
+	    count(FOLD_TO_BET + street, action == FOLD || action == CHECK); // the engine treats a check when facing a bet as a fold
+	}
+	if (street == PREFLOP) {
+	    oppActedPreflop = true;
+	    if (preflopRaises == 1 && oppFacingBet) {
+		count(THREE_BET, action == RAISE);
+	    }
+	    if (action == CALL || action == RAISE) {
+		oppVoluntary = true;
+	    }
+	    if (action == RAISE) {
+		oppRaisedPreflop = true;
+		oppLastAggressor = true;
+		preflopRaises++;
+	    }
+	} else if (street == FLOP && !flopBet && !oppFacingBet && oppLastAggressor) {
+	    count(CBET, action == RAISE);
+	    oppLastAggressor = false; // only the first chance counts
+	}
+
+	if (action == RAISE) {
+	    aggressive[street] = aggressive[street] * decay + 1;
+	    passive[street] *= decay;
+	    if (street == FLOP) {
+		flopBet = true;
+	    }
+	} else if (action == CALL) {
+	    passive[street] = passive[street] * decay + 1;
+	    aggressive[street] *= decay;
+	}
+	oppFacingBet = false;
+    }
+
+    /**
+     * The opponent showed his cards
+     */
+    public void onOpponentShowdown() {
+	showdown = true;
+    }
+
+    /**
+     * Someone won the pot, called at the end of the hand
+     */
+    public void onWinner(final boolean opponentWon) {
+	if (showdown && handOpen) {
+	    count(WSD, opponentWon);
+	}
+    }
+
+    /**
+     * Commits the per-hand statistics of the running hand, e.g. when the match is over. Called by newHand too.
+     */
+    public void finishHand() {
+	if (!handOpen) {
+	    return;
+	}
+	handOpen = false;
+	if (oppActedPreflop) {
+	    count(VPIP, oppVoluntary);
+	    count(PFR, oppRaisedPreflop);
+	}
+	if (sawFlop) {
+	    count(WTSD, showdown);
+	}
+    }
+
+    private void count(final int stat, final boolean hit) {
+	chances[stat] = chances[stat] * decay + 1;
+	hits[stat] = hits[stat] * decay + (hit ? 1 : 0);
+    }
+
+    /**
+     * @param stat
+     *            one of the statistic constants, e.g. VPIP or FOLD_TO_BET + FLOP
+     * @return the frequency, between 0 and 1, smoothed towards a prior while we have little data
+     */
+    public float get(final int stat) {
+	return (hits[stat] + PRIORS[stat] * PRIOR_WEIGHT) / (chances[stat] + PRIOR_WEIGHT);
+    }
+
+    /**
+     * @return the (decayed) amount of chances we have seen for this statistic, as a measure of confidence
+     */
+    public float getChances(final int stat) {
+	return chances[stat];
+    }
+
+    public float getVpip() {
+	return get(VPIP);
+    }
+
+    public float getPfr() {
+	return get(PFR);
+    }
+
+    public float getThreeBet() {
+	return get(THREE_BET);
+    }
+
+    public float getCBet() {
+	return get(CBET);
+    }
+
+    public float getFoldToBet(final int street) {
+	return get(FOLD_TO_BET + street);
+    }
+
+    public float getWentToShowdown() {
+	return get(WTSD);
+    }
+
+    public float getWonAtShowdown() {
+	return get(WSD);
+    }
+
+    /**
+     * @return raises per call after the flop (1 when we know nothing)
+     */
+    public float getAggressionFactor() {
+	float raises = 1f;
+	float calls = 1f;
+	for (int s = FLOP; s < STREETS; s++) {
+	    raises += aggressive[s];
+	    calls += passive[s];
+	}
+	return raises / calls;
+    }
+
+    /**
+     * @return raises per call on one street (1 when we know nothing)
+     */
+    public float getAggressionFactor(final int street) {
+	return (aggressive[street] + 1f) / (passive[street] + 1f);
+    }
+
+    /**
+     * Stores the counters (not the running hand) at an absolute position, e.g. in a ProfileStore record
+     *
+     * @return the position after the written data
+     */
+    public int writeTo(final ByteBuffer buffer, int offset) {
+	offset = writeFloats(buffer, offset, hits);
+	offset = writeFloats(buffer, offset, chances);
+	offset = writeFloats(buffer, offset, aggressive);
+	return writeFloats(buffer, offset, passive);
+    }
+
+    /**
+     * Restores counters written with writeTo
+     *
+     * @return the position after the read data
+     */
+    public int readFrom(final ByteBuffer buffer, int offset) {
+	offset = readFloats(buffer, offset, hits);
+	offset = readFloats(buffer, offset, chances);
+	offset = readFloats(buffer, offset, aggressive);
+	return readFloats(buffer, offset, passive);
+    }
+
+    private static int writeFloats(final ByteBuffer buffer, int offset, final float[] values) {
+	for (int i = 0; i < values.length; i++, offset += 4) {
+	    buffer.putFloat(offset, values[i]);
+	}
+	return offset;
+    }
+
+    private static int readFloats(final ByteBuffer buffer, int offset, final float[] values) {
+	for (int i = 0; i < values.length; i++, offset += 4) {
+	    values[i] = buffer.getFloat(offset);
+	}
+	return offset;
+    }
+
+    /**
+     * @return the street the running hand is on
+     */
+    public int getStreet() {
+	return street;
+    }
+}
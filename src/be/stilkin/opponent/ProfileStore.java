@@ -0,0 +1,186 @@
+package be.stilkin.opponent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import be.stilkin.range.ActionLikelihood;
+
+/**
+ * Keeps what we learned about every opponent between matches, in a memory-mapped file with fixed-size records. The records form an open-addressing hash table on the opponent
+ * name, so finding a profile touches a few pages of the file and never loads the whole store on the heap. Profiles are read once when the match starts and written back in
+ * place after every hand.
+ *
+ * File layout: a 64 byte header (magic, version, capacity, record size, used records), then capacity records of RECORD_SIZE bytes: used flag, hands seen, name (length + UTF-8
+ * bytes), OpponentModel counters and ActionLikelihood counts.
+ *
+ * Thread-safe for sessions sharing one store in the same JVM (every access to the file holds the store's lock, so a record is never read or written half), not for several
+ * processes writing the same file. Sessions that meet the same name at the same time share its record: every save writes that session's counters whole, the last one wins.
+ *
+ * @author stilkin
+ */
+public class ProfileStore implements Closeable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int RECORD_SIZE = 1024;
+    private static final int MAGIC = 0x4F505046;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAX_NAME_BYTES = 62;
+    private static final int USED = 0;
+    private static final int HANDS = 4;
+    private static final int NAME = 8;
+    private static final int DATA = NAME + 64;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int used;
+
+    private ProfileStore(final RandomAccessFile file, final MappedByteBuffer buffer, final int capacity, final int used) {
+	this.file = file;
+	this.buffer = buffer;
+	this.capacity = capacity;
+	this.used = used;
+    }
+
+    /**
+     * Opens the store, or creates it with room for the given amount of opponents
+     */
+    public static ProfileStore open(final File path, final int capacity) throws IOException {
+	final RandomAccessFile file = new RandomAccessFile(path, "rw");
+	try {
+	    final boolean create = file.length() == 0;
+	    int size = capacity;
+	    if (!create) {
+		file.seek(0);
+		if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+		    throw new IOException("Not a profile store: " + path);
+		}
+		size = file.readInt();
+		if (file.readInt() != RECORD_SIZE) {
+		    throw new IOException("Profile store has another record size: " + path);
+		}
+	    }
+	    final long length = HEADER_SIZE + (long) size * RECORD_SIZE;
+	    final MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+	    if (create) {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, size);
+		buffer.putInt(12, RECORD_SIZE);
+		buffer.putInt(16, 0);
+	    }
+	    return new ProfileStore(file, buffer, size, buffer.getInt(16));
+	} catch (IOException e) {
+	    file.close();
+	    throw e;
+	}
+    }
+
+    /**
+     * Finds the record of an opponent, creating an empty one if we never met him
+     *
+     * @return the record handle, or -1 if the store is full
+     */
+    public synchronized int find(final String opponent) {
+	byte[] name = opponent.getBytes(StandardCharsets.UTF_8);
+	if (name.length > MAX_NAME_BYTES) {
+	    final byte[] cut = new byte[MAX_NAME_BYTES];
+	    System.arraycopy(name, 0, cut, 0, MAX_NAME_BYTES);
+	    name = cut;
+	}
+	int slot = (hash(name) & 0x7FFFFFFF) % capacity;
+	for (int probe = 0; probe < capacity; probe++) {
+	    final int record = HEADER_SIZE + slot * RECORD_SIZE;
+	    if (buffer.getInt(record + USED) == 0) { // free: claim it
+		if (used * 4L >= capacity * 3L) {
+		    return -1; // keep probe sequences short
+		}
+		buffer.put(record + NAME, (byte) name.length);
+		for (int i = 0; i < name.length; i++) {
+		    buffer.put(record + NAME + 1 + i, name[i]);
+		}
+		buffer.putInt(record + HANDS, 0);
+		buffer.putInt(record + USED, 1);
+		used++;
+		buffer.putInt(16, used);
+		return record;
+	    }
+	    if (nameEquals(record, name)) {
+		return record;
+	    }
+	    slot = (slot + 1) % capacity;
+	}
+	return -1;
+    }
+
+    /**
+     * Copies the stored counters into the models, if this opponent has a history
+     */
+    public synchronized void load(final int record, final OpponentModel model, final ActionLikelihood likelihood) {
+	if (getHands(record) == 0) {
+	    return;
+	}
+	final int offset = model.readFrom(buffer, record + DATA);
+	likelihood.readFrom(buffer, offset);
+    }
+
+    /**
+     * Writes the counters of the models in place, and counts one more hand
+     */
+    public synchronized void save(final int record, final OpponentModel model, final ActionLikelihood likelihood) {
+	final int offset = model.writeTo(buffer, record + DATA);
+	likelihood.writeTo(buffer, offset);
+	buffer.putInt(record + HANDS, buffer.getInt(record + HANDS) + 1);
+    }
+
+    /**
+     * @return the amount of hands stored for this record
+     */
+    public synchronized int getHands(final int record) {
+	return buffer.getInt(record + HANDS);
+    }
+
+    /**
+     * @return the amount of opponents in the store
+     */
+    public synchronized int size() {
+	return used;
+    }
+
+    /**
+     * Writes the changed pages to disk
+     */
+    public void flush() {
+	buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+	flush();
+	file.close();
+    }
+
+    private boolean nameEquals(final int record, final byte[] name) {
+	if (buffer.get(record + NAME) != name.length) {
+	    return false;
+	}
+	for (int i = 0; i < name.length; i++) {
+	    if (buffer.get(record + NAME + 1 + i) != name[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    private static int hash(final byte[] name) {
+	int h = 0x811C9DC5; // FNV-1a
+	for (byte b : name) {
+	    h = (h ^ (b & 0xFF)) * 0x01000193;
+	}
+	return h;
+    }
+}
@@ -0,0 +1,150 @@
+package be.stilkin.preflop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+import be.stilkin.EquityCalculator;
+import be.stilkin.log.Log;
+import be.stilkin.range.Combos;
+import be.stilkin.range.HandClasses;
+
+/**
+ * The heads-up all-in equity of every hand class against every other (169 x 169), and how many card combinations every pair of classes has without a shared card (the chance of
+ * meeting each other, card removal included). Computing it takes seconds (Monte Carlo over every pair of combos, on all cores), so it is stored in a file and read back.
+ *
+ * @author stilkin
+ */
+public final class PreflopEquity {
+    public static final String DEFAULT_FILE = "preflop.equity";
+    private static final int MAGIC = 0x50455131; // PEQ1
+    private static final int N = HandClasses.CLASS_COUNT;
+    private final float[] equity;
+    private final int[] pairs;
+
+    private PreflopEquity(final float[] equity, final int[] pairs) {
+	this.equity = equity;
+	this.pairs = pairs;
+    }
+
+    /**
+     * @return the chance that class a wins against class b, ties counting half
+     */
+    public float get(final int a, final int b) {
+	return equity[a * N + b];
+    }
+
+    /**
+     * @return the amount of (combo of a, combo of b) pairs without a shared card
+     */
+    public int getPairs(final int a, final int b) {
+	return pairs[a * N + b];
+    }
+
+    /**
+     * @return the whole matrix, row a column b (do not modify)
+     */
+    public float[] getMatrix() {
+	return equity;
+    }
+
+    /**
+     * @return the combo pair counts, indexed like the matrix (do not modify)
+     */
+    public int[] getPairMatrix() {
+	return pairs;
+    }
+
+    /**
+     * Reads the matrix from the file, or computes and writes it if the file is not there
+     *
+     * @param samples
+     *            deals per pair of classes, when it has to be computed
+     */
+    public static PreflopEquity load(final File file, final int samples) throws IOException {
+	if (file.isFile()) {
+	    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+		if (in.readInt() != MAGIC) {
+		    throw new IOException("Not an equity file: " + file);
+		}
+		final float[] equity = new float[N * N];
+		final int[] pairs = new int[N * N];
+		for (int i = 0; i < equity.length; i++) {
+		    equity[i] = in.readFloat();
+		    pairs[i] = in.readInt();
+		}
+		return new PreflopEquity(equity, pairs);
+	    }
+	}
+	final long start = System.nanoTime();
+	final PreflopEquity computed = compute(samples);
+	Log.info("Computed the pre-flop equity matrix in {} ms", (System.nanoTime() - start) / 1000000);
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+	    out.writeInt(MAGIC);
+	    for (int i = 0; i < computed.equity.length; i++) {
+		out.writeFloat(computed.equity[i]);
+		out.writeInt(computed.pairs[i]);
+	    }
+	}
+	return computed;
+    }
+
+    /**
+     * Plays every pair of classes: all combo pairs without a shared card, with random boards, about the given amount of deals per pair of classes. Rows run in parallel, each
+     * with its own seeded generator, so the result does not depend on the amount of cores.
+     */
+    public static PreflopEquity compute(final int samples) {
+	final int[][] members = new int[N][];
+	final int[] count = new int[N];
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    count[Combos.handClass(c)]++;
+	}
+	for (int k = 0; k < N; k++) {
+	    members[k] = new int[count[k]];
+	    count[k] = 0;
+	}
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    final int k = Combos.handClass(c);
+	    members[k][count[k]++] = c;
+	}
+
+	final float[] equity = new float[N * N];
+	final int[] pairs = new int[N * N];
+	IntStream.range(0, N).parallel().forEach(a -> {
+	    final EquityCalculator calculator = new EquityCalculator(0x5EED + a);
+	    for (int b = a; b < N; b++) {
+		int n = 0;
+		for (int ca : members[a]) {
+		    for (int cb : members[b]) {
+			n += (Combos.mask(ca) & Combos.mask(cb)) == 0 ? 1 : 0;
+		    }
+		}
+		pairs[a * N + b] = n;
+		pairs[b * N + a] = n;
+		if (n == 0 || a == b) { // a class against itself is even, and e.g. AKs cannot meet AKs
+		    equity[a * N + b] = 0.5f;
+		    equity[b * N + a] = 0.5f;
+		    continue;
+		}
+		final int perPair = Math.max(1, (samples + n - 1) / n);
+		double wins = 0;
+		for (int ca : members[a]) {
+		    for (int cb : members[b]) {
+			if ((Combos.mask(ca) & Combos.mask(cb)) == 0) {
+			    wins += calculator.vsHand(Combos.mask(ca), Combos.mask(cb), 0, perPair);
+			}
+		    }
+		}
+		equity[a * N + b] = (float) (wins / n);
+		equity[b * N + a] = (float) (1 - wins / n);
+	    }
+	});
+	return new PreflopEquity(equity, pairs);
+    }
+}
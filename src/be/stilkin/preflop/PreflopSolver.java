@@ -0,0 +1,363 @@
+package be.stilkin.preflop;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import be.stilkin.range.HandClasses;
+
+/**
+ * Solves the heads-up pre-flop game of a PreflopTree with CFR+ over the 169 hand classes: regret matching with regrets floored at 0, alternating updates and a linearly weighted
+ * average strategy. Every iteration walks the tree once per player with a vector of 169 reach probabilities for the opponent, so a terminal costs one pass over the equity
+ * matrix per class.
+ *
+ * The classes of the updating player do not influence each other within a pass, so every thread takes its own slice of the classes and only writes the regrets of those: no
+ * locks, no atomics, and the same result on any amount of threads.
+ *
+ * Usage: java be.stilkin.preflop.PreflopSolver [-stack bb] [-sizes 2.5,4] [-raises n] [-iterations n] [-threads n] [-equity file] [-out file]
+ *
+ * @author stilkin
+ */
+public class PreflopSolver {
+    private static final int N = HandClasses.CLASS_COUNT;
+    private final PreflopTree tree;
+    private final double[] pairs; // combo pairs per class pair, the chance weights
+    private final double[] showdown; // pairs * (2 * equity - 1)
+    private final double totalPairs;
+    private final int[] offset; // start of every decision node in regret and average, class major
+    private final double[] regret;
+    private final double[] average;
+    private final int depth;
+    private final int maxActions;
+    private final ExecutorService pool;
+    private final int threads;
+    private int iteration;
+
+    public PreflopSolver(final PreflopTree tree, final PreflopEquity equity, final int threads) {
+	this.tree = tree;
+	this.threads = threads;
+	pairs = new double[N * N];
+	showdown = new double[N * N];
+	double total = 0;
+	for (int i = 0; i < N * N; i++) {
+	    pairs[i] = equity.getPairMatrix()[i];
+	    showdown[i] = pairs[i] * (2.0 * equity.getMatrix()[i] - 1);
+	    total += pairs[i];
+	}
+	totalPairs = total;
+
+	offset = new int[tree.getNodeCount()];
+	int size = 0;
+	int actions = 0;
+	for (int node = 0; node < tree.getNodeCount(); node++) {
+	    offset[node] = size;
+	    size += N * tree.getActionCount(node);
+	    actions = Math.max(actions, tree.getActionCount(node));
+	}
+	regret = new double[size];
+	average = new double[size];
+	maxActions = actions;
+	depth = depth(0) + 1;
+	pool = Executors.newFixedThreadPool(threads, task -> {
+	    final Thread thread = new Thread(task, "cfr");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    }
+
+    private int depth(final int node) {
+	int deepest = 0;
+	for (int a = 0; a < tree.getActionCount(node); a++) {
+	    deepest = Math.max(deepest, 1 + depth(tree.getChild(node, a)));
+	}
+	return deepest;
+    }
+
+    /**
+     * Runs CFR+ iterations, each one pass per player
+     */
+    public void iterate(final int iterations) throws InterruptedException {
+	final List<List<Callable<Void>>> passes = new ArrayList<List<Callable<Void>>>();
+	for (int player = 0; player < 2; player++) {
+	    final List<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+	    for (int t = 0; t < threads; t++) {
+		final Walker walker = new Walker(player, t * N / threads, (t + 1) * N / threads);
+		slices.add(() -> {
+		    walker.train();
+		    return null;
+		});
+	    }
+	    passes.add(slices);
+	}
+	for (int i = 0; i < iterations; i++) {
+	    iteration++;
+	    for (List<Callable<Void>> pass : passes) {
+		for (Future<Void> slice : pool.invokeAll(pass)) {
+		    try {
+			slice.get();
+		    } catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		    }
+		}
+	    }
+	}
+    }
+
+    /**
+     * @return how much a best response wins against the average strategy, averaged over both positions, in mbb/hand (0 at equilibrium)
+     */
+    public double exploitability() {
+	double sum = 0;
+	for (int player = 0; player < 2; player++) {
+	    sum += new Walker(player, 0, N).bestResponse();
+	}
+	return sum / 2 * 1000;
+    }
+
+    /**
+     * @return the average strategy of every decision node, class major: probability of action a for class c at node n = result[offset(n) + c * actions(n) + a]
+     */
+    public PreflopStrategy getStrategy() {
+	final float[] probabilities = new float[average.length];
+	for (int node = 0; node < tree.getNodeCount(); node++) {
+	    final int actions = tree.getActionCount(node);
+	    for (int c = 0; c < N && actions > 0; c++) {
+		final int at = offset[node] + c * actions;
+		double total = 0;
+		for (int a = 0; a < actions; a++) {
+		    total += average[at + a];
+		}
+		for (int a = 0; a < actions; a++) {
+		    probabilities[at + a] = (float) (total > 0 ? average[at + a] / total : 1.0 / actions);
+		}
+	    }
+	}
+	return new PreflopStrategy(tree, probabilities);
+    }
+
+    public int getIterations() {
+	return iteration;
+    }
+
+    public void close() {
+	pool.shutdownNow();
+    }
+
+    /**
+     * One thread's walk over the tree for one player and a slice of his classes, with its own scratch arrays
+     */
+    private final class Walker {
+	private final int player;
+	private final int from;
+	private final int to;
+	private final double[][] oppReach = new double[depth][N];
+	private final double[][] ownReach = new double[depth][N];
+	private final double[][][] values = new double[depth][maxActions][N];
+	private final double[] strategy = new double[maxActions];
+	private final double[] result = new double[N];
+	private boolean bestResponse;
+
+	Walker(final int player, final int from, final int to) {
+	    this.player = player;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	void train() {
+	    bestResponse = false;
+	    walkRoot();
+	}
+
+	/**
+	 * @return the value of a best response for this player in big blinds per hand
+	 */
+	double bestResponse() {
+	    bestResponse = true;
+	    walkRoot();
+	    double sum = 0;
+	    for (int c = from; c < to; c++) {
+		sum += result[c];
+	    }
+	    return sum / totalPairs;
+	}
+
+	private void walkRoot() {
+	    for (int c = 0; c < N; c++) {
+		oppReach[0][c] = 1;
+		ownReach[0][c] = 1;
+	    }
+	    walk(0, 0, result);
+	}
+
+	/**
+	 * Fills out[c] for the classes of this slice with the counterfactual value of the node for this player (weighted by the opponent's reach and the chance weights)
+	 */
+	private void walk(final int node, final int level, final double[] out) {
+	    final int type = tree.getType(node);
+	    final double[] opp = oppReach[level];
+	    if (type == PreflopTree.FOLDED) {
+		final int folder = tree.getActor(node);
+		final double payoff = folder == player ? -tree.getBet(node, player) : tree.getBet(node, 1 - player);
+		for (int c = from; c < to; c++) {
+		    out[c] = payoff * dot(pairs, c, opp);
+		}
+		return;
+	    }
+	    if (type == PreflopTree.SHOWDOWN) {
+		final double bet = tree.getBet(node, player);
+		for (int c = from; c < to; c++) {
+		    out[c] = bet * dot(showdown, c, opp);
+		}
+		return;
+	    }
+
+	    final int actions = tree.getActionCount(node);
+	    final int at = offset[node];
+	    final double[][] childValues = values[level];
+	    if (tree.getActor(node) != player) { // the opponent splits his reach over his actions
+		for (int c = from; c < to; c++) {
+		    out[c] = 0;
+		}
+		final double[] next = oppReach[level + 1];
+		final double[] own = ownReach[level];
+		for (int a = 0; a < actions; a++) {
+		    for (int j = 0; j < N; j++) {
+			next[j] = opp[j] * probability(at, j, actions, a);
+		    }
+		    System.arraycopy(own, from, ownReach[level + 1], from, to - from);
+		    walk(tree.getChild(node, a), level + 1, childValues[a]);
+		    for (int c = from; c < to; c++) {
+			out[c] += childValues[a][c];
+		    }
+		}
+		return;
+	    }
+
+	    // our decision: every action with the same opponent reach (children only write the levels below theirs)
+	    System.arraycopy(opp, 0, oppReach[level + 1], 0, N);
+	    for (int a = 0; a < actions; a++) {
+		for (int c = from; c < to; c++) {
+		    ownReach[level + 1][c] = bestResponse ? 0 : ownReach[level][c] * probability(at, c, actions, a);
+		}
+		walk(tree.getChild(node, a), level + 1, childValues[a]);
+	    }
+	    for (int c = from; c < to; c++) {
+		final int row = at + c * actions;
+		if (bestResponse) {
+		    double best = Double.NEGATIVE_INFINITY;
+		    for (int a = 0; a < actions; a++) {
+			best = Math.max(best, childValues[a][c]);
+		    }
+		    out[c] = best;
+		    continue;
+		}
+		currentStrategy(row, actions);
+		double value = 0;
+		for (int a = 0; a < actions; a++) {
+		    value += strategy[a] * childValues[a][c];
+		}
+		out[c] = value;
+		final double reach = ownReach[level][c];
+		for (int a = 0; a < actions; a++) {
+		    regret[row + a] = Math.max(0, regret[row + a] + childValues[a][c] - value); // CFR+
+		    average[row + a] += iteration * reach * strategy[a];
+		}
+	    }
+	}
+
+	/**
+	 * @return the chance that class c takes action a: the average strategy for a best response, else the current one
+	 */
+	private double probability(final int at, final int c, final int actions, final int a) {
+	    final int row = at + c * actions;
+	    final double[] table = bestResponse ? average : regret;
+	    double total = 0;
+	    for (int b = 0; b < actions; b++) {
+		total += table[row + b];
+	    }
+	    return total > 0 ? table[row + a] / total : 1.0 / actions;
+	}
+
+	/**
+	 * Regret matching into the strategy scratch array
+	 */
+	private void currentStrategy(final int row, final int actions) {
+	    double total = 0;
+	    for (int a = 0; a < actions; a++) {
+		total += regret[row + a];
+	    }
+	    for (int a = 0; a < actions; a++) {
+		strategy[a] = total > 0 ? regret[row + a] / total : 1.0 / actions;
+	    }
+	}
+
+	private double dot(final double[] matrix, final int c, final double[] reach) {
+	    final int row = c * N;
+	    double sum = 0;
+	    for (int j = 0; j < N; j++) {
+		sum += matrix[row + j] * reach[j];
+	    }
+	    return sum;
+	}
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	float stack = 20;
+	float[] sizes = { 2.5f, 4f };
+	int raises = 4;
+	int iterations = 1000;
+	int threads = Runtime.getRuntime().availableProcessors();
+	String equityFile = PreflopEquity.DEFAULT_FILE;
+	String out = null;
+	for (int a = 0; a + 1 < args.length; a += 2) {
+	    if (args[a].equals("-stack")) {
+		stack = Float.parseFloat(args[a + 1]);
+	    } else if (args[a].equals("-sizes")) {
+		final String[] parts = args[a + 1].split(",");
+		sizes = new float[parts.length];
+		for (int s = 0; s < parts.length; s++) {
+		    sizes[s] = Float.parseFloat(parts[s]);
+		}
+	    } else if (args[a].equals("-raises")) {
+		raises = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-iterations")) {
+		iterations = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-threads")) {
+		threads = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-equity")) {
+		equityFile = args[a + 1];
+	    } else if (args[a].equals("-out")) {
+		out = args[a + 1];
+	    } else {
+		System.err.println("Usage: PreflopSolver [-stack bb] [-sizes 2.5,4] [-raises n] [-iterations n] [-threads n] [-equity file] [-out file]");
+		return;
+	    }
+	}
+	if (out == null) {
+	    out = String.format(Locale.ROOT, "preflop-%.0f.strategy", stack);
+	}
+
+	final PreflopEquity equity = PreflopEquity.load(new File(equityFile), 2000);
+	final PreflopTree tree = new PreflopTree(stack, sizes, raises);
+	final PreflopSolver solver = new PreflopSolver(tree, equity, threads);
+	final long start = System.nanoTime();
+	final int report = Math.max(1, iterations / 10);
+	for (int done = 0; done < iterations; done += report) {
+	    solver.iterate(Math.min(report, iterations - done));
+	    System.err.printf(Locale.ROOT, "%d iterations, exploitability %.2f mbb/hand, %.1f s\n", solver.getIterations(), solver.exploitability(),
+		    (System.nanoTime() - start) / 1e9);
+	}
+	solver.close();
+	final PreflopStrategy strategy = solver.getStrategy();
+	strategy.write(new File(out));
+	System.err.printf(Locale.ROOT, "%d nodes, strategy written to %s\n", tree.getNodeCount(), out);
+	System.out.print(strategy.describeRoot());
+    }
+}
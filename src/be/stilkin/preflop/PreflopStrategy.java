@@ -0,0 +1,164 @@
+package be.stilkin.preflop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import be.stilkin.range.HandClasses;
+
+/**
+ * A solved pre-flop strategy: for every decision node of the tree and every hand class, the chance of every action as a byte (1/255 steps). The file holds the tree settings
+ * (stack, sizes, raise cap), the tree is rebuilt from those, so a 20 BB strategy with two sizes takes a few tens of kilobytes. Reading a probability is one array read.
+ *
+ * During play the bot finds the node that matches the real betting (findNode) and samples an action there.
+ *
+ * @author stilkin
+ */
+public final class PreflopStrategy {
+    private static final int MAGIC = 0x50465331; // PFS1
+    private static final int N = HandClasses.CLASS_COUNT;
+    private final PreflopTree tree;
+    private final int[] offset;
+    private final byte[] table;
+
+    /**
+     * @param probabilities
+     *            per decision node, class major, like PreflopSolver lays them out
+     */
+    PreflopStrategy(final PreflopTree tree, final float[] probabilities) {
+	this(tree, new byte[probabilities.length]);
+	for (int i = 0; i < probabilities.length; i++) {
+	    table[i] = (byte) Math.round(probabilities[i] * 255);
+	}
+    }
+
+    private PreflopStrategy(final PreflopTree tree, final byte[] table) {
+	this.tree = tree;
+	this.table = table;
+	this.offset = new int[tree.getNodeCount()];
+	int size = 0;
+	for (int node = 0; node < tree.getNodeCount(); node++) {
+	    offset[node] = size;
+	    size += N * tree.getActionCount(node);
+	}
+	if (size != table.length) {
+	    throw new IllegalArgumentException("Strategy does not fit the tree: " + table.length + " entries for " + size);
+	}
+    }
+
+    public PreflopTree getTree() {
+	return tree;
+    }
+
+    /**
+     * @return the chance (0 - 1) that a hand of this class takes the action at the node
+     */
+    public float getProbability(final int node, final int handClass, final int action) {
+	return (table[offset[node] + handClass * tree.getActionCount(node) + action] & 0xFF) / 255f;
+    }
+
+    /**
+     * @param random
+     *            uniform in [0, 1)
+     * @return an action drawn from the strategy of the class at the node
+     */
+    public int sample(final int node, final int handClass, final double random) {
+	final int actions = tree.getActionCount(node);
+	final int row = offset[node] + handClass * actions;
+	int total = 0;
+	for (int a = 0; a < actions; a++) {
+	    total += table[row + a] & 0xFF;
+	}
+	double left = random * total;
+	for (int a = 0; a < actions - 1; a++) {
+	    left -= table[row + a] & 0xFF;
+	    if (left < 0) {
+		return a;
+	    }
+	}
+	return actions - 1;
+    }
+
+    /**
+     * Finds the decision node closest to the real situation: same player to act, same amount of raises, and the nearest bets (relative difference, so 9 against 10 BB counts as
+     * close as 0.9 against 1)
+     *
+     * @param player
+     *            PreflopTree.BUTTON or BIG_BLIND
+     * @param myBet
+     *            what the player to act has put in, in big blinds
+     * @param otherBet
+     *            what the other player has put in
+     * @return the node, or -1 if the tree has no node with that many raises
+     */
+    public int findNode(final int player, final int raises, final float myBet, final float otherBet) {
+	int best = -1;
+	double bestDistance = Double.MAX_VALUE;
+	for (int node = 0; node < tree.getNodeCount(); node++) {
+	    if (tree.getType(node) != PreflopTree.DECISION || tree.getActor(node) != player || tree.getRaises(node) != raises) {
+		continue;
+	    }
+	    final double distance = Math.abs(Math.log(myBet / tree.getBet(node, player))) + Math.abs(Math.log(otherBet / tree.getBet(node, 1 - player)));
+	    if (distance < bestDistance) {
+		bestDistance = distance;
+		best = node;
+	    }
+	}
+	return best;
+    }
+
+    public void write(final File file) throws IOException {
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+	    out.writeInt(MAGIC);
+	    out.writeFloat(tree.getStack());
+	    final float[] sizes = tree.getSizes();
+	    out.writeInt(sizes.length);
+	    for (float size : sizes) {
+		out.writeFloat(size);
+	    }
+	    out.writeInt(tree.getMaxRaises());
+	    out.writeInt(table.length);
+	    out.write(table);
+	}
+    }
+
+    public static PreflopStrategy read(final File file) throws IOException {
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+	    if (in.readInt() != MAGIC) {
+		throw new IOException("Not a pre-flop strategy: " + file);
+	    }
+	    final float stack = in.readFloat();
+	    final float[] sizes = new float[in.readInt()];
+	    for (int s = 0; s < sizes.length; s++) {
+		sizes[s] = in.readFloat();
+	    }
+	    final int raises = in.readInt();
+	    final byte[] table = new byte[in.readInt()];
+	    in.readFully(table);
+	    return new PreflopStrategy(new PreflopTree(stack, sizes, raises), table);
+	}
+    }
+
+    /**
+     * The opening strategy of the button, one line per class, e.g. "AKs fold 0.00 call 0.10 2.5 0.90 all-in 0.00"
+     */
+    public String describeRoot() {
+	final StringBuilder sb = new StringBuilder();
+	for (int c = N - 1; c >= 0; c--) {
+	    sb.append(String.format(Locale.ROOT, "%-4s", HandClasses.name(c)));
+	    for (int a = 0; a < tree.getActionCount(0); a++) {
+		final int kind = tree.getActionKind(0, a);
+		final String name = kind == PreflopTree.FOLD ? "fold" : kind == PreflopTree.CALL ? "call" : kind == PreflopTree.ALL_IN ? "all-in" : "" + tree.getRaiseTo(0, a);
+		sb.append(String.format(Locale.ROOT, " %s %.2f", name, getProbability(0, c, a)));
+	    }
+	    sb.append('\n');
+	}
+	return sb.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package be.stilkin.preflop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The abstract heads-up pre-flop betting tree, in big blinds: the button posts 0.5 and acts first, the big blind posts 1. At every decision a player can fold (when he faces a
+ * bet), check or call, raise to one of the configured multiples of the current bet (while the raise cap is not reached and the raise is smaller than the stack) and go
+ * all-in. A call, or a check by the big blind, ends the pre-flop game: the hand goes to showdown with the pre-flop equity of both classes (the post-flop play is not modelled).
+ *
+ * Nodes are numbered depth first from the root (0), decision nodes and terminals alike, and stored in flat arrays.
+ *
+ * @author stilkin
+ */
+public final class PreflopTree {
+    public static final int BUTTON = 0;
+    public static final int BIG_BLIND = 1;
+    public static final int FOLD = 0;
+    public static final int CALL = 1; // or check
+    public static final int RAISE = 2;
+    public static final int ALL_IN = 3;
+    /** Terminal types */
+    public static final int DECISION = -1;
+    public static final int FOLDED = 0;
+    public static final int SHOWDOWN = 1;
+
+    private final float stack;
+    private final float[] sizes;
+    private final int maxRaises;
+    private int[] type = new int[16];
+    private int[] actor = new int[16];
+    private int[] raises = new int[16];
+    private float[] bet0 = new float[16];
+    private float[] bet1 = new float[16];
+    private int[][] children = new int[16][];
+    private int[][] actionKinds = new int[16][];
+    private float[][] raiseTo = new float[16][];
+    private int count;
+
+    /**
+     * @param stack
+     *            effective stack in big blinds
+     * @param sizes
+     *            raise sizes as multiples of the bet we raise, e.g. 2.5 and 4
+     * @param maxRaises
+     *            raises after which only fold, call and all-in remain
+     */
+    public PreflopTree(final float stack, final float[] sizes, final int maxRaises) {
+	this.stack = stack;
+	this.sizes = sizes.clone();
+	this.maxRaises = maxRaises;
+	build(BUTTON, 0.5f, 1f, 0, false);
+    }
+
+    /**
+     * Adds the node and everything below it
+     *
+     * @param acted
+     *            true if the player to act has acted before (the big blind after a limp has not)
+     * @return the node number
+     */
+    private int build(final int player, final float myBet, final float otherBet, final int raiseCount, final boolean acted) {
+	final int node = add(DECISION, player, raiseCount, player == BUTTON ? myBet : otherBet, player == BUTTON ? otherBet : myBet);
+	final List<Integer> kinds = new ArrayList<Integer>();
+	final List<Float> targets = new ArrayList<Float>();
+	if (otherBet > myBet) {
+	    kinds.add(FOLD);
+	    targets.add(0f);
+	}
+	kinds.add(CALL);
+	targets.add(otherBet);
+	if (otherBet < stack) {
+	    if (raiseCount < maxRaises) {
+		for (float size : sizes) {
+		    final float to = size * otherBet;
+		    if (to > otherBet && to < stack && !targets.contains(to)) {
+			kinds.add(RAISE);
+			targets.add(to);
+		    }
+		}
+	    }
+	    kinds.add(ALL_IN);
+	    targets.add(stack);
+	}
+
+	final int actions = kinds.size();
+	children[node] = new int[actions];
+	actionKinds[node] = new int[actions];
+	raiseTo[node] = new float[actions];
+	for (int a = 0; a < actions; a++) {
+	    final int kind = kinds.get(a);
+	    final float to = targets.get(a);
+	    actionKinds[node][a] = kind;
+	    raiseTo[node][a] = to;
+	    final int child;
+	    if (kind == FOLD) {
+		child = add(FOLDED, player, raiseCount, player == BUTTON ? myBet : otherBet, player == BUTTON ? otherBet : myBet);
+	    } else if (kind == CALL) {
+		if (!acted && player == BUTTON && raiseCount == 0) { // a limp, the big blind still has his option
+		    child = build(1 - player, otherBet, otherBet, raiseCount, false);
+		} else {
+		    child = add(SHOWDOWN, player, raiseCount, otherBet, otherBet);
+		}
+	    } else {
+		child = build(1 - player, otherBet, to, raiseCount + 1, true);
+	    }
+	    children[node][a] = child;
+	}
+	return node;
+    }
+
+    private int add(final int nodeType, final int player, final int raiseCount, final float button, final float bigBlind) {
+	if (count == type.length) {
+	    final int grown = count * 2;
+	    type = Arrays.copyOf(type, grown);
+	    actor = Arrays.copyOf(actor, grown);
+	    raises = Arrays.copyOf(raises, grown);
+	    bet0 = Arrays.copyOf(bet0, grown);
+	    bet1 = Arrays.copyOf(bet1, grown);
+	    children = Arrays.copyOf(children, grown);
+	    actionKinds = Arrays.copyOf(actionKinds, grown);
+	    raiseTo = Arrays.copyOf(raiseTo, grown);
+	}
+	type[count] = nodeType;
+	actor[count] = player;
+	raises[count] = raiseCount;
+	bet0[count] = button;
+	bet1[count] = bigBlind;
+	return count++;
+    }
+
+    public int getNodeCount() {
+	return count;
+    }
+
+    /**
+     * @return DECISION, FOLDED or SHOWDOWN
+     */
+    public int getType(final int node) {
+	return type[node];
+    }
+
+    /**
+     * @return the player to act, or the player who folded
+     */
+    public int getActor(final int node) {
+	return actor[node];
+    }
+
+    /**
+     * @return the raises made before this node
+     */
+    public int getRaises(final int node) {
+	return raises[node];
+    }
+
+    /**
+     * @return what a player has put in, in big blinds
+     */
+    public float getBet(final int node, final int player) {
+	return player == BUTTON ? bet0[node] : bet1[node];
+    }
+
+    public int getActionCount(final int node) {
+	return children[node] == null ? 0 : children[node].length;
+    }
+
+    public int getChild(final int node, final int action) {
+	return children[node][action];
+    }
+
+    /**
+     * @return FOLD, CALL, RAISE or ALL_IN
+     */
+    public int getActionKind(final int node, final int action) {
+	return actionKinds[node][action];
+    }
+
+    /**
+     * @return the total bet after the action, in big blinds
+     */
+    public float getRaiseTo(final int node, final int action) {
+	return raiseTo[node][action];
+    }
+
+    public float getStack() {
+	return stack;
+    }
+
+    public float[] getSizes() {
+	return sizes.clone();
+    }
+
+    public int getMaxRaises() {
+	return maxRaises;
+    }
+}
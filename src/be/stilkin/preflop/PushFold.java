@@ -0,0 +1,71 @@
+package be.stilkin.preflop;
+
+/**
+ * Heads-up push/fold charts for short stacks: the Nash equilibrium of the game where the button can only shove or fold and the big blind can only call or fold, solved by
+ * PushFoldSolver for every effective stack from 0.5 to 20 big blinds in steps of 0.5. Every class has one number per chart, the largest stack at which it shoves (or calls),
+ * so a lookup is one array read. Classes are indexed like HandClasses.
+ *
+ * @author stilkin
+ */
+public final class PushFold {
+    public static final float MAX_STACK = 20;
+    public static final float STEP = 0.5f;
+
+    /**
+     * The largest effective stack (big blinds) at which the button shoves the class
+     */
+    private static final float[] PUSH = {
+	    20.0f, 1.0f, 1.0f, 1.5f, 1.5f, 1.5f, 1.5f, 2.0f, 2.5f, 4.5f, 7.0f, 11.5f, 20.0f,
+	    1.5f, 20.0f, 1.5f, 1.5f, 1.5f, 1.5f, 1.5f, 2.5f, 3.0f, 5.0f, 7.5f, 12.0f, 20.0f,
+	    1.5f, 2.0f, 20.0f, 2.0f, 2.0f, 2.0f, 2.0f, 2.5f, 3.5f, 5.0f, 7.5f, 13.0f, 20.0f,
+	    2.0f, 2.0f, 20.0f, 20.0f, 2.0f, 2.5f, 3.0f, 3.5f, 4.0f, 6.0f, 8.5f, 14.0f, 20.0f,
+	    2.0f, 2.0f, 16.0f, 20.0f, 20.0f, 10.5f, 7.0f, 4.5f, 5.5f, 6.5f, 9.5f, 15.0f, 20.0f,
+	    2.0f, 2.5f, 13.5f, 20.0f, 20.0f, 20.0f, 14.5f, 10.5f, 8.5f, 8.5f, 10.0f, 16.0f, 20.0f,
+	    2.5f, 2.5f, 7.5f, 18.5f, 20.0f, 20.0f, 20.0f, 20.0f, 17.0f, 12.0f, 13.0f, 17.5f, 20.0f,
+	    3.0f, 4.5f, 6.5f, 14.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    6.5f, 7.5f, 10.5f, 11.5f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    8.5f, 10.5f, 13.5f, 14.5f, 18.5f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    12.5f, 13.5f, 16.0f, 19.5f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    19.0f, 19.5f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+    };
+
+    /**
+     * The largest effective stack (big blinds) at which the big blind calls a shove with the class
+     */
+    private static final float[] CALL = {
+	    15.0f, 2.5f, 2.5f, 2.5f, 2.5f, 2.5f, 2.5f, 3.0f, 3.5f, 4.0f, 5.5f, 8.0f, 15.5f,
+	    3.0f, 20.0f, 3.0f, 3.0f, 2.5f, 2.5f, 2.5f, 3.0f, 3.5f, 4.5f, 5.5f, 8.5f, 16.5f,
+	    3.0f, 3.5f, 20.0f, 3.5f, 3.0f, 3.0f, 3.0f, 3.0f, 3.5f, 4.5f, 6.0f, 9.0f, 18.0f,
+	    3.5f, 4.0f, 4.5f, 20.0f, 3.5f, 3.5f, 3.5f, 3.5f, 4.0f, 5.0f, 6.5f, 10.0f, 20.0f,
+	    3.0f, 3.5f, 4.0f, 5.0f, 20.0f, 4.0f, 4.0f, 4.0f, 4.5f, 5.0f, 7.0f, 11.0f, 20.0f,
+	    3.0f, 3.5f, 4.0f, 4.5f, 5.0f, 20.0f, 4.5f, 5.0f, 5.5f, 6.0f, 8.0f, 12.0f, 20.0f,
+	    3.5f, 3.5f, 4.0f, 4.5f, 5.5f, 6.5f, 20.0f, 6.0f, 6.5f, 7.5f, 9.5f, 13.5f, 20.0f,
+	    3.5f, 4.0f, 4.0f, 4.5f, 5.5f, 6.5f, 8.0f, 20.0f, 8.0f, 9.5f, 11.5f, 17.0f, 20.0f,
+	    4.5f, 4.5f, 5.0f, 5.0f, 6.0f, 7.0f, 9.0f, 11.0f, 20.0f, 12.5f, 15.0f, 20.0f, 20.0f,
+	    5.5f, 5.5f, 6.0f, 6.5f, 7.0f, 8.5f, 10.5f, 13.0f, 18.0f, 20.0f, 19.5f, 20.0f, 20.0f,
+	    7.0f, 7.5f, 8.5f, 8.5f, 9.5f, 10.5f, 13.0f, 16.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    10.5f, 11.5f, 12.0f, 13.0f, 14.0f, 15.0f, 17.5f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+	    20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f, 20.0f,
+    };
+
+    private PushFold() {}
+
+    /**
+     * @param stack
+     *            effective stack in big blinds, blinds included
+     * @return true if the button shoves this class
+     */
+    public static boolean push(final int handClass, final float stack) {
+	return stack <= PUSH[handClass];
+    }
+
+    /**
+     * @param stack
+     *            effective stack in big blinds, blinds included
+     * @return true if the big blind calls a shove with this class
+     */
+    public static boolean call(final int handClass, final float stack) {
+	return stack <= CALL[handClass];
+    }
+}
@@ -0,0 +1,222 @@
+package be.stilkin.preflop;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import be.stilkin.range.HandClasses;
+
+/**
+ * Solves the heads-up push/fold game for one effective stack: the button shoves or folds, the big blind calls or folds, and a call goes to showdown. CFR+ over the 169 classes
+ * on both sides, with the class-vs-class equity and combo counts (card removal included) of PreflopEquity.
+ *
+ * The main method solves every stack from STEP to PushFold.MAX_STACK and prints the charts of PushFold as Java source. The charts in PushFold come from an equity matrix with
+ * 50000 deals per pair of classes (-samples 50000).
+ *
+ * @author stilkin
+ */
+public class PushFoldSolver {
+    private static final int N = HandClasses.CLASS_COUNT;
+    private final float stack;
+    private final float[] equity;
+    private final int[] pairs;
+    private final double[] weight = new double[N]; // combos of the other player per class
+    private final double[] pushRegret = new double[N];
+    private final double[] pushFoldRegret = new double[N];
+    private final double[] callRegret = new double[N];
+    private final double[] callFoldRegret = new double[N];
+    private final double[] push = new double[N]; // current strategies
+    private final double[] call = new double[N];
+    private final double[] pushAverage = new double[N];
+    private final double[] callAverage = new double[N];
+    private int iteration;
+
+    /**
+     * @param stack
+     *            effective stack in big blinds, blinds included
+     */
+    public PushFoldSolver(final PreflopEquity equity, final float stack) {
+	this.stack = stack;
+	this.equity = equity.getMatrix();
+	this.pairs = equity.getPairMatrix();
+	for (int c = 0; c < N; c++) {
+	    for (int o = 0; o < N; o++) {
+		weight[c] += pairs[c * N + o];
+	    }
+	    push[c] = 0.5;
+	    call[c] = 0.5;
+	}
+    }
+
+    public void iterate(final int iterations) {
+	for (int i = 0; i < iterations; i++) {
+	    iteration++;
+	    updateButton();
+	    updateBigBlind();
+	}
+    }
+
+    /**
+     * @return the button's value of shoving class a against the given calling strategy, summed over the big blind's combos
+     */
+    private double pushValue(final int a, final double[] calling) {
+	double value = 0;
+	for (int b = 0; b < N; b++) {
+	    final int w = pairs[a * N + b];
+	    value += w * (calling[b] * stack * (2 * equity[a * N + b] - 1) + (1 - calling[b]));
+	}
+	return value;
+    }
+
+    /**
+     * @return the big blind's value of calling with class b against the given shoving strategy, and in fold the value of folding
+     */
+    private double callValue(final int b, final double[] shoving, final double[] fold) {
+	double value = 0;
+	double folded = 0;
+	for (int a = 0; a < N; a++) {
+	    final double reach = pairs[a * N + b] * shoving[a];
+	    value += reach * stack * (2 * equity[b * N + a] - 1);
+	    folded -= reach;
+	}
+	fold[0] = folded;
+	return value;
+    }
+
+    private void updateButton() {
+	for (int a = 0; a < N; a++) {
+	    final double pushing = pushValue(a, call);
+	    final double folding = -0.5 * weight[a];
+	    final double current = push[a] * pushing + (1 - push[a]) * folding;
+	    pushRegret[a] = Math.max(0, pushRegret[a] + pushing - current);
+	    pushFoldRegret[a] = Math.max(0, pushFoldRegret[a] + folding - current);
+	    push[a] = strategy(pushRegret[a], pushFoldRegret[a]);
+	    pushAverage[a] += iteration * push[a];
+	}
+    }
+
+    private void updateBigBlind() {
+	final double[] fold = new double[1];
+	for (int b = 0; b < N; b++) {
+	    final double calling = callValue(b, push, fold);
+	    final double current = call[b] * calling + (1 - call[b]) * fold[0];
+	    callRegret[b] = Math.max(0, callRegret[b] + calling - current);
+	    callFoldRegret[b] = Math.max(0, callFoldRegret[b] + fold[0] - current);
+	    call[b] = strategy(callRegret[b], callFoldRegret[b]);
+	    callAverage[b] += iteration * call[b];
+	}
+    }
+
+    private static double strategy(final double act, final double fold) {
+	return act + fold > 0 ? act / (act + fold) : 0.5;
+    }
+
+    /**
+     * @return the average chance that the button shoves, per class
+     */
+    public double[] getPush() {
+	return normalized(pushAverage);
+    }
+
+    /**
+     * @return the average chance that the big blind calls a shove, per class
+     */
+    public double[] getCall() {
+	return normalized(callAverage);
+    }
+
+    private double[] normalized(final double[] average) {
+	final double[] result = new double[N];
+	final double total = iteration * (iteration + 1) / 2.0;
+	for (int c = 0; c < N; c++) {
+	    result[c] = total > 0 ? average[c] / total : 0.5;
+	}
+	return result;
+    }
+
+    /**
+     * @return how much a best response wins against the average strategies, averaged over both positions, in mbb/hand (0 at equilibrium)
+     */
+    public double exploitability() {
+	final double[] shoving = getPush();
+	final double[] calling = getCall();
+	final double[] fold = new double[1];
+	double total = 0;
+	double button = 0; // the button's best response against the average calls
+	for (int a = 0; a < N; a++) {
+	    final double w = weight[a];
+	    total += w;
+	    button += Math.max(pushValue(a, calling), -0.5 * w);
+	}
+	double bigBlind = 0; // the big blind's best response against the average shoves, the blind he loses when the button folds included
+	for (int b = 0; b < N; b++) {
+	    bigBlind += Math.max(callValue(b, shoving, fold), fold[0]);
+	    for (int a = 0; a < N; a++) {
+		bigBlind += pairs[a * N + b] * (1 - shoving[a]) * 0.5;
+	    }
+	}
+	return (button + bigBlind) / total / 2 * 1000;
+    }
+
+    /**
+     * For every class the largest stack at which the chance is at least one half at every solved stack up to it (0 if not even at the smallest)
+     */
+    private static float[] chart(final double[][] chances, final float[] stacks) {
+	final float[] limit = new float[N];
+	for (int c = 0; c < N; c++) {
+	    for (int s = 0; s < stacks.length && chances[s][c] >= 0.5; s++) {
+		limit[c] = stacks[s];
+	    }
+	}
+	return limit;
+    }
+
+    private static void print(final String name, final String comment, final float[] limit) {
+	System.out.println("    /**");
+	System.out.println("     * " + comment);
+	System.out.println("     */");
+	System.out.println("    private static final float[] " + name + " = {");
+	for (int row = 0; row < 13; row++) {
+	    final StringBuilder sb = new StringBuilder("\t   ");
+	    for (int col = 0; col < 13; col++) {
+		sb.append(String.format(Locale.ROOT, " %.1ff,", limit[row * 13 + col]));
+	    }
+	    System.out.println(sb);
+	}
+	System.out.println("    };");
+    }
+
+    public static void main(String[] args) throws IOException {
+	int iterations = 2000;
+	int samples = 2000;
+	String equityFile = PreflopEquity.DEFAULT_FILE;
+	for (int a = 0; a + 1 < args.length; a += 2) {
+	    if (args[a].equals("-iterations")) {
+		iterations = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-samples")) {
+		samples = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-equity")) {
+		equityFile = args[a + 1];
+	    } else {
+		System.err.println("Usage: PushFoldSolver [-iterations n] [-samples n] [-equity file]");
+		return;
+	    }
+	}
+
+	final PreflopEquity equity = PreflopEquity.load(new File(equityFile), samples);
+	final int count = Math.round(PushFold.MAX_STACK / PushFold.STEP);
+	final float[] stacks = new float[count];
+	final double[][] push = new double[count][];
+	final double[][] call = new double[count][];
+	for (int s = 0; s < count; s++) {
+	    stacks[s] = (s + 1) * PushFold.STEP;
+	    final PushFoldSolver solver = new PushFoldSolver(equity, stacks[s]);
+	    solver.iterate(iterations);
+	    push[s] = solver.getPush();
+	    call[s] = solver.getCall();
+	    System.err.printf(Locale.ROOT, "%.1f BB, exploitability %.3f mbb/hand\n", stacks[s], solver.exploitability());
+	}
+	print("PUSH", "The largest effective stack (big blinds) at which the button shoves the class", chart(push, stacks));
+	print("CALL", "The largest effective stack (big blinds) at which the big blind calls a shove with the class", chart(call, stacks));
+    }
+}
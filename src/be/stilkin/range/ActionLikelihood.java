@@ -0,0 +1,91 @@
+package be.stilkin.range;
+
+import java.nio.ByteBuffer;
+
+import be.stilkin.opponent.OpponentModel;
+
+/**
+ * How likely the opponent takes each action with a hand of a given strength bucket, per street. It starts from a prior (strong hands raise, weak hands fold) and learns from the
+ * hands the opponent shows down: every action he took in such a hand is counted for the bucket his cards had on that street. Note that we only ever see hands that went to
+ * showdown, so folds are never learned; that is fine, a fold ends the hand and never narrows a range we still need.
+ *
+ * @author stilkin
+ */
+public class ActionLikelihood {
+    public static final int BUCKETS = 8;
+    private static final int ACTIONS = 4;
+    private static final float PRIOR_COUNT = 3f;
+    private final float[][] counts = new float[OpponentModel.STREETS * ACTIONS][BUCKETS];
+    private final float[][] likelihood = new float[OpponentModel.STREETS * ACTIONS][BUCKETS];
+
+    public ActionLikelihood() {
+	for (int street = 0; street < OpponentModel.STREETS; street++) {
+	    for (int b = 0; b < BUCKETS; b++) {
+		final float strength = (b + 0.5f) / BUCKETS;
+		counts[street * ACTIONS + OpponentModel.FOLD][b] = PRIOR_COUNT * 0.6f * (1 - strength) * (1 - strength);
+		counts[street * ACTIONS + OpponentModel.CHECK][b] = PRIOR_COUNT * (0.2f + 0.5f * (1 - strength));
+		counts[street * ACTIONS + OpponentModel.CALL][b] = PRIOR_COUNT * 0.5f;
+		counts[street * ACTIONS + OpponentModel.RAISE][b] = PRIOR_COUNT * (0.05f + strength * strength);
+		update(street, b);
+	    }
+	}
+    }
+
+    /**
+     * Learn from one action of a hand we saw at showdown
+     */
+    public void observe(final int street, final int action, final int bucket) {
+	counts[street * ACTIONS + action][bucket] += 1f;
+	update(street, bucket);
+    }
+
+    /**
+     * @return P(action | bucket) for every bucket on this street (do not modify)
+     */
+    public float[] row(final int street, final int action) {
+	return likelihood[street * ACTIONS + action];
+    }
+
+    /**
+     * Stores the counts at an absolute position, e.g. in a ProfileStore record
+     *
+     * @return the position after the written data
+     */
+    public int writeTo(final ByteBuffer buffer, int offset) {
+	for (float[] row : counts) {
+	    for (int b = 0; b < BUCKETS; b++, offset += 4) {
+		buffer.putFloat(offset, row[b]);
+	    }
+	}
+	return offset;
+    }
+
+    /**
+     * Restores counts written with writeTo
+     *
+     * @return the position after the read data
+     */
+    public int readFrom(final ByteBuffer buffer, int offset) {
+	for (float[] row : counts) {
+	    for (int b = 0; b < BUCKETS; b++, offset += 4) {
+		row[b] = buffer.getFloat(offset);
+	    }
+	}
+	for (int street = 0; street < OpponentModel.STREETS; street++) {
+	    for (int b = 0; b < BUCKETS; b++) {
+		update(street, b);
+	    }
+	}
+	return offset;
+    }
+
+    private void update(final int street, final int bucket) {
+	float total = 0;
+	for (int a = 0; a < ACTIONS; a++) {
+	    total += counts[street * ACTIONS + a][bucket];
+	}
+	for (int a = 0; a < ACTIONS; a++) {
+	    likelihood[street * ACTIONS + a][bucket] = counts[street * ACTIONS + a][bucket] / total;
+	}
+    }
+}
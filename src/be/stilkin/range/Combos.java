@@ -0,0 +1,83 @@
+package be.stilkin.range;
+
+import be.stilkin.CardMasks;
+
+/**
+ * The 1326 possible two-card hands, with lookup tables so a range can be a plain float[1326]. Combo ids are ordered by (first card, second card), first card < second card.
+ *
+ * @author stilkin
+ */
+public final class Combos {
+    public static final int COMBO_COUNT = 1326;
+    private static final int[] FIRST = new int[COMBO_COUNT];
+    private static final int[] SECOND = new int[COMBO_COUNT];
+    private static final long[] MASKS = new long[COMBO_COUNT];
+    private static final int[] CLASSES = new int[COMBO_COUNT];
+    private static final short[] IDS = new short[CardMasks.DECK_SIZE * CardMasks.DECK_SIZE];
+    private static final short[][] WITH_CARD = new short[CardMasks.DECK_SIZE][CardMasks.DECK_SIZE - 1];
+
+    static {
+	final int[] withCardCount = new int[CardMasks.DECK_SIZE];
+	int id = 0;
+	for (int a = 0; a < CardMasks.DECK_SIZE; a++) {
+	    for (int b = a + 1; b < CardMasks.DECK_SIZE; b++) {
+		FIRST[id] = a;
+		SECOND[id] = b;
+		MASKS[id] = CardMasks.bit(a) | CardMasks.bit(b);
+		CLASSES[id] = HandClasses.classOf(a, b);
+		IDS[a * CardMasks.DECK_SIZE + b] = (short) id;
+		IDS[b * CardMasks.DECK_SIZE + a] = (short) id;
+		WITH_CARD[a][withCardCount[a]++] = (short) id;
+		WITH_CARD[b][withCardCount[b]++] = (short) id;
+		id++;
+	    }
+	}
+    }
+
+    private Combos() {}
+
+    /**
+     * @return the combo id of two different cards (indexes 0 - 51, any order)
+     */
+    public static int id(final int cardA, final int cardB) {
+	return IDS[cardA * CardMasks.DECK_SIZE + cardB];
+    }
+
+    /**
+     * @return the combo id of a mask with exactly two cards
+     */
+    public static int id(final long mask) {
+	final int a = CardMasks.index(mask);
+	final int b = CardMasks.index(mask & (mask - 1));
+	return id(a, b);
+    }
+
+    public static int first(final int combo) {
+	return FIRST[combo];
+    }
+
+    public static int second(final int combo) {
+	return SECOND[combo];
+    }
+
+    /**
+     * @return both cards of the combo as a mask
+     */
+    public static long mask(final int combo) {
+	return MASKS[combo];
+    }
+
+    /**
+     * @return the pre-flop class (see HandClasses) of the combo
+     */
+    public static int handClass(final int combo) {
+	return CLASSES[combo];
+    }
+
+    /**
+     * @return the 51 combos that hold this card (do not modify)
+     */
+    public static short[] withCard(final int card) {
+	return WITH_CARD[card];
+    }
+}
@@ -0,0 +1,99 @@
+package be.stilkin.range;
+
+import be.stilkin.CardMasks;
+
+/**
+ * The 169 pre-flop hand classes (13 pairs, 78 suited and 78 offsuit hands), laid out as the usual 13 x 13 grid: pairs on the diagonal, suited hands with the highest card as row,
+ * offsuit hands with the highest card as column. Index = row * 13 + column, with DEUCE = 0 ... ACE = 12.
+ * 
+ * @author stilkin
+ */
+public final class HandClasses {
+    public static final int CLASS_COUNT = 169;
+    private static final int HEIGHTS = 13;
+    private static final char[] HEIGHT_CHARS = "23456789TJQKA".toCharArray();
+
+    /**
+     * Heads-up equity of every class against a random hand, indexed like the classes (Monte Carlo, 2 million deals per class)
+     */
+    private static final float[] EQUITY = {
+	    0.5029f, 0.3232f, 0.3317f, 0.3426f, 0.3409f, 0.3459f, 0.3680f, 0.3913f, 0.4162f, 0.4433f, 0.4733f, 0.5054f, 0.5489f,
+	    0.3600f, 0.5371f, 0.3513f, 0.3623f, 0.3608f, 0.3660f, 0.3750f, 0.3999f, 0.4260f, 0.4526f, 0.4820f, 0.5138f, 0.5579f,
+	    0.3683f, 0.3864f, 0.5701f, 0.3816f, 0.3797f, 0.3851f, 0.3943f, 0.4067f, 0.4342f, 0.4616f, 0.4915f, 0.5233f, 0.5669f,
+	    0.3786f, 0.3964f, 0.4144f, 0.6028f, 0.3993f, 0.4050f, 0.4145f, 0.4265f, 0.4430f, 0.4716f, 0.5012f, 0.5329f, 0.5776f,
+	    0.3767f, 0.3959f, 0.4127f, 0.4313f, 0.6331f, 0.4229f, 0.4328f, 0.4456f, 0.4607f, 0.4785f, 0.5105f, 0.5426f, 0.5756f,
+	    0.3815f, 0.4004f, 0.4187f, 0.4369f, 0.4542f, 0.6622f, 0.4509f, 0.4628f, 0.4788f, 0.4969f, 0.5173f, 0.5526f, 0.5885f,
+	    0.4029f, 0.4082f, 0.4267f, 0.4447f, 0.4634f, 0.4790f, 0.6915f, 0.4802f, 0.4976f, 0.5151f, 0.5355f, 0.5603f, 0.5985f,
+	    0.4242f, 0.4321f, 0.4385f, 0.4570f, 0.4741f, 0.4912f, 0.5078f, 0.7198f, 0.5154f, 0.5327f, 0.5539f, 0.5781f, 0.6082f,
+	    0.4483f, 0.4573f, 0.4654f, 0.4725f, 0.4898f, 0.5073f, 0.5233f, 0.5392f, 0.7506f, 0.5529f, 0.5736f, 0.5975f, 0.6266f,
+	    0.4743f, 0.4828f, 0.4909f, 0.5000f, 0.5057f, 0.5237f, 0.5404f, 0.5567f, 0.5753f, 0.7743f, 0.5812f, 0.6058f, 0.6356f,
+	    0.5013f, 0.5103f, 0.5182f, 0.5281f, 0.5359f, 0.5429f, 0.5607f, 0.5767f, 0.5952f, 0.6027f, 0.7990f, 0.6142f, 0.6444f,
+	    0.5319f, 0.5406f, 0.5494f, 0.5581f, 0.5656f, 0.5756f, 0.5831f, 0.5996f, 0.6173f, 0.6257f, 0.6334f, 0.8246f, 0.6528f,
+	    0.5740f, 0.5823f, 0.5906f, 0.5995f, 0.5994f, 0.6092f, 0.6197f, 0.6281f, 0.6457f, 0.6540f, 0.6617f, 0.6703f, 0.8519f
+    };
+
+    private HandClasses() {}
+
+    /**
+     * @param cardA
+     *            index 0 - 51 of the first card
+     * @param cardB
+     *            index 0 - 51 of the second card
+     * @return the class index (0 - 168)
+     */
+    public static int classOf(final int cardA, final int cardB) {
+	final int hA = CardMasks.height(cardA);
+	final int hB = CardMasks.height(cardB);
+	final int hi = Math.max(hA, hB);
+	final int lo = Math.min(hA, hB);
+	if (CardMasks.suit(cardA) == CardMasks.suit(cardB)) {
+	    return hi * HEIGHTS + lo;
+	}
+	return lo * HEIGHTS + hi;
+    }
+
+    /**
+     * @return true for a pocket pair
+     */
+    public static boolean isPair(final int handClass) {
+	return handClass / HEIGHTS == handClass % HEIGHTS;
+    }
+
+    /**
+     * @return true for suited hands
+     */
+    public static boolean isSuited(final int handClass) {
+	return handClass / HEIGHTS > handClass % HEIGHTS;
+    }
+
+    /**
+     * @return the amount of card combinations in this class: 6 for pairs, 4 suited, 12 offsuit
+     */
+    public static int comboCount(final int handClass) {
+	if (isPair(handClass)) {
+	    return 6;
+	}
+	return isSuited(handClass) ? 4 : 12;
+    }
+
+    /**
+     * @return the heads-up winning chance of this class against a random hand
+     */
+    public static float getEquity(final int handClass) {
+	return EQUITY[handClass];
+    }
+
+    /**
+     * @return a readable name like AKs, T9o or 77
+     */
+    public static String name(final int handClass) {
+	final int row = handClass / HEIGHTS;
+	final int col = handClass % HEIGHTS;
+	if (row == col) {
+	    return "" + HEIGHT_CHARS[row] + HEIGHT_CHARS[col];
+	}
+	final int hi = Math.max(row, col);
+	final int lo = Math.min(row, col);
+	return "" + HEIGHT_CHARS[hi] + HEIGHT_CHARS[lo] + (row > col ? "s" : "o");
+    }
+}
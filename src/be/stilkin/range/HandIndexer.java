@@ -0,0 +1,357 @@
+package be.stilkin.range;
+
+import java.util.Arrays;
+
+/**
+ * Numbers the hands of every street up to suit isomorphism: two hands get the same index if a permutation of the suits maps one onto the other, and the indices of a street run
+ * from 0 to size(street) - 1 without gaps (169 pre-flop, 1286792 on the flop, 13960050 on the turn, 123156254 on the river). Our cards and the board stay apart, the order in
+ * which the board cards came does not matter.
+ *
+ * The scheme of Waugh's hand isomorphism: per suit the ranks it holds in our hand and on the board, and the count of both (the suit's configuration). Suits are sorted by their
+ * configuration; the sorted configurations select a block of indices, and within the block every suit has an index for its rank sets (colex, the board skipping the ranks in our
+ * hand). Suits with the same configuration are interchangeable, so they add the index of the multiset of their suit indices.
+ *
+ * The tables are shared, an indexer only holds scratch arrays: index and unrank do not allocate. Use one indexer per thread.
+ *
+ * @author stilkin
+ */
+public final class HandIndexer {
+    public static final int PREFLOP = 0;
+    public static final int FLOP = 1;
+    public static final int TURN = 2;
+    public static final int RIVER = 3;
+    public static final int STREETS = 4;
+    private static final int HOLE_CARDS = 2;
+    private static final int[] BOARD_CARDS = { 0, 3, 4, 5 }; // per street
+    private static final int SUITS = 4;
+    private static final int RANKS = 13;
+    private static final int SUIT_SHIFT = 16; // the suit fields of a card mask, see CardMasks
+    private static final int RANK_MASK = 0x1FFF;
+    private static final int BOARD_SHIFT = 2; // a configuration code: our cards of the suit in the low 2 bits, its board cards above
+    private static final int HOLE_MASK = 3;
+    private static final long[][] CHOOSE = new long[RANKS + 1][RANKS + 1];
+    private static final int[][] CONFIGURATIONS = new int[STREETS][]; // per street: the sorted suit configurations, packed one byte per suit, in ascending order
+    private static final long[][] OFFSETS = new long[STREETS][]; // the first index of every configuration
+    private static final long[] SIZES = new long[STREETS];
+
+    static {
+	for (int n = 0; n <= RANKS; n++) {
+	    CHOOSE[n][0] = 1;
+	    for (int k = 1; k <= n; k++) {
+		CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + (k < n ? CHOOSE[n - 1][k] : 0);
+	    }
+	}
+	for (int street = 0; street < STREETS; street++) {
+	    final int[] found = new int[4096];
+	    final int count = configurations(street, 0, new int[SUITS], found, 0);
+	    final int[] sorted = Arrays.copyOf(found, count);
+	    Arrays.sort(sorted);
+	    int unique = 0;
+	    for (int i = 0; i < count; i++) {
+		if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+		    sorted[unique++] = sorted[i];
+		}
+	    }
+	    CONFIGURATIONS[street] = Arrays.copyOf(sorted, unique);
+	    OFFSETS[street] = new long[unique];
+	    long size = 0;
+	    for (int c = 0; c < unique; c++) {
+		OFFSETS[street][c] = size;
+		size += configurationSize(CONFIGURATIONS[street][c]);
+	    }
+	    SIZES[street] = size;
+	}
+    }
+
+    private final int[] codes = new int[SUITS];
+    private final long[] suitIndices = new long[SUITS];
+
+    /**
+     * Deals our cards (part 0) and the board (part 1) over the suits in all ways, and stores the sorted configurations
+     *
+     * @param codes
+     *            per suit its card counts so far, see code
+     * @return the new amount of configurations in found
+     */
+    private static int configurations(final int street, final int part, final int[] codes, final int[] found, int count) {
+	if (part > 1) {
+	    found[count] = pack(sortedCopy(codes));
+	    return count + 1;
+	}
+	// every way to split the cards over the 4 suits
+	final int cards = part == 0 ? HOLE_CARDS : BOARD_CARDS[street];
+	final int shift = part == 0 ? 0 : BOARD_SHIFT;
+	for (int a = 0; a <= cards; a++) {
+	    for (int b = 0; a + b <= cards; b++) {
+		for (int c = 0; a + b + c <= cards; c++) {
+		    final int d = cards - a - b - c;
+		    final int[] next = codes.clone();
+		    next[0] |= a << shift;
+		    next[1] |= b << shift;
+		    next[2] |= c << shift;
+		    next[3] |= d << shift;
+		    count = configurations(street, part + 1, next, found, count);
+		}
+	    }
+	}
+	return count;
+    }
+
+    private static int[] sortedCopy(final int[] codes) {
+	final int[] sorted = codes.clone();
+	Arrays.sort(sorted);
+	for (int i = 0; i < SUITS / 2; i++) { // descending
+	    final int swap = sorted[i];
+	    sorted[i] = sorted[SUITS - 1 - i];
+	    sorted[SUITS - 1 - i] = swap;
+	}
+	return sorted;
+    }
+
+    private static int pack(final int[] codes) {
+	int packed = 0;
+	for (int s = 0; s < SUITS; s++) {
+	    packed = (packed << 8) | codes[s];
+	}
+	return packed;
+    }
+
+    private static int codeAt(final int packed, final int position) {
+	return (packed >>> (8 * (SUITS - 1 - position))) & 0xFF;
+    }
+
+    /**
+     * @return the configuration of a suit with this many cards in our hand and on the board
+     */
+    private static int code(final int holeCards, final int boardCards) {
+	return holeCards | boardCards << BOARD_SHIFT;
+    }
+
+    /**
+     * @return the amount of rank sets a suit with this configuration can hold
+     */
+    private static long suitSize(final int code) {
+	final int hole = code & HOLE_MASK;
+	return CHOOSE[RANKS][hole] * CHOOSE[RANKS - hole][code >>> BOARD_SHIFT];
+    }
+
+    private static long configurationSize(final int packed) {
+	long size = 1;
+	for (int s = 0; s < SUITS;) {
+	    final int code = codeAt(packed, s);
+	    int same = 1;
+	    while (s + same < SUITS && codeAt(packed, s + same) == code) {
+		same++;
+	    }
+	    size *= multisets(suitSize(code), same);
+	    s += same;
+	}
+	return size;
+    }
+
+    /**
+     * @return n over k, for the larger n of the multiset indices
+     */
+    private static long choose(final long n, final int k) {
+	if (n < k) {
+	    return 0;
+	}
+	if (k == 1) { // a suit that is not interchangeable with another one, the usual case
+	    return n;
+	}
+	long result = 1;
+	for (int i = 0; i < k; i++) {
+	    result = result * (n - i) / (i + 1);
+	}
+	return result;
+    }
+
+    /**
+     * @return the amount of multisets of size same from n values
+     */
+    private static long multisets(final long n, final int same) {
+	return choose(n + same - 1, same);
+    }
+
+    /**
+     * @return the amount of indices on a street, one per isomorphism class
+     */
+    public static long size(final int street) {
+	return SIZES[street];
+    }
+
+    /**
+     * @return the street of a board with this many cards
+     */
+    public static int street(final int boardCards) {
+	return boardCards < 3 ? PREFLOP : boardCards - 2;
+    }
+
+    /**
+     * @param hole
+     *            our cards as a mask
+     * @param board
+     *            the table as a mask, 0 pre-flop
+     * @return the index of the hand on its street
+     */
+    public long index(final long hole, final long board) {
+	final int street = street(Long.bitCount(board));
+	for (int s = 0; s < SUITS; s++) {
+	    final int holeSet = (int) (hole >>> (SUIT_SHIFT * s)) & RANK_MASK;
+	    final int boardSet = (int) (board >>> (SUIT_SHIFT * s)) & RANK_MASK;
+	    final int holeCards = Integer.bitCount(holeSet);
+	    codes[s] = code(holeCards, Integer.bitCount(boardSet));
+	    suitIndices[s] = colex(holeSet, 0) + CHOOSE[RANKS][holeCards] * colex(boardSet, holeSet);
+	}
+	for (int i = 1; i < SUITS; i++) { // by configuration and index, both descending
+	    final int code = codes[i];
+	    final long index = suitIndices[i];
+	    int j = i - 1;
+	    while (j >= 0 && (codes[j] < code || codes[j] == code && suitIndices[j] < index)) {
+		codes[j + 1] = codes[j];
+		suitIndices[j + 1] = suitIndices[j];
+		j--;
+	    }
+	    codes[j + 1] = code;
+	    suitIndices[j + 1] = index;
+	}
+
+	int packed = 0;
+	for (int s = 0; s < SUITS; s++) {
+	    packed = (packed << 8) | codes[s];
+	}
+	final int configuration = Arrays.binarySearch(CONFIGURATIONS[street], packed);
+	long index = 0;
+	for (int s = 0; s < SUITS;) {
+	    int same = 1;
+	    while (s + same < SUITS && codes[s + same] == codes[s]) {
+		same++;
+	    }
+	    long multiset = 0;
+	    for (int k = 0; k < same; k++) { // colex index of the strictly decreasing suitIndex + same - 1 - k
+		multiset += choose(suitIndices[s + k] + same - 1 - k, same - k);
+	    }
+	    index = index * multisets(suitSize(codes[s]), same) + multiset;
+	    s += same;
+	}
+	return OFFSETS[street][configuration] + index;
+    }
+
+    /**
+     * @return the colex index of the rank set among the sets of its size that avoid the used ranks
+     */
+    private static long colex(final int set, final int used) {
+	long index = 0;
+	int k = 0;
+	for (int rest = set; rest != 0; rest &= rest - 1) {
+	    final int rank = Integer.numberOfTrailingZeros(rest);
+	    final int position = rank - Integer.bitCount(used & ((1 << rank) - 1));
+	    k++;
+	    index += CHOOSE[position][k];
+	}
+	return index;
+    }
+
+    /**
+     * The hand with this index that has its suits in canonical order
+     *
+     * @param out
+     *            gets our cards (out[0]) and the board (out[1]) as masks
+     */
+    public void unrank(final int street, final long index, final long[] out) {
+	int configuration = Arrays.binarySearch(OFFSETS[street], index);
+	if (configuration < 0) {
+	    configuration = -configuration - 2;
+	}
+	final int packed = CONFIGURATIONS[street][configuration];
+	long rest = index - OFFSETS[street][configuration];
+	out[0] = 0;
+	out[1] = 0;
+
+	for (int s = SUITS - 1; s >= 0;) { // the groups of equal suits, last one first
+	    final int code = codeAt(packed, s);
+	    int same = 1;
+	    while (s - same >= 0 && codeAt(packed, s - same) == code) {
+		same++;
+	    }
+	    final long groupSize = multisets(suitSize(code), same);
+	    long multiset = rest % groupSize;
+	    rest /= groupSize;
+	    final int first = s - same + 1;
+	    for (int k = 0; k < same; k++) {
+		final int t = same - k;
+		final long value = largest(multiset, t);
+		multiset -= choose(value, t);
+		suitIndices[first + k] = value - (same - 1 - k);
+	    }
+	    for (int k = 0; k < same; k++) {
+		deal(first + k, code, suitIndices[first + k], out);
+	    }
+	    s -= same;
+	}
+    }
+
+    /**
+     * @return the largest value with choose(value, k) <= bound
+     */
+    private static long largest(final long bound, final int k) {
+	if (k == 1) {
+	    return bound;
+	}
+	long low = k - 1;
+	long high = k;
+	while (choose(high, k) <= bound) {
+	    low = high;
+	    high *= 2;
+	}
+	while (high - low > 1) {
+	    final long middle = (low + high) >>> 1;
+	    if (choose(middle, k) <= bound) {
+		low = middle;
+	    } else {
+		high = middle;
+	    }
+	}
+	return low;
+    }
+
+    /**
+     * Adds the rank sets of a suit with this configuration and suit index to our cards and the board
+     */
+    private static void deal(final int suit, final int code, final long index, final long[] out) {
+	final int holeCards = code & HOLE_MASK;
+	final long holeSize = CHOOSE[RANKS][holeCards];
+	final int holeSet = rankSet(index % holeSize, holeCards, 0);
+	final int boardSet = rankSet(index / holeSize, code >>> BOARD_SHIFT, holeSet);
+	out[0] |= (long) holeSet << (SUIT_SHIFT * suit);
+	out[1] |= (long) boardSet << (SUIT_SHIFT * suit);
+    }
+
+    /**
+     * @return the set of cards ranks with this colex index among the ranks that are not used
+     */
+    private static int rankSet(long colex, final int cards, final int used) {
+	int set = 0;
+	for (int k = cards; k > 0; k--) { // the largest position with CHOOSE[position][k] <= colex
+	    int position = k - 1;
+	    while (position + 1 < RANKS && CHOOSE[position + 1][k] <= colex) {
+		position++;
+	    }
+	    colex -= CHOOSE[position][k];
+	    set |= 1 << expand(position, used);
+	}
+	return set;
+    }
+
+    /**
+     * @return the rank at this position among the ranks that are not used
+     */
+    private static int expand(int position, final int used) {
+	for (int rank = 0; rank < RANKS; rank++) {
+	    if ((used & (1 << rank)) == 0 && position-- == 0) {
+		return rank;
+	    }
+	}
+	throw new IllegalArgumentException("No free rank at position " + position);
+    }
+}
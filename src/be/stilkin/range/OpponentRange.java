@@ -0,0 +1,233 @@
+package be.stilkin.range;
+
+import java.util.Arrays;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.CardMasks;
+import be.stilkin.metrics.EvalCounter;
+import be.stilkin.opponent.OpponentModel;
+
+/**
+ * What the opponent is likely holding this hand: a weight for each of the 1326 combos. It starts uniform over the combos that do not collide with our cards, and after every
+ * opponent action each weight is multiplied with P(action | strength bucket of that combo), from an ActionLikelihood learned on his showdowns. Board cards remove their combos
+ * incrementally.
+ *
+ * The buckets are recomputed once per street (one evaluation per combo and a primitive sort), so an action update is a single pass over two flat arrays.
+ *
+ * @author stilkin
+ */
+public class OpponentRange {
+    private static final int MAX_ACTIONS = 64;
+    private static final float MIN_TOTAL = 1e-12f;
+    private static final byte[] PREFLOP_BUCKETS = new byte[Combos.COMBO_COUNT];
+
+    static { // pre-flop buckets: percentile of the class equity, counting every combo
+	final long[] keys = new long[Combos.COMBO_COUNT];
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    keys[c] = ((long) Float.floatToIntBits(HandClasses.getEquity(Combos.handClass(c))) << 11) | c;
+	}
+	Arrays.sort(keys);
+	for (int pos = 0; pos < keys.length; pos++) {
+	    PREFLOP_BUCKETS[(int) (keys[pos] & 0x7FF)] = (byte) (pos * ActionLikelihood.BUCKETS / keys.length);
+	}
+    }
+
+    private final ActionLikelihood likelihood;
+    private final float[] weights = new float[Combos.COMBO_COUNT];
+    private final byte[][] buckets = new byte[OpponentModel.STREETS][];
+    private final long[] sortKeys = new long[Combos.COMBO_COUNT];
+    private final byte[] actionStreets = new byte[MAX_ACTIONS];
+    private final byte[] actions = new byte[MAX_ACTIONS];
+    private int actionCount;
+    private int street;
+    private long board;
+    private long dead;
+    private float total;
+    private EvalCounter evalCounter;
+
+    public OpponentRange() {
+	this(new ActionLikelihood());
+    }
+
+    public OpponentRange(final ActionLikelihood likelihood) {
+	this.likelihood = likelihood;
+	buckets[OpponentModel.PREFLOP] = PREFLOP_BUCKETS;
+	for (int s = OpponentModel.FLOP; s < OpponentModel.STREETS; s++) {
+	    buckets[s] = new byte[Combos.COMBO_COUNT];
+	}
+	newHand(0);
+    }
+
+    /**
+     * @param evalCounter
+     *            counts the hand evaluations of the bucketing, can be null
+     */
+    public void setEvalCounter(final EvalCounter evalCounter) {
+	this.evalCounter = evalCounter;
+    }
+
+    /**
+     * Start a new hand: all combos that do not hold our cards are equally likely
+     *
+     * @param myHole
+     *            our cards as a mask
+     */
+    public void newHand(final long myHole) {
+	actionCount = 0;
+	street = OpponentModel.PREFLOP;
+	board = 0;
+	dead = myHole;
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    weights[c] = (Combos.mask(c) & myHole) == 0 ? 1f : 0f;
+	}
+	total = sum();
+    }
+
+    /**
+     * The table changed, remove the combos with the new cards and bucket the rest for the new street
+     *
+     * @param newBoard
+     *            all table cards as a mask
+     */
+    public void setBoard(final long newBoard) {
+	long added = newBoard & ~board;
+	if (added == 0) {
+	    return;
+	}
+	board = newBoard;
+	dead |= newBoard;
+	while (added != 0) {
+	    final short[] holding = Combos.withCard(CardMasks.index(added));
+	    for (int i = 0; i < holding.length; i++) {
+		weights[holding[i]] = 0f;
+	    }
+	    added &= added - 1;
+	}
+	total = sum();
+	final int cards = CardMasks.count(newBoard);
+	street = cards < 3 ? OpponentModel.PREFLOP : cards - 2;
+	if (street > OpponentModel.PREFLOP) {
+	    computeBuckets(buckets[street]);
+	}
+    }
+
+    /**
+     * Narrow the range with an action of the opponent
+     */
+    public void onOpponentAction(final int action) {
+	if (actionCount < MAX_ACTIONS) {
+	    actionStreets[actionCount] = (byte) street;
+	    actions[actionCount] = (byte) action;
+	    actionCount++;
+	}
+	final float[] row = likelihood.row(street, action);
+	final byte[] bucket = buckets[street];
+	float sum = 0;
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    final float w = weights[c] * row[bucket[c]];
+	    weights[c] = w;
+	    sum += w;
+	}
+	if (sum < MIN_TOTAL) { // keep the floats from underflowing
+	    final float scale = 1f / Math.max(sum, Float.MIN_NORMAL);
+	    for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+		weights[c] *= scale;
+	    }
+	    sum = sum();
+	}
+	total = sum;
+    }
+
+    /**
+     * The opponent showed his cards, learn how he played them this hand
+     */
+    public void onShowdown(final long oppHole) {
+	final int combo = Combos.id(oppHole);
+	for (int a = 0; a < actionCount; a++) {
+	    likelihood.observe(actionStreets[a], actions[a], buckets[actionStreets[a]][combo]);
+	}
+	actionCount = 0; // learn only once
+    }
+
+    /**
+     * Ranks all live combos on the current board and stores their percentile bucket. Equal hands get the same bucket.
+     */
+    private void computeBuckets(final byte[] out) {
+	final int cards = CardMasks.count(board);
+	int n = 0;
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    final long mask = Combos.mask(c);
+	    if ((mask & dead) != 0) {
+		out[c] = 0;
+		continue;
+	    }
+	    final int rank;
+	    if (cards == 3) {
+		rank = HandEval.hand5Eval(mask | board);
+	    } else if (cards == 4) {
+		rank = HandEval.hand6Eval(mask | board);
+	    } else {
+		rank = HandEval.hand7Eval(mask | board);
+	    }
+	    sortKeys[n++] = ((long) rank << 11) | c;
+	}
+	if (evalCounter != null) {
+	    evalCounter.evaluations(n);
+	}
+	Arrays.sort(sortKeys, 0, n);
+	int bucket = 0;
+	long lastRank = -1;
+	for (int pos = 0; pos < n; pos++) {
+	    final long rank = sortKeys[pos] >>> 11;
+	    if (rank != lastRank) {
+		bucket = pos * ActionLikelihood.BUCKETS / n;
+		lastRank = rank;
+	    }
+	    out[(int) (sortKeys[pos] & 0x7FF)] = (byte) bucket;
+	}
+    }
+
+    private float sum() {
+	float sum = 0;
+	for (int c = 0; c < Combos.COMBO_COUNT; c++) {
+	    sum += weights[c];
+	}
+	return sum;
+    }
+
+    /**
+     * @return the weight of every combo, not normalized (do not modify)
+     */
+    public float[] getWeights() {
+	return weights;
+    }
+
+    /**
+     * @return the probability of a combo, given everything we saw this hand
+     */
+    public float getProbability(final int combo) {
+	return total <= 0 ? 0f : weights[combo] / total;
+    }
+
+    /**
+     * @return the sum of all weights
+     */
+    public float getTotalWeight() {
+	return total;
+    }
+
+    /**
+     * @return the strength bucket of a combo on the current street
+     */
+    public int getBucket(final int combo) {
+	return buckets[street][combo];
+    }
+
+    /**
+     * @return the likelihood model, shared over the hands of a match
+     */
+    public ActionLikelihood getLikelihood() {
+	return likelihood;
+    }
+}
@@ -0,0 +1,37 @@
+package be.stilkin.replay;
+
+import bot.BotStarter;
+
+/**
+ * Rough chip EV of a single decision, relative to folding. It assumes the hand goes to showdown without more betting and that a raise gets called, so it ignores fold equity.
+ * Good enough to rank how costly a changed decision is, not to play with.
+ * 
+ * @author stilkin
+ */
+public final class DecisionEv {
+
+    private DecisionEv() {}
+
+    /**
+     * @param action
+     *            fold, check, call or raise
+     * @param amount
+     *            the amount sent with the action (for a raise: on top of the call)
+     * @param equity
+     *            our winning chance at showdown
+     * @param pot
+     *            the pot before our action
+     * @param callAmount
+     *            what we have to put in to call
+     */
+    public static float ev(final String action, final int amount, final float equity, final int pot, final int callAmount) {
+	if (BotStarter.CALL_ACTION.equals(action)) {
+	    return equity * (pot + callAmount) - callAmount;
+	} else if (BotStarter.RAISE_ACTION.equals(action)) {
+	    return equity * (pot + callAmount + 2 * amount) - (callAmount + amount);
+	} else if (BotStarter.CHECK_ACTION.equals(action) && callAmount == 0) {
+	    return equity * pot;
+	}
+	return 0f; // a fold, or a check while facing a bet (which the engine treats as a fold)
+    }
+}
@@ -0,0 +1,46 @@
+package be.stilkin.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All engine lines of one hand, together with the settings of the match it was played in. This is the unit of work of the replay engine: a hand can be replayed on its own
+ * because the engine resends stacks, blinds and the button at the start of every round.
+ * 
+ * @author stilkin
+ */
+public class HandTranscript {
+    private final String source;
+    private final List<String[]> settings;
+    private final List<String[]> lines = new ArrayList<String[]>();
+
+    public HandTranscript(final String source, final List<String[]> settings) {
+	this.source = source;
+	this.settings = settings;
+    }
+
+    public void addLine(final String[] parts) {
+	lines.add(parts);
+    }
+
+    /**
+     * @return file name and line number where this hand starts
+     */
+    public String getSource() {
+	return source;
+    }
+
+    /**
+     * @return the Settings lines of the match, already split (shared between the hands of a match, do not modify)
+     */
+    public List<String[]> getSettings() {
+	return settings;
+    }
+
+    /**
+     * @return the lines of this hand, starting at "Match round", already split
+     */
+    public List<String[]> getLines() {
+	return lines;
+    }
+}
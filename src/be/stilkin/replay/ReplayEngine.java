@@ -0,0 +1,264 @@
+package be.stilkin.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import be.stilkin.CardMasks;
+import be.stilkin.EquityCalculator;
+import be.stilkin.log.Log;
+import bot.Bot;
+import bot.BotParser;
+import bot.BotStarter;
+import bot.BotState;
+import poker.Card;
+import poker.PokerMove;
+
+/**
+ * Re-runs a (new) bot over every decision in recorded engine transcripts and reports where it decides differently than the recorded bot, and what that costs in EV.
+ *
+ * Every file is replayed on a worker thread, streamed hand by hand. The hands of a match go in order through one BotState and bot, built from the match's Settings lines, so
+ * what the bot learns about the opponent during the match (the opponent model, his range) is there as it was in the match, and decisions that depend on it replay faithfully.
+ * Files run in parallel, the matches of one file do not. The recorded decision is the move the engine echoes back for our bot after the Action line.
+ *
+ * Usage: java be.stilkin.replay.ReplayEngine [-threads n] [-samples n] [-diffs file.csv] [-bot class] [-verbose] transcript files or directories
+ *
+ * @author stilkin
+ */
+public class ReplayEngine {
+    private static final String[] STREETS = { "preflop", "", "", "flop", "turn", "river" };
+    private final Supplier<Bot> botFactory;
+    private final int threads;
+    private final int equitySamples;
+    private final ThreadLocal<EquityCalculator> calculators = ThreadLocal.withInitial(EquityCalculator::new);
+
+    /**
+     * @param botFactory
+     *            creates the candidate bot, called once per match
+     * @param threads
+     *            amount of worker threads
+     * @param equitySamples
+     *            samples for the equity estimate when the opponent did not show his cards
+     */
+    public ReplayEngine(final Supplier<Bot> botFactory, final int threads, final int equitySamples) {
+	this.botFactory = botFactory;
+	this.threads = threads;
+	this.equitySamples = equitySamples;
+    }
+
+    /**
+     * Replays all hands in the files, returns when they are all done
+     */
+    public void replay(final List<File> files, final ReplayReport report) throws InterruptedException {
+	final ExecutorService workers = Executors.newFixedThreadPool(threads);
+	report.start();
+	try {
+	    for (File file : files) {
+		workers.execute(() -> replayFile(file, report));
+	    }
+	} finally {
+	    workers.shutdown();
+	    workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	    report.stop();
+	}
+    }
+
+    /**
+     * Replays the hands of a file in order, with a new state and bot at the start of every match
+     */
+    void replayFile(final File file, final ReplayReport report) {
+	try (TranscriptReader reader = new TranscriptReader(file.getName(), new BufferedReader(new FileReader(file), 1 << 16))) {
+	    List<String[]> settings = null;
+	    BotState state = null;
+	    Bot bot = null;
+	    HandTranscript hand;
+	    while ((hand = reader.next()) != null) {
+		if (hand.getSettings() != settings) { // the reader gives every match its own list
+		    settings = hand.getSettings();
+		    state = new BotState();
+		    bot = botFactory.get();
+		    for (String[] parts : settings) {
+			BotParser.updateState(state, parts);
+		    }
+		}
+		try {
+		    replayHand(hand, state, bot, report);
+		} catch (RuntimeException e) { // a broken hand should not end the run
+		    report.addFailure(hand.getSource(), e);
+		}
+	    }
+	} catch (IOException e) {
+	    report.addFailure(file.getName(), new UncheckedIOException(e));
+	}
+    }
+
+    /**
+     * Replays one hand: feeds its lines into the match's state and asks the candidate bot for a move at every Action line
+     */
+    void replayHand(final HandTranscript hand, final BotState state, final Bot bot, final ReplayReport report) {
+	final String myName = state.getMyName();
+	final List<String[]> lines = hand.getLines();
+	final long oppHole = findOpponentHand(lines, myName);
+
+	for (int i = 0; i < lines.size(); i++) {
+	    final String[] parts = lines.get(i);
+	    if (parts.length == 3 && parts[0].equals("Action")) {
+		final String[] recorded = findRecordedMove(lines, i + 1, myName);
+		final long start = System.nanoTime();
+		final PokerMove move = bot.getMove(state, Long.valueOf(parts[2]));
+		report.addDecision(System.nanoTime() - start);
+		if (recorded != null && move != null) {
+		    compare(hand.getSource(), i, state, recorded, move, oppHole, report);
+		}
+	    } else {
+		BotParser.updateState(state, parts);
+	    }
+	}
+	report.addHand();
+    }
+
+    private void compare(final String source, final int line, final BotState state, final String[] recorded, final PokerMove move, final long oppHole,
+	    final ReplayReport report) {
+	final int callAmount = state.getAmountToCall();
+	final String recAction = normalize(recorded[1], callAmount);
+	final int recAmount = Integer.parseInt(recorded[2]);
+	final String action = normalize(move.getAction(), callAmount);
+	if (recAction.equals(action) && (!action.equals(BotStarter.RAISE_ACTION) || recAmount == move.getAmount())) {
+	    return; // only the size of a raise matters, the engine puts in the call amount itself
+	}
+
+	final long hole = CardMasks.mask(state.getHand().getCards());
+	final long board = CardMasks.mask(state.getTable());
+	final EquityCalculator calc = calculators.get();
+	calc.setSeed(source.hashCode() * 31L + line); // the same decision always gets the same estimate
+	final float equity = oppHole != 0 ? calc.vsHand(hole, oppHole, board, equitySamples) : calc.vsRandom(hole, board, equitySamples);
+
+	final int pot = state.getPot();
+	final float recEv = DecisionEv.ev(recAction, recAmount, equity, pot, callAmount);
+	final float ev = DecisionEv.ev(action, move.getAmount(), equity, pot, callAmount);
+	report.addDivergence(source + "+" + line, STREETS[CardMasks.count(board)], recAction, recAmount, action, move.getAmount(), equity, recEv, ev,
+		state.getBigBlind());
+    }
+
+    /**
+     * The engine treats a check while facing a bet as a fold, and a call of nothing as a check
+     */
+    private static String normalize(final String action, final int callAmount) {
+	if (callAmount > 0 && BotStarter.CHECK_ACTION.equals(action)) {
+	    return BotStarter.FOLD_ACTION;
+	}
+	if (callAmount == 0 && BotStarter.CALL_ACTION.equals(action)) {
+	    return BotStarter.CHECK_ACTION;
+	}
+	return action;
+    }
+
+    /**
+     * @return the move line the engine echoed for us after an Action line, or null
+     */
+    private static String[] findRecordedMove(final List<String[]> lines, final int from, final String myName) {
+	for (int i = from; i < lines.size(); i++) {
+	    final String[] parts = lines.get(i);
+	    if (parts.length == 3 && parts[0].equals(myName) && isAction(parts[1])) {
+		return parts;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * @return the cards the opponent showed down in this hand as a mask, or 0
+     */
+    private static long findOpponentHand(final List<String[]> lines, final String myName) {
+	for (String[] parts : lines) {
+	    if (parts.length == 3 && parts[1].equals("hand") && parts[0].startsWith("player") && !parts[0].equals(myName)) {
+		final String cards = parts[2].replace("[", "").replace("]", "");
+		long mask = 0;
+		for (String card : cards.split(",")) {
+		    mask |= Card.getCard(card).getNumber();
+		}
+		return mask;
+	    }
+	}
+	return 0;
+    }
+
+    private static boolean isAction(final String key) {
+	return key.equals(BotStarter.FOLD_ACTION) || key.equals(BotStarter.CHECK_ACTION) || key.equals(BotStarter.CALL_ACTION) || key.equals(BotStarter.RAISE_ACTION);
+    }
+
+    private static void addFiles(final File file, final List<File> files) {
+	if (file.isDirectory()) {
+	    final File[] children = file.listFiles();
+	    if (children != null) {
+		Arrays.sort(children);
+		for (File child : children) {
+		    addFiles(child, files);
+		}
+	    }
+	} else {
+	    files.add(file);
+	}
+    }
+
+    public static void main(String[] args) throws Exception {
+	int threads = Runtime.getRuntime().availableProcessors();
+	int samples = 2000;
+	String diffs = null;
+	String botClass = BotStarter.class.getName();
+	boolean verbose = false;
+	final List<File> files = new ArrayList<File>();
+	for (int a = 0; a < args.length; a++) {
+	    if (args[a].equals("-threads")) {
+		threads = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-samples")) {
+		samples = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-diffs")) {
+		diffs = args[++a];
+	    } else if (args[a].equals("-bot")) {
+		botClass = args[++a];
+	    } else if (args[a].equals("-verbose")) {
+		verbose = true;
+	    } else {
+		addFiles(new File(args[a]), files);
+	    }
+	}
+	if (files.isEmpty()) {
+	    System.err.println("Usage: ReplayEngine [-threads n] [-samples n] [-diffs file.csv] [-bot class] [-verbose] transcripts...");
+	    return;
+	}
+
+	final PrintStream out = System.out;
+	if (!verbose) { // the bots log every decision, that would dominate the run time
+	    Log.setLevel(Log.WARN);
+	}
+	final Class<?> candidate = Class.forName(botClass);
+	final Supplier<Bot> factory = () -> {
+	    try {
+		return (Bot) candidate.getDeclaredConstructor().newInstance();
+	    } catch (ReflectiveOperationException e) {
+		throw new IllegalStateException("Cannot create bot " + candidate.getName(), e);
+	    }
+	};
+
+	final PrintWriter diffWriter = diffs == null ? null : new PrintWriter(new FileWriter(diffs));
+	final ReplayReport report = new ReplayReport(diffWriter);
+	new ReplayEngine(factory, threads, samples).replay(files, report);
+	report.print(out);
+	if (diffWriter != null) {
+	    diffWriter.close();
+	}
+    }
+}
@@ -0,0 +1,113 @@
+package be.stilkin.replay;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe tally of a replay run. Workers add to it without locking; only the optional divergence file is written under a lock.
+ * 
+ * @author stilkin
+ */
+public class ReplayReport {
+    private final LongAdder hands = new LongAdder();
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder actionChanges = new LongAdder();
+    private final LongAdder amountChanges = new LongAdder();
+    private final LongAdder moveNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final DoubleAdder evDelta = new DoubleAdder();
+    private final DoubleAdder evDeltaBlinds = new DoubleAdder();
+    private final PrintWriter divergences;
+    private long startNanos;
+    private long endNanos;
+
+    /**
+     * @param divergences
+     *            receives one CSV line per changed decision, can be null
+     */
+    public ReplayReport(final PrintWriter divergences) {
+	this.divergences = divergences;
+	if (divergences != null) {
+	    divergences.println("source,street,recorded_action,recorded_amount,candidate_action,candidate_amount,equity,recorded_ev,candidate_ev");
+	}
+    }
+
+    void start() {
+	startNanos = System.nanoTime();
+    }
+
+    void stop() {
+	endNanos = System.nanoTime();
+	if (divergences != null) {
+	    divergences.flush();
+	}
+    }
+
+    void addHand() {
+	hands.increment();
+    }
+
+    void addDecision(final long nanos) {
+	decisions.increment();
+	moveNanos.add(nanos);
+    }
+
+    void addDivergence(final String source, final String street, final String recAction, final int recAmount, final String action, final int amount, final float equity,
+	    final float recEv, final float ev, final int bigBlind) {
+	if (recAction.equals(action)) {
+	    amountChanges.increment();
+	} else {
+	    actionChanges.increment();
+	}
+	evDelta.add(ev - recEv);
+	if (bigBlind > 0) {
+	    evDeltaBlinds.add((ev - recEv) / bigBlind);
+	}
+	if (divergences != null) {
+	    synchronized (divergences) {
+		divergences.printf("%s,%s,%s,%d,%s,%d,%.4f,%.2f,%.2f%n", source, street, recAction, recAmount, action, amount, equity, recEv, ev);
+	    }
+	}
+    }
+
+    void addFailure(final String source, final RuntimeException e) {
+	if (failures.sum() == 0) {
+	    System.out.println("Replay of " + source + " failed: " + e);
+	}
+	failures.increment();
+    }
+
+    public long getDecisions() {
+	return decisions.sum();
+    }
+
+    public long getDivergences() {
+	return actionChanges.sum() + amountChanges.sum();
+    }
+
+    /**
+     * @return summed EV of the candidate's decisions minus the recorded ones, in chips
+     */
+    public double getEvDelta() {
+	return evDelta.sum();
+    }
+
+    public double getDecisionsPerSecond() {
+	final long nanos = endNanos - startNanos;
+	return nanos <= 0 ? 0 : decisions.sum() * 1e9 / nanos;
+    }
+
+    public void print(final PrintStream out) {
+	final long n = decisions.sum();
+	out.printf("Hands: %d, decisions: %d in %.1f s (%.0f decisions/s, %.1f us in getMove on average)%n", hands.sum(), n, (endNanos - startNanos) / 1e9,
+		getDecisionsPerSecond(), n == 0 ? 0 : moveNanos.sum() / 1e3 / n);
+	out.printf("Changed decisions: %d (%d other action, %d other amount), %.2f%% of all%n", getDivergences(), actionChanges.sum(), amountChanges.sum(),
+		n == 0 ? 0 : 100.0 * getDivergences() / n);
+	out.printf("EV difference (candidate - recorded): %.1f chips, %.2f big blinds%n", evDelta.sum(), evDeltaBlinds.sum());
+	if (failures.sum() > 0) {
+	    out.printf("Hands that could not be replayed: %d%n", failures.sum());
+	}
+    }
+}
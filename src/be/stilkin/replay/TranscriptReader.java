@@ -0,0 +1,86 @@
+package be.stilkin.replay;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams a recorded engine transcript (the lines a bot received on stdin) one hand at a time, so we never hold a whole file in memory. Settings lines start a new match, a
+ * "Match round" line starts a new hand. Lines before the first round of a match are dropped.
+ * 
+ * @author stilkin
+ */
+public class TranscriptReader implements Closeable {
+    private final BufferedReader reader;
+    private final String name;
+    private List<String[]> settings = Collections.emptyList();
+    private boolean inSettings = false;
+    private HandTranscript current;
+    private String[] pending;
+    private int lineNumber = 0;
+
+    public TranscriptReader(final String name, final BufferedReader reader) {
+	this.name = name;
+	this.reader = reader;
+    }
+
+    /**
+     * @return the next complete hand, or null at the end of the file
+     */
+    public HandTranscript next() throws IOException {
+	String[] parts = pending;
+	pending = null;
+	while (parts != null || (parts = readParts()) != null) {
+	    if (parts[0].equals("Settings")) {
+		if (!inSettings) { // a new match starts
+		    final HandTranscript done = current;
+		    current = null;
+		    settings = new ArrayList<String[]>();
+		    inSettings = true;
+		    if (done != null) {
+			pending = parts;
+			return done;
+		    }
+		}
+		settings.add(parts);
+	    } else if (parts.length == 3 && parts[0].equals("Match") && parts[1].equals("round")) {
+		inSettings = false;
+		final HandTranscript done = current;
+		current = new HandTranscript(name + ":" + lineNumber, settings);
+		current.addLine(parts);
+		if (done != null) {
+		    return done;
+		}
+	    } else {
+		inSettings = false;
+		if (current != null) {
+		    current.addLine(parts);
+		}
+	    }
+	    parts = null;
+	}
+	final HandTranscript done = current;
+	current = null;
+	return done;
+    }
+
+    private String[] readParts() throws IOException {
+	String line;
+	while ((line = reader.readLine()) != null) {
+	    lineNumber++;
+	    line = line.trim();
+	    if (line.length() > 0) {
+		return line.split("\\s+");
+	    }
+	}
+	return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+	reader.close();
+    }
+}
@@ -0,0 +1,252 @@
+package be.stilkin.search;
+
+import java.util.Arrays;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.CardMasks;
+import be.stilkin.metrics.EvalCounter;
+import be.stilkin.range.Combos;
+
+/**
+ * Picks a bet or raise size by expected value: every size of a grid (fractions of the pot after our call, and all-in) is scored as fold equity plus our equity against the
+ * part of the opponent's range that calls, minus what the bet costs. He never re-raises in this model.
+ *
+ * The fold chance at a size is the opponent's fold to bet statistic, taken as his fold chance against a half pot bet and scaled with the pot odds the size gives him. He calls
+ * with the strongest combos of his range (by their rank on the board now), so the calling range for a fold chance f is the top 1 - f of his weight. One pass over the 1326 combos
+ * in strength order gives the running range weight and our won weight, and every size of the grid is then a lookup.
+ *
+ * Our equity against each combo is exact on the river and averaged over the next card on the flop and turn (no later cards). It is computed once per board and hand, the sizing
+ * itself does not evaluate hands and does not allocate.
+ *
+ * @author stilkin
+ */
+public class BetSizer {
+    public static final float[] DEFAULT_GRID = { 0.33f, 0.5f, 0.75f, 1f, 1.5f, 2f };
+    private static final int N = Combos.COMBO_COUNT;
+    private static final float REFERENCE_ODDS = 0.25f; // the pot odds of a half pot bet: he calls 1 to win 4
+    private static final float MAX_FOLD = 0.95f;
+    private final float[] grid;
+    private final float[] equities = new float[N]; // ours against every combo, -1 if the combo is dead
+    private final short[] order = new short[N]; // the live combos, strongest first
+    private final long[] keys = new long[N];
+    private final double[] rangeWeight = new double[N + 1]; // the weight of the first i combos in order
+    private final double[] wonWeight = new double[N + 1]; // the weight we beat among them
+    private final double[] evs;
+    private final int[] amounts;
+    private int live;
+    private long preparedBoard = -1;
+    private long preparedHole;
+    private int best;
+    private EvalCounter evalCounter;
+
+    public BetSizer() {
+	this(DEFAULT_GRID);
+    }
+
+    /**
+     * @param grid
+     *            bet sizes as fractions of the pot after our call, all-in is always added
+     */
+    public BetSizer(final float[] grid) {
+	this.grid = grid.clone();
+	this.evs = new double[grid.length + 2];
+	this.amounts = new int[grid.length + 2];
+    }
+
+    /**
+     * @param evalCounter
+     *            counts the hand evaluations of prepare, can be null
+     */
+    public void setEvalCounter(final EvalCounter evalCounter) {
+	this.evalCounter = evalCounter;
+    }
+
+    /**
+     * Scores the grid, afterwards getBestAmount gives the raise to make
+     *
+     * @param hole
+     *            our cards as a mask
+     * @param board
+     *            the table as a mask, 3 to 5 cards
+     * @param weights
+     *            the opponent's weight per combo, e.g. from the OpponentRange
+     * @param pot
+     *            everything in the pot, our call not included
+     * @param toCall
+     *            what we have to call first
+     * @param myStack
+     *            our chips behind
+     * @param opponentStack
+     *            the opponent's chips behind, after his bet
+     * @param foldToBet
+     *            the chance he folds to a half pot bet
+     * @param minRaise
+     *            the smallest raise the engine takes, on top of the call
+     */
+    public void size(final long hole, final long board, final float[] weights, final int pot, final int toCall, final int myStack, final int opponentStack,
+	    final float foldToBet, final int minRaise) {
+	if (board != preparedBoard || hole != preparedHole) {
+	    prepare(hole, board);
+	}
+
+	double weight = 0;
+	double won = 0;
+	for (int i = 0; i < live; i++) {
+	    final int combo = order[i];
+	    final float w = weights[combo];
+	    weight += w;
+	    won += w * equities[combo];
+	    rangeWeight[i + 1] = weight;
+	    wonWeight[i + 1] = won;
+	}
+
+	final double equity = weight > 0 ? won / weight : 0.5;
+	amounts[0] = 0; // call or check
+	evs[0] = equity * (pot + toCall) - toCall;
+	best = 0;
+	final int maxRaise = Math.max(0, Math.min(myStack - toCall, opponentStack));
+	for (int g = 0; g <= grid.length; g++) {
+	    final int a = g + 1;
+	    amounts[a] = g < grid.length ? Math.min(maxRaise, Math.max(minRaise, Math.round(grid[g] * (pot + toCall)))) : maxRaise;
+	    evs[a] = amounts[a] <= 0 ? Double.NEGATIVE_INFINITY : raiseValue(amounts[a], pot, toCall, foldToBet, weight);
+	    if (evs[a] > evs[best]) {
+		best = a;
+	    }
+	}
+    }
+
+    /**
+     * @return our expected chips from now when we raise by amount on top of the call and he folds or calls
+     */
+    private double raiseValue(final int amount, final int pot, final int toCall, final float foldToBet, final double weight) {
+	final float odds = (float) amount / (pot + toCall + 2 * amount);
+	final double fold = Math.min(MAX_FOLD, foldToBet * odds / REFERENCE_ODDS);
+	final double calling = (1 - fold) * weight;
+	int lo = 0; // the shortest prefix of the order that holds the calling weight
+	int hi = live;
+	while (lo < hi) {
+	    final int mid = (lo + hi) >>> 1;
+	    if (rangeWeight[mid] < calling) {
+		lo = mid + 1;
+	    } else {
+		hi = mid;
+	    }
+	}
+	final double equity = rangeWeight[lo] > 0 ? wonWeight[lo] / rangeWeight[lo] : 0.5;
+	return fold * pot + (1 - fold) * (equity * (pot + toCall + 2 * amount) - toCall - amount);
+    }
+
+    /**
+     * Our equity against every live combo, and the combos by their strength on this board
+     */
+    private void prepare(final long hole, final long board) {
+	preparedBoard = board;
+	preparedHole = hole;
+	final long dead = board | hole;
+	live = 0;
+	for (int c = 0; c < N; c++) {
+	    final long mask = Combos.mask(c);
+	    equities[c] = -1;
+	    if ((mask & dead) == 0) {
+		keys[live++] = ((long) -evaluate(mask | board) << 11) | c; // strongest first
+		equities[c] = 0;
+	    }
+	}
+	Arrays.sort(keys, 0, live);
+	for (int i = 0; i < live; i++) {
+	    order[i] = (short) (keys[i] & 0x7FF);
+	}
+
+	long evaluations = live;
+	if (CardMasks.count(board) >= 5) {
+	    evaluations += addShowdowns(hole, board, 1f);
+	} else {
+	    evaluations += addNextCardShowdowns(hole, board, dead);
+	}
+	if (evalCounter != null) {
+	    evalCounter.evaluations(evaluations);
+	}
+    }
+
+    /**
+     * @return the hand evaluations it took to average the showdowns over the next card
+     */
+    private long addNextCardShowdowns(final long hole, final long board, final long dead) {
+	long evaluations = 0;
+	int cards = 0;
+	for (int card = 0; card < CardMasks.DECK_SIZE; card++) {
+	    cards += (dead & CardMasks.bit(card)) == 0 ? 1 : 0;
+	}
+	for (int card = 0; card < CardMasks.DECK_SIZE; card++) {
+	    final long bit = CardMasks.bit(card);
+	    if ((dead & bit) == 0) {
+		evaluations += addShowdowns(hole, board | bit, 1f / (cards - 2)); // the combo holding the card misses it, so each combo sees all cards but its own two
+	    }
+	}
+	return evaluations;
+    }
+
+    /**
+     * Adds share times our showdown result on this board against every live combo that does not hold a board card
+     *
+     * @return the hand evaluations it took
+     */
+    private int addShowdowns(final long hole, final long board, final float share) {
+	final int mine = evaluate(hole | board);
+	int evaluations = 1;
+	for (int i = 0; i < live; i++) {
+	    final int combo = order[i];
+	    final long mask = Combos.mask(combo);
+	    if ((mask & board) == 0) {
+		final int rank = evaluate(mask | board);
+		equities[combo] += mine > rank ? share : mine == rank ? share / 2 : 0;
+		evaluations++;
+	    }
+	}
+	return evaluations;
+    }
+
+    private static int evaluate(final long cards) {
+	switch (CardMasks.count(cards)) {
+	    case 5:
+		return HandEval.hand5Eval(cards);
+	    case 6:
+		return HandEval.hand6Eval(cards);
+	    default:
+		return HandEval.hand7Eval(cards);
+	}
+    }
+
+    /**
+     * @return the raise on top of the call with the highest expected value, 0 if calling (or checking) is better than every size
+     */
+    public int getBestAmount() {
+	return amounts[best];
+    }
+
+    /**
+     * @return our expected chips from now for the best choice
+     */
+    public double getBestEv() {
+	return evs[best];
+    }
+
+    /**
+     * @return the expected chips of calling (0), each grid size (1..) and all-in (the last)
+     */
+    public double getEv(final int choice) {
+	return evs[choice];
+    }
+
+    /**
+     * @return the raise of a choice, see getEv
+     */
+    public int getAmount(final int choice) {
+	return amounts[choice];
+    }
+
+    public int getChoiceCount() {
+	return evs.length;
+    }
+}
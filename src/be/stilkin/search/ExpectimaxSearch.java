@@ -0,0 +1,373 @@
+package be.stilkin.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.CardMasks;
+import be.stilkin.metrics.EvalCounter;
+import be.stilkin.opponent.OpponentModel;
+import be.stilkin.range.ActionLikelihood;
+import be.stilkin.range.Combos;
+import be.stilkin.range.OpponentRange;
+import be.stilkin.subgame.SubgameTree;
+
+/**
+ * Expectimax over the rest of the current street (a SubgameTree) for our one hand, against the opponent as we model him: a cheap alternative to the SubgameSolver that gives an
+ * expected value in chips for every action we have now.
+ *
+ * At our decisions we take the best action. At his decisions the fold frequency comes from the OpponentModel (fold to bet on this street) and the rest is split between calling
+ * (or checking) and raising by his range, weighted with the ActionLikelihood rows; his range after an action is the range times that row. Because a row only depends on the
+ * strength bucket, a range down the tree is the range at the root times one factor per bucket, and every showdown needs only the win and weight sums per bucket. The street end
+ * is a chance node over the next card (on the flop and turn; the betting after it is not searched, the depth limit) or the showdown on the river.
+ *
+ * The sums per next card are the expensive part: one evaluation per combo and card, redone only when the board or our hand changes, and split over the pool threads when there
+ * is a pool. The chance node values are memoized in a TranspositionTable keyed by the betting history, the opponent's actions in the tree (they fix his range) and the board, so
+ * the lines that reach the same range (we bet half the pot or the pot, he calls) share them. Apart from growing its buffers for a deeper tree, a search does not allocate when
+ * it runs without a pool.
+ *
+ * @author stilkin
+ */
+public class ExpectimaxSearch {
+    private static final int N = Combos.COMBO_COUNT;
+    private static final int B = ActionLikelihood.BUCKETS;
+    private static final int RIVER_SLOT = CardMasks.DECK_SIZE; // the sums on the river, where no card comes
+    private static final int SLOTS = CardMasks.DECK_SIZE + 1;
+    private final int[][] ranks = new int[SLOTS][N]; // per next card: the rank of every combo on the board with that card, -1 if the combo is dead
+    private final int[] myRanks = new int[SLOTS];
+    private final double[][] wins = new double[SLOTS][B]; // per next card and bucket: the range weight we beat (ties count half)
+    private final double[][] masses = new double[SLOTS][B]; // per next card and bucket: the live range weight
+    private final int[] slots = new int[SLOTS];
+    private final double[] rootMass = new double[B];
+    private final TranspositionTable table;
+    private final ExecutorService pool;
+    private final List<Callable<Integer>> slices = new ArrayList<Callable<Integer>>();
+    private double[][] factors = new double[8][B]; // per opponent action depth: the range factor per bucket
+    private double[] evs = new double[8];
+    private int slotCount;
+    private long rankedBoard = -1;
+    private long rankedHole;
+    private boolean rerank;
+    private long generation;
+    // the search in progress
+    private SubgameTree tree;
+    private int street;
+    private long board;
+    private long hole;
+    private float[] weights;
+    private OpponentRange range;
+    private ActionLikelihood likelihood;
+    private float foldToBet;
+    private long rootKey;
+    private long nodes;
+    private EvalCounter evalCounter;
+
+    /**
+     * @param pool
+     *            the threads to prepare the showdown sums on, or null for the calling thread
+     * @param threads
+     *            slices of the next cards, when there is a pool
+     */
+    public ExpectimaxSearch(final ExecutorService pool, final int threads) {
+	this.pool = pool;
+	this.table = new TranspositionTable(12);
+	if (pool != null) {
+	    for (int t = 0; t < threads; t++) {
+		final int first = t;
+		slices.add(() -> prepare(first, threads));
+	    }
+	}
+    }
+
+    /**
+     * @param evalCounter
+     *            counts the hand evaluations of the ranking, can be null
+     */
+    public void setEvalCounter(final EvalCounter evalCounter) {
+	this.evalCounter = evalCounter;
+    }
+
+    /**
+     * Searches the tree, afterwards getEv gives the value of each root action
+     *
+     * @param tree
+     *            the rest of this street from our decision, on the flop, turn or river
+     * @param hole
+     *            our cards as a mask
+     * @param board
+     *            the table as a mask
+     * @param historyKey
+     *            the BettingHistory key of the hand so far
+     */
+    public void search(final SubgameTree tree, final long hole, final long board, final OpponentRange range, final OpponentModel model, final long historyKey)
+	    throws InterruptedException {
+	this.tree = tree;
+	this.hole = hole;
+	this.board = board;
+	this.range = range;
+	this.weights = range.getWeights();
+	this.likelihood = range.getLikelihood();
+	this.street = CardMasks.count(board) - 2;
+	this.foldToBet = model.getFoldToBet(street);
+	this.rootKey = TranspositionTable.mix(historyKey ^ TranspositionTable.mix(board ^ TranspositionTable.mix(hole + ++generation)));
+	nodes = 0;
+
+	rerank = board != rankedBoard || hole != rankedHole;
+	rankedBoard = board;
+	rankedHole = hole;
+	slotCount = 0;
+	if (street == OpponentModel.RIVER) {
+	    slots[slotCount++] = RIVER_SLOT;
+	} else {
+	    for (int card = 0; card < CardMasks.DECK_SIZE; card++) {
+		if (((board | hole) & CardMasks.bit(card)) == 0) {
+		    slots[slotCount++] = card;
+		}
+	    }
+	}
+	int evaluations = 0;
+	if (pool == null) {
+	    evaluations = prepare(0, 1);
+	} else {
+	    for (Future<Integer> slice : pool.invokeAll(slices)) {
+		try {
+		    evaluations += slice.get();
+		} catch (ExecutionException e) {
+		    throw new IllegalStateException(e.getCause());
+		}
+	    }
+	}
+	if (evalCounter != null) { // counted here, the counter belongs to the calling thread
+	    evalCounter.evaluations(evaluations);
+	}
+	for (int b = 0; b < B; b++) {
+	    rootMass[b] = 0;
+	}
+	for (int c = 0; c < N; c++) {
+	    rootMass[range.getBucket(c)] += weights[c];
+	}
+
+	if (evs.length < tree.getActionCount(0)) {
+	    evs = new double[tree.getActionCount(0)];
+	}
+	for (int b = 0; b < B; b++) {
+	    factors[0][b] = 1;
+	}
+	value(0, 0, 0);
+    }
+
+    /**
+     * Ranks the combos (if the board or our hand changed) and sums the range per bucket for every first-th next card
+     *
+     * @return the hand evaluations it took
+     */
+    private int prepare(final int first, final int step) {
+	int evaluations = 0;
+	for (int i = first; i < slotCount; i += step) {
+	    final int slot = slots[i];
+	    final long cards = slot == RIVER_SLOT ? board : board | CardMasks.bit(slot);
+	    final int[] rank = ranks[slot];
+	    if (rerank) {
+		final long dead = cards | hole;
+		myRanks[slot] = evaluate(hole | cards);
+		evaluations++;
+		for (int c = 0; c < N; c++) {
+		    final long mask = Combos.mask(c);
+		    if ((mask & dead) == 0) {
+			rank[c] = evaluate(mask | cards);
+			evaluations++;
+		    } else {
+			rank[c] = -1;
+		    }
+		}
+	    }
+	    final double[] win = wins[slot];
+	    final double[] mass = masses[slot];
+	    for (int b = 0; b < B; b++) {
+		win[b] = 0;
+		mass[b] = 0;
+	    }
+	    final int mine = myRanks[slot];
+	    for (int c = 0; c < N; c++) {
+		final int r = rank[c];
+		if (r < 0) {
+		    continue;
+		}
+		final int b = range.getBucket(c);
+		final float w = weights[c];
+		mass[b] += w;
+		win[b] += mine > r ? w : mine == r ? 0.5 * w : 0;
+	    }
+	}
+	return evaluations;
+    }
+
+    private static int evaluate(final long cards) {
+	return CardMasks.count(cards) == 7 ? HandEval.hand7Eval(cards) : HandEval.hand6Eval(cards);
+    }
+
+    /**
+     * @param depth
+     *            opponent actions since the root, factors[depth] narrows his range
+     * @param line
+     *            those actions, one digit each
+     * @return our expected chips from the root on
+     */
+    private double value(final int node, final int depth, final long line) {
+	nodes++;
+	final int spent = tree.getSpent(node, SubgameTree.ME);
+	switch (tree.getType(node)) {
+	    case SubgameTree.FOLDED:
+		return tree.getActor(node) == SubgameTree.ME ? -spent : tree.getPot() + tree.getSpent(node, SubgameTree.OPPONENT);
+	    case SubgameTree.SHOWDOWN:
+		return equity(depth, line) * (tree.getPot() + spent + tree.getSpent(node, SubgameTree.OPPONENT)) - spent;
+	    default:
+		break;
+	}
+
+	final int actions = tree.getActionCount(node);
+	if (tree.getActor(node) == SubgameTree.ME) {
+	    double best = Double.NEGATIVE_INFINITY;
+	    for (int a = 0; a < actions; a++) {
+		final double v = value(tree.getChild(node, a), depth, line);
+		if (node == 0) {
+		    evs[a] = v;
+		}
+		best = Math.max(best, v);
+	    }
+	    return best;
+	}
+
+	if (depth + 1 == factors.length) {
+	    factors = Arrays.copyOf(factors, factors.length * 2);
+	    for (int d = depth + 1; d < factors.length; d++) {
+		factors[d] = new double[B];
+	    }
+	}
+	final boolean facing = tree.getActionKind(node, 0) == SubgameTree.FOLD;
+	final int passive = facing ? OpponentModel.CALL : OpponentModel.CHECK;
+	final double[] factor = factors[depth];
+	final double passiveWeight = weigh(factor, likelihood.row(street, passive));
+	final double raiseWeight = weigh(factor, likelihood.row(street, OpponentModel.RAISE));
+	int raises = 0;
+	for (int a = 0; a < actions; a++) {
+	    raises += tree.getActionKind(node, a) >= SubgameTree.RAISE ? 1 : 0;
+	}
+	final double fold = facing ? foldToBet : 0;
+	final double total = passiveWeight + (raises > 0 ? raiseWeight : 0);
+	final double call = total > 0 ? (1 - fold) * passiveWeight / total : 1 - fold;
+	final double raise = raises > 0 && total > 0 ? (1 - fold) * raiseWeight / total / raises : 0;
+
+	double ev = 0;
+	for (int a = 0; a < actions; a++) {
+	    final int kind = tree.getActionKind(node, a);
+	    final double chance = kind == SubgameTree.FOLD ? fold : kind == SubgameTree.CALL ? call : raise;
+	    if (chance <= 0) {
+		continue;
+	    }
+	    if (kind == SubgameTree.FOLD) {
+		ev += chance * value(tree.getChild(node, a), depth, line);
+		continue;
+	    }
+	    final int action = kind == SubgameTree.CALL ? passive : OpponentModel.RAISE;
+	    narrow(factor, likelihood.row(street, action), factors[depth + 1]);
+	    ev += chance * value(tree.getChild(node, a), depth + 1, line * 5 + action + 1);
+	}
+	return ev;
+    }
+
+    /**
+     * @return the range weight that takes the action
+     */
+    private double weigh(final double[] factor, final float[] row) {
+	double sum = 0;
+	for (int b = 0; b < B; b++) {
+	    sum += factor[b] * rootMass[b] * row[b];
+	}
+	return sum;
+    }
+
+    /**
+     * The factors after the action, scaled so the largest is 1 (only their ratios matter)
+     */
+    private static void narrow(final double[] factor, final float[] row, final double[] out) {
+	double max = 0;
+	for (int b = 0; b < B; b++) {
+	    out[b] = factor[b] * row[b];
+	    max = Math.max(max, out[b]);
+	}
+	if (max > 0) {
+	    for (int b = 0; b < B; b++) {
+		out[b] /= max;
+	    }
+	}
+    }
+
+    /**
+     * @return our share of the pot at the end of the street against the narrowed range, averaged over the next card
+     */
+    private double equity(final int depth, final long line) {
+	final long key = TranspositionTable.mix(rootKey + line);
+	final double known = table.get(key);
+	if (!Double.isNaN(known)) {
+	    return known;
+	}
+	final double[] factor = factors[depth];
+	double sum = 0;
+	int count = 0;
+	for (int i = 0; i < slotCount; i++) {
+	    final double[] win = wins[slots[i]];
+	    final double[] mass = masses[slots[i]];
+	    double won = 0;
+	    double live = 0;
+	    for (int b = 0; b < B; b++) {
+		won += factor[b] * win[b];
+		live += factor[b] * mass[b];
+	    }
+	    if (live > 0) {
+		sum += won / live;
+		count++;
+	    }
+	}
+	final double equity = count > 0 ? sum / count : 0.5;
+	table.put(key, equity);
+	return equity;
+    }
+
+    public SubgameTree getTree() {
+	return tree;
+    }
+
+    /**
+     * @return our expected chips, counted from now, after the root action
+     */
+    public double getEv(final int action) {
+	return evs[action];
+    }
+
+    /**
+     * @return the root action with the highest expected value
+     */
+    public int getBestAction() {
+	int best = 0;
+	for (int a = 1; a < tree.getActionCount(0); a++) {
+	    if (evs[a] > evs[best]) {
+		best = a;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * @return the tree nodes visited by the last search
+     */
+    public long getNodes() {
+	return nodes;
+    }
+}
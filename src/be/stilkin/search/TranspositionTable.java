@@ -0,0 +1,56 @@
+package be.stilkin.search;
+
+/**
+ * A fixed size hash table from a long key to a double, in two primitive arrays. A slot holds the value bits and the key xor the value bits, so a reader that sees a half
+ * written slot (another thread storing at the same time) gets a miss instead of a wrong value: no locks and no allocation. A new entry simply replaces the old one.
+ *
+ * @author stilkin
+ */
+public final class TranspositionTable {
+    private final long[] checks;
+    private final long[] values;
+    private final int mask;
+
+    /**
+     * @param bits
+     *            the table holds 2^bits entries
+     */
+    public TranspositionTable(final int bits) {
+	checks = new long[1 << bits];
+	values = new long[1 << bits];
+	mask = (1 << bits) - 1;
+    }
+
+    /**
+     * @return the stored value, or NaN if the key is not in the table
+     */
+    public double get(final long key) {
+	final int slot = slot(key);
+	final long value = values[slot];
+	final long check = checks[slot];
+	return (check ^ value) == key && check != 0 ? Double.longBitsToDouble(value) : Double.NaN;
+    }
+
+    public void put(final long key, final double value) {
+	final int slot = slot(key);
+	final long bits = Double.doubleToRawLongBits(value);
+	values[slot] = bits;
+	checks[slot] = key ^ bits;
+    }
+
+    private int slot(final long key) {
+	return (int) mix(key) & mask;
+    }
+
+    /**
+     * Spreads the bits of a key (the murmur3 finalizer), also useful to combine keys
+     */
+    public static long mix(long key) {
+	key ^= key >>> 33;
+	key *= 0xff51afd7ed558ccdL;
+	key ^= key >>> 33;
+	key *= 0xc4ceb9fe1a85ec53L;
+	key ^= key >>> 33;
+	return key;
+    }
+}
@@ -0,0 +1,87 @@
+package be.stilkin.sim;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+import be.stilkin.sim.bots.ReferenceBots;
+import bot.Bot;
+
+/**
+ * A piece of simulation work that can be sent anywhere: a duplicate match of two bots (by ReferenceBots name) on deals that only depend on the seed. The bots' own randomness
+ * is seeded from it too (ReferenceBots.seed), so wherever it runs it gives the same result, and a job can be split over threads, processes or machines and come out the same.
+ * A Bot given by class name gets no seed, it is only as repeatable as the bot itself.
+ *
+ * On the wire a chunk is one line: "chunk id hands seed botA botB" (bot names have no spaces).
+ *
+ * @author stilkin
+ */
+public final class Chunk {
+    private static final ConcurrentHashMap<String, LongFunction<Bot>> FACTORIES = new ConcurrentHashMap<String, LongFunction<Bot>>();
+    private final String botA;
+    private final String botB;
+    private final int hands;
+    private final long seed;
+
+    /**
+     * @param botA
+     *            the bot we measure
+     * @param botB
+     *            its opponent
+     * @param hands
+     *            deals, every deal is played twice
+     */
+    public Chunk(final String botA, final String botB, final int hands, final long seed) {
+	this.botA = botA;
+	this.botB = botB;
+	this.hands = hands;
+	this.seed = seed;
+    }
+
+    /**
+     * Plays the chunk on the simulator of the calling thread
+     *
+     * @return the result of botA
+     */
+    public MatchResult play(final MatchSimulator simulator) {
+	final MatchResult result = new MatchResult();
+	final LongFunction<Bot> a = factory(botA);
+	final LongFunction<Bot> b = factory(botB);
+	simulator.playDuplicate(() -> a.apply(ReferenceBots.seed(seed, 0)), () -> b.apply(ReferenceBots.seed(seed, 1)), hands, seed, result);
+	return result;
+    }
+
+    private static LongFunction<Bot> factory(final String name) {
+	return FACTORIES.computeIfAbsent(name, ReferenceBots::get);
+    }
+
+    public String getBotA() {
+	return botA;
+    }
+
+    public String getBotB() {
+	return botB;
+    }
+
+    public int getHands() {
+	return hands;
+    }
+
+    public long getSeed() {
+	return seed;
+    }
+
+    public String toLine(final long id) {
+	return "chunk " + id + " " + hands + " " + seed + " " + botA + " " + botB;
+    }
+
+    /**
+     * @param parts
+     *            a line written by toLine, split on spaces
+     */
+    public static Chunk parse(final String[] parts) {
+	if (parts.length != 6 || !parts[0].equals("chunk")) {
+	    throw new IllegalArgumentException("Not a chunk: " + String.join(" ", parts));
+	}
+	return new Chunk(parts[4], parts[5], Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+    }
+}
@@ -0,0 +1,20 @@
+package be.stilkin.sim;
+
+import java.util.List;
+
+/**
+ * Runs a batch of chunks, on local threads (LocalRunner) or on worker processes (dist.Coordinator)
+ *
+ * @author stilkin
+ */
+public interface ChunkRunner extends AutoCloseable {
+    /**
+     * Plays all chunks and waits for them
+     *
+     * @return the result of every chunk, in the order of the list
+     */
+    MatchResult[] run(List<Chunk> chunks) throws InterruptedException;
+
+    @Override
+    void close();
+}
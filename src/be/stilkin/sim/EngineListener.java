@@ -0,0 +1,14 @@
+package be.stilkin.sim;
+
+/**
+ * A bot that keeps its own game state (like the legacy bot in its own class loader) gets the engine lines the simulator sends to its seat, before they go into its BotState
+ *
+ * @author stilkin
+ */
+public interface EngineListener {
+    /**
+     * @param parts
+     *            the line split on spaces, e.g. Match, table, [Ah,Kd,2c]
+     */
+    void onLine(String[] parts);
+}
@@ -0,0 +1,48 @@
+package be.stilkin.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs chunks on a fixed pool of threads in this JVM, one MatchSimulator per thread
+ *
+ * @author stilkin
+ */
+public class LocalRunner implements ChunkRunner {
+    private static final ThreadLocal<MatchSimulator> SIMULATORS = ThreadLocal.withInitial(MatchSimulator::new);
+    private final ExecutorService pool;
+
+    public LocalRunner(final int threads) {
+	this.pool = Executors.newFixedThreadPool(threads, task -> {
+	    final Thread thread = new Thread(task, "simulator");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    }
+
+    @Override
+    public MatchResult[] run(final List<Chunk> chunks) throws InterruptedException {
+	final List<Future<MatchResult>> tasks = new ArrayList<Future<MatchResult>>(chunks.size());
+	for (Chunk chunk : chunks) {
+	    tasks.add(pool.submit(() -> chunk.play(SIMULATORS.get())));
+	}
+	final MatchResult[] results = new MatchResult[chunks.size()];
+	for (int c = 0; c < results.length; c++) {
+	    try {
+		results[c] = tasks.get(c).get();
+	    } catch (ExecutionException e) {
+		throw new IllegalStateException("Chunk failed", e.getCause());
+	    }
+	}
+	return results;
+    }
+
+    @Override
+    public void close() {
+	pool.shutdownNow();
+    }
+}
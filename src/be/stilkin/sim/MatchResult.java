@@ -0,0 +1,78 @@
+package be.stilkin.sim;
+
+import java.util.Locale;
+
+/**
+ * Chips won per hand, summed with their squares so a mean and its standard error can be given in milli big blinds per hand, the usual unit for heads-up results. Not
+ * thread-safe; give every task its own and merge them.
+ *
+ * @author stilkin
+ */
+public class MatchResult {
+    private long hands;
+    private double chips;
+    private double squares;
+
+    public MatchResult() {
+    }
+
+    /**
+     * A result from its sums, e.g. read from shared accumulators
+     */
+    public MatchResult(final long hands, final double chips, final double squares) {
+	this.hands = hands;
+	this.chips = chips;
+	this.squares = squares;
+    }
+
+    public void add(final double handResult) {
+	hands++;
+	chips += handResult;
+	squares += handResult * handResult;
+    }
+
+    public void merge(final MatchResult other) {
+	hands += other.hands;
+	chips += other.chips;
+	squares += other.squares;
+    }
+
+    public long getHands() {
+	return hands;
+    }
+
+    public double getChips() {
+	return chips;
+    }
+
+    /**
+     * @return the sum of the squared hand results
+     */
+    public double getSquares() {
+	return squares;
+    }
+
+    /**
+     * @return the average result in thousandths of a big blind per hand
+     */
+    public double getMbbPerHand() {
+	return hands == 0 ? 0 : 1000 * chips / hands / MatchSimulator.BIG_BLIND;
+    }
+
+    /**
+     * @return the standard error of getMbbPerHand
+     */
+    public double getStandardError() {
+	if (hands < 2) {
+	    return 0;
+	}
+	final double mean = chips / hands;
+	final double variance = Math.max(0, (squares - hands * mean * mean) / (hands - 1));
+	return 1000 * Math.sqrt(variance / hands) / MatchSimulator.BIG_BLIND;
+    }
+
+    @Override
+    public String toString() {
+	return String.format(Locale.ROOT, "%.1f +- %.1f mbb/hand over %d hands", getMbbPerHand(), getStandardError(), hands);
+    }
+}
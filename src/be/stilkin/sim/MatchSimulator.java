@@ -0,0 +1,305 @@
+package be.stilkin.sim;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.CardMasks;
+import bot.Bot;
+import bot.BotParser;
+import bot.BotState;
+import poker.ActionType;
+import poker.PokerMove;
+
+/**
+ * Deals heads-up no-limit hands between two in-process bots, talking to each through its own BotState with the same lines the engine sends, so a bot cannot tell a simulated
+ * match from a real one. Stacks are reset every hand (results are in chips per hand, not match wins), and the button alternates.
+ *
+ * The cards of a hand only depend on the seed and the hand number (common random numbers): two candidates played with the same seed get the same cards. A duplicate match
+ * plays every deal twice with the bots in swapped seats, which cancels most of the card luck.
+ *
+ * Bots that implement EngineListener also get every line sent to their seat.
+ *
+ * Follows the engine's rules: a raise is on top of the call and at least a big blind, a check facing a bet is a fold, a call of 0 is a check. Not thread-safe, use one
+ * simulator per thread.
+ *
+ * @author stilkin
+ */
+public class MatchSimulator {
+    public static final int SMALL_BLIND = 10;
+    public static final int BIG_BLIND = 20;
+    public static final int STACK = 2000;
+    private static final String[] NAMES = { "player1", "player2" };
+    private static final String HEIGHTS = "23456789TJQKA";
+    private static final String SUITS = "shcd";
+    private static final int DEALT = 9; // 2 + 2 hole cards and 5 on the table
+    private static final Long TIME_OUT = Long.valueOf(10000);
+    private final int[] deck = new int[CardMasks.DECK_SIZE];
+    private final Bot[] bots = new Bot[2];
+    private final BotState[] states = new BotState[2];
+    private final EngineListener[] listeners = new EngineListener[2];
+    private final int[] stacks = new int[2];
+    private final int[] committed = new int[2]; // this street
+    private final int[] invested = new int[2]; // this hand
+    private final boolean[] acted = new boolean[2];
+    private long decisions;
+
+    /**
+     * Plays the same deals twice, with the bots swapped the second time, and adds the average of both seatings per deal to the result (from the view of bot a)
+     *
+     * @param a
+     *            creates the bot we measure
+     * @param b
+     *            creates its opponent
+     * @param hands
+     *            deals to play, every deal is played twice
+     * @param seed
+     *            decides the cards
+     */
+    public void playDuplicate(final Supplier<Bot> a, final Supplier<Bot> b, final int hands, final long seed, final MatchResult result) {
+	final long[] first = new long[hands];
+	startMatch(a.get(), b.get());
+	for (int h = 0; h < hands; h++) {
+	    first[h] = playHand(h, seed);
+	}
+	startMatch(b.get(), a.get());
+	for (int h = 0; h < hands; h++) {
+	    result.add((first[h] - playHand(h, seed)) / 2.0);
+	}
+    }
+
+    /**
+     * Plays hands between two bots and adds the result of bot a (seat 0) per hand
+     */
+    public void playMatch(final Bot a, final Bot b, final int hands, final long seed, final MatchResult result) {
+	startMatch(a, b);
+	for (int h = 0; h < hands; h++) {
+	    result.add(playHand(h, seed));
+	}
+    }
+
+    private void startMatch(final Bot a, final Bot b) {
+	bots[0] = a;
+	bots[1] = b;
+	for (int s = 0; s < 2; s++) {
+	    listeners[s] = bots[s] instanceof EngineListener ? (EngineListener) bots[s] : null;
+	    states[s] = new BotState();
+	    send(s, "Settings your_bot " + NAMES[s]);
+	    send(s, "Settings timebank 10000");
+	    send(s, "Settings time_per_move 500");
+	    send(s, "Settings hands_per_level 1000000");
+	    send(s, "Settings starting_stack " + STACK);
+	}
+    }
+
+    /**
+     * @return the chips won (or lost) by seat 0
+     */
+    private long playHand(final int hand, final long seed) {
+	final int button = hand % 2;
+	shuffle(seed, hand);
+	for (int s = 0; s < 2; s++) {
+	    stacks[s] = STACK;
+	    invested[s] = 0;
+	    committed[s] = 0;
+	}
+	sendBoth("Match round " + (hand + 1));
+	sendBoth("Match small_blind " + SMALL_BLIND);
+	sendBoth("Match big_blind " + BIG_BLIND);
+	sendBoth("Match on_button " + NAMES[button]);
+	sendBoth(NAMES[0] + " stack " + STACK);
+	sendBoth(NAMES[1] + " stack " + STACK);
+	pay(button, SMALL_BLIND);
+	sendBoth(NAMES[button] + " post " + SMALL_BLIND);
+	pay(1 - button, BIG_BLIND);
+	sendBoth(NAMES[1 - button] + " post " + BIG_BLIND);
+	for (int s = 0; s < 2; s++) {
+	    send(s, NAMES[s] + " hand " + cards(2 * s, 2 * s + 2));
+	}
+
+	for (int street = 0; street < 4; street++) {
+	    if (street > 0) {
+		sendBoth("Match table " + cards(4, 6 + street));
+		committed[0] = 0;
+		committed[1] = 0;
+	    }
+	    if (stacks[0] > 0 && stacks[1] > 0) { // else someone is all-in, just deal the cards
+		final int folded = bettingRound(street == 0 ? button : 1 - button);
+		if (folded >= 0) {
+		    return award(1 - folded);
+		}
+	    }
+	}
+
+	// showdown
+	for (int s = 0; s < 2; s++) {
+	    send(1 - s, NAMES[s] + " hand " + cards(2 * s, 2 * s + 2));
+	}
+	long board = 0;
+	for (int c = 4; c < DEALT; c++) {
+	    board |= CardMasks.bit(deck[c]);
+	}
+	final int rank0 = HandEval.hand7Eval(board | CardMasks.bit(deck[0]) | CardMasks.bit(deck[1]));
+	final int rank1 = HandEval.hand7Eval(board | CardMasks.bit(deck[2]) | CardMasks.bit(deck[3]));
+	if (rank0 == rank1) {
+	    return award(-1);
+	}
+	return award(rank0 > rank1 ? 0 : 1);
+    }
+
+    /**
+     * One street of betting
+     *
+     * @return the seat that folded, or -1
+     */
+    private int bettingRound(final int first) {
+	acted[0] = false;
+	acted[1] = false;
+	int seat = first;
+	while (!(acted[0] && acted[1] && committed[0] == committed[1])) {
+	    final int other = 1 - seat;
+	    if (stacks[seat] == 0) { // all-in, nothing to decide
+		acted[seat] = true;
+		if (committed[seat] < committed[other]) {
+		    refund(other);
+		}
+		seat = other;
+		continue;
+	    }
+	    final int toCall = committed[other] - committed[seat];
+	    send(seat, "Match max_win_pot " + (invested[0] + invested[1]));
+	    send(seat, "Match amount_to_call " + toCall);
+	    final PokerMove move = bots[seat].getMove(states[seat], TIME_OUT);
+	    decisions++;
+	    ActionType action = move.getActionType();
+	    if (action == null) {
+		action = ActionType.CHECK;
+	    }
+	    if (action == ActionType.CHECK && toCall > 0) { // the engine folds you
+		action = ActionType.FOLD;
+	    }
+	    if (action == ActionType.RAISE && (stacks[other] == 0 || stacks[seat] <= toCall)) { // nothing left to raise with, or against
+		action = ActionType.CALL;
+	    }
+	    if (action == ActionType.CALL && toCall == 0) {
+		action = ActionType.CHECK;
+	    }
+
+	    switch (action) {
+		case FOLD:
+		    sendBoth(NAMES[seat] + " fold 0");
+		    return seat;
+		case CHECK:
+		    sendBoth(NAMES[seat] + " check 0");
+		    break;
+		case CALL:
+		    final int call = Math.min(toCall, stacks[seat]);
+		    pay(seat, call);
+		    sendBoth(NAMES[seat] + " call " + call);
+		    if (committed[seat] < committed[other]) { // called all-in for less
+			refund(other);
+		    }
+		    break;
+		case RAISE:
+		    final int raise = Math.min(Math.max(move.getAmount(), BIG_BLIND), stacks[seat] - toCall);
+		    pay(seat, toCall + raise);
+		    sendBoth(NAMES[seat] + " raise " + raise);
+		    acted[other] = false; // he has to answer
+		    break;
+	    }
+	    acted[seat] = true;
+	    seat = other;
+	}
+	return -1;
+    }
+
+    private void pay(final int seat, final int amount) {
+	stacks[seat] -= amount;
+	committed[seat] += amount;
+	invested[seat] += amount;
+    }
+
+    /**
+     * Gives back the part of a bet the other player could not match
+     */
+    private void refund(final int seat) {
+	final int excess = committed[seat] - committed[1 - seat];
+	stacks[seat] += excess;
+	committed[seat] -= excess;
+	invested[seat] -= excess;
+    }
+
+    /**
+     * @param winner
+     *            the seat that wins, -1 to split
+     * @return the chips won by seat 0
+     */
+    private long award(final int winner) {
+	final int pot = invested[0] + invested[1];
+	if (winner < 0) {
+	    stacks[0] += pot / 2;
+	    stacks[1] += pot - pot / 2;
+	    sendBoth(NAMES[0] + " wins " + pot / 2);
+	    sendBoth(NAMES[1] + " wins " + (pot - pot / 2));
+	} else {
+	    stacks[winner] += pot;
+	    sendBoth(NAMES[winner] + " wins " + pot);
+	}
+	return stacks[0] - STACK;
+    }
+
+    /**
+     * Partial Fisher-Yates from a fresh deck, on a generator that only depends on seed and hand
+     */
+    private void shuffle(final long seed, final int hand) {
+	for (int c = 0; c < deck.length; c++) {
+	    deck[c] = c;
+	}
+	final SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + hand);
+	for (int i = 0; i < DEALT; i++) {
+	    final int j = i + random.nextInt(deck.length - i);
+	    final int swap = deck[i];
+	    deck[i] = deck[j];
+	    deck[j] = swap;
+	}
+    }
+
+    /**
+     * @return deck[from] up to deck[to - 1] in engine notation, e.g. [Ah,Kd]
+     */
+    private String cards(final int from, final int to) {
+	final StringBuilder sb = new StringBuilder("[");
+	for (int c = from; c < to; c++) {
+	    if (c > from) {
+		sb.append(',');
+	    }
+	    sb.append(HEIGHTS.charAt(CardMasks.height(deck[c]))).append(SUITS.charAt(CardMasks.suit(deck[c])));
+	}
+	return sb.append(']').toString();
+    }
+
+    private void send(final int seat, final String line) {
+	send(seat, line.split(" "));
+    }
+
+    private void sendBoth(final String line) {
+	final String[] parts = line.split(" ");
+	send(0, parts);
+	send(1, parts);
+    }
+
+    private void send(final int seat, final String[] parts) {
+	if (listeners[seat] != null) {
+	    listeners[seat].onLine(parts);
+	}
+	BotParser.updateState(states[seat], parts);
+    }
+
+    /**
+     * @return the amount of getMove calls so far
+     */
+    public long getDecisions() {
+	return decisions;
+    }
+}
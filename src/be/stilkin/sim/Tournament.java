@@ -0,0 +1,233 @@
+package be.stilkin.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+import be.stilkin.log.Log;
+import be.stilkin.sim.bots.ReferenceBots;
+import bot.Bot;
+
+/**
+ * Plays every pair of bots against each other in duplicate matches and reports who beats whom, in mbb/hand with a 95% confidence interval. This is the benchmark for a change to
+ * BotStarter: put the old and the new parameters (or the reference bots) in one tournament and see if the difference is real.
+ *
+ * All pairings are cut in chunks of deals, queued round-robin (chunk 1 of every pairing, then chunk 2, ...) in one shared queue that worker threads take from, so every core
+ * stays busy until the last pairing is done. Chunk k gets the same deals, and the bots the same seeds, in every pairing. Workers add their results to lock-free accumulators per pairing. A pairing stops
+ * early when its result is significant: after the minimum amount of deals, once the mean is further from 0 than the stop threshold (in standard errors; higher than 1.96
+ * because we look after every chunk). Its remaining chunks are then skipped.
+ *
+ * Usage: java be.stilkin.sim.Tournament [-hands n] [-min n] [-chunk n] [-threads n] [-seed n] [-stop z] bot bot [bot ...]
+ *
+ * A bot is a name from ReferenceBots, a Bot class name, or stilkin:name=value,... for BotStarter with other StrategyParams. Without bots all reference bots play.
+ *
+ * @author stilkin
+ */
+public class Tournament {
+    private static final double Z_95 = 1.96;
+    private final List<String> names;
+    private final List<LongFunction<Bot>> bots;
+    private final Pairing[] pairings;
+    private final int maxHands;
+    private final int minHands;
+    private final int chunk;
+    private final long seed;
+    private final double stop;
+
+    /**
+     * The accumulated result of bot a against bot b, updated by all workers
+     */
+    private static final class Pairing {
+	final int a;
+	final int b;
+	final LongAdder hands = new LongAdder();
+	final DoubleAdder chips = new DoubleAdder();
+	final DoubleAdder squares = new DoubleAdder();
+	volatile boolean decided;
+
+	Pairing(final int a, final int b) {
+	    this.a = a;
+	    this.b = b;
+	}
+
+	void add(final MatchResult result) {
+	    chips.add(result.getChips());
+	    squares.add(result.getSquares());
+	    hands.add(result.getHands()); // last, so a reader never sees hands without their chips
+	}
+
+	MatchResult result() {
+	    final long count = hands.sum();
+	    return new MatchResult(count, chips.sum(), squares.sum());
+	}
+    }
+
+    /**
+     * @param maxHands
+     *            duplicate deals per pairing if it does not stop early
+     * @param minHands
+     *            deals before a pairing may stop
+     * @param stop
+     *            standard errors from 0 at which a pairing stops, 0 to play every pairing out
+     */
+    public Tournament(final List<String> names, final List<LongFunction<Bot>> bots, final int maxHands, final int minHands, final int chunk, final long seed,
+	    final double stop) {
+	this.names = names;
+	this.bots = bots;
+	this.maxHands = maxHands;
+	this.minHands = minHands;
+	this.chunk = Math.max(1, Math.min(chunk, maxHands));
+	this.seed = seed;
+	this.stop = stop;
+	final List<Pairing> all = new ArrayList<Pairing>();
+	for (int a = 0; a < bots.size(); a++) {
+	    for (int b = a + 1; b < bots.size(); b++) {
+		all.add(new Pairing(a, b));
+	    }
+	}
+	this.pairings = all.toArray(new Pairing[all.size()]);
+    }
+
+    /**
+     * Plays all pairings on the given amount of threads and waits for them
+     */
+    public void run(final int threads) throws InterruptedException {
+	final LinkedBlockingQueue<long[]> queue = new LinkedBlockingQueue<long[]>();
+	for (int start = 0; start < maxHands; start += chunk) {
+	    for (int p = 0; p < pairings.length; p++) {
+		queue.add(new long[] { p, start });
+	    }
+	}
+
+	final Thread[] workers = new Thread[threads];
+	for (int t = 0; t < threads; t++) {
+	    workers[t] = new Thread(() -> work(queue), "tournament-" + t);
+	    workers[t].setDaemon(true);
+	    workers[t].start();
+	}
+	for (Thread worker : workers) {
+	    worker.join();
+	}
+    }
+
+    private void work(final LinkedBlockingQueue<long[]> queue) {
+	final MatchSimulator simulator = new MatchSimulator();
+	long[] task;
+	while ((task = queue.poll()) != null) {
+	    final Pairing pairing = pairings[(int) task[0]];
+	    if (pairing.decided) {
+		continue;
+	    }
+	    final int start = (int) task[1];
+	    final MatchResult result = new MatchResult();
+	    final LongFunction<Bot> a = bots.get(pairing.a);
+	    final LongFunction<Bot> b = bots.get(pairing.b);
+	    final long chunkSeed = seed + start;
+	    simulator.playDuplicate(() -> a.apply(ReferenceBots.seed(chunkSeed, 0)), () -> b.apply(ReferenceBots.seed(chunkSeed, 1)), Math.min(chunk, maxHands - start), chunkSeed,
+		    result);
+	    pairing.add(result);
+	    checkStop(pairing);
+	}
+    }
+
+    private void checkStop(final Pairing pairing) {
+	if (stop <= 0) {
+	    return;
+	}
+	final MatchResult result = pairing.result();
+	if (result.getHands() >= minHands && Math.abs(result.getMbbPerHand()) > stop * result.getStandardError() && !pairing.decided) {
+	    pairing.decided = true;
+	    System.err.printf(Locale.ROOT, "%s vs %s decided: %s\n", names.get(pairing.a), names.get(pairing.b), result);
+	}
+    }
+
+    /**
+     * @return the result of bot a against bot b (negated if a comes after b)
+     */
+    public MatchResult getResult(final int a, final int b) {
+	for (Pairing pairing : pairings) {
+	    if (pairing.a == a && pairing.b == b) {
+		return pairing.result();
+	    }
+	    if (pairing.a == b && pairing.b == a) {
+		final MatchResult result = pairing.result();
+		return new MatchResult(result.getHands(), -result.getChips(), result.getSquares());
+	    }
+	}
+	throw new IllegalArgumentException("No pairing " + a + " - " + b);
+    }
+
+    /**
+     * One line per pairing, then every bot's average over its opponents, e.g. "stilkin vs rock 202.3 +- 114.1 mbb/hand (3000 hands) significant"
+     */
+    public String report() {
+	final StringBuilder sb = new StringBuilder();
+	for (Pairing pairing : pairings) {
+	    final MatchResult result = pairing.result();
+	    final double interval = Z_95 * result.getStandardError();
+	    sb.append(String.format(Locale.ROOT, "%-12s vs %-12s %9.1f +- %7.1f mbb/hand (%d hands)%s\n", names.get(pairing.a), names.get(pairing.b),
+		    result.getMbbPerHand(), interval, result.getHands(), Math.abs(result.getMbbPerHand()) > interval ? " significant" : ""));
+	}
+	sb.append('\n');
+	for (int a = 0; a < bots.size(); a++) {
+	    double mbb = 0;
+	    for (int b = 0; b < bots.size(); b++) {
+		if (b != a) {
+		    mbb += getResult(a, b).getMbbPerHand() / (bots.size() - 1);
+		}
+	    }
+	    sb.append(String.format(Locale.ROOT, "%-12s %9.1f mbb/hand on average\n", names.get(a), mbb));
+	}
+	return sb.toString();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+	int hands = 100000;
+	int min = 2000;
+	int chunk = 500;
+	int threads = Runtime.getRuntime().availableProcessors();
+	long seed = 42;
+	double stop = 3;
+	final List<String> names = new ArrayList<String>();
+	for (int a = 0; a < args.length; a++) {
+	    final boolean hasValue = a + 1 < args.length;
+	    if (args[a].equals("-hands") && hasValue) {
+		hands = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-min") && hasValue) {
+		min = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-chunk") && hasValue) {
+		chunk = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-threads") && hasValue) {
+		threads = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-seed") && hasValue) {
+		seed = Long.parseLong(args[++a]);
+	    } else if (args[a].equals("-stop") && hasValue) {
+		stop = Double.parseDouble(args[++a]);
+	    } else if (args[a].startsWith("-")) {
+		System.err.println("Usage: Tournament [-hands n] [-min n] [-chunk n] [-threads n] [-seed n] [-stop z] bot bot [bot ...]");
+		return;
+	    } else {
+		names.add(args[a]);
+	    }
+	}
+	if (names.isEmpty()) {
+	    names.addAll(ReferenceBots.pool());
+	}
+	final List<LongFunction<Bot>> bots = new ArrayList<LongFunction<Bot>>();
+	for (String name : names) {
+	    bots.add(ReferenceBots.get(name));
+	}
+
+	Log.setLevel(Log.WARN); // the bots log every decision
+	final Tournament tournament = new Tournament(names, bots, hands, min, chunk, seed, stop);
+	final long start = System.nanoTime();
+	tournament.run(threads);
+	Log.flush();
+	System.out.print(tournament.report());
+	System.out.printf(Locale.ROOT, "%.1f s on %d threads\n", (System.nanoTime() - start) / 1e9, threads);
+    }
+}
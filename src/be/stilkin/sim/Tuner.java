@@ -0,0 +1,217 @@
+package be.stilkin.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import be.stilkin.StrategyParams;
+import be.stilkin.log.Log;
+import be.stilkin.sim.bots.ReferenceBots;
+import be.stilkin.sim.dist.Coordinator;
+
+/**
+ * Searches the StrategyParams of BotStarter by self-play: a genetic search (elitism, tournament selection, blend crossover, gaussian mutation) where the fitness of a candidate
+ * is its duplicate result in mbb/hand against a pool of opponents. Within a generation every candidate plays the same deals against every opponent (common random numbers), so
+ * the differences between candidates are not drowned in card luck; every generation gets new deals so the search does not fit a single deck. The elites are played again each
+ * generation, a lucky candidate does not stay on top.
+ *
+ * The matches of a generation are split in chunks (candidate x opponent x deals) that run on all cores, or with -coordinator on worker processes (see dist.Coordinator).
+ *
+ * Usage: java be.stilkin.sim.Tuner [-generations n] [-population n] [-hands n] [-chunk n] [-threads n] [-seed n] [-opponent name ...] [-coordinator port -workers n]
+ *
+ * The opponents are names from ReferenceBots or Bot class names; without any the whole reference pool is used.
+ *
+ * @author stilkin
+ */
+public class Tuner {
+    private static final int ELITES = 2;
+    private static final int TOURNAMENT = 3;
+    private static final double BLEND = 0.3; // BLX-alpha, children can land a bit outside their parents
+    private static final double MUTATION_RATE = 0.3;
+    private static final double MUTATION_SIZE = 0.1; // part of the parameter range
+    private final List<String> opponents;
+    private final int hands;
+    private final int chunk;
+    private final ChunkRunner runner;
+    private final SplittableRandom random;
+
+    /**
+     * @param opponents
+     *            the pool every candidate plays against, as ReferenceBots names
+     * @param hands
+     *            duplicate deals per candidate and opponent
+     * @param chunk
+     *            deals per task
+     * @param runner
+     *            plays the matches, on local threads or on workers
+     */
+    public Tuner(final List<String> opponents, final int hands, final int chunk, final ChunkRunner runner, final long seed) {
+	this.opponents = opponents;
+	this.hands = hands;
+	this.chunk = Math.max(1, Math.min(chunk, hands));
+	this.runner = runner;
+	this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Plays every candidate against the pool on the same deals
+     *
+     * @return the result of every candidate
+     */
+    public MatchResult[] evaluate(final StrategyParams[] candidates, final long seed) throws InterruptedException {
+	final List<Chunk> chunks = new ArrayList<Chunk>();
+	for (StrategyParams params : candidates) {
+	    final String candidate = ReferenceBots.tuned(params);
+	    for (String opponent : opponents) {
+		for (int start = 0; start < hands; start += chunk) {
+		    chunks.add(new Chunk(candidate, opponent, Math.min(chunk, hands - start), seed + start)); // the same deals for every candidate
+		}
+	    }
+	}
+	final MatchResult[] played = runner.run(chunks);
+	final int perCandidate = chunks.size() / candidates.length;
+	final MatchResult[] results = new MatchResult[candidates.length];
+	for (int c = 0; c < candidates.length; c++) {
+	    results[c] = new MatchResult();
+	    for (int t = 0; t < perCandidate; t++) {
+		results[c].merge(played[c * perCandidate + t]);
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * Runs the search, starting from the defaults and random variations on them
+     *
+     * @return the best candidate of the last generation
+     */
+    public StrategyParams run(final int generations, final int population) throws InterruptedException {
+	StrategyParams[] candidates = new StrategyParams[population];
+	candidates[0] = StrategyParams.DEFAULT;
+	for (int c = 1; c < population; c++) {
+	    candidates[c] = mutate(StrategyParams.DEFAULT.toArray(), 1.0, 3 * MUTATION_SIZE);
+	}
+
+	StrategyParams best = StrategyParams.DEFAULT;
+	for (int g = 0; g < generations; g++) {
+	    final long start = System.nanoTime();
+	    final MatchResult[] results = evaluate(candidates, random.nextLong());
+	    final Integer[] order = new Integer[population];
+	    for (int c = 0; c < population; c++) {
+		order[c] = c;
+	    }
+	    Arrays.sort(order, (a, b) -> Double.compare(results[b].getMbbPerHand(), results[a].getMbbPerHand()));
+	    best = candidates[order[0]];
+	    double mean = 0;
+	    for (MatchResult result : results) {
+		mean += result.getMbbPerHand() / population;
+	    }
+	    System.err.printf(Locale.ROOT, "generation %d: best %.1f +- %.1f mbb/hand, mean %.1f, %.1f s\n  %s\n", g + 1, results[order[0]].getMbbPerHand(),
+		    results[order[0]].getStandardError(), mean, (System.nanoTime() - start) / 1e9, best);
+
+	    final StrategyParams[] next = new StrategyParams[population];
+	    for (int c = 0; c < population; c++) {
+		if (c < ELITES) {
+		    next[c] = candidates[order[c]];
+		} else {
+		    next[c] = mutate(crossover(select(candidates, results), select(candidates, results)), MUTATION_RATE, MUTATION_SIZE);
+		}
+	    }
+	    candidates = next;
+	}
+	return best;
+    }
+
+    private float[] select(final StrategyParams[] candidates, final MatchResult[] results) {
+	int winner = random.nextInt(candidates.length);
+	for (int t = 1; t < TOURNAMENT; t++) {
+	    final int challenger = random.nextInt(candidates.length);
+	    if (results[challenger].getMbbPerHand() > results[winner].getMbbPerHand()) {
+		winner = challenger;
+	    }
+	}
+	return candidates[winner].toArray();
+    }
+
+    private float[] crossover(final float[] a, final float[] b) {
+	final float[] child = new float[StrategyParams.COUNT];
+	for (int p = 0; p < child.length; p++) {
+	    final double low = Math.min(a[p], b[p]);
+	    final double span = Math.abs(a[p] - b[p]);
+	    child[p] = (float) (low - BLEND * span + random.nextDouble() * (1 + 2 * BLEND) * span);
+	}
+	return child;
+    }
+
+    /**
+     * Adds gaussian noise to some parameters, the constructor clamps them back into their range
+     */
+    private StrategyParams mutate(final float[] values, final double rate, final double size) {
+	for (int p = 0; p < values.length; p++) {
+	    if (random.nextDouble() < rate) {
+		values[p] += (float) (gaussian() * size * (StrategyParams.getMax(p) - StrategyParams.getMin(p)));
+	    }
+	}
+	return new StrategyParams(values);
+    }
+
+    private double gaussian() {
+	double u;
+	double v;
+	double s;
+	do { // polar method
+	    u = 2 * random.nextDouble() - 1;
+	    v = 2 * random.nextDouble() - 1;
+	    s = u * u + v * v;
+	} while (s >= 1 || s == 0);
+	return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    public static void main(String[] args) throws Exception {
+	int generations = 20;
+	int population = 16;
+	int hands = 1000;
+	int chunk = 250;
+	int threads = Runtime.getRuntime().availableProcessors();
+	long seed = 42;
+	int port = 0;
+	int workers = 0;
+	final List<String> opponents = new ArrayList<String>();
+	for (int a = 0; a + 1 < args.length; a += 2) {
+	    if (args[a].equals("-generations")) {
+		generations = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-population")) {
+		population = Math.max(ELITES + 1, Integer.parseInt(args[a + 1]));
+	    } else if (args[a].equals("-hands")) {
+		hands = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-chunk")) {
+		chunk = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-threads")) {
+		threads = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-seed")) {
+		seed = Long.parseLong(args[a + 1]);
+	    } else if (args[a].equals("-opponent")) {
+		ReferenceBots.get(args[a + 1]); // fail now if it does not exist
+		opponents.add(args[a + 1]);
+	    } else if (args[a].equals("-coordinator")) {
+		port = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-workers")) {
+		workers = Integer.parseInt(args[a + 1]);
+	    } else {
+		System.err.println("Usage: Tuner [-generations n] [-population n] [-hands n] [-chunk n] [-threads n] [-seed n] [-opponent name ...] [-coordinator port -workers n]");
+		return;
+	    }
+	}
+	if (opponents.isEmpty()) {
+	    opponents.addAll(ReferenceBots.pool());
+	}
+
+	Log.setLevel(Log.OFF); // the bots log every decision
+	try (ChunkRunner runner = port > 0 ? Coordinator.start(port, workers) : new LocalRunner(threads)) {
+	    final StrategyParams best = new Tuner(opponents, hands, chunk, runner, seed).run(generations, population);
+	    System.out.println(best);
+	}
+    }
+}
@@ -0,0 +1,16 @@
+package be.stilkin.sim.bots;
+
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * Calls everything, never raises, never folds
+ *
+ * @author stilkin
+ */
+public class CallingStation extends ReferenceBot {
+    @Override
+    protected PokerMove decide(final BotState state) {
+	return call(state);
+    }
+}
@@ -0,0 +1,39 @@
+package be.stilkin.sim.bots;
+
+import be.stilkin.EquityCalculator;
+import be.stilkin.GameSnapshot;
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * Plays by equity against a random hand (the starting hand odds before the flop): raises the pot when far ahead, calls when the equity beats the pot odds, folds otherwise
+ *
+ * @author stilkin
+ */
+public class EquityBot extends ReferenceBot {
+    private static final int SAMPLES = 200;
+    private static final float RAISE_EQUITY = 0.7f;
+    private final EquityCalculator calculator;
+
+    public EquityBot() {
+	this(System.nanoTime());
+    }
+
+    public EquityBot(final long seed) {
+	this.calculator = new EquityCalculator(seed);
+    }
+
+    @Override
+    protected PokerMove decide(final BotState state) {
+	final GameSnapshot snapshot = state.getSnapshot();
+	final float equity = snapshot.getStreet() == 0 ? startingOdds(state) : calculator.vsRandom(snapshot.getHole(), snapshot.getBoard(), SAMPLES);
+	final int toCall = state.getAmountToCall();
+	if (equity >= RAISE_EQUITY) {
+	    return raise(state, state.getPot() + toCall);
+	}
+	if (equity * (state.getPot() + toCall) >= toCall) {
+	    return call(state);
+	}
+	return checkOrFold(state);
+    }
+}
@@ -0,0 +1,171 @@
+package be.stilkin.sim.bots;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import be.stilkin.sim.EngineListener;
+import bot.Bot;
+import bot.BotState;
+import poker.ActionType;
+import poker.PokerMove;
+
+/**
+ * The strategy of the bot as it was in 2015, from tools/texas-servo.jar (or -Daipoker.legacy.jar), as an opponent to measure progress against. Its classes have the same names
+ * as ours (bot.BotStarter, bot.BotState, poker.Card, ...), so the jar gets its own child-first class loader, shared by all instances. The legacy bot keeps its own legacy
+ * BotState, which it fills from the engine lines (see EngineListener); our BotState is only used for our name.
+ *
+ * The calls go through method handles, so they do not box or allocate; the legacy code itself does allocate (a new PokerMove and Strings per decision) and prints the round
+ * number to stderr every hand, which we cannot change.
+ *
+ * @author stilkin
+ */
+public class LegacyBot implements Bot, EngineListener {
+    public static final String JAR = System.getProperty("aipoker.legacy.jar", "tools/texas-servo.jar");
+    private static Legacy legacy;
+    private final Legacy classes;
+    private final Object bot;
+    private final Object state;
+    private final PokerMove move = new PokerMove();
+
+    /**
+     * @throws IllegalStateException
+     *             if the jar cannot be loaded
+     */
+    public LegacyBot() {
+	classes = load();
+	try {
+	    bot = classes.newBot.invoke();
+	    state = classes.newState.invoke();
+	} catch (Throwable e) {
+	    throw new IllegalStateException("Cannot create the legacy bot", e);
+	}
+    }
+
+    /**
+     * @return true if the legacy jar is there and loads
+     */
+    public static boolean isAvailable() {
+	try {
+	    load();
+	    return true;
+	} catch (IllegalStateException e) {
+	    return false;
+	}
+    }
+
+    private static synchronized Legacy load() {
+	if (legacy == null) {
+	    final File jar = new File(JAR);
+	    if (!jar.isFile()) {
+		throw new IllegalStateException("Legacy bot not found: " + jar.getAbsolutePath());
+	    }
+	    try {
+		legacy = new Legacy(new ChildFirstLoader(jar.toURI().toURL()));
+	    } catch (ReflectiveOperationException | MalformedURLException e) {
+		throw new IllegalStateException("Cannot load the legacy bot from " + jar, e);
+	    }
+	}
+	return legacy;
+    }
+
+    @Override
+    public void onLine(final String[] parts) {
+	if (parts.length != 3) {
+	    return;
+	}
+	try {
+	    if (parts[0].equals("Settings")) {
+		classes.updateSetting.invokeExact(state, parts[1], parts[2]);
+	    } else if (parts[0].equals("Match")) {
+		classes.updateMatch.invokeExact(state, parts[1], parts[2]);
+	    } else if (parts[0].startsWith("player")) {
+		classes.updateMove.invokeExact(state, parts[0], parts[1], parts[2]);
+	    }
+	} catch (Throwable e) {
+	    throw new IllegalStateException("Legacy bot cannot read " + String.join(" ", parts), e);
+	}
+    }
+
+    @Override
+    public PokerMove getMove(final BotState ourState, final Long timeOut) {
+	try {
+	    final Object legacyMove = classes.getMove.invokeExact(bot, state, timeOut);
+	    final ActionType action = ActionType.parse((String) classes.getAction.invokeExact(legacyMove));
+	    return move.set(ourState.getMyName(), action == null ? ActionType.CHECK : action, (int) classes.getAmount.invokeExact(legacyMove));
+	} catch (Throwable e) {
+	    throw new IllegalStateException("Legacy bot failed", e);
+	}
+    }
+
+    /**
+     * The legacy constructors and methods, typed on Object so our code can call them
+     */
+    private static final class Legacy {
+	final MethodHandle newBot;
+	final MethodHandle newState;
+	final MethodHandle updateSetting;
+	final MethodHandle updateMatch;
+	final MethodHandle updateMove;
+	final MethodHandle getMove;
+	final MethodHandle getAction;
+	final MethodHandle getAmount;
+
+	Legacy(final ClassLoader loader) throws ReflectiveOperationException {
+	    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+	    final Class<?> botClass = loader.loadClass("bot.BotStarter");
+	    final Class<?> stateClass = loader.loadClass("bot.BotState");
+	    final Class<?> moveClass = loader.loadClass("poker.PokerMove");
+	    newBot = lookup.unreflectConstructor(botClass.getConstructor()).asType(MethodType.methodType(Object.class));
+	    newState = lookup.unreflectConstructor(stateClass.getConstructor()).asType(MethodType.methodType(Object.class));
+	    final MethodType update = MethodType.methodType(void.class, Object.class, String.class, String.class);
+	    updateSetting = lookup.unreflect(accessible(stateClass.getDeclaredMethod("updateSetting", String.class, String.class))).asType(update);
+	    updateMatch = lookup.unreflect(accessible(stateClass.getDeclaredMethod("updateMatch", String.class, String.class))).asType(update);
+	    updateMove = lookup.unreflect(accessible(stateClass.getDeclaredMethod("updateMove", String.class, String.class, String.class)))
+		    .asType(MethodType.methodType(void.class, Object.class, String.class, String.class, String.class));
+	    getMove = lookup.unreflect(botClass.getMethod("getMove", stateClass, Long.class))
+		    .asType(MethodType.methodType(Object.class, Object.class, Object.class, Long.class));
+	    getAction = lookup.unreflect(moveClass.getMethod("getAction")).asType(MethodType.methodType(String.class, Object.class));
+	    getAmount = lookup.unreflect(moveClass.getMethod("getAmount")).asType(MethodType.methodType(int.class, Object.class));
+	}
+
+	private static java.lang.reflect.Method accessible(final java.lang.reflect.Method method) {
+	    method.setAccessible(true); // protected in the legacy BotState
+	    return method;
+	}
+    }
+
+    /**
+     * Looks in the jar before asking the parent, so the legacy classes win over ours with the same name
+     */
+    private static final class ChildFirstLoader extends URLClassLoader {
+	ChildFirstLoader(final URL jar) {
+	    super(new URL[] { jar }, LegacyBot.class.getClassLoader());
+	}
+
+	@Override
+	protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+	    synchronized (getClassLoadingLock(name)) {
+		Class<?> type = findLoadedClass(name);
+		if (type == null && !name.startsWith("java.")) {
+		    try {
+			type = findClass(name);
+		    } catch (ClassNotFoundException e) {
+			// not in the jar
+		    }
+		}
+		if (type == null) {
+		    return super.loadClass(name, resolve);
+		}
+		if (resolve) {
+		    resolveClass(type);
+		}
+		return type;
+	    }
+	}
+    }
+}
@@ -0,0 +1,16 @@
+package be.stilkin.sim.bots;
+
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * Raises the pot on every decision, whatever the cards
+ *
+ * @author stilkin
+ */
+public class Maniac extends ReferenceBot {
+    @Override
+    protected PokerMove decide(final BotState state) {
+	return raise(state, state.getPot() + state.getAmountToCall());
+    }
+}
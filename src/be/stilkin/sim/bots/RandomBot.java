@@ -0,0 +1,33 @@
+package be.stilkin.sim.bots;
+
+import java.util.SplittableRandom;
+
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * Picks a move at random: facing a bet a third each of fold, call and raise, otherwise checks twice as often as it raises. Raises between a big blind and the pot.
+ *
+ * @author stilkin
+ */
+public class RandomBot extends ReferenceBot {
+    private final SplittableRandom random;
+
+    public RandomBot() {
+	this(System.nanoTime());
+    }
+
+    public RandomBot(final long seed) {
+	this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    protected PokerMove decide(final BotState state) {
+	final int pick = random.nextInt(3);
+	if (pick == 2) {
+	    final int pot = Math.max(state.getPot(), state.getBigBlind());
+	    return raise(state, state.getBigBlind() + random.nextInt(pot));
+	}
+	return pick == 0 && state.getAmountToCall() > 0 ? fold() : call(state);
+    }
+}
@@ -0,0 +1,92 @@
+package be.stilkin.sim.bots;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.GameSnapshot;
+import be.stilkin.StartingHands;
+import bot.Bot;
+import bot.BotState;
+import poker.ActionType;
+import poker.HandHoldem;
+import poker.PokerMove;
+
+/**
+ * Base of the simple opponents: one PokerMove that is reused for every decision and a few helpers on the state. Subclasses keep no state between hands (or reset it cheaply)
+ * and do not allocate while deciding, so in a long simulation the time goes to the bot we measure.
+ *
+ * @author stilkin
+ */
+public abstract class ReferenceBot implements Bot {
+    private static final HandEval.HandCategory[] CATEGORIES = HandEval.HandCategory.values();
+    private final PokerMove move = new PokerMove();
+    private String name = "";
+
+    @Override
+    public PokerMove getMove(final BotState state, final Long timeOut) {
+	name = state.getMyName();
+	return decide(state);
+    }
+
+    protected abstract PokerMove decide(BotState state);
+
+    protected PokerMove fold() {
+	return move.set(name, ActionType.FOLD, 0);
+    }
+
+    /**
+     * @return a call if there is something to call, else a check
+     */
+    protected PokerMove call(final BotState state) {
+	return state.getAmountToCall() > 0 ? move.set(name, ActionType.CALL, state.getAmountToCall()) : move.set(name, ActionType.CHECK, 0);
+    }
+
+    /**
+     * @return a check if that is free, else a fold
+     */
+    protected PokerMove checkOrFold(final BotState state) {
+	return state.getAmountToCall() > 0 ? fold() : move.set(name, ActionType.CHECK, 0);
+    }
+
+    /**
+     * @param amount
+     *            on top of the call, at least a big blind
+     */
+    protected PokerMove raise(final BotState state, final int amount) {
+	return move.set(name, ActionType.RAISE, Math.max(amount, state.getBigBlind()));
+    }
+
+    /**
+     * @return the pre-flop win odds of our cards (see StartingHands)
+     */
+    protected static float startingOdds(final BotState state) {
+	final HandHoldem hand = state.getHand();
+	return StartingHands.getOdds(hand.getCard(0), hand.getCard(1));
+    }
+
+    /**
+     * @return the best five-card category of our cards and the table, null pre-flop
+     */
+    protected static HandEval.HandCategory category(final BotState state) {
+	final GameSnapshot snapshot = state.getSnapshot();
+	final long cards = snapshot.getHole() | snapshot.getBoard();
+	switch (snapshot.getStreet()) {
+	    case 1:
+		return CATEGORIES[HandEval.hand5Eval(cards) >> HandEval.VALUE_SHIFT];
+	    case 2:
+		return CATEGORIES[HandEval.hand6Eval(cards) >> HandEval.VALUE_SHIFT];
+	    case 3:
+		return CATEGORIES[HandEval.hand7Eval(cards) >> HandEval.VALUE_SHIFT];
+	    default:
+		return null;
+	}
+    }
+
+    /**
+     * @return true if one of our cards pairs the table, or we hold a pocket pair
+     */
+    protected static boolean holePaired(final BotState state) {
+	final GameSnapshot snapshot = state.getSnapshot();
+	final int hole = HandEval.ranksMask(snapshot.getHole());
+	return Integer.bitCount(hole) == 1 || (hole & HandEval.ranksMask(snapshot.getBoard())) != 0;
+    }
+}
@@ -0,0 +1,104 @@
+package be.stilkin.sim.bots;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+import be.stilkin.StrategyParams;
+import bot.Bot;
+import bot.BotStarter;
+
+/**
+ * The opponents the simulator and the tuner know by name. Every call of a factory gives a fresh bot, one per match, whose only randomness comes from the seed it is given, so a
+ * match played twice with the same seeds is played the same.
+ *
+ * @author stilkin
+ */
+public final class ReferenceBots {
+    private static final String TUNED = "stilkin:";
+    private static final long SEAT_SEED = 0x9E3779B97F4A7C15L;
+    private static final Map<String, LongFunction<Bot>> BOTS = new LinkedHashMap<String, LongFunction<Bot>>();
+
+    static {
+	BOTS.put("station", seed -> new CallingStation());
+	BOTS.put("maniac", seed -> new Maniac());
+	BOTS.put("rock", seed -> new Rock());
+	BOTS.put("random", RandomBot::new);
+	BOTS.put("equity", EquityBot::new);
+	BOTS.put("legacy", seed -> new LegacyBot());
+	BOTS.put("stilkin", seed -> new BotStarter(StrategyParams.DEFAULT, seed)); // the current bot with default parameters
+	BOTS.put("stilkin-odds", seed -> { // the current bot with the post-flop raises sized by the hand odds, as before the BetSizer
+	    final BotStarter bot = new BotStarter(StrategyParams.DEFAULT, seed);
+	    bot.setBetSizing(false);
+	    return bot;
+	});
+    }
+
+    private ReferenceBots() {
+    }
+
+    /**
+     * @param name
+     *            one of names(), stilkin:name=value,... for BotStarter with other StrategyParams, or the class name of a Bot with a public no-argument constructor (which
+     *            gets no seed)
+     * @return a factory that makes the bot from a seed for its randomness
+     */
+    public static LongFunction<Bot> get(final String name) {
+	if (name.startsWith(TUNED)) {
+	    final StrategyParams params = StrategyParams.parse(name.substring(TUNED.length()));
+	    return seed -> new BotStarter(params, seed);
+	}
+	final LongFunction<Bot> factory = BOTS.get(name);
+	if (factory != null) {
+	    if (name.equals("legacy") && !LegacyBot.isAvailable()) {
+		throw new IllegalArgumentException("Legacy bot not found: " + LegacyBot.JAR);
+	    }
+	    return factory;
+	}
+	try {
+	    final Class<? extends Bot> type = Class.forName(name).asSubclass(Bot.class);
+	    type.getConstructor().newInstance(); // fail now, not in the middle of a match
+	    return seed -> {
+		try {
+		    return type.getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+		    throw new IllegalStateException(e);
+		}
+	    };
+	} catch (ReflectiveOperationException | ClassCastException e) {
+	    throw new IllegalArgumentException("Unknown bot: " + name, e);
+	}
+    }
+
+    /**
+     * @return the seed for the bot in a seat (0 or 1) of a match with this seed: both bots get their own, and every match its own
+     */
+    public static long seed(final long matchSeed, final int seat) {
+	long z = matchSeed + (seat + 1) * SEAT_SEED;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+
+    public static List<String> names() {
+	return new ArrayList<String>(BOTS.keySet());
+    }
+
+    /**
+     * @return the names of every reference bot except the legacy one, which writes a line to stderr every hand; ask for it by name
+     */
+    public static List<String> pool() {
+	final List<String> pool = names();
+	pool.remove("legacy");
+	return pool;
+    }
+
+    /**
+     * @return the name get understands for BotStarter with these parameters
+     */
+    public static String tuned(final StrategyParams params) {
+	return TUNED + params.toString().replace(' ', ',');
+    }
+}
@@ -0,0 +1,32 @@
+package be.stilkin.sim.bots;
+
+import com.stevebrecher.HandEval.HandCategory;
+
+import bot.BotState;
+import poker.PokerMove;
+
+/**
+ * Tight and passive: plays only good starting hands, raises only the best ones before the flop, and after the flop calls while his own cards are paired (or better) and gives
+ * up otherwise
+ *
+ * @author stilkin
+ */
+public class Rock extends ReferenceBot {
+    private static final float PLAY_ODDS = 0.58f;
+    private static final float RAISE_ODDS = 0.75f; // about JJ and better
+
+    @Override
+    protected PokerMove decide(final BotState state) {
+	if (state.getStreet() == 0) {
+	    final float odds = startingOdds(state);
+	    if (odds >= RAISE_ODDS && state.getAmountToCall() <= state.getBigBlind()) {
+		return raise(state, 2 * state.getBigBlind());
+	    }
+	    return odds >= PLAY_ODDS ? call(state) : checkOrFold(state);
+	}
+	if (category(state).compareTo(HandCategory.TWO_PAIR) >= 0 || holePaired(state)) {
+	    return call(state);
+	}
+	return checkOrFold(state);
+    }
+}
@@ -0,0 +1,442 @@
+package be.stilkin.sim.dist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import be.stilkin.log.Log;
+import be.stilkin.sim.Chunk;
+import be.stilkin.sim.ChunkRunner;
+import be.stilkin.sim.MatchResult;
+
+/**
+ * Hands out chunks to worker processes (see Worker) over TCP and collects their results, as a ChunkRunner, so the tuner can use many JVMs or machines instead of the threads of
+ * one. Workers connect to the coordinator and say how many chunks they run at once; the coordinator keeps that many in flight per worker, from one shared queue, so fast
+ * workers get more. A worker that drops out gives its unfinished chunks back to the front of the queue, another worker plays them. So does a chunk that is not back before its
+ * deadline (the chunk timeout after it was sent), for a worker that hangs without closing its connection; the slot stays taken until that worker answers. A chunk that
+ * comes back twice counts once.
+ *
+ * Chunks are seeded and the results are added up in chunk order, so a job gives exactly the same numbers on 1 or 20 workers, local or remote, as on a LocalRunner.
+ *
+ * Protocol, one line per message: the worker sends "worker threads", then "result id hands chips squares" or "error id message" per chunk; the coordinator sends Chunk lines.
+ *
+ * Usage: java be.stilkin.sim.dist.Coordinator [-port n] [-bind address] [-workers n] [-spawn n] [-hands n] [-chunk n] [-seed n] [-timeout s] botA botB plays a duplicate
+ * match over the workers; -spawn starts that many workers on this machine.
+ *
+ * @author stilkin
+ */
+public class Coordinator implements ChunkRunner {
+    public static final int DEFAULT_PORT = 7462;
+    public static final long DEFAULT_CHUNK_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    private final ServerSocket server;
+    private final LinkedBlockingDeque<Task> queue = new LinkedBlockingDeque<Task>();
+    private final List<Link> links = new ArrayList<Link>();
+    private final AtomicLong ids = new AtomicLong();
+    private final Thread acceptor;
+    private final List<Process> spawned = new ArrayList<Process>();
+    private volatile boolean closed;
+    private volatile long chunkTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHUNK_TIMEOUT);
+
+    /**
+     * One chunk of the running job
+     */
+    private static final class Task {
+	final long id;
+	final int index;
+	final Chunk chunk;
+	final Job job;
+	final AtomicBoolean done = new AtomicBoolean();
+
+	Task(final long id, final int index, final Chunk chunk, final Job job) {
+	    this.id = id;
+	    this.index = index;
+	    this.chunk = chunk;
+	    this.job = job;
+	}
+    }
+
+    /**
+     * A task sent to a worker, and when it has to be back
+     */
+    private static final class Assignment {
+	final Task task;
+	final long deadline;
+	volatile boolean expired;
+
+	Assignment(final Task task, final long deadline) {
+	    this.task = task;
+	    this.deadline = deadline;
+	}
+    }
+
+    private static final class Job {
+	final MatchResult[] results;
+	final CountDownLatch remaining;
+	volatile String error;
+
+	Job(final int chunks) {
+	    results = new MatchResult[chunks];
+	    remaining = new CountDownLatch(chunks);
+	}
+    }
+
+    /**
+     * Listens for workers on the address; use start for the common case
+     */
+    public Coordinator(final InetSocketAddress address) throws IOException {
+	server = new ServerSocket();
+	server.bind(address);
+	acceptor = new Thread(this::accept, "coordinator");
+	acceptor.setDaemon(true);
+	acceptor.start();
+    }
+
+    /**
+     * Listens on all interfaces and waits for the workers
+     *
+     * @param workers
+     *            connections to wait for, 0 to start right away (workers can join later)
+     */
+    public static Coordinator start(final int port, final int workers) {
+	try {
+	    final Coordinator coordinator = new Coordinator(new InetSocketAddress(port));
+	    coordinator.awaitWorkers(workers);
+	    return coordinator;
+	} catch (IOException | InterruptedException e) {
+	    throw new IllegalStateException("Cannot start the coordinator on port " + port, e);
+	}
+    }
+
+    private void accept() {
+	while (!closed) {
+	    try {
+		final Socket socket = server.accept();
+		socket.setTcpNoDelay(true);
+		socket.setKeepAlive(true); // notice workers on machines that went down
+		final Link link = new Link(socket);
+		synchronized (links) {
+		    links.add(link);
+		    links.notifyAll();
+		}
+		link.start();
+	    } catch (IOException e) {
+		if (!closed) {
+		    Log.warn("Cannot accept worker: {}", e.getMessage());
+		}
+	    }
+	}
+    }
+
+    /**
+     * @param millis
+     *            how long a worker may take for a chunk before it goes to another worker
+     */
+    public void setChunkTimeout(final long millis) {
+	chunkTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @return the port workers connect to
+     */
+    public int getPort() {
+	return server.getLocalPort();
+    }
+
+    /**
+     * Blocks until this many workers are connected
+     */
+    public void awaitWorkers(final int workers) throws InterruptedException {
+	synchronized (links) {
+	    while (connectedWorkers() < workers) {
+		links.wait();
+	    }
+	}
+    }
+
+    public int connectedWorkers() {
+	synchronized (links) {
+	    int connected = 0;
+	    for (Link link : links) {
+		connected += link.isAlive() ? 1 : 0;
+	    }
+	    return connected;
+	}
+    }
+
+    /**
+     * Starts worker processes on this machine, with the classpath and JVM of this one
+     */
+    public void spawn(final int workers, final int threads) throws IOException {
+	final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+	for (int w = 0; w < workers; w++) {
+	    spawned.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(), "-host", "localhost", "-port",
+		    Integer.toString(server.getLocalPort()), "-threads", Integer.toString(threads)).inheritIO().start());
+	}
+    }
+
+    @Override
+    public synchronized MatchResult[] run(final List<Chunk> chunks) throws InterruptedException {
+	final Job job = new Job(chunks.size());
+	for (int c = 0; c < chunks.size(); c++) {
+	    queue.addLast(new Task(ids.incrementAndGet(), c, chunks.get(c), job));
+	}
+	while (!job.remaining.await(1, TimeUnit.SECONDS)) {
+	    if (job.error != null) {
+		break;
+	    }
+	    expireChunks();
+	    if (connectedWorkers() == 0) {
+		Log.warn("No workers connected, {} chunks waiting", job.remaining.getCount());
+	    }
+	}
+	if (job.error != null) {
+	    queue.clear();
+	    throw new IllegalStateException("Chunk failed on a worker: " + job.error);
+	}
+	return job.results;
+    }
+
+    /**
+     * Puts the chunks that are past their deadline back in front of the queue
+     */
+    private void expireChunks() {
+	final long now = System.nanoTime();
+	synchronized (links) {
+	    for (Link link : links) {
+		link.expire(now);
+	    }
+	}
+    }
+
+    @Override
+    public void close() {
+	closed = true;
+	try {
+	    server.close();
+	} catch (IOException e) {
+	    // closing anyway
+	}
+	synchronized (links) {
+	    for (Link link : links) {
+		link.fail(); // workers exit when their connection ends
+	    }
+	}
+	for (Process process : spawned) {
+	    try {
+		process.waitFor(5, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    process.destroy();
+	}
+    }
+
+    /**
+     * One worker connection: a sender that keeps its chunks in flight and a reader for the results
+     */
+    private final class Link {
+	private final Socket socket;
+	private final Map<Long, Assignment> inFlight = new ConcurrentHashMap<Long, Assignment>();
+	private final Thread sender;
+	private final Thread reader;
+	private Semaphore slots;
+	private boolean failed;
+
+	Link(final Socket socket) {
+	    this.socket = socket;
+	    this.sender = new Thread(this::send, "coordinator-send");
+	    this.reader = new Thread(this::read, "coordinator-read");
+	    sender.setDaemon(true);
+	    reader.setDaemon(true);
+	}
+
+	void start() {
+	    reader.start();
+	}
+
+	synchronized boolean isAlive() {
+	    return !failed;
+	}
+
+	private void send() {
+	    try {
+		final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+		while (true) {
+		    slots.acquire();
+		    final Task task = queue.takeFirst();
+		    if (task.done.get()) { // came back late from a lost worker
+			slots.release();
+			continue;
+		    }
+		    synchronized (this) {
+			if (failed) { // went down while we waited, someone else plays it
+			    queue.addFirst(task);
+			    return;
+			}
+			inFlight.put(task.id, new Assignment(task, System.nanoTime() + chunkTimeoutNanos));
+		    }
+		    out.write(task.chunk.toLine(task.id));
+		    out.write('\n');
+		    out.flush();
+		}
+	    } catch (IOException e) {
+		if (!closed) {
+		    Log.warn("Worker {} lost: {}", socket.getRemoteSocketAddress(), e.getMessage());
+		}
+		fail();
+	    } catch (InterruptedException e) {
+		// the link failed
+	    }
+	}
+
+	private void read() {
+	    try {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+		final String[] hello = in.readLine().split(" ");
+		slots = new Semaphore(Math.max(1, Integer.parseInt(hello[1])));
+		sender.start();
+		Log.info("Worker {} joined with {} threads", socket.getRemoteSocketAddress(), slots.availablePermits());
+		String line;
+		while ((line = in.readLine()) != null) {
+		    final String[] parts = line.split(" ", 3);
+		    final Assignment assignment = inFlight.remove(Long.parseLong(parts[1]));
+		    slots.release();
+		    final Task task = assignment == null ? null : assignment.task;
+		    if (task == null || !task.done.compareAndSet(false, true)) {
+			continue; // reassigned and already done elsewhere
+		    }
+		    if (parts[0].equals("result")) {
+			final String[] numbers = parts[2].split(" ");
+			task.job.results[task.index] = new MatchResult(Long.parseLong(numbers[0]), Double.parseDouble(numbers[1]), Double.parseDouble(numbers[2]));
+		    } else {
+			task.job.error = parts[2];
+		    }
+		    task.job.remaining.countDown();
+		}
+		Log.warn("Worker {} left", socket.getRemoteSocketAddress());
+	    } catch (IOException | RuntimeException e) {
+		if (!closed) {
+		    Log.warn("Worker {} lost: {}", socket.getRemoteSocketAddress(), e.toString());
+		}
+	    }
+	    fail();
+	}
+
+	/**
+	 * Closes the connection and puts the chunks it had back in front of the queue
+	 */
+	void fail() {
+	    synchronized (this) {
+		if (failed) {
+		    return;
+		}
+		failed = true;
+	    }
+	    sender.interrupt();
+	    try {
+		socket.close();
+	    } catch (IOException e) {
+		// gone anyway
+	    }
+	    for (Assignment assignment : inFlight.values()) {
+		if (!assignment.task.done.get() && !assignment.expired) { // an expired one is queued already
+		    queue.addFirst(assignment.task);
+		}
+	    }
+	    inFlight.clear();
+	    synchronized (links) {
+		links.notifyAll();
+	    }
+	}
+
+	/**
+	 * Queues the chunks of this worker that are past their deadline again; they stay in flight here, so a late result still frees the slot
+	 */
+	void expire(final long now) {
+	    for (Assignment assignment : inFlight.values()) {
+		if (!assignment.expired && now - assignment.deadline > 0 && !assignment.task.done.get()) {
+		    assignment.expired = true;
+		    queue.addFirst(assignment.task);
+		    Log.warn("Chunk {} is late on worker {}, another worker plays it", assignment.task.id, socket.getRemoteSocketAddress());
+		}
+	    }
+	}
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	int port = DEFAULT_PORT;
+	String bind = null;
+	int workers = 1;
+	int spawn = 0;
+	int hands = 100000;
+	int chunk = 1000;
+	long seed = 42;
+	long timeout = DEFAULT_CHUNK_TIMEOUT / 1000;
+	final List<String> bots = new ArrayList<String>();
+	for (int a = 0; a < args.length; a++) {
+	    final boolean hasValue = a + 1 < args.length;
+	    if (args[a].equals("-port") && hasValue) {
+		port = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-bind") && hasValue) {
+		bind = args[++a];
+	    } else if (args[a].equals("-workers") && hasValue) {
+		workers = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-spawn") && hasValue) {
+		spawn = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-hands") && hasValue) {
+		hands = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-chunk") && hasValue) {
+		chunk = Integer.parseInt(args[++a]);
+	    } else if (args[a].equals("-seed") && hasValue) {
+		seed = Long.parseLong(args[++a]);
+	    } else if (args[a].equals("-timeout") && hasValue) {
+		timeout = Long.parseLong(args[++a]);
+	    } else if (!args[a].startsWith("-")) {
+		bots.add(args[a]);
+	    }
+	}
+	if (bots.size() != 2) {
+	    System.err.println("Usage: Coordinator [-port n] [-bind address] [-workers n] [-spawn n] [-hands n] [-chunk n] [-seed n] [-timeout s] botA botB");
+	    return;
+	}
+
+	final InetSocketAddress address = bind == null ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getByName(bind), port);
+	try (Coordinator coordinator = new Coordinator(address)) {
+	    coordinator.setChunkTimeout(TimeUnit.SECONDS.toMillis(timeout));
+	    coordinator.spawn(spawn, Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, spawn)));
+	    coordinator.awaitWorkers(Math.max(workers, spawn));
+	    final List<Chunk> chunks = new ArrayList<Chunk>();
+	    for (int start = 0; start < hands; start += chunk) {
+		chunks.add(new Chunk(bots.get(0), bots.get(1), Math.min(chunk, hands - start), seed + start));
+	    }
+	    final long start = System.nanoTime();
+	    final MatchResult total = new MatchResult();
+	    for (MatchResult result : coordinator.run(chunks)) {
+		total.merge(result);
+	    }
+	    final double seconds = (System.nanoTime() - start) / 1e9;
+	    Log.flush();
+	    System.out.printf(Locale.ROOT, "%s vs %s: %s\n%.1f s on %d workers, %.0f hands/s\n", bots.get(0), bots.get(1), total, seconds, coordinator.connectedWorkers(),
+		    2 * total.getHands() / seconds);
+	}
+    }
+}
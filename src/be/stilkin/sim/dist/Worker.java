@@ -0,0 +1,102 @@
+package be.stilkin.sim.dist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import be.stilkin.log.Log;
+import be.stilkin.sim.Chunk;
+import be.stilkin.sim.MatchResult;
+import be.stilkin.sim.MatchSimulator;
+
+/**
+ * Plays chunks for a Coordinator: connects to it, says how many chunks it plays at once, and answers every chunk line with one result line. Exits when the coordinator closes the
+ * connection.
+ *
+ * Usage: java be.stilkin.sim.dist.Worker [-host name] [-port n] [-threads n]
+ *
+ * @author stilkin
+ */
+public class Worker {
+    private static final int CONNECT_TRIES = 50;
+    private static final long CONNECT_PAUSE = 200; // ms, the coordinator may still be starting
+    private static final ThreadLocal<MatchSimulator> SIMULATORS = ThreadLocal.withInitial(MatchSimulator::new);
+
+    /**
+     * Serves one coordinator until it closes the connection
+     */
+    public static void serve(final Socket socket, final int threads) throws IOException {
+	final ExecutorService pool = Executors.newFixedThreadPool(threads);
+	final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+	try {
+	    final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+	    out.write("worker " + threads + "\n");
+	    out.flush();
+	    String line;
+	    while ((line = in.readLine()) != null) {
+		final String[] parts = line.split(" ");
+		final String id = parts[1];
+		pool.execute(() -> {
+		    String reply;
+		    try {
+			final MatchResult result = Chunk.parse(parts).play(SIMULATORS.get());
+			reply = "result " + id + " " + result.getHands() + " " + result.getChips() + " " + result.getSquares() + "\n";
+		    } catch (RuntimeException e) {
+			reply = "error " + id + " " + e + "\n";
+		    }
+		    synchronized (out) {
+			try {
+			    out.write(reply);
+			    out.flush();
+			} catch (IOException e) {
+			    // the coordinator is gone, it will hand the chunk to someone else
+			}
+		    }
+		});
+	    }
+	} finally {
+	    pool.shutdownNow();
+	    socket.close();
+	}
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	String host = "localhost";
+	int port = Coordinator.DEFAULT_PORT;
+	int threads = Runtime.getRuntime().availableProcessors();
+	for (int a = 0; a + 1 < args.length; a += 2) {
+	    if (args[a].equals("-host")) {
+		host = args[a + 1];
+	    } else if (args[a].equals("-port")) {
+		port = Integer.parseInt(args[a + 1]);
+	    } else if (args[a].equals("-threads")) {
+		threads = Integer.parseInt(args[a + 1]);
+	    } else {
+		System.err.println("Usage: Worker [-host name] [-port n] [-threads n]");
+		return;
+	    }
+	}
+
+	Log.setLevel(Log.WARN); // the bots log every decision
+	for (int tries = 1;; tries++) {
+	    try {
+		final Socket socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		serve(socket, threads);
+		return;
+	    } catch (ConnectException e) {
+		if (tries == CONNECT_TRIES) {
+		    throw e;
+		}
+		Thread.sleep(CONNECT_PAUSE);
+	    }
+	}
+    }
+}
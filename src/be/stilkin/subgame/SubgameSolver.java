@@ -0,0 +1,431 @@
+package be.stilkin.subgame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.stevebrecher.HandEval;
+
+import be.stilkin.CardMasks;
+import be.stilkin.metrics.EvalCounter;
+import be.stilkin.range.Combos;
+
+/**
+ * Solves the rest of the current street (a SubgameTree) on the turn or the river with CFR+ over the 1326 combos of both players, until a deadline. The same scheme as the
+ * pre-flop solver: regrets floored at 0, alternating updates, a linearly weighted average strategy, and every thread walks the tree for its own slice of the updating player's
+ * combos, so there are no locks.
+ *
+ * The showdown values are exact: the river rank index holds all live combos sorted by their 7 card rank, one per possible river card on the turn, and a showdown is one pass over
+ * it with running sums per card for the card removal. On the turn the street end is valued as the showdown averaged over all river cards, so the river betting is not modelled
+ * (the depth limit).
+ *
+ * @author stilkin
+ */
+public class SubgameSolver {
+    private static final int N = Combos.COMBO_COUNT;
+    private static final int RIVER_DEALS = 44; // river cards per pair of hands on the turn: 52 - 4 on the board - 4 in the hands
+    private final SubgameTree tree;
+    private final float[][] startReach = new float[2][];
+    private final short[][] order; // per river card (or one on the river): the live combos by rank
+    private final int[][] rankAt; // the rank of the combo at every position of order
+    private final int[] orderSize;
+    private final double showdownScale;
+    private final int[] offset;
+    private final double[] regret;
+    private final double[] average;
+    private final int depth;
+    private final int maxActions;
+    private final ExecutorService pool;
+    private final List<List<Callable<Void>>> passes = new ArrayList<List<Callable<Void>>>();
+    private final Walker[] inline = new Walker[2];
+    private int iteration;
+
+    /**
+     * @param board
+     *            the table, 4 or 5 cards as a mask
+     * @param myRange
+     *            our weight per combo
+     * @param opponentRange
+     *            the opponent's weight per combo
+     * @param pool
+     *            the threads to use, or null to walk in the calling thread
+     * @param threads
+     *            slices per pass
+     */
+    public SubgameSolver(final SubgameTree tree, final long board, final float[] myRange, final float[] opponentRange, final ExecutorService pool, final int threads) {
+	this(tree, board, myRange, opponentRange, pool, threads, null);
+    }
+
+    /**
+     * @param evalCounter
+     *            counts the hand evaluations of the rank index, can be null
+     */
+    public SubgameSolver(final SubgameTree tree, final long board, final float[] myRange, final float[] opponentRange, final ExecutorService pool, final int threads,
+	    final EvalCounter evalCounter) {
+	this.tree = tree;
+	this.pool = pool;
+	startReach[SubgameTree.ME] = live(myRange, board);
+	startReach[SubgameTree.OPPONENT] = live(opponentRange, board);
+
+	final long[] keys = new long[N];
+	long evaluations = 0;
+	if (CardMasks.count(board) >= 5) {
+	    order = new short[1][];
+	    rankAt = new int[1][];
+	    orderSize = new int[1];
+	    evaluations += rankCombos(board, 0, keys);
+	    showdownScale = 1;
+	} else {
+	    order = new short[CardMasks.DECK_SIZE][];
+	    rankAt = new int[CardMasks.DECK_SIZE][];
+	    orderSize = new int[CardMasks.DECK_SIZE];
+	    for (int card = 0; card < CardMasks.DECK_SIZE; card++) {
+		if ((board & CardMasks.bit(card)) == 0) {
+		    evaluations += rankCombos(board | CardMasks.bit(card), card, keys);
+		}
+	    }
+	    showdownScale = 1.0 / RIVER_DEALS;
+	}
+	if (evalCounter != null) {
+	    evalCounter.evaluations(evaluations);
+	}
+
+	offset = new int[tree.getNodeCount()];
+	int size = 0;
+	int actions = 0;
+	for (int node = 0; node < tree.getNodeCount(); node++) {
+	    offset[node] = size;
+	    size += N * tree.getActionCount(node);
+	    actions = Math.max(actions, tree.getActionCount(node));
+	}
+	regret = new double[size];
+	average = new double[size];
+	maxActions = actions;
+	depth = depth(0) + 1;
+
+	for (int player = 0; player < 2; player++) {
+	    if (pool == null) {
+		inline[player] = new Walker(player, 0, N);
+		continue;
+	    }
+	    final List<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+	    for (int t = 0; t < threads; t++) {
+		final Walker walker = new Walker(player, t * N / threads, (t + 1) * N / threads);
+		slices.add(() -> {
+		    walker.train();
+		    return null;
+		});
+	    }
+	    passes.add(slices);
+	}
+    }
+
+    private static float[] live(final float[] range, final long board) {
+	final float[] reach = new float[N];
+	for (int c = 0; c < N; c++) {
+	    reach[c] = (Combos.mask(c) & board) == 0 ? range[c] : 0f;
+	}
+	return reach;
+    }
+
+    /**
+     * Sorts the combos that do not touch the 5 card board by their rank into slot
+     *
+     * @return the hand evaluations it took
+     */
+    private int rankCombos(final long board, final int slot, final long[] keys) {
+	int n = 0;
+	for (int c = 0; c < N; c++) {
+	    final long mask = Combos.mask(c);
+	    if ((mask & board) == 0) {
+		keys[n++] = ((long) HandEval.hand7Eval(mask | board) << 11) | c;
+	    }
+	}
+	Arrays.sort(keys, 0, n);
+	order[slot] = new short[n];
+	rankAt[slot] = new int[n];
+	for (int pos = 0; pos < n; pos++) {
+	    order[slot][pos] = (short) (keys[pos] & 0x7FF);
+	    rankAt[slot][pos] = (int) (keys[pos] >>> 11);
+	}
+	orderSize[slot] = n;
+	return n;
+    }
+
+    private int depth(final int node) {
+	int deepest = 0;
+	for (int a = 0; a < tree.getActionCount(node); a++) {
+	    deepest = Math.max(deepest, 1 + depth(tree.getChild(node, a)));
+	}
+	return deepest;
+    }
+
+    /**
+     * Runs CFR+ iterations until the deadline or the maximum. An iteration is never cut off: the next one only starts if the last one would still fit before the deadline.
+     *
+     * @param deadline
+     *            System.nanoTime() to be done by
+     * @return the iterations done in this call
+     */
+    public int solve(final long deadline, final int maxIterations) throws InterruptedException {
+	long last = 0;
+	int done = 0;
+	while (done < maxIterations) {
+	    final long start = System.nanoTime();
+	    if (start + last > deadline) {
+		break;
+	    }
+	    iterate();
+	    done++;
+	    last = System.nanoTime() - start;
+	}
+	return done;
+    }
+
+    private void iterate() throws InterruptedException {
+	iteration++;
+	for (int player = 0; player < 2; player++) {
+	    if (pool == null) {
+		inline[player].train();
+		continue;
+	    }
+	    for (Future<Void> slice : pool.invokeAll(passes.get(player))) {
+		try {
+		    slice.get();
+		} catch (ExecutionException e) {
+		    throw new IllegalStateException(e.getCause());
+		}
+	    }
+	}
+    }
+
+    /**
+     * @return the actions of the root, our decision
+     */
+    public int getRootActionCount() {
+	return tree.getActionCount(0);
+    }
+
+    /**
+     * @return the chance that we take the action at the root with this combo, from the average strategy
+     */
+    public double getRootProbability(final int combo, final int action) {
+	final int actions = tree.getActionCount(0);
+	final int row = offset[0] + combo * actions;
+	double total = 0;
+	for (int a = 0; a < actions; a++) {
+	    total += average[row + a];
+	}
+	return total > 0 ? average[row + action] / total : 1.0 / actions;
+    }
+
+    public int getIterations() {
+	return iteration;
+    }
+
+    public SubgameTree getTree() {
+	return tree;
+    }
+
+    /**
+     * One thread's walk over the tree for one player and a slice of his combos, with its own scratch arrays
+     */
+    private final class Walker {
+	private final int player;
+	private final int from;
+	private final int to;
+	private final double[][] oppReach = new double[depth][N];
+	private final double[][] ownReach = new double[depth][N];
+	private final double[][] rowTotals = new double[depth][N];
+	private final double[][][] values = new double[depth][maxActions][N];
+	private final double[] strategy = new double[maxActions];
+	private final double[] result = new double[N];
+	private final double[] cardTotal = new double[CardMasks.DECK_SIZE];
+	private final double[] cardBelow = new double[CardMasks.DECK_SIZE];
+	private final double[] groupCard = new double[CardMasks.DECK_SIZE];
+
+	Walker(final int player, final int from, final int to) {
+	    this.player = player;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	void train() {
+	    for (int c = 0; c < N; c++) {
+		oppReach[0][c] = startReach[1 - player][c];
+		ownReach[0][c] = startReach[player][c];
+	    }
+	    walk(0, 0, result);
+	}
+
+	/**
+	 * Fills out[c] for the combos of this slice with the counterfactual value of the node for this player, in chips weighted by the opponent's reach
+	 */
+	private void walk(final int node, final int level, final double[] out) {
+	    final int type = tree.getType(node);
+	    final double[] opp = oppReach[level];
+	    if (type == SubgameTree.FOLDED) {
+		final int folder = tree.getActor(node);
+		final double payoff = folder == player ? -tree.getSpent(node, player) : tree.getPot() + tree.getSpent(node, folder);
+		final double total = sumPerCard(opp);
+		for (int c = from; c < to; c++) {
+		    out[c] = payoff * (total - cardTotal[Combos.first(c)] - cardTotal[Combos.second(c)] + opp[c]);
+		}
+		return;
+	    }
+	    if (type == SubgameTree.SHOWDOWN) {
+		final int finalPot = tree.getPot() + tree.getSpent(node, SubgameTree.ME) + tree.getSpent(node, SubgameTree.OPPONENT);
+		final int spent = tree.getSpent(node, player);
+		final double total = sumPerCard(opp);
+		for (int c = from; c < to; c++) { // what we pay against every opponent combo we can meet, on every river
+		    out[c] = -spent * (total - cardTotal[Combos.first(c)] - cardTotal[Combos.second(c)] + opp[c]);
+		}
+		for (int slot = 0; slot < order.length; slot++) {
+		    if (order[slot] != null) {
+			showdown(slot, opp, showdownScale * finalPot, out);
+		    }
+		}
+		return;
+	    }
+
+	    final int actions = tree.getActionCount(node);
+	    final int at = offset[node];
+	    final double[][] childValues = values[level];
+	    if (tree.getActor(node) != player) { // the opponent splits his reach over his actions
+		Arrays.fill(out, from, to, 0);
+		final double[] next = oppReach[level + 1];
+		final double[] own = ownReach[level];
+		final double[] totals = rowTotals[level];
+		for (int j = 0; j < N; j++) {
+		    double total = 0;
+		    for (int b = 0; b < actions; b++) {
+			total += regret[at + j * actions + b];
+		    }
+		    totals[j] = total;
+		}
+		for (int a = 0; a < actions; a++) {
+		    for (int j = 0; j < N; j++) {
+			next[j] = totals[j] > 0 ? opp[j] * regret[at + j * actions + a] / totals[j] : opp[j] / actions;
+		    }
+		    System.arraycopy(own, from, ownReach[level + 1], from, to - from);
+		    walk(tree.getChild(node, a), level + 1, childValues[a]);
+		    for (int c = from; c < to; c++) {
+			out[c] += childValues[a][c];
+		    }
+		}
+		return;
+	    }
+
+	    // our decision: every action with the same opponent reach (children only write the levels below theirs)
+	    System.arraycopy(opp, 0, oppReach[level + 1], 0, N);
+	    final double[] totals = rowTotals[level];
+	    for (int c = from; c < to; c++) {
+		double total = 0;
+		for (int b = 0; b < actions; b++) {
+		    total += regret[at + c * actions + b];
+		}
+		totals[c] = total;
+	    }
+	    for (int a = 0; a < actions; a++) {
+		for (int c = from; c < to; c++) {
+		    ownReach[level + 1][c] = totals[c] > 0 ? ownReach[level][c] * regret[at + c * actions + a] / totals[c] : ownReach[level][c] / actions;
+		}
+		walk(tree.getChild(node, a), level + 1, childValues[a]);
+	    }
+	    for (int c = from; c < to; c++) {
+		if (startReach[player][c] == 0) { // a combo he cannot hold
+		    out[c] = 0;
+		    continue;
+		}
+		final double reach = ownReach[level][c];
+		final int row = at + c * actions;
+		currentStrategy(row, actions);
+		double value = 0;
+		for (int a = 0; a < actions; a++) {
+		    value += strategy[a] * childValues[a][c];
+		}
+		out[c] = value;
+		for (int a = 0; a < actions; a++) {
+		    regret[row + a] = Math.max(0, regret[row + a] + childValues[a][c] - value); // CFR+
+		    average[row + a] += iteration * reach * strategy[a];
+		}
+	    }
+	}
+
+	/**
+	 * @return the opponent's total reach, with the reach per card in cardTotal
+	 */
+	private double sumPerCard(final double[] opp) {
+	    double total = 0;
+	    Arrays.fill(cardTotal, 0);
+	    for (int j = 0; j < N; j++) {
+		total += opp[j];
+		cardTotal[Combos.first(j)] += opp[j];
+		cardTotal[Combos.second(j)] += opp[j];
+	    }
+	    return total;
+	}
+
+	/**
+	 * Adds what we win on one river to out: a pass over the combos by rank, with the opponent's reach below the current rank and in the current group of equal ranks, in total
+	 * and per card. The sums per card take away the opponent combos that share a card with ours; the combo itself shares both and is added back once.
+	 */
+	private void showdown(final int slot, final double[] opp, final double pot, final double[] out) {
+	    final short[] combos = order[slot];
+	    final int[] ranks = rankAt[slot];
+	    final int n = orderSize[slot];
+	    Arrays.fill(cardBelow, 0);
+	    double below = 0;
+	    int start = 0;
+	    while (start < n) {
+		int end = start + 1;
+		while (end < n && ranks[end] == ranks[start]) {
+		    end++;
+		}
+		double group = 0;
+		for (int pos = start; pos < end; pos++) {
+		    final int j = combos[pos];
+		    group += opp[j];
+		    groupCard[Combos.first(j)] += opp[j];
+		    groupCard[Combos.second(j)] += opp[j];
+		}
+		for (int pos = start; pos < end; pos++) {
+		    final int c = combos[pos];
+		    if (c >= from && c < to) {
+			final int first = Combos.first(c);
+			final int second = Combos.second(c);
+			final double win = below - cardBelow[first] - cardBelow[second];
+			final double tie = group - groupCard[first] - groupCard[second] + opp[c];
+			out[c] += pot * (win + tie / 2);
+		    }
+		}
+		for (int pos = start; pos < end; pos++) {
+		    final int j = combos[pos];
+		    below += opp[j];
+		    cardBelow[Combos.first(j)] += opp[j];
+		    cardBelow[Combos.second(j)] += opp[j];
+		    groupCard[Combos.first(j)] = 0;
+		    groupCard[Combos.second(j)] = 0;
+		}
+		start = end;
+	    }
+	}
+
+	/**
+	 * Regret matching into the strategy scratch array
+	 */
+	private void currentStrategy(final int row, final int actions) {
+	    double total = 0;
+	    for (int a = 0; a < actions; a++) {
+		total += regret[row + a];
+	    }
+	    for (int a = 0; a < actions; a++) {
+		strategy[a] = total > 0 ? regret[row + a] / total : 1.0 / actions;
+	    }
+	}
+    }
+}
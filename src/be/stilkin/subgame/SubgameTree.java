@@ -0,0 +1,200 @@
+package be.stilkin.subgame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The betting tree for the rest of the current street, in chips, starting at our decision. Bets and raises are fractions of the pot after calling, plus all-in; every bet or raise
+ * is at least a big blind on top of the call, like the engine wants. A fold ends the hand, a call or a second check ends the street (a SHOWDOWN node: on the river the cards
+ * decide, on the turn the solver averages over the river cards).
+ *
+ * Nodes are numbered depth first from the root (0) and stored in flat arrays, like PreflopTree.
+ *
+ * @author stilkin
+ */
+public final class SubgameTree {
+    public static final int ME = 0;
+    public static final int OPPONENT = 1;
+    public static final int FOLD = 0;
+    public static final int CALL = 1; // or check
+    public static final int RAISE = 2; // or bet
+    public static final int ALL_IN = 3;
+    /** Node types */
+    public static final int DECISION = -1;
+    public static final int FOLDED = 0;
+    public static final int SHOWDOWN = 1;
+
+    private final int pot;
+    private final int toCall;
+    private final int maxBet;
+    private final int bigBlind;
+    private final float[] sizes;
+    private final int maxRaises;
+    private int[] type = new int[16];
+    private int[] actor = new int[16];
+    private int[] spent0 = new int[16];
+    private int[] spent1 = new int[16];
+    private int[][] children = new int[16][];
+    private int[][] actionKinds = new int[16][];
+    private int[][] targets = new int[16][];
+    private int count;
+
+    /**
+     * @param pot
+     *            everything in the pot now, our call not included
+     * @param toCall
+     *            what we have to call
+     * @param myStack
+     *            our chips behind
+     * @param opponentStack
+     *            the opponent's chips behind
+     * @param raises
+     *            bets and raises made this street so far
+     * @param checkEnds
+     *            true if a check by us ends the street (the opponent checked before us)
+     * @param sizes
+     *            bet and raise sizes as fractions of the pot after calling, e.g. 0.5 and 1
+     * @param maxRaises
+     *            bets and raises per street after which only fold, call and all-in remain
+     */
+    public SubgameTree(final int pot, final int toCall, final int myStack, final int opponentStack, final int raises, final boolean checkEnds, final float[] sizes,
+	    final int maxRaises, final int bigBlind) {
+	this.pot = pot;
+	this.toCall = toCall;
+	this.maxBet = Math.max(toCall, Math.min(myStack, opponentStack + toCall)); // what we can put in this street from now, at most what the opponent can match
+	this.bigBlind = bigBlind;
+	this.sizes = sizes.clone();
+	this.maxRaises = maxRaises;
+	build(ME, 0, toCall, raises, checkEnds || toCall > 0);
+    }
+
+    /**
+     * Adds the node and everything below it. Street bets count from the root, the opponent starts at toCall.
+     *
+     * @param closes
+     *            true if a call or check by this player ends the street
+     */
+    private int build(final int player, final int bet0, final int bet1, final int raiseCount, final boolean closes) {
+	final int node = add(DECISION, player, bet0, bet1 - toCall);
+	final int my = player == ME ? bet0 : bet1;
+	final int other = player == ME ? bet1 : bet0;
+	final List<Integer> kinds = new ArrayList<Integer>();
+	final List<Integer> to = new ArrayList<Integer>();
+	if (other > my) {
+	    kinds.add(FOLD);
+	    to.add(my);
+	}
+	kinds.add(CALL);
+	to.add(other);
+	if (other < maxBet) {
+	    if (raiseCount < maxRaises) {
+		final int potAfterCall = pot + bet0 + bet1 - toCall + (other - my);
+		for (float size : sizes) {
+		    final int target = other + Math.round(size * potAfterCall);
+		    if (target - other >= bigBlind && target < maxBet && !to.contains(target)) {
+			kinds.add(RAISE);
+			to.add(target);
+		    }
+		}
+	    }
+	    kinds.add(ALL_IN);
+	    to.add(maxBet);
+	}
+
+	final int actions = kinds.size();
+	children[node] = new int[actions];
+	actionKinds[node] = new int[actions];
+	targets[node] = new int[actions];
+	for (int a = 0; a < actions; a++) {
+	    final int kind = kinds.get(a);
+	    final int target = to.get(a);
+	    actionKinds[node][a] = kind;
+	    targets[node][a] = target;
+	    final int next0 = player == ME ? target : bet0;
+	    final int next1 = player == ME ? bet1 : target;
+	    final int child;
+	    if (kind == FOLD) {
+		child = add(FOLDED, player, bet0, bet1 - toCall);
+	    } else if (kind == CALL) {
+		child = closes ? add(SHOWDOWN, player, next0, next1 - toCall) : build(1 - player, next0, next1, raiseCount, true);
+	    } else {
+		child = build(1 - player, next0, next1, raiseCount + 1, true);
+	    }
+	    children[node][a] = child;
+	}
+	return node;
+    }
+
+    private int add(final int nodeType, final int player, final int spentMe, final int spentOpponent) {
+	if (count == type.length) {
+	    final int grown = count * 2;
+	    type = Arrays.copyOf(type, grown);
+	    actor = Arrays.copyOf(actor, grown);
+	    spent0 = Arrays.copyOf(spent0, grown);
+	    spent1 = Arrays.copyOf(spent1, grown);
+	    children = Arrays.copyOf(children, grown);
+	    actionKinds = Arrays.copyOf(actionKinds, grown);
+	    targets = Arrays.copyOf(targets, grown);
+	}
+	type[count] = nodeType;
+	actor[count] = player;
+	spent0[count] = spentMe;
+	spent1[count] = spentOpponent;
+	return count++;
+    }
+
+    public int getNodeCount() {
+	return count;
+    }
+
+    /**
+     * @return DECISION, FOLDED or SHOWDOWN
+     */
+    public int getType(final int node) {
+	return type[node];
+    }
+
+    /**
+     * @return the player to act, or the player who folded or closed the street
+     */
+    public int getActor(final int node) {
+	return actor[node];
+    }
+
+    /**
+     * @return the chips a player put in the pot since the root
+     */
+    public int getSpent(final int node, final int player) {
+	return player == ME ? spent0[node] : spent1[node];
+    }
+
+    /**
+     * @return everything in the pot at the root
+     */
+    public int getPot() {
+	return pot;
+    }
+
+    public int getActionCount(final int node) {
+	return children[node] == null ? 0 : children[node].length;
+    }
+
+    public int getChild(final int node, final int action) {
+	return children[node][action];
+    }
+
+    /**
+     * @return FOLD, CALL, RAISE or ALL_IN
+     */
+    public int getActionKind(final int node, final int action) {
+	return actionKinds[node][action];
+    }
+
+    /**
+     * @return the street bet of the actor after the action, counted from the root where we are at 0 and the opponent at the amount to call
+     */
+    public int getTarget(final int node, final int action) {
+	return targets[node][action];
+    }
+}
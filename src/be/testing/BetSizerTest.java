@@ -0,0 +1,46 @@
+package be.testing;
+
+import java.util.Arrays;
+
+import be.stilkin.range.Combos;
+import be.stilkin.search.BetSizer;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Sizes bets on a river with a uniform opponent range: the nuts bets, air only bets into an opponent who folds a lot, and sizing takes less than a millisecond once the board is
+ * prepared. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class BetSizerTest {
+    private static final int REPEATS = 1000;
+    private static final int POT = 400;
+    private static final int STACK = 2000;
+
+    public static void main(String[] args) {
+	final float[] uniform = new float[Combos.COMBO_COUNT];
+	Arrays.fill(uniform, 1f);
+	final BetSizer sizer = new BetSizer();
+	final long river = Checks.mask("2c", "7h", "Kc", "Qs", "Kh");
+
+	sizer.size(Checks.mask("Ks", "Kd"), river, uniform, POT, 0, STACK, STACK, 0.35f, 20);
+	Checks.check("quads bet", sizer.getBestAmount() > 0);
+	sizer.size(Checks.mask("4d", "3s"), river, uniform, POT, 0, STACK, STACK, 0f, 20);
+	Checks.check("air checks against a station", sizer.getBestAmount() == 0);
+	sizer.size(Checks.mask("4d", "3s"), river, uniform, POT, 0, STACK, STACK, 0.8f, 20);
+	Checks.check("air bluffs against a folder", sizer.getBestAmount() > 0);
+
+	final long turn = Checks.mask("2c", "7h", "Kc", "Qs");
+	sizer.size(Checks.mask("Ah", "Jh"), turn, uniform, POT, 0, STACK, STACK, 0.35f, 20);
+	final long start = System.nanoTime();
+	for (int i = 0; i < REPEATS; i++) {
+	    sizer.size(Checks.mask("Ah", "Jh"), turn, uniform, POT, 0, STACK, STACK, 0.35f, 20);
+	}
+	final long each = (System.nanoTime() - start) / REPEATS / 1000;
+	System.err.printf("Turn: %d us per sizing, best raise %d\n", each, sizer.getBestAmount());
+	Checks.check("sizing takes less than a millisecond", each < 1000);
+
+	Checks.exitOnFailure();
+    }
+}
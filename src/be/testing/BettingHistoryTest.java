@@ -0,0 +1,51 @@
+package be.testing;
+
+import be.stilkin.BettingHistory;
+import poker.ActionType;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks the entries, the key and the questions about the current street, also after a raise war longer than the capacity. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ *
+ */
+public class BettingHistoryTest {
+
+    public static void main(String[] args) {
+	final BettingHistory history = new BettingHistory();
+	history.append(BettingHistory.ME, ActionType.CALL, 15, 45);
+	history.append(BettingHistory.OPPONENT, ActionType.CHECK, 0, 60);
+	history.setStreet(1);
+	history.append(BettingHistory.OPPONENT, ActionType.RAISE, 60, 60);
+	history.append(BettingHistory.ME, ActionType.CALL, 60, 120);
+	Checks.check("one raise on the flop", history.getStreetRaises() == 1 && history.getLastAction(BettingHistory.ME) == ActionType.CALL);
+	history.setStreet(2);
+	history.setStreet(2); // the engine repeats the table
+	Checks.check("history cK/R2c/ (" + history + ")", history.toString().equals("cK/R2c/"));
+	Checks.check("length 6", history.length() == 6);
+	Checks.check("no opponent action on the new street", history.getLastAction(BettingHistory.OPPONENT) == null && history.getStreetRaises() == 0);
+
+	final long key = history.getKey();
+	final BettingHistory same = new BettingHistory();
+	same.append(BettingHistory.ME, ActionType.CALL, 15, 45);
+	same.append(BettingHistory.OPPONENT, ActionType.CHECK, 0, 60);
+	same.setStreet(2);
+	Checks.check("another key without the flop raise", same.getKey() != key);
+
+	history.clear();
+	for (int r = 0; r < 40; r++) { // a raise war longer than the capacity
+	    history.append(r % 2, ActionType.RAISE, 1000, 100);
+	}
+	Checks.check("length 40 past the capacity", history.length() == 40);
+	Checks.check("40 raises on the street", history.getStreetRaises() == 40 && history.getLastAction(BettingHistory.OPPONENT) == ActionType.RAISE);
+	history.append(BettingHistory.ME, ActionType.CALL, 0, 100);
+	history.setStreet(1);
+	history.append(BettingHistory.OPPONENT, ActionType.CHECK, 0, 100);
+	Checks.check("the next street starts fresh after the capacity", history.getLastAction(BettingHistory.OPPONENT) == ActionType.CHECK
+		&& history.getLastAction(BettingHistory.ME) == null && history.getStreetRaises() == 0);
+
+	Checks.exitOnFailure();
+    }
+}
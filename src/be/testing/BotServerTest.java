@@ -0,0 +1,79 @@
+package be.testing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import be.stilkin.log.Log;
+import be.stilkin.host.BotServer;
+import bot.BotStarter;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks that a BotServer keeps serving when one connection sends a line it cannot parse: that connection is closed, and a second one that is in the middle of its match
+ * still gets its move. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class BotServerTest {
+    private static final String SETTINGS = "Settings your_bot player1\nSettings timebank 10000\nSettings time_per_move 500\nSettings hands_per_level 10\n"
+	    + "Settings starting_stack 1600\n";
+    private static final String HAND = "Match round 1\nMatch small_blind 10\nMatch big_blind 20\nMatch on_button player2\nplayer1 stack 1600\nplayer2 stack 1600\n"
+	    + "player2 post 10\nplayer1 post 20\nMatch max_win_pot 30\nplayer2 call 10\nMatch max_win_pot 40\nMatch amount_to_call 0\nplayer1 hand [Ah,Ad]\n";
+    private static final int TIME_OUT = 10000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	Log.setLevel(Log.OFF); // the bot logs every decision, the server the failed connection
+	final BotServer server = new BotServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BotStarter::new, null);
+	final Thread loop = new Thread(() -> {
+	    try {
+		server.run();
+	    } catch (IOException e) {
+		Log.error("Server stopped: {}", e);
+	    }
+	}, "server");
+	loop.setDaemon(true);
+	loop.start();
+
+	try (Socket good = connect(server); Socket bad = connect(server)) {
+	    send(good, SETTINGS + HAND);
+	    send(bad, SETTINGS + "Action player1 soon\n");
+	    Checks.check("the bad connection is closed", read(bad) == null);
+	    send(good, "Action player1 10000\n");
+	    final String move = read(good);
+	    Checks.check("the other connection still gets its move (" + move + ")", move != null && move.matches("(check|call|raise) \\d+"));
+	} finally {
+	    server.close();
+	}
+	loop.join(TIME_OUT);
+	Checks.check("the loop stops on close", !loop.isAlive());
+
+	Checks.exitOnFailure();
+    }
+
+    private static Socket connect(final BotServer server) throws IOException {
+	final Socket socket = new Socket();
+	socket.connect(server.getAddress(), TIME_OUT);
+	socket.setSoTimeout(TIME_OUT);
+	return socket;
+    }
+
+    private static void send(final Socket socket, final String lines) throws IOException {
+	final OutputStream out = socket.getOutputStream();
+	out.write(lines.getBytes(StandardCharsets.US_ASCII));
+	out.flush();
+    }
+
+    /**
+     * @return the next line, or null when the server closed the connection
+     */
+    private static String read(final Socket socket) throws IOException {
+	return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+    }
+}
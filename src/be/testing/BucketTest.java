@@ -0,0 +1,71 @@
+package be.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import be.stilkin.CardMasks;
+import be.stilkin.bucket.BucketBuilder;
+import be.stilkin.bucket.HandBuckets;
+import be.stilkin.bucket.KMeans;
+import be.stilkin.range.HandIndexer;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks the parts of the bucket pipeline that run in seconds: the river equity of a sure winner, k-means on three clear groups of histograms, and a bucket file that maps a
+ * hand to the bucket written for its index. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class BucketTest {
+    private static final int BINS = 16;
+    private static final int POINTS = 3000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	final float quads = BucketBuilder.riverEquity(Checks.mask("Ks", "Kd"), Checks.mask("2c", "7h", "Kc", "Qs", "Kh"));
+	Checks.check("quads win on the river", quads > 0.99f);
+
+	// three groups of hands, their equity always near 0.1, 0.5 or 0.9
+	final SplittableRandom random = new SplittableRandom(7);
+	final byte[] points = new byte[POINTS * BINS];
+	for (int p = 0; p < POINTS; p++) {
+	    final float equity = 0.1f + 0.4f * (p % 3) + (float) random.nextDouble(-0.03, 0.03);
+	    for (int b = 0; b < BINS; b++) {
+		points[p * BINS + b] = (byte) (b >= equity * BINS ? 255 : 0);
+	    }
+	}
+	final KMeans kMeans = new KMeans(points, BINS, 3, 1);
+	kMeans.run(null, 1, 20, 0.001);
+	final byte[] clusters = kMeans.getAssignments();
+	boolean pure = clusters[0] != clusters[1] && clusters[1] != clusters[2] && clusters[0] != clusters[2];
+	for (int p = 3; p < POINTS; p++) {
+	    pure &= clusters[p] == clusters[p % 3];
+	}
+	Checks.check("k-means finds the three groups", pure);
+
+	final File file = File.createTempFile("buckets", ".bin");
+	try {
+	    final byte[] ids = new byte[(int) HandIndexer.size(HandIndexer.PREFLOP)];
+	    for (int i = 0; i < ids.length; i++) {
+		ids[i] = (byte) (i % 7);
+	    }
+	    HandBuckets.write(file, HandIndexer.PREFLOP, 7, ids);
+	    try (HandBuckets buckets = HandBuckets.open(file)) {
+		final HandIndexer indexer = new HandIndexer();
+		boolean same = buckets.getBucketCount() == 7;
+		for (int a = 0; a < CardMasks.DECK_SIZE; a++) {
+		    for (int b = a + 1; b < CardMasks.DECK_SIZE; b++) {
+			final long hole = CardMasks.bit(a) | CardMasks.bit(b);
+			same &= buckets.bucket(hole, 0) == indexer.index(hole, 0) % 7;
+		    }
+		}
+		Checks.check("the bucket file maps every hand to its bucket", same);
+	    }
+	} finally {
+	    file.delete();
+	}
+
+	Checks.exitOnFailure();
+    }
+}
@@ -0,0 +1,43 @@
+package be.testing;
+
+import be.stilkin.CardMasks;
+import poker.Card;
+
+/**
+ * This class is used by the tests. Do not include when packing bot.
+ *
+ * The checks of the tests in this package: every check prints ok or FAIL with what it checked, and exitOnFailure ends the test with 1 if one of them failed.
+ *
+ * @author stilkin
+ */
+public final class Checks {
+    private static boolean ok = true;
+
+    private Checks() {
+    }
+
+    public static void check(final String what, final boolean passed) {
+	System.err.println((passed ? "ok   " : "FAIL ") + what);
+	ok &= passed;
+    }
+
+    /**
+     * Exits with 1 if a check failed; call it at the end of main
+     */
+    public static void exitOnFailure() {
+	if (!ok) {
+	    System.exit(1);
+	}
+    }
+
+    /**
+     * @return the cards, e.g. "Ah", "Kd", as a mask
+     */
+    public static long mask(final String... cards) {
+	final Card[] parsed = new Card[cards.length];
+	for (int c = 0; c < cards.length; c++) {
+	    parsed[c] = Card.getCard(cards[c]);
+	}
+	return CardMasks.mask(parsed);
+    }
+}
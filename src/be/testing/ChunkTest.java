@@ -0,0 +1,31 @@
+package be.testing;
+
+import be.stilkin.log.Log;
+import be.stilkin.sim.Chunk;
+import be.stilkin.sim.MatchResult;
+import be.stilkin.sim.MatchSimulator;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks that a chunk gives the same result every time it is played, also against the reference bots that play at random, and that its line parses back to the same chunk.
+ * Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class ChunkTest {
+    private static final String[] OPPONENTS = { "random", "equity" };
+
+    public static void main(String[] args) {
+	Log.setLevel(Log.OFF); // the bots log every decision
+	for (String opponent : OPPONENTS) {
+	    final Chunk chunk = new Chunk("stilkin", opponent, 200, 7);
+	    final MatchResult first = chunk.play(new MatchSimulator());
+	    final MatchResult again = Chunk.parse(chunk.toLine(1).split(" ")).play(new MatchSimulator());
+	    Checks.check("stilkin vs " + opponent + " plays the same twice (" + first + ")", first.getHands() == again.getHands() && first.getChips() == again.getChips()
+		    && first.getSquares() == again.getSquares());
+	}
+
+	Checks.exitOnFailure();
+    }
+}
@@ -0,0 +1,88 @@
+package be.testing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import be.stilkin.log.Log;
+import be.stilkin.sim.Chunk;
+import be.stilkin.sim.MatchResult;
+import be.stilkin.sim.MatchSimulator;
+import be.stilkin.sim.dist.Coordinator;
+import be.stilkin.sim.dist.Worker;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks that a Coordinator gets a job done when one of its workers takes a chunk and hangs without closing its connection: the chunk goes to the other worker once its
+ * deadline passes, and every chunk gives the same result as when it is played here. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class CoordinatorTest {
+    private static final int CHUNKS = 3;
+    private static final long CHUNK_TIMEOUT = 1000;
+    private static final long TIME_OUT = 60000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	Log.setLevel(Log.OFF); // the coordinator warns about the late chunk
+	final List<Chunk> chunks = new ArrayList<Chunk>();
+	for (int c = 0; c < CHUNKS; c++) {
+	    chunks.add(new Chunk("rock", "station", 100, 11 + c));
+	}
+
+	final InetAddress loopback = InetAddress.getLoopbackAddress();
+	final Coordinator coordinator = new Coordinator(new InetSocketAddress(loopback, 0));
+	coordinator.setChunkTimeout(CHUNK_TIMEOUT);
+	final Socket hung = new Socket(loopback, coordinator.getPort()); // says hello, takes a chunk and never answers
+	final OutputStream hello = hung.getOutputStream();
+	hello.write("worker 1\n".getBytes(StandardCharsets.US_ASCII));
+	hello.flush();
+	coordinator.awaitWorkers(1);
+
+	final Thread worker = new Thread(() -> {
+	    try {
+		Worker.serve(new Socket(loopback, coordinator.getPort()), 1);
+	    } catch (IOException e) {
+		// the coordinator closed
+	    }
+	}, "worker");
+	worker.setDaemon(true);
+	worker.start();
+	coordinator.awaitWorkers(2);
+
+	final MatchResult[][] results = new MatchResult[1][];
+	final Thread job = new Thread(() -> {
+	    try {
+		results[0] = coordinator.run(chunks);
+	    } catch (InterruptedException e) {
+		// no results
+	    }
+	}, "job");
+	job.setDaemon(true);
+	final long start = System.nanoTime();
+	job.start();
+	job.join(TIME_OUT);
+	final long took = (System.nanoTime() - start) / 1000000;
+	coordinator.close();
+	hung.close();
+
+	Checks.check("the job finishes without the hung worker (" + took + " ms)", results[0] != null);
+	if (results[0] != null) {
+	    Checks.check("the late chunk waited for its deadline", took >= CHUNK_TIMEOUT);
+	    boolean same = true;
+	    for (int c = 0; c < CHUNKS; c++) {
+		final MatchResult here = chunks.get(c).play(new MatchSimulator());
+		same &= results[0][c].getHands() == here.getHands() && results[0][c].getChips() == here.getChips() && results[0][c].getSquares() == here.getSquares();
+	    }
+	    Checks.check("every chunk gives the result it gives here", same);
+	}
+
+	Checks.exitOnFailure();
+    }
+}
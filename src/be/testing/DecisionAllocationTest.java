@@ -0,0 +1,79 @@
+package be.testing;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import be.stilkin.log.Log;
+import bot.BotParser;
+import bot.BotStarter;
+import bot.BotState;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks that a steady-state BotStarter.getMove allocates nothing, on every street, with debug logging on. The decisions cycle through several hands and boards, and every one
+ * is the first of its round (resetRound), so the raise ledger, the hand category cache and the bet sizer's board preparation are all taken every time. Exits with 1 if it
+ * allocates.
+ * @author stilkin
+ *
+ */
+public class DecisionAllocationTest {
+    private static final String[] SETTINGS = { "Settings your_bot player1", "Settings timebank 10000", "Settings time_per_move 500", "Settings hands_per_level 10",
+	    "Settings starting_stack 2000" };
+    private static final String[] HAND = { "Match round 3", "Match small_blind 15", "Match big_blind 30", "Match on_button player1", "player1 stack 1970",
+	    "player2 stack 2030", "player1 post 15", "player2 post 30", "player1 hand [%1$s]", "Match max_win_pot 45", "Match amount_to_call 15", "player1 call 15",
+	    "player2 check 0", "Match table [%2$s]", "Match max_win_pot 60", "Match amount_to_call 0", "player2 raise 60", "Match amount_to_call 60", "player1 call 60",
+	    "Match table [%2$s,%3$s]", "Match max_win_pot 180", "player2 check 0", "Match amount_to_call 0", "player1 check 0", "Match table [%2$s,%3$s,%4$s]",
+	    "Match max_win_pot 180", "player2 raise 90", "Match amount_to_call 90" };
+    private static final String[][] DEALS = { { "Ah,Kd", "2c,7h,Kc", "Qs", "Kh" }, { "9s,9d", "Td,4s,9c", "2h", "Ac" }, { "7c,6c", "8c,5d,Ks", "4h", "Jc" },
+	    { "Qh,Jh", "3d,3c,8s", "Ts", "2d" }, { "5s,4d", "Ah,Jd,6c", "6s", "9h" } };
+    private static final int[] STREET_END = { 11, 18, 24, HAND.length };
+    private static final int WARMUP = 20000;
+    private static final int MEASURED = 2000;
+
+    public static void main(String[] args) {
+	final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	final PrintStream stderr = System.err;
+	System.setErr(new PrintStream(OutputStream.nullOutputStream())); // the bot logs every decision
+
+	final BotState[][] states = new BotState[STREET_END.length][DEALS.length];
+	final BotStarter[] bots = new BotStarter[STREET_END.length];
+	for (int s = 0; s < states.length; s++) {
+	    for (int d = 0; d < DEALS.length; d++) {
+		states[s][d] = new BotState();
+		for (String line : SETTINGS) {
+		    BotParser.updateState(states[s][d], line.split("\\s+"));
+		}
+		for (int l = 0; l < STREET_END[s]; l++) {
+		    BotParser.updateState(states[s][d], String.format(HAND[l], (Object[]) DEALS[d]).split("\\s+"));
+		}
+	    }
+	    bots[s] = new BotStarter();
+	}
+
+	final Long timeOut = Long.valueOf(10000);
+	final long[] allocated = new long[states.length];
+	for (int i = 0; i < WARMUP + MEASURED; i++) {
+	    for (int s = 0; s < states.length; s++) {
+		final BotState state = states[s][i % DEALS.length];
+		bots[s].resetRound();
+		final long before = threads.getCurrentThreadAllocatedBytes();
+		bots[s].getMove(state, timeOut);
+		final long after = threads.getCurrentThreadAllocatedBytes();
+		if (i >= WARMUP) {
+		    allocated[s] += after - before;
+		}
+	    }
+	}
+	Log.setLevel(Log.INFO);
+	Log.flush(); // still muted
+	System.setErr(stderr);
+
+	for (int s = 0; s < states.length; s++) {
+	    Checks.check(String.format("street %d: %.2f bytes per decision (0)", s, (double) allocated[s] / MEASURED), allocated[s] == 0);
+	}
+	Checks.exitOnFailure();
+    }
+
+}
@@ -0,0 +1,58 @@
+package be.testing;
+
+import be.stilkin.opponent.OpponentModel;
+import be.stilkin.range.OpponentRange;
+import be.stilkin.search.ExpectimaxSearch;
+import be.stilkin.subgame.SubgameTree;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Searches spots where we face a half pot bet against a fresh opponent model: the nuts does not fold, a hand that hardly wins does not call, and a search on the flop and the
+ * turn takes a few milliseconds. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class ExpectimaxSearchTest {
+    private static final float[] SIZES = { 0.5f, 1f };
+    private static final long BUDGET = 5; // ms per search, once the board is ranked
+    private static final int REPEATS = 200;
+
+    public static void main(String[] args) throws InterruptedException {
+	final ExpectimaxSearch search = new ExpectimaxSearch(null, 1);
+	final long river = Checks.mask("2c", "7h", "Kc", "Qs", "Kh");
+	Checks.check("river: quads do not fold", bestKind(search, Checks.mask("Ks", "Kd"), river) != SubgameTree.FOLD);
+	Checks.check("river: 4 high folds", bestKind(search, Checks.mask("4d", "3s"), river) == SubgameTree.FOLD);
+	Checks.check("turn: top set does not fold", bestKind(search, Checks.mask("Ks", "Kd"), Checks.mask("2c", "7h", "Kc", "Qs")) != SubgameTree.FOLD);
+
+	timed(search, Checks.mask("Ah", "Jh"), Checks.mask("2c", "7h", "Kh"), "flop");
+	timed(search, Checks.mask("Ah", "Jh"), Checks.mask("2c", "7h", "Kh", "Qs"), "turn");
+
+	Checks.exitOnFailure();
+    }
+
+    private static void timed(final ExpectimaxSearch search, final long hole, final long board, final String street) throws InterruptedException {
+	final long first = System.nanoTime();
+	bestKind(search, hole, board);
+	final long ranking = (System.nanoTime() - first) / 1000;
+	final long start = System.nanoTime();
+	for (int i = 0; i < REPEATS; i++) {
+	    bestKind(search, hole, board);
+	}
+	final long each = (System.nanoTime() - start) / REPEATS / 1000;
+	System.err.printf("%s: first search %d us, then %d us per search (%d nodes)\n", street, ranking, each, search.getNodes());
+	Checks.check(street + ": a search takes at most " + BUDGET + " ms", each <= BUDGET * 1000);
+    }
+
+    /**
+     * We face a half pot bet with 100 big blinds behind
+     */
+    private static int bestKind(final ExpectimaxSearch search, final long hole, final long board) throws InterruptedException {
+	final OpponentRange range = new OpponentRange();
+	range.newHand(hole);
+	range.setBoard(board);
+	final SubgameTree tree = new SubgameTree(300, 100, 2000, 2000, 1, false, SIZES, 3, 20);
+	search.search(tree, hole, board, range, new OpponentModel(), 0);
+	return tree.getActionKind(0, search.getBestAction());
+    }
+}
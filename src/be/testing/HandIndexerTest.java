@@ -0,0 +1,124 @@
+package be.testing;
+
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+import be.stilkin.CardMasks;
+import be.stilkin.range.HandIndexer;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks the HandIndexer: the class counts per street, every pre-flop and flop index unranks to a hand that indexes back to it, every pre-flop hand lands on one of the 169
+ * indices and all of them are used, random turn and river hands keep their index under a suit permutation and after unrank, and indexing does not allocate. Exits with 1 if a
+ * check fails.
+ *
+ * @author stilkin
+ */
+public class HandIndexerTest {
+    private static final long[] SIZES = { 169, 1286792, 13960050, 123156254 };
+    private static final int[] BOARD_CARDS = { 0, 3, 4, 5 };
+    private static final int SAMPLES = 200000;
+
+    public static void main(String[] args) {
+	final HandIndexer indexer = new HandIndexer();
+	final long[] hand = new long[2];
+	for (int street = 0; street < HandIndexer.STREETS; street++) {
+	    Checks.check("street " + street + ": " + SIZES[street] + " classes", HandIndexer.size(street) == SIZES[street]);
+	}
+
+	for (int street = HandIndexer.PREFLOP; street <= HandIndexer.FLOP; street++) {
+	    boolean roundTrip = true;
+	    for (long i = 0; i < HandIndexer.size(street); i++) {
+		indexer.unrank(street, i, hand);
+		roundTrip &= indexer.index(hand[0], hand[1]) == i && valid(hand, street);
+	    }
+	    Checks.check("street " + street + ": every index unranks and indexes back", roundTrip);
+	}
+
+	final BitSet seen = new BitSet();
+	for (int a = 0; a < CardMasks.DECK_SIZE; a++) {
+	    for (int b = a + 1; b < CardMasks.DECK_SIZE; b++) {
+		seen.set((int) indexer.index(CardMasks.bit(a) | CardMasks.bit(b), 0));
+	    }
+	}
+	Checks.check("the 1326 pre-flop hands use all 169 indices", seen.cardinality() == 169 && seen.length() == 169);
+
+	final SplittableRandom random = new SplittableRandom(3);
+	for (int street = HandIndexer.TURN; street <= HandIndexer.RIVER; street++) {
+	    boolean same = true;
+	    for (int s = 0; s < SAMPLES; s++) {
+		deal(random, street, hand);
+		final long index = indexer.index(hand[0], hand[1]);
+		final int[] permutation = permutation(random);
+		same &= index >= 0 && index < HandIndexer.size(street);
+		same &= indexer.index(permute(hand[0], permutation), permute(hand[1], permutation)) == index;
+		indexer.unrank(street, index, hand);
+		same &= indexer.index(hand[0], hand[1]) == index && valid(hand, street);
+	    }
+	    Checks.check("street " + street + ": suit permutations and unrank keep the index", same);
+	}
+
+	final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	deal(random, HandIndexer.RIVER, hand);
+	final long hole = hand[0];
+	final long board = hand[1];
+	long sum = 0;
+	final long before = threads.getCurrentThreadAllocatedBytes();
+	final long start = System.nanoTime();
+	for (int s = 0; s < SAMPLES; s++) {
+	    sum += indexer.index(hole, board);
+	    indexer.unrank(HandIndexer.RIVER, s * 601L, hand);
+	}
+	final long took = System.nanoTime() - start;
+	final long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+	System.err.printf("River: %d ns per index and unrank (%d)\n", took / SAMPLES, sum % 2);
+	Checks.check("index and unrank do not allocate", allocated == 0);
+
+	Checks.exitOnFailure();
+    }
+
+    /**
+     * Two hole cards and the board of the street, all different
+     */
+    private static void deal(final SplittableRandom random, final int street, final long[] hand) {
+	long used = 0;
+	hand[0] = 0;
+	hand[1] = 0;
+	for (int c = 0; c < 2 + BOARD_CARDS[street]; c++) {
+	    long bit;
+	    do {
+		bit = CardMasks.bit(random.nextInt(CardMasks.DECK_SIZE));
+	    } while ((used & bit) != 0);
+	    used |= bit;
+	    hand[c < 2 ? 0 : 1] |= bit;
+	}
+    }
+
+    private static boolean valid(final long[] hand, final int street) {
+	return Long.bitCount(hand[0]) == 2 && Long.bitCount(hand[1]) == BOARD_CARDS[street] && (hand[0] & hand[1]) == 0;
+    }
+
+    private static int[] permutation(final SplittableRandom random) {
+	final int[] suits = { 0, 1, 2, 3 };
+	for (int i = suits.length - 1; i > 0; i--) {
+	    final int j = random.nextInt(i + 1);
+	    final int swap = suits[i];
+	    suits[i] = suits[j];
+	    suits[j] = swap;
+	}
+	return suits;
+    }
+
+    /**
+     * @return the mask with suit s moved to suit permutation[s]
+     */
+    private static long permute(final long mask, final int[] permutation) {
+	long result = 0;
+	for (int s = 0; s < permutation.length; s++) {
+	    result |= ((mask >>> (16 * s)) & 0x1FFF) << (16 * permutation[s]);
+	}
+	return result;
+    }
+}
@@ -0,0 +1,44 @@
+package be.testing;
+
+import be.stilkin.StrategyParams;
+import be.stilkin.opponent.OpponentModel;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks the statistics of an opponent that raises every hand pre-flop and bets every flop, and that a model without hands does not look like a maniac. Exits with 1 if a check
+ * fails.
+ *
+ * @author stilkin
+ *
+ */
+public class OpponentModelTest {
+
+    public static void main(String[] args) {
+	final OpponentModel model = new OpponentModel();
+	final float maniac = StrategyParams.DEFAULT.get(StrategyParams.MANIAC_AGGRESSION);
+	Checks.check("no hands: aggression factor " + model.getAggressionFactor() + " at most " + maniac, model.getAggressionFactor() <= maniac);
+
+	// an opponent that raises every hand pre-flop and bets every flop
+	for (int h = 0; h < 200; h++) {
+	    model.newHand();
+	    model.onOpponentAction(OpponentModel.RAISE);
+	    model.onMyAction(OpponentModel.CALL);
+	    model.setTableCards(3);
+	    model.onOpponentAction(OpponentModel.RAISE);
+	    model.onMyAction(OpponentModel.RAISE);
+	    model.onOpponentAction(OpponentModel.FOLD);
+	    model.onWinner(false);
+	}
+	model.newHand();
+
+	Checks.check("VPIP " + model.getVpip() + " near 1", model.getVpip() > 0.95f);
+	Checks.check("PFR " + model.getPfr() + " near 1", model.getPfr() > 0.95f);
+	Checks.check("C-bet " + model.getCBet() + " near 1", model.getCBet() > 0.95f);
+	Checks.check("fold to flop bet " + model.getFoldToBet(OpponentModel.FLOP) + " near 1", model.getFoldToBet(OpponentModel.FLOP) > 0.95f);
+	Checks.check("went to showdown " + model.getWentToShowdown() + " near 0", model.getWentToShowdown() < 0.05f);
+	Checks.check("aggression factor " + model.getAggressionFactor() + " above " + maniac, model.getAggressionFactor() > maniac);
+
+	Checks.exitOnFailure();
+    }
+}
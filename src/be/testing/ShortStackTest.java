@@ -0,0 +1,58 @@
+package be.testing;
+
+import be.stilkin.log.Log;
+import bot.BotParser;
+import bot.BotStarter;
+import bot.BotState;
+import poker.ActionType;
+import poker.PokerMove;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Checks that the big blind answers a short-stack shove by the push/fold call chart, both when the opponent has the shorter stack (his shove leaves a call smaller than our
+ * stack) and when we have it. The effective stack is 10 big blinds in the first case and 9.5 in the second: K5o calls both, 72o folds both. Exits with 1 if a check fails.
+ *
+ * @author stilkin
+ */
+public class ShortStackTest {
+    private static final String[] SETTINGS = { "Settings your_bot player1", "Settings timebank 10000", "Settings time_per_move 500", "Settings hands_per_level 10",
+	    "Settings starting_stack 1600" };
+    private static final String[] OPPONENT_SHORTER = { "Match round 1", "Match small_blind 10", "Match big_blind 20", "Match on_button player2", "player1 stack 2980",
+	    "player2 stack 190", "player2 post 10", "player1 post 20", "Match max_win_pot 30", "player2 raise 170", "Match max_win_pot 210", "Match amount_to_call 170" };
+    private static final String[] WE_SHORTER = { "Match round 1", "Match small_blind 10", "Match big_blind 20", "Match on_button player2", "player1 stack 190",
+	    "player2 stack 2980", "player2 post 10", "player1 post 20", "Match max_win_pot 30", "player2 raise 2960", "Match max_win_pot 3000",
+	    "Match amount_to_call 170" };
+
+    public static void main(String[] args) {
+	Log.setLevel(Log.OFF); // the bot logs every decision
+	final PokerMove shorterCalls = move(OPPONENT_SHORTER, "[Kh,5d]");
+	final PokerMove shorterFolds = move(OPPONENT_SHORTER, "[7h,2d]");
+	final PokerMove weShorterCalls = move(WE_SHORTER, "[Kh,5d]");
+	final PokerMove weShorterFolds = move(WE_SHORTER, "[7h,2d]");
+
+	check("opponent shorter: K5o calls the shove", shorterCalls, ActionType.CALL, 170);
+	check("opponent shorter: 72o folds to the shove", shorterFolds, ActionType.CHECK, 0);
+	check("we are shorter: K5o calls the shove", weShorterCalls, ActionType.CALL, 170);
+	check("we are shorter: 72o folds to the shove", weShorterFolds, ActionType.CHECK, 0);
+
+	Checks.exitOnFailure();
+    }
+
+    private static PokerMove move(final String[] hand, final String cards) {
+	final BotState state = new BotState();
+	for (String line : SETTINGS) {
+	    BotParser.updateState(state, line.split("\\s+"));
+	}
+	for (String line : hand) {
+	    BotParser.updateState(state, line.split("\\s+"));
+	}
+	BotParser.updateState(state, ("player1 hand " + cards).split("\\s+"));
+	final PokerMove move = new BotStarter().getMove(state, Long.valueOf(10000));
+	return new PokerMove(move.getPlayer(), move.getAction(), move.getAmount());
+    }
+
+    private static void check(final String what, final PokerMove move, final ActionType type, final int amount) {
+	Checks.check(what + " (" + move + ")", move.getActionType() == type && move.getAmount() == amount);
+    }
+}
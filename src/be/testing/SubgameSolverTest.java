@@ -0,0 +1,70 @@
+package be.testing;
+
+import java.util.Arrays;
+
+import be.stilkin.range.Combos;
+import be.stilkin.subgame.SubgameSolver;
+import be.stilkin.subgame.SubgameTree;
+
+/**
+ * This class contains a main method. Do not include when packing bot.
+ *
+ * Solves a river and a turn spot with uniform ranges: the nuts never folds to a bet, a hand that hardly wins never calls one, and the solver stops at its deadline. Exits
+ * with 1 if a check fails.
+ *
+ * @author stilkin
+ *
+ */
+public class SubgameSolverTest {
+    private static final float[] SIZES = { 0.5f, 1f };
+    private static final long BUDGET = 200; // ms
+
+    public static void main(String[] args) throws InterruptedException {
+	final long river = Checks.mask("2c", "7h", "Kc", "Qs", "Kh");
+	final SubgameSolver riverSolver = solve(river, 300, 1000, 60000);
+	Checks.check("river: quads call or raise", chance(riverSolver, "Ks", "Kd", SubgameTree.FOLD) < 0.01);
+	Checks.check("river: 4 high does not call", chance(riverSolver, "4d", "3s", SubgameTree.CALL) < 0.01);
+
+	final long turn = Checks.mask("2c", "7h", "Kc", "Qs");
+	final SubgameSolver turnSolver = solve(turn, 300, 100, 60000);
+	Checks.check("turn: top set calls or raises", chance(turnSolver, "Ks", "Kd", SubgameTree.FOLD) < 0.01);
+
+	final SubgameSolver timed = solver(turn, 300);
+	final long start = System.nanoTime();
+	timed.solve(start + BUDGET * 1000000, Integer.MAX_VALUE);
+	final long took = (System.nanoTime() - start) / 1000000;
+	System.err.printf("Turn: %d iterations in %d ms (budget %d ms)\n", timed.getIterations(), took, BUDGET);
+	Checks.check("turn: stops at the deadline", took <= BUDGET);
+
+	Checks.exitOnFailure();
+    }
+
+    private static SubgameSolver solve(final long board, final int pot, final int maxIterations, final long budget) throws InterruptedException {
+	final SubgameSolver solver = solver(board, pot);
+	solver.solve(System.nanoTime() + budget * 1000000, maxIterations);
+	return solver;
+    }
+
+    /**
+     * We face a half pot bet with everyone's range uniform
+     */
+    private static SubgameSolver solver(final long board, final int pot) {
+	final float[] uniform = new float[Combos.COMBO_COUNT];
+	Arrays.fill(uniform, 1f);
+	final SubgameTree tree = new SubgameTree(pot + pot / 2, pot / 2, 2000, 2000, 1, false, SIZES, 3, 20);
+	return new SubgameSolver(tree, board, uniform, uniform, null, 1);
+    }
+
+    /**
+     * @return the chance that the hand takes the first root action of this kind
+     */
+    private static double chance(final SubgameSolver solver, final String a, final String b, final int kind) {
+	final int combo = Combos.id(Checks.mask(a, b));
+	for (int action = 0; action < solver.getRootActionCount(); action++) {
+	    if (solver.getTree().getActionKind(0, action) == kind) {
+		return solver.getRootProbability(combo, action);
+	    }
+	}
+	return 0;
+    }
+}
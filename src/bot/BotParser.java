@@ -11,44 +11,183 @@
 
 package bot;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
+import be.stilkin.WarmUp;
+import be.stilkin.jfr.ProtocolLineEvent;
+import be.stilkin.log.Log;
+import be.stilkin.metrics.DecisionMetrics;
+import be.stilkin.metrics.EvalCounter;
+import be.stilkin.metrics.Instrumented;
+import be.stilkin.opponent.ProfileStore;
+import poker.ActionType;
 import poker.PokerMove;
 
 /**
  * Class that reads the engine's input and asks the bot Class to calculate the next move. Then returns that move to the engine.
  */
 public class BotParser {
-    final Scanner scan;
+    static final int WARM_UP_TIME_BANK_SHARE = 20; // the warm-up takes at most 1/20 of the time bank: the engine sends our first Action right after it starts
+    final InputStream in;
+    final OutputStream out;
     final Bot bot;
+    final ProfileStore profileStore;
+    final DecisionMetrics metrics = new DecisionMetrics();
+    final EvalCounter evalCounter;
+    long countedEvaluations; // the counter at the last decision: a decision also counts the evaluations of the lines that led to it
+    long countedHits;
+    final byte[] reply = new byte[32];
+    final BotState currentState;
+    Supplier<Bot> warmUpFactory;
+    long warmUpMillis;
+    boolean warmedUp;
 
     public BotParser(Bot bot) {
-	this.scan = new Scanner(System.in);
+	this(bot, null);
+    }
+
+    /**
+     * @param profileStore
+     *            where we remember opponents between matches, can be null
+     */
+    public BotParser(Bot bot, ProfileStore profileStore) {
+	this(bot, profileStore, System.in, System.out);
+    }
+
+    /**
+     * A session on its own streams, so one JVM can run many bots
+     * 
+     * @param profileStore
+     *            where we remember opponents between matches, can be null
+     * @param in
+     *            the engine lines
+     * @param out
+     *            where the moves go
+     */
+    public BotParser(Bot bot, ProfileStore profileStore, InputStream in, OutputStream out) {
+	this.in = in;
+	this.out = out;
 	this.bot = bot;
+	this.profileStore = profileStore;
+	this.evalCounter = bot instanceof Instrumented ? ((Instrumented) bot).getEvalCounter() : null;
+	this.currentState = new BotState(profileStore);
+	currentState.getOpponentRange().setEvalCounter(evalCounter);
+    }
+
+    /**
+     * Play synthetic hands after the Settings lines and before the first hand, so the first real decisions do not run in the interpreter
+     * 
+     * @param factory
+     *            creates the bots for the synthetic hands, they must not share state with the real bot
+     * @param budgetMillis
+     *            how long the warm-up may take, capped to a small part of the time bank from the settings
+     */
+    public void setWarmUp(Supplier<Bot> factory, long budgetMillis) {
+	this.warmUpFactory = factory;
+	this.warmUpMillis = budgetMillis;
     }
 
+    /**
+     * Reads the input until it ends, then ends the match
+     */
     public void run() {
-	final BotState currentState = new BotState();
-	while (scan.hasNextLine()) {
-	    final String line = scan.nextLine().trim();
-	    if (line.length() == 0) {
-		continue;
+	final Scanner scan = new Scanner(in);
+	try {
+	    while (scan.hasNextLine()) {
+		handleLine(scan.nextLine());
 	    }
-	    final String[] parts = line.split("\\s+");
-	    if (parts.length == 3 && parts[0].equals("Action")) {
-		// we need to move
-		final PokerMove move = bot.getMove(currentState, Long.valueOf(parts[2]));
-		System.out.println(move.toString());
-		System.out.flush();
-	    } else if (parts.length == 3 && parts[0].equals("Settings")) { // Update the state with settings info
-		currentState.updateSetting(parts[1], parts[2]);
-	    } else if (parts.length == 3 && parts[0].equals("Match")) { // Update the state with match info
-		currentState.updateMatch(parts[1], parts[2]);
-	    } else if (parts.length == 3 && parts[0].startsWith("player")) { // Update the state with info about the moves
-		currentState.updateMove(parts[0], parts[1], parts[2]);
+	} catch (IOException e) {
+	    Log.warn("Session output closed: {}", e.getMessage());
+	}
+	finish();
+    }
+
+    /**
+     * Handles one engine line; for an Action line the move is written and flushed before this returns
+     */
+    public void handleLine(String rawLine) throws IOException {
+	final String line = rawLine.trim();
+	if (line.length() == 0) {
+	    return;
+	}
+	final String[] parts = line.split("\\s+");
+	if (!warmedUp && warmUpFactory != null && warmUpMillis > 0 && !parts[0].equals("Settings")) { // all settings are in, the match did not start yet
+	    warmedUp = true;
+	    final int timeBank = currentState.getTimeBank();
+	    new WarmUp(warmUpFactory).run(timeBank > 0 ? Math.min(warmUpMillis, timeBank / WARM_UP_TIME_BANK_SHARE) : warmUpMillis);
+	}
+	final ProtocolLineEvent event = new ProtocolLineEvent();
+	event.begin();
+	if (parts.length == 3 && parts[0].equals("Action")) {
+	    // we need to move
+	    final long start = System.nanoTime();
+	    final PokerMove move = bot.getMove(currentState, Long.valueOf(parts[2]));
+	    final ActionType type = move.getActionType();
+	    if (type != null) { // straight to bytes, no String on the way out
+		final int length = move.writeTo(reply, 0);
+		out.write(reply, 0, length);
 	    } else {
-		System.err.printf("Unable to parse line ``%s''\n", line);
+		out.write((move.toString() + "\n").getBytes(StandardCharsets.US_ASCII));
 	    }
+	    out.flush();
+	    final long nanos = System.nanoTime() - start;
+	    final long evals = evalCounter == null ? 0 : evalCounter.getEvaluations();
+	    final long hits = evalCounter == null ? 0 : evalCounter.getCacheHits();
+	    metrics.record(currentState.getStreet(), type == null ? -1 : type.ordinal(), nanos, Long.parseLong(parts[2]), currentState.getTimePerMove(),
+		    evals - countedEvaluations, hits - countedHits);
+	    countedEvaluations = evals;
+	    countedHits = hits;
+	} else if (!updateState(currentState, parts)) {
+	    Log.warn("Unable to parse line ``{}''", line);
+	}
+	if (event.shouldCommit()) {
+	    event.type = parts[0];
+	    event.key = parts.length > 1 ? parts[1] : null;
+	    event.line = line;
+	    event.commit();
+	}
+    }
+
+    /**
+     * The engine stopped sending: commit the last hand and write the opponent profile
+     */
+    public void finish() {
+	currentState.endMatch();
+	if (profileStore != null) {
+	    profileStore.flush();
+	}
+    }
+
+    /**
+     * @return latency and timebank statistics of the decisions so far
+     */
+    public DecisionMetrics getMetrics() {
+	return metrics;
+    }
+
+    /**
+     * Feeds one engine line (split on whitespace) that is not an Action request into the state. This lets tools rebuild a BotState without going through stdin.
+     * 
+     * @return false if the line could not be parsed
+     */
+    public static boolean updateState(final BotState state, final String[] parts) {
+	if (parts.length != 3) {
+	    return false;
+	}
+	if (parts[0].equals("Settings")) { // Update the state with settings info
+	    state.updateSetting(parts[1], parts[2]);
+	} else if (parts[0].equals("Match")) { // Update the state with match info
+	    state.updateMatch(parts[1], parts[2]);
+	} else if (parts[0].startsWith("player")) { // Update the state with info about the moves
+	    state.updateMove(parts[0], parts[1], parts[2]);
+	} else {
+	    return false;
 	}
+	return true;
     }
 }
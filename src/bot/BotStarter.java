@@ -11,13 +11,37 @@
 
 package bot;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.stevebrecher.HandEval;
 import com.stevebrecher.HandEval.HandCategory;
 
+import be.stilkin.BettingHistory;
+import be.stilkin.BettingLedger;
+import be.stilkin.CardMasks;
 import be.stilkin.HandParser;
 import be.stilkin.StartingHands;
+import be.stilkin.StrategyParams;
+import be.stilkin.jfr.DecisionEvent;
+import be.stilkin.log.Log;
+import be.stilkin.metrics.EvalCounter;
+import be.stilkin.metrics.Instrumented;
+import be.stilkin.opponent.ProfileStore;
+import be.stilkin.preflop.PreflopStrategy;
+import be.stilkin.preflop.PreflopTree;
+import be.stilkin.preflop.PushFold;
+import be.stilkin.range.Combos;
+import be.stilkin.range.HandClasses;
+import be.stilkin.search.BetSizer;
+import be.stilkin.search.ExpectimaxSearch;
+import be.stilkin.subgame.SubgameSolver;
+import be.stilkin.subgame.SubgameTree;
+import poker.ActionType;
 import poker.Card;
 import poker.HandHoldem;
 import poker.PokerMove;
@@ -29,21 +53,78 @@ import poker.PokerMove;
  * 
  * @author stilkin
  */
-public class BotStarter implements Bot {
+public class BotStarter implements Bot, Instrumented {
     public static final String CALL_ACTION = "call";
     public static final String RAISE_ACTION = "raise";
     public static final String CHECK_ACTION = "check";
     public static final String FOLD_ACTION = "fold";
-    public static final float CURIOSITY = 0.05f;
     public static final float COCKYNESS = 0.025f;
-    private static final float ODD_LOWER_BOUND = 0.56f;
-    private final HashMap<String, Integer> roundMoneys = new HashMap<String, Integer>();
+    public static final float PUSH_FOLD_STACK = 15; // effective stack in big blinds below which we shove or fold
+    private static final float[] SUBGAME_SIZES = { 0.5f, 1f }; // bets and raises in the subgame tree, as fractions of the pot
+    private static final int SUBGAME_RAISES = 3;
+    private static final HandEval.HandCategory[] CATEGORIES = HandEval.HandCategory.values();
+    private final BettingLedger ledger = new BettingLedger();
+    private final PokerMove move = new PokerMove(); // reused for every decision
     private final HandParser myHandParser = new HandParser();
     private final HandParser tableHandParser = new HandParser();
     private String botName = "stilkin";
     private HandHoldem hand;
     private int lastRound = -1;
+    private int street;
     private int minRaise;
+    private final EvalCounter evalCounter = new EvalCounter();
+    private long cachedHandCode = -1; // the hand evaluation of the last decision, we often decide twice on the same cards
+    private HandEval.HandCategory cachedCategory;
+    private final StrategyParams params;
+    private final float curiosity; // the parameters we read on every decision, see StrategyParams
+    private final float oddLowerBound;
+    private final float stackDiffFactor;
+    private final float strongSum;
+    private final float pairSum;
+    private final float twoPairSum;
+    private final float maniacAggression;
+    private PreflopStrategy[] preflopStrategies; // solved pre-flop play per stack depth, null to play by the starting hand odds
+    private final SplittableRandom random; // draws the mixed strategies
+    private float subgamePot; // pot in big blinds from which we solve turn and river decisions, 0 for never
+    private ExecutorService subgamePool;
+    private int subgameThreads;
+    private float[] myRange; // uniform, we do not model what the opponent thinks we hold
+    private ExpectimaxSearch expectimax; // searches every post-flop decision, null to play by the hand category
+    private ExecutorService expectimaxPool;
+    private BetSizer betSizer = new BetSizer(); // sizes post-flop raises by expected value, null to size them by the hand odds
+
+    public BotStarter() {
+	this(StrategyParams.DEFAULT);
+    }
+
+    /**
+     * @param params
+     *            the strategy constants, e.g. from the tuner
+     */
+    public BotStarter(StrategyParams params) {
+	this(params, new SplittableRandom());
+    }
+
+    /**
+     * @param seed
+     *            for the random draws of the bot, the simulator passes one so a match can be played again
+     */
+    public BotStarter(StrategyParams params, long seed) {
+	this(params, new SplittableRandom(seed));
+    }
+
+    private BotStarter(StrategyParams params, SplittableRandom random) {
+	this.params = params;
+	this.random = random;
+	this.curiosity = params.get(StrategyParams.CURIOSITY);
+	this.oddLowerBound = params.get(StrategyParams.ODD_LOWER_BOUND);
+	this.stackDiffFactor = params.get(StrategyParams.STACK_DIFF_FACTOR);
+	this.strongSum = params.get(StrategyParams.STRONG_SUM);
+	this.pairSum = params.get(StrategyParams.PAIR_SUM);
+	this.twoPairSum = params.get(StrategyParams.TWO_PAIR_SUM);
+	this.maniacAggression = params.get(StrategyParams.MANIAC_AGGRESSION);
+	betSizer.setEvalCounter(evalCounter);
+    }
 
     /**
      * Implement this method to return the best move you can. Currently it will return a raise the ordinal value of one of our cards is higher than 9, a call when one of the cards
@@ -53,10 +134,27 @@ public class BotStarter implements Bot {
      *            : The current state of your bot, with all the (parsed) information given by the engine
      * @param timeOut
      *            : The time you have to return a move
-     * @return PokerMove : The move you will be doing
+     * @return PokerMove : The move you will be doing, the same object is reused by the next call
      */
     @Override
     public PokerMove getMove(BotState state, Long timeOut) {
+	final DecisionEvent event = new DecisionEvent();
+	event.begin();
+	final PokerMove move = decide(state, timeOut);
+	if (event.shouldCommit()) {
+	    event.round = state.getRound();
+	    event.street = state.getStreet();
+	    event.pot = state.getPot();
+	    event.amountToCall = state.getAmountToCall();
+	    event.action = move.getAction();
+	    event.amount = move.getAmount();
+	    event.history = state.getBettingHistory().getKey();
+	    event.commit();
+	}
+	return move;
+    }
+
+    private PokerMove decide(BotState state, Long timeOut) {
 	// set some round variables
 	botName = state.getMyName();
 	hand = state.getHand();
@@ -64,17 +162,18 @@ public class BotStarter implements Bot {
 	final Card[] table = state.getTable();
 	final int callAmount = 	state.getAmountToCall();
 	minRaise = Math.max(minRaise, callAmount); // TODO: currently assuming this is right
+	street = state.getStreet();
 
 	if (lastRound != state.getRound()) { // reset round counters
 	    lastRound = state.getRound();
-	    roundMoneys.clear();
-	    System.err.println("Round: " + lastRound);
+	    ledger.clear();
+	    Log.debug("Round: {}", lastRound);
 	}
 
 	if (table == null || table.length < 3) { // pre-flop
 	    return preFlop(state);
 	} else { // post-flop
-	    return postFlop(table, state);
+	    return postFlop(table, state, timeOut);
 	}
     }
 
@@ -82,7 +181,20 @@ public class BotStarter implements Bot {
     // *** POST FLOP ***
     // *****************
 
-    private PokerMove postFlop(final Card[] table, final BotState state) {
+    private PokerMove postFlop(final Card[] table, final BotState state, final Long timeOut) {
+	if (subgamePot > 0 && table.length >= 4 && state.getPot() >= subgamePot * state.getBigBlind()) {
+	    final PokerMove solved = solvedPostFlop(state, timeOut);
+	    if (solved != null) {
+		return solved;
+	    }
+	}
+	if (expectimax != null) {
+	    final PokerMove searched = searchedPostFlop(state);
+	    if (searched != null) {
+		return searched;
+	    }
+	}
+
 	// reset parsers
 	tableHandParser.clear();
 	myHandParser.clear();
@@ -94,7 +206,7 @@ public class BotStarter implements Bot {
 
 	// if the table cards are stronger, we bail
 	if (tableHandParser.getHandCategory().ordinal() >= myHandParser.getHandCategory().ordinal()) {
-	    System.err.println("Post-flop, table appears to match our hand: " + myHandParser.getHandCategory().toString());
+	    Log.debug("Post-flop, table appears to match our hand: {}", myHandParser.getHandCategory());
 	    // TODO: check if we have higher value cards, (this can also be pair or high card case)
 	    return preFlopCheck(state);
 	}
@@ -108,13 +220,16 @@ public class BotStarter implements Bot {
 	final int height1 = hand.getCard(0).getHeight().ordinal();
 	final int height2 = hand.getCard(1).getHeight().ordinal();
 	final int sum = height1 + height2;
-	System.err.println("Post-flop, we have " + myHandParser.getHandCategory().toString() + " " + myHand.toString());
-	System.err.println("Callamount: " + callAmount + " sum: " + sum);
+	Log.debug("Post-flop, we have {} {}", myHandParser.getHandCategory(), myHand);
+	Log.debug("Callamount: {} sum: {}", callAmount, sum);
 	
 	final PokerMove oppAction = state.getOpponentAction();
 	boolean oppRaise = false;
 	if (oppAction != null) {
-	    oppRaise = RAISE_ACTION.equals(oppAction.getAction());
+	    oppRaise = oppAction.getActionType() == ActionType.RAISE;
+	}
+	if (oppRaise && state.getOpponentModel().getAggressionFactor() > maniacAggression) {
+	    oppRaise = false; // this opponent raises about everything, it does not tell us much
 	}
 
 	int odds = 1;
@@ -165,8 +280,8 @@ public class BotStarter implements Bot {
 		if (oddRaise != null) {
 		    return oddRaise; // we raise
 		} else { // we have been re-raised
-		    if (sum > 15 || costRatio < CURIOSITY) { // TODO: validate
-			return loggedAction(botName, CALL_ACTION, callAmount);
+		    if (sum > strongSum || costRatio < curiosity) { // TODO: validate
+			return loggedAction(botName, ActionType.CALL, callAmount);
 		    } // else check or fold
 		}
 	    case THREE_OF_A_KIND: // TODO: find out which card is in the THREE OF A KIND
@@ -177,63 +292,174 @@ public class BotStarter implements Bot {
 		    if (tripsOddRaise != null) {
 			return tripsOddRaise; // we raise
 		    } else { // we are being re-raised
-			if (!flushDanger && ( sum > 15 || costRatio < CURIOSITY)) { // TODO: validate
-			    return loggedAction(botName, CALL_ACTION, callAmount);
+			if (!flushDanger && ( sum > strongSum || costRatio < curiosity)) { // TODO: validate
+			    return loggedAction(botName, ActionType.CALL, callAmount);
 			}
 		    }
-		} else if (!flushDanger && ( sum > 15 || costRatio < CURIOSITY)) { // TODO: validate
-		    return loggedAction(botName, CALL_ACTION, callAmount);
+		} else if (!flushDanger && ( sum > strongSum || costRatio < curiosity)) { // TODO: validate
+		    return loggedAction(botName, ActionType.CALL, callAmount);
 		}
 		break;
 	    case TWO_PAIR: // TODO: find out which cards are in the TWO PAIR
 		boolean pairOnTable = tableHandParser.getHandCategory().ordinal() >= HandCategory.PAIR.ordinal(); // danger for 3OAK
-		if (!pairOnTable && sum > 10) {
+		if (!pairOnTable && sum > twoPairSum) {
 		    final PokerMove twoPairOddRaise = raiseWithOdds(state, odds / 2);
 		    if (twoPairOddRaise != null) {
 			return twoPairOddRaise; // we raise
 		    } else { // we are being re-raised
-			if (!flushDanger && ( sum > 15 || costRatio < CURIOSITY)) { // TODO: validate
-			    return loggedAction(botName, CALL_ACTION, callAmount);
+			if (!flushDanger && ( sum > strongSum || costRatio < curiosity)) { // TODO: validate
+			    return loggedAction(botName, ActionType.CALL, callAmount);
 			}
 		    }
-		} else if (!flushDanger && ( sum > 15 || costRatio < CURIOSITY)) { // TODO: validate
-		    return loggedAction(botName, CALL_ACTION, callAmount);
+		} else if (!flushDanger && ( sum > strongSum || costRatio < curiosity)) { // TODO: validate
+		    return loggedAction(botName, ActionType.CALL, callAmount);
 		}
 		break;
 	    case PAIR:
 		// if we are here the pair is in our hands
-		if (!flushDanger && ( sum > 20 || costRatio < CURIOSITY)) { // TODO: validate
-		    return loggedAction(botName, CALL_ACTION, callAmount);
+		if (!flushDanger && ( sum > pairSum || costRatio < curiosity)) { // TODO: validate
+		    return loggedAction(botName, ActionType.CALL, callAmount);
 		}
 		break;
 	    case NO_PAIR:
 		break;
 	}
 
-	return loggedAction(botName, CHECK_ACTION, 0);
+	return loggedAction(botName, ActionType.CHECK, 0);
+    }
+
+    /**
+     * Solves the rest of this street with the opponent's range from the OpponentRange and plays a move drawn from the solution. We spend at most the time per move (and a
+     * quarter of the time bank). Returns null if there was no time for a single iteration.
+     */
+    private PokerMove solvedPostFlop(final BotState state, final Long timeOut) {
+	final long start = System.nanoTime();
+	final long budget = Math.min(state.getTimePerMove(), timeOut.longValue() / 4);
+	final SubgameTree tree = streetTree(state);
+	if (tree == null || budget <= 0) {
+	    return null;
+	}
+	final SubgameSolver solver = new SubgameSolver(tree, state.getSnapshot().getBoard(), myRange, state.getOpponentRange().getWeights(), subgamePool, subgameThreads,
+		evalCounter);
+	try {
+	    solver.solve(start + budget * 1000000, Integer.MAX_VALUE);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return null;
+	}
+	if (solver.getIterations() == 0) {
+	    return null;
+	}
+	Log.debug("Subgame solved in {} iterations, {} ms", solver.getIterations(), (System.nanoTime() - start) / 1000000);
+
+	final int combo = Combos.id(state.getSnapshot().getHole());
+	double left = random.nextDouble();
+	int action = 0;
+	while (action < solver.getRootActionCount() - 1 && (left -= solver.getRootProbability(combo, action)) >= 0) {
+	    action++;
+	}
+	return treeAction(state, tree, action);
+    }
+
+    /**
+     * Plays the root action with the highest expected value in an ExpectimaxSearch of the rest of this street. Returns null if we have no chips to play with.
+     */
+    private PokerMove searchedPostFlop(final BotState state) {
+	final SubgameTree tree = streetTree(state);
+	if (tree == null) {
+	    return null;
+	}
+	final long start = System.nanoTime();
+	try {
+	    expectimax.search(tree, state.getSnapshot().getHole(), state.getSnapshot().getBoard(), state.getOpponentRange(), state.getOpponentModel(),
+		    state.getBettingHistory().getKey());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return null;
+	}
+	final int action = expectimax.getBestAction();
+	Log.debug("Expectimax: {} nodes in {} us", expectimax.getNodes(), (System.nanoTime() - start) / 1000);
+	Log.debug("Expectimax: best action EV {} chips", expectimax.getEv(action));
+	return treeAction(state, tree, action);
+    }
+
+    /**
+     * The betting of the rest of this street from our decision, null if we have no chips left
+     */
+    private SubgameTree streetTree(final BotState state) {
+	final int callAmount = state.getAmountToCall();
+	final int myStack = myBehind(state);
+	if (myStack <= 0) {
+	    return null;
+	}
+	final boolean checkEnds = callAmount == 0 && state.getBettingHistory().getLastAction(BettingHistory.OPPONENT) == ActionType.CHECK;
+	return new SubgameTree(state.getPot(), callAmount, myStack, opponentBehind(state), streetRaises(state), checkEnds, SUBGAME_SIZES, SUBGAME_RAISES,
+		state.getBigBlind());
+    }
+
+    /**
+     * @return our chips behind. We only know the pot, so we assume we both put in the same before the bet we face; the stacks we get have the blinds taken off.
+     */
+    private static int myBehind(final BotState state) {
+	final int myInvested = (state.getPot() - state.getAmountToCall()) / 2;
+	final int myPost = state.onButton() ? state.getSmallBlind() : state.getBigBlind();
+	return state.getmyStack() + myPost - myInvested;
     }
 
     /**
-     * We have a good hand, with how much do we raise?
+     * @return the opponent's chips behind, after the bet we face (see myBehind)
+     */
+    private static int opponentBehind(final BotState state) {
+	final int myInvested = (state.getPot() - state.getAmountToCall()) / 2;
+	final int opponentPost = state.onButton() ? state.getBigBlind() : state.getSmallBlind();
+	return Math.max(0, state.getOpponentStack() + opponentPost - myInvested - state.getAmountToCall());
+    }
+
+    /**
+     * The move for a root action of a street tree (a fold is a check, the engine folds it when we face a bet)
+     */
+    private PokerMove treeAction(final BotState state, final SubgameTree tree, final int action) {
+	final int callAmount = state.getAmountToCall();
+	switch (tree.getActionKind(0, action)) {
+	    case SubgameTree.FOLD:
+		return loggedAction(botName, ActionType.CHECK, 0);
+	    case SubgameTree.CALL:
+		return callAmount > 0 ? loggedAction(botName, ActionType.CALL, callAmount) : loggedAction(botName, ActionType.CHECK, 0);
+	    default: // a raise is on top of the call
+		return loggedAction(botName, ActionType.RAISE, Math.max(tree.getTarget(0, action) - callAmount, state.getBigBlind()));
+	}
+    }
+
+    /**
+     * We have a good hand, with how much do we raise? With the bet sizer the size is the one with the best expected value, or a call (check) when no raise beats it; our chip
+     * lead adds the same pressure on top of either size.
      */
     private PokerMove raiseWithOdds(final BotState state, int odds) {
-	final int multiplier = 2 + (odds / 120);
-	int raise = multiplier * state.getBigBlind();
 	final int stackDiff = state.getmyStack() - state.getOpponentStack();
-
-	if (stackDiff > 0) { // we are ahead
-	    raise += (int) (0.15f * stackDiff);
+	final int lead = stackDiff > 0 ? (int) (stackDiffFactor * stackDiff) : 0; // we are ahead
+	final int callAmount = state.getAmountToCall();
+	if (betSizer != null && myBehind(state) > 0) {
+	    betSizer.size(state.getSnapshot().getHole(), state.getSnapshot().getBoard(), state.getOpponentRange().getWeights(), state.getPot(), callAmount,
+		    myBehind(state), opponentBehind(state), state.getOpponentModel().getFoldToBet(state.getStreet()), state.getBigBlind());
+	    Log.debug("Bet sizing: raise {} for {} chips", betSizer.getBestAmount(), Math.round(betSizer.getBestEv()));
+	    if (betSizer.getBestAmount() == 0) { // calling is worth more than any raise
+		return callAmount > 0 ? loggedAction(botName, ActionType.CALL, callAmount) : loggedAction(botName, ActionType.CHECK, 0);
+	    }
+	    // no raise only once here: the sizer already weighs what is in the pot
+	    final int allIn = Math.max(betSizer.getBestAmount(), myBehind(state) - callAmount);
+	    return loggedAction(botName, ActionType.RAISE, Math.min(betSizer.getBestAmount() + lead, allIn));
 	}
 
-	final int raisedSoFar = roundMoneys.getOrDefault(RAISE_ACTION, 0);
-	final int calledSoFar = roundMoneys.getOrDefault(CALL_ACTION, 0);
+	final int multiplier = 2 + (odds / 120);
+	final int raise = multiplier * state.getBigBlind() + lead;
+	final int raisedSoFar = ledger.getHandTotal(ActionType.RAISE);
+	final int calledSoFar = ledger.getHandTotal(ActionType.CALL);
 	final int bothSoFar = raisedSoFar + calledSoFar;
 
 	if (bothSoFar < raise) { // set to raise only once
-	    return loggedAction(botName, RAISE_ACTION, raise);
+	    return loggedAction(botName, ActionType.RAISE, raise);
 	} else {
-	    final int callAmount = state.getAmountToCall();
-	    return loggedAction(botName, CALL_ACTION, callAmount);
+	    return loggedAction(botName, ActionType.CALL, callAmount);
 	}
     }
 
@@ -245,56 +471,150 @@ public class BotStarter implements Bot {
      * What do we do pre-flop? We get the odds and raise according to any odds over 55%
      */
     private PokerMove preFlop(final BotState state) {
+	final PokerMove pushFold = pushFold(state);
+	if (pushFold != null) {
+	    return pushFold;
+	}
+	if (preflopStrategies != null) {
+	    final PokerMove solved = solvedPreFlop(state);
+	    if (solved != null) {
+		return solved;
+	    }
+	}
 	final float winOdds = StartingHands.getOdds(hand.getCard(0), hand.getCard(1));
 	final int callAmount = state.getAmountToCall();
 	final PokerMove oppAction = state.getOpponentAction();
 	boolean oppRaise = false;
 	if (oppAction != null) {
-	    oppRaise = RAISE_ACTION.equals(oppAction.getAction());
+	    oppRaise = oppAction.getActionType() == ActionType.RAISE;
 	}
 
 	final PokerMove oddRaise = raiseWithOdds(state, winOdds);
-	if (winOdds > ODD_LOWER_BOUND) { // over 55%
+	if (winOdds > oddLowerBound) { // over 55%
 	    if (oddRaise != null ) {
 		if (!oppRaise) {
 		    return oddRaise; // we raise
 		} else { // opponent has raised
 		    final int diff = oddRaise.getAmount() - callAmount;
 		    if (diff >= minRaise) { // we re-raise
-			return loggedAction(botName, RAISE_ACTION, diff);
+			return loggedAction(botName, ActionType.RAISE, diff);
 		    } else { // we call
-			return loggedAction(botName, CALL_ACTION, callAmount);
+			return loggedAction(botName, ActionType.CALL, callAmount);
 		    }
 		}		
 	    } else { // we ate in too deep 0_o
-		System.err.println("Pre-flop, crossing fingers.");
-		return loggedAction(botName, CALL_ACTION, callAmount);
+		Log.debug("Pre-flop, crossing fingers.");
+		return loggedAction(botName, ActionType.CALL, callAmount);
 	    }
 	} else if (winOdds > 0 && oddRaise != null) { // between 50% and 55%
 	    if (!oppRaise) {
 		// TODO: cutoff here is only 50%, is that wise?
-		System.err.println("Pre-flop, low odds bet.");
+		Log.debug("Pre-flop, low odds bet.");
 		int prudentBet = oddRaise.getAmount()/2;
 		prudentBet = Math.max(prudentBet, minRaise);
-		return loggedAction(botName, RAISE_ACTION, prudentBet); // we raise
+		return loggedAction(botName, ActionType.RAISE, prudentBet); // we raise
 	    }
 	} 
 	// poor starting hand, or average hand was re-raised
 	return preFlopCheck(state);
     }
 
+    /**
+     * Short stacks: on the button we shove or fold the first action, in the big blind we call or fold a shove, both by the push/fold charts. Returns null in the other spots
+     * (e.g. a limp or a small raise), which the normal pre-flop play handles.
+     */
+    private PokerMove pushFold(final BotState state) {
+	final float stack = effectiveStack(state);
+	if (stack > PUSH_FOLD_STACK) {
+	    return null;
+	}
+	final int callAmount = state.getAmountToCall();
+	if (state.onButton() && streetRaises(state) == 0 && callAmount > 0) { // we have not acted yet
+	    return PushFold.push(handClass(), stack) ? loggedAction(botName, ActionType.RAISE, state.getmyStack()) : loggedAction(botName, ActionType.CHECK, 0);
+	}
+	if (!state.onButton() && callAmount > 0 && isShove(state)) {
+	    return PushFold.call(handClass(), stack) ? loggedAction(botName, ActionType.CALL, callAmount) : loggedAction(botName, ActionType.CHECK, 0);
+	}
+	return null;
+    }
+
+    /**
+     * In the big blind: the call puts in the effective stack, because it is all we have left or because it covers all the opponent had (he posted the small blind, we the big)
+     */
+    private static boolean isShove(final BotState state) {
+	final int callAmount = state.getAmountToCall();
+	return callAmount >= state.getmyStack() || callAmount + state.getBigBlind() >= state.getOpponentStack() + state.getSmallBlind();
+    }
+
+    /**
+     * @return the smallest of both stacks at the start of the hand, in big blinds (approximately, the stacks we get have the blinds taken off)
+     */
+    private static float effectiveStack(final BotState state) {
+	return Math.min(state.getmyStack(), state.getOpponentStack()) / (float) state.getBigBlind() + 1;
+    }
+
+    /**
+     * @return the raises made on the current street, by both players
+     */
+    private static int streetRaises(final BotState state) {
+	return state.getBettingHistory().getStreetRaises();
+    }
+
+    /**
+     * @return the class (HandClasses) of our hole cards
+     */
+    private int handClass() {
+	return HandClasses.classOf(CardMasks.index(hand.getCard(0).getNumber()), CardMasks.index(hand.getCard(1).getNumber()));
+    }
+
+    /**
+     * Plays the solved strategy of the nearest stack depth: finds the tree node that matches the betting so far and draws an action for our hand class. Returns null when the
+     * betting went off the tree (more raises than the solver allowed).
+     */
+    private PokerMove solvedPreFlop(final BotState state) {
+	final float bigBlind = state.getBigBlind();
+	final int callAmount = state.getAmountToCall();
+	final int otherBet = (state.getPot() + callAmount) / 2;
+	final int myBet = otherBet - callAmount;
+	final float stack = effectiveStack(state);
+	PreflopStrategy strategy = preflopStrategies[0];
+	for (PreflopStrategy candidate : preflopStrategies) {
+	    if (Math.abs(Math.log(candidate.getTree().getStack() / stack)) < Math.abs(Math.log(strategy.getTree().getStack() / stack))) {
+		strategy = candidate;
+	    }
+	}
+
+	final int node = strategy.findNode(state.onButton() ? PreflopTree.BUTTON : PreflopTree.BIG_BLIND, streetRaises(state), myBet / bigBlind, otherBet / bigBlind);
+	if (node < 0) {
+	    return null;
+	}
+
+	final int action = strategy.sample(node, handClass(), random.nextDouble());
+	switch (strategy.getTree().getActionKind(node, action)) {
+	    case PreflopTree.FOLD:
+		return loggedAction(botName, ActionType.CHECK, 0);
+	    case PreflopTree.CALL:
+		return callAmount > 0 ? loggedAction(botName, ActionType.CALL, callAmount) : loggedAction(botName, ActionType.CHECK, 0);
+	    case PreflopTree.RAISE:
+		final int raiseTo = Math.round(strategy.getTree().getRaiseTo(node, action) * bigBlind);
+		return loggedAction(botName, ActionType.RAISE, Math.max(raiseTo - otherBet, state.getBigBlind()));
+	    default: // all-in, the engine caps the raise at our stack
+		return loggedAction(botName, ActionType.RAISE, state.getmyStack());
+	}
+    }
+
     /**
      * Raises up to a specific amount specified by the odds. Will return null if we cannot raise
      */
     private PokerMove raiseWithOdds(final BotState state, final float winOdds) {
-	final int raisedSoFar = roundMoneys.getOrDefault(RAISE_ACTION, 0);
-	final int calledSoFar = roundMoneys.getOrDefault(CALL_ACTION, 0);
+	final int raisedSoFar = ledger.getHandTotal(ActionType.RAISE);
+	final int calledSoFar = ledger.getHandTotal(ActionType.CALL);
 	final int spentSoFar = raisedSoFar + calledSoFar;
 	final int maxRaise = (int) (winOdds * state.getmyStack());
 	if (spentSoFar < maxRaise || spentSoFar < minRaise) {
 	    final int raisePart = maxRaise / 2; // we raise in 2 steps
 	    final int raise = Math.max(minRaise, raisePart);
-	    return loggedAction(botName, RAISE_ACTION, raise);
+	    return loggedAction(botName, ActionType.RAISE, raise);
 	} else {
 	    return null;
 	}
@@ -309,20 +629,19 @@ public class BotStarter implements Bot {
 	final float costRatio = (float) blindDiff / state.getmyStack();
 	
 	// when the blind is too big compared to our stack, we don't peek // TODO: is this smart?
-	if (costRatio < CURIOSITY && callAmount <= blindDiff) {
-	    return loggedAction(botName, CALL_ACTION, callAmount);
+	if (costRatio < curiosity && callAmount <= blindDiff) {
+	    return loggedAction(botName, ActionType.CALL, callAmount);
 	} else {
-	    return loggedAction(botName, CHECK_ACTION, 0);
+	    return loggedAction(botName, ActionType.CHECK, 0);
 	}
     }
 
     /**
-     * TODO: add more logging to this method
+     * Books the amount and fills in the move. Every decision returns the same PokerMove object, so nothing is allocated.
      */
-    private PokerMove loggedAction(final String botName, final String action, final int amount) {
-	final int currentAmount = roundMoneys.getOrDefault(action, 0);
-	roundMoneys.put(action, currentAmount + amount);
-	return new PokerMove(botName, action, amount);
+    private PokerMove loggedAction(final String botName, final ActionType action, final int amount) {
+	ledger.add(street, action, amount);
+	return move.set(botName, action, amount);
     }
 
     /**
@@ -338,6 +657,7 @@ public class BotStarter implements Bot {
 	    for (Card card : cardSet) {
 		handCode += card.getNumber();
 	    }
+	    evalCounter.evaluation();
 	    return rankToCategory(HandEval.hand5Eval(handCode));
 
 	}
@@ -367,29 +687,182 @@ public class BotStarter implements Bot {
 	for (Card card : table) {
 	    handCode += card.getNumber();
 	}
+	if (handCode == cachedHandCode) {
+	    evalCounter.cacheHit();
+	    return cachedCategory;
+	}
 
+	evalCounter.evaluation();
+	cachedHandCode = handCode;
 	if (table.length == 3) { // three cards on the table
-	    return rankToCategory(HandEval.hand5Eval(handCode));
-	}
-	if (table.length == 4) { // four cards on the table
-	    return rankToCategory(HandEval.hand6Eval(handCode));
+	    cachedCategory = rankToCategory(HandEval.hand5Eval(handCode));
+	} else if (table.length == 4) { // four cards on the table
+	    cachedCategory = rankToCategory(HandEval.hand6Eval(handCode));
+	} else {
+	    cachedCategory = rankToCategory(HandEval.hand7Eval(handCode)); // five cards on the table
 	}
-	return rankToCategory(HandEval.hand7Eval(handCode)); // five cards on the table
+	return cachedCategory;
     }
 
     /**
      * small method to convert the int 'rank' to a readable enum called HandCategory
      */
     public HandEval.HandCategory rankToCategory(int rank) {
-	return HandEval.HandCategory.values()[rank >> HandEval.VALUE_SHIFT];
+	return CATEGORIES[rank >> HandEval.VALUE_SHIFT];
+    }
+
+    /**
+     * @param strategies
+     *            solved pre-flop strategies (see PreflopSolver) for one or more stack depths, or null to play by the starting hand odds
+     */
+    public void setPreflopStrategies(final PreflopStrategy... strategies) {
+	this.preflopStrategies = strategies == null || strategies.length == 0 ? null : strategies.clone();
+    }
+
+    /**
+     * Solve turn and river decisions in big pots (see SubgameSolver) instead of playing them by the hand category
+     *
+     * @param minPot
+     *            the pot in big blinds from which we solve, 0 to never solve
+     * @param threads
+     *            threads for the solver, 1 solves in the calling thread
+     */
+    public void setSubgame(final float minPot, final int threads) {
+	this.subgamePot = minPot;
+	this.subgameThreads = threads;
+	if (myRange == null) {
+	    myRange = new float[Combos.COMBO_COUNT];
+	    Arrays.fill(myRange, 1f);
+	}
+	if (subgamePool != null) {
+	    subgamePool.shutdown();
+	}
+	subgamePool = minPot <= 0 || threads <= 1 ? null : daemonPool(threads, "subgame");
+    }
+
+    /**
+     * Play every post-flop decision (the subgame solver's big pots excepted) by an expectimax search against the opponent model
+     *
+     * @param threads
+     *            threads to rank the next cards on, 1 ranks in the calling thread
+     */
+    public void setExpectimax(final boolean enabled, final int threads) {
+	if (expectimaxPool != null) {
+	    expectimaxPool.shutdown();
+	}
+	expectimaxPool = enabled && threads > 1 ? daemonPool(threads, "expectimax") : null;
+	expectimax = enabled ? new ExpectimaxSearch(expectimaxPool, threads) : null;
+	if (expectimax != null) {
+	    expectimax.setEvalCounter(evalCounter);
+	}
+    }
+
+    /**
+     * Forgets what we did this round, so the next decision is taken as the first of its round (a benchmark replays one decision)
+     */
+    public void resetRound() {
+	lastRound = -1;
+    }
+
+    /**
+     * Size post-flop raises by their expected value against the opponent's range (see BetSizer) instead of by the hand odds
+     */
+    public void setBetSizing(final boolean enabled) {
+	betSizer = enabled ? new BetSizer() : null;
+	if (betSizer != null) {
+	    betSizer.setEvalCounter(evalCounter);
+	}
+    }
+
+    private static ExecutorService daemonPool(final int threads, final String name) {
+	return Executors.newFixedThreadPool(threads, task -> {
+	    final Thread thread = new Thread(task, name);
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    }
+
+    /**
+     * @return the strategy constants this bot plays with
+     */
+    public StrategyParams getParams() {
+	return params;
+    }
+
+    @Override
+    public EvalCounter getEvalCounter() {
+	return evalCounter;
+    }
+
+    /**
+     * Opens the opponent profile store when -Daipoker.profiles=path names its file; off by default, since an engine that only names seats gives every opponent the same key
+     */
+    private static ProfileStore openProfiles() {
+	final String path = System.getProperty("aipoker.profiles", "");
+	if (path.isEmpty()) {
+	    return null;
+	}
+	try {
+	    return ProfileStore.open(new File(path), ProfileStore.DEFAULT_CAPACITY);
+	} catch (IOException e) {
+	    Log.warn("Playing without opponent profiles: {}", e.getMessage());
+	    return null;
+	}
+    }
+
+    /**
+     * Reads the pre-flop strategies, set -Daipoker.preflop=file,file to play them (one file per stack depth)
+     */
+    private static PreflopStrategy[] readPreflopStrategies() {
+	final String paths = System.getProperty("aipoker.preflop", "");
+	if (paths.isEmpty()) {
+	    return null;
+	}
+	final String[] files = paths.split(",");
+	final PreflopStrategy[] strategies = new PreflopStrategy[files.length];
+	try {
+	    for (int i = 0; i < files.length; i++) {
+		strategies[i] = PreflopStrategy.read(new File(files[i].trim()));
+	    }
+	    return strategies;
+	} catch (IOException e) {
+	    Log.warn("Playing without pre-flop strategies: {}", e.getMessage());
+	    return null;
+	}
+    }
+
+    /**
+     * Sets the options of the command line on a bot, the same for the live bot and the warm-up bots so the warm-up compiles the paths the match takes
+     *
+     * @param threads
+     *            threads for the subgame solver and the expectimax search
+     */
+    private static void configure(final BotStarter bot, final PreflopStrategy[] preflop, final int threads) {
+	bot.setPreflopStrategies(preflop);
+	bot.setSubgame(Float.parseFloat(System.getProperty("aipoker.subgame", "0")), threads);
+	bot.setExpectimax(Boolean.getBoolean("aipoker.expectimax"), threads);
+	bot.setBetSizing(Boolean.parseBoolean(System.getProperty("aipoker.betsizing", "true")));
     }
 
     /**
      * @param args
      */
     public static void main(String[] args) {
-	final BotParser parser = new BotParser(new BotStarter());
+	final String tuned = System.getProperty("aipoker.params");
+	final StrategyParams params = tuned == null ? StrategyParams.DEFAULT : StrategyParams.parse(tuned);
+	final PreflopStrategy[] preflop = readPreflopStrategies();
+	final BotStarter bot = new BotStarter(params);
+	configure(bot, preflop, Runtime.getRuntime().availableProcessors());
+	final BotParser parser = new BotParser(bot, openProfiles());
+	parser.setWarmUp(() -> {
+	    final BotStarter warmUp = new BotStarter(params);
+	    configure(warmUp, preflop, 1); // searches in the calling thread: a bot per synthetic hand must not start pools of its own
+	    return warmUp;
+	}, Long.getLong("aipoker.warmup", 1000));
+	final String metricsFile = System.getProperty("aipoker.metrics");
+	parser.getMetrics().startReporting(Long.getLong("aipoker.metrics.interval", 60000), metricsFile == null ? null : new File(metricsFile));
 	parser.run();
+	parser.getMetrics().dump(metricsFile == null ? null : new File(metricsFile));
     }
 
 }
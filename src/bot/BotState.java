@@ -14,6 +14,14 @@ package bot;
 import java.util.HashMap;
 import java.util.Map;
 
+import be.stilkin.BettingHistory;
+import be.stilkin.CardMasks;
+import be.stilkin.GameSnapshot;
+import be.stilkin.log.Log;
+import be.stilkin.opponent.OpponentModel;
+import be.stilkin.opponent.ProfileStore;
+import be.stilkin.range.OpponentRange;
+import poker.ActionType;
 import poker.Card;
 import poker.HandHoldem;
 import poker.PokerMove;
@@ -23,6 +31,8 @@ import poker.PokerMove;
  */
 public class BotState {
 
+    private static final String SEAT_NAME = "player[12]"; // the engine names the seats, not the bots
+
     private int round, smallBlind, bigBlind;
 
     private boolean onButton;
@@ -51,6 +61,36 @@ public class BotState {
 
     private int handsPerLevel;
 
+    private final OpponentModel opponentModel = new OpponentModel();
+
+    private final OpponentRange opponentRange = new OpponentRange();
+
+    private final BettingHistory bettingHistory = new BettingHistory();
+
+    private long holeMask, boardMask;
+
+    private long version;
+
+    private volatile GameSnapshot snapshot = GameSnapshot.EMPTY;
+
+    private final ProfileStore profileStore;
+
+    private String opponentName;
+
+    private int profile = -1;
+
+    public BotState() {
+	this(null);
+    }
+
+    /**
+     * @param profileStore
+     *            where we remember opponents between matches, can be null
+     */
+    public BotState(ProfileStore profileStore) {
+	this.profileStore = profileStore;
+    }
+
     /**
      * Parses the settings for this game
      * 
@@ -63,6 +103,9 @@ public class BotState {
 	settings.put(key, value);
 	if (key.equals("your_bot")) {
 	    myName = value;
+	    if (myName.matches(SEAT_NAME)) { // heads-up, so we know who we will meet
+		bindProfile(myName.equals("player1") ? "player2" : "player1");
+	    }
 	} else if (key.equals("timebank")) { // Maximum amount of time your bot can take for one response
 	    timeBank = Integer.valueOf(value);
 	} else if (key.equals("time_per_move")) { // The extra amount of time you get per response
@@ -73,8 +116,9 @@ public class BotState {
 	    myStack = Integer.valueOf(value);
 	    opponentStack = Integer.valueOf(value);
 	} else {
-	    System.err.printf("Unknown settings command: %s %s\n", key, value);
+	    Log.warn("Unknown settings command: {} {}", key, value);
 	}
+	publish();
     }
 
     /**
@@ -88,8 +132,12 @@ public class BotState {
     protected void updateMatch(String key, String value) {
 	if (key.equals("round")) { // Round number
 	    round = Integer.valueOf(value);
-	    System.err.println("Round " + round); // printing the round to the output for debugging
+	    Log.info("Round {}", round); // printing the round to the output for debugging
 	    resetRoundVariables();
+	    opponentModel.newHand();
+	    if (profile >= 0 && round > 1) { // the last hand is committed now, write it back
+		profileStore.save(profile, opponentModel, opponentRange.getLikelihood());
+	    }
 	} else if (key.equals("small_blind")) { // Value of the small blind
 	    smallBlind = Integer.valueOf(value);
 	} else if (key.equals("big_blind")) { // Value of the big blind
@@ -102,9 +150,14 @@ public class BotState {
 	    amountToCall = Integer.valueOf(value);
 	} else if (key.equals("table")) { // The cards on the table
 	    table = parseCards(value);
+	    boardMask = CardMasks.mask(table);
+	    opponentModel.setTableCards(table.length);
+	    opponentRange.setBoard(CardMasks.mask(table));
+	    bettingHistory.setStreet(getStreet());
 	} else {
-	    System.err.printf("Unknown match command: %s %s\n", key, value);
+	    Log.warn("Unknown match command: {} {}", key, value);
 	}
+	publish();
     }
 
     /**
@@ -125,25 +178,91 @@ public class BotState {
 		myStack -= Integer.valueOf(amount);
 	    } else if (key.equals("hand")) { // Your cards
 		Card[] cards = parseCards(amount);
+		if (hand == null) { // not again when the engine repeats it at showdown
+		    opponentRange.newHand(CardMasks.mask(cards));
+		}
 		hand = new HandHoldem(cards[0], cards[1]);
-	    } else if (key.equals("wins")) {
-		// Your winnings, not stored
-	    } else {
-		// That should be all
+		holeMask = CardMasks.mask(cards);
+	    } else if (key.equals("wins")) { // Your winnings, not stored
+		opponentModel.onWinner(false);
+	    } else if (actionCode(key) >= 0) { // The move you did
+		opponentModel.onMyAction(actionCode(key));
+		bettingHistory.append(BettingHistory.ME, ActionType.fromOrdinal(actionCode(key)), Integer.valueOf(amount), pot);
 	    }
 	} else { // assume it's the opponent
+	    if (!bot.equals(opponentName)) {
+		bindProfile(bot);
+	    }
 	    if (key.equals("stack")) { // The amount in your opponent's starting stack
 		opponentStack = Integer.valueOf(amount);
 	    } else if (key.equals("post")) { // The amount your opponent paid for the blind
 		opponentStack -= Integer.valueOf(amount);
-	    } else if (key.equals("hand")) {
-		// Hand of the opponent on a showdown, not stored
-	    } else if (key.equals("wins")) {
-		// Opponent winnings, not stored
+	    } else if (key.equals("hand")) { // Hand of the opponent on a showdown, not stored
+		opponentModel.onOpponentShowdown();
+		opponentRange.onShowdown(CardMasks.mask(parseCards(amount)));
+	    } else if (key.equals("wins")) { // Opponent winnings, not stored
+		opponentModel.onWinner(true);
 	    } else { // The move your opponent did
 		opponentMove = new PokerMove(bot, key, Integer.valueOf(amount));
+		if (actionCode(key) >= 0) {
+		    opponentModel.onOpponentAction(actionCode(key));
+		    opponentRange.onOpponentAction(actionCode(key));
+		    bettingHistory.append(BettingHistory.OPPONENT, ActionType.fromOrdinal(actionCode(key)), Integer.valueOf(amount), pot);
+		}
 	    }
 	}
+	publish();
+    }
+
+    /**
+     * The engine stopped sending: commit the last hand and write it to the profile store
+     */
+    protected void endMatch() {
+	opponentModel.finishHand();
+	if (profile >= 0 && round > 0) {
+	    profileStore.save(profile, opponentModel, opponentRange.getLikelihood());
+	}
+    }
+
+    /**
+     * Takes a snapshot of the state as it is now and makes it visible to other threads
+     */
+    private void publish() {
+	final int opponentAction = opponentMove == null || opponentMove.getActionType() == null ? -1 : opponentMove.getActionType().ordinal();
+	snapshot = new GameSnapshot(++version, round, smallBlind, bigBlind, onButton, myStack, opponentStack, pot, amountToCall, holeMask, boardMask, opponentAction,
+		opponentMove == null ? 0 : opponentMove.getAmount(), bettingHistory.getKey());
+    }
+
+    /**
+     * Loads what we remember about this opponent from the profile store (if we have one). A seat name is no key: every opponent that sits there would share one record.
+     */
+    private void bindProfile(String name) {
+	opponentName = name;
+	profile = -1;
+	if (profileStore == null || name.matches(SEAT_NAME)) {
+	    return;
+	}
+	profile = profileStore.find(name);
+	if (profile >= 0) {
+	    profileStore.load(profile, opponentModel, opponentRange.getLikelihood());
+	    Log.info("Loaded profile of {}: {} hands", name, profileStore.getHands(profile));
+	}
+    }
+
+    /**
+     * @return the OpponentModel constant for a move key, or -1 if the key is not a move
+     */
+    public static int actionCode(String key) {
+	if (key.equals("fold")) {
+	    return OpponentModel.FOLD;
+	} else if (key.equals("check")) {
+	    return OpponentModel.CHECK;
+	} else if (key.equals("call")) {
+	    return OpponentModel.CALL;
+	} else if (key.equals("raise")) {
+	    return OpponentModel.RAISE;
+	}
+	return -1;
     }
 
     /**
@@ -182,6 +301,9 @@ public class BotState {
 	amountToCall = 0;
 	hand = null;
 	table = new Card[0];
+	bettingHistory.clear();
+	holeMask = 0;
+	boardMask = 0;
     }
 
     public int getRound() {
@@ -244,4 +366,53 @@ public class BotState {
 	return amountToCall;
     }
 
+    /**
+     * @return 0 pre-flop, 1 on the flop, 2 on the turn, 3 on the river
+     */
+    public int getStreet() {
+	return table == null || table.length < 3 ? 0 : table.length - 2;
+    }
+
+    /**
+     * @return the maximum timebank (ms) from the settings
+     */
+    public int getTimeBank() {
+	return timeBank;
+    }
+
+    /**
+     * @return the time (ms) every move adds to the timebank
+     */
+    public int getTimePerMove() {
+	return timePerMove;
+    }
+
+    /**
+     * @return what we learned about the opponent so far this match
+     */
+    public OpponentModel getOpponentModel() {
+	return opponentModel;
+    }
+
+    /**
+     * @return the combos the opponent may hold this hand, narrowed by what he did
+     */
+    public OpponentRange getOpponentRange() {
+	return opponentRange;
+    }
+
+    /**
+     * @return every action of this hand so far, ours and the opponent's
+     */
+    public BettingHistory getBettingHistory() {
+	return bettingHistory;
+    }
+
+    /**
+     * @return the state after the last engine line, safe to read from any thread
+     */
+    public GameSnapshot getSnapshot() {
+	return snapshot;
+    }
+
 }
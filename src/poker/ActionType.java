@@ -0,0 +1,47 @@
+package poker;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The moves a bot can make. The ordinals match the action codes of be.stilkin.opponent.OpponentModel.
+ * 
+ * @author stilkin
+ */
+public enum ActionType {
+    FOLD("fold"), CHECK("check"), CALL("call"), RAISE("raise");
+
+    private static final ActionType[] VALUES = values();
+    private final String word;
+    final byte[] bytes; // the word as the engine wants it, for PokerMove.writeTo
+
+    private ActionType(final String word) {
+	this.word = word;
+	this.bytes = word.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the protocol word, e.g. "call"
+     */
+    public String getWord() {
+	return word;
+    }
+
+    /**
+     * @return the action for an ordinal, without cloning values()
+     */
+    public static ActionType fromOrdinal(final int ordinal) {
+	return VALUES[ordinal];
+    }
+
+    /**
+     * @return the action for a protocol word, or null if the word is not a move
+     */
+    public static ActionType parse(final String word) {
+	for (ActionType type : VALUES) {
+	    if (type.word.equals(word)) {
+		return type;
+	    }
+	}
+	return null;
+    }
+}
@@ -21,7 +21,7 @@ public class Card {
     private CardHeight height;
     private CardSuit suit;
     private int number;
-    private static Map<String, Card> stringToCard;
+    private static volatile Map<String, Card> stringToCard;
 
     /**
      * Creates a card object based on a number between 0 and 51
@@ -94,12 +94,13 @@ public class Card {
      *            : the string to be converted to a Card
      */
     public static Card getCard(String string) {
-	if (stringToCard == null) {
-	    stringToCard = new HashMap<String, Card>();
+	if (stringToCard == null) { // fill the map before publishing it, bots may share this class between threads
+	    final Map<String, Card> map = new HashMap<String, Card>();
 	    for (int i = 0; i < 52; ++i) {
 		Card card = new Card(i);
-		stringToCard.put(card.toString(), card);
+		map.put(card.toString(), card);
 	    }
+	    stringToCard = map;
 	}
 	return stringToCard.get(string);
     }
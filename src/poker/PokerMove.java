@@ -19,15 +19,37 @@ public class PokerMove {
 	
 	String player = null;
 	String action = null;
+	ActionType type = null;
 	int amount;
 
+	/**
+	 * An empty move, to be filled in with set. Bots reuse one of these for every decision.
+	 */
+	public PokerMove()
+	{
+	}
+
 	public PokerMove(String botName, String act, int amt)
 	{
 		player = botName;
 		action = act;
+		type = ActionType.parse(act);
 		amount = amt;
 	}
 
+	/**
+	 * Overwrites this move, so no new object is needed
+	 * @return this move
+	 */
+	public PokerMove set(String botName, ActionType act, int amt)
+	{
+		player = botName;
+		action = act.getWord();
+		type = act;
+		amount = amt;
+		return this;
+	}
+
 	public String getPlayer()
 	{
 		return player;
@@ -37,6 +59,14 @@ public class PokerMove {
 	{
 		return action;
 	}
+
+	/**
+	 * @return the action as enum, null if the action is not a move
+	 */
+	public ActionType getActionType()
+	{
+		return type;
+	}
 	
 	public int getAmount()
 	{
@@ -48,7 +78,34 @@ public class PokerMove {
 	 * string and the action amount. Returning the player name to the engine is not needed
 	 */
 	public String toString() {
-		return String.format("%s %d", action, amount);
+		return action + " " + amount;
+	}
+
+	/**
+	 * Writes the same sentence as toString, plus a newline, as ASCII bytes. Needs at most 18 bytes, and a move with an ActionType.
+	 * @return the offset after the last byte written
+	 */
+	public int writeTo(byte[] buffer, int offset) {
+		final byte[] word = type.bytes;
+		System.arraycopy(word, 0, buffer, offset, word.length);
+		offset += word.length;
+		buffer[offset++] = ' ';
+		long value = amount;
+		if (value < 0) {
+			buffer[offset++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long v = value / 10; v > 0; v /= 10) {
+			digits++;
+		}
+		for (int d = offset + digits - 1; d >= offset; d--) {
+			buffer[d] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		offset += digits;
+		buffer[offset++] = '\n';
+		return offset;
 	}
 	
 }